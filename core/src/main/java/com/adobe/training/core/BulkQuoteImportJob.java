@@ -0,0 +1,243 @@
+package com.adobe.training.core;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.apache.sling.event.jobs.consumer.JobExecutionResult;
+import org.apache.sling.event.jobs.consumer.JobExecutor;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.training.core.quotes.QuoteRecordReader;
+import com.adobe.training.core.quotes.StockQuote;
+import com.adobe.training.core.services.ImportRateLimiter;
+import com.adobe.training.core.services.PriceHistoryService;
+import com.adobe.training.core.services.PriceRollupService;
+import com.adobe.training.core.services.QuoteCache;
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.QuoteUpdateListener;
+import com.adobe.training.core.services.StockImportStatistics;
+import com.adobe.training.core.services.StockSymbolRegistry;
+
+/**
+ * This job executor imports a full market snapshot from one NDJSON or CSV file instead of
+ * one request per symbol. The file is a DAM asset, an nt:file in the repository or a file in
+ * the configured local directory, a relative path is resolved against that directory. The
+ * format follows from its extension unless the job has a "format" property.
+ *
+ * The records are decoded one line at a time by the QuoteRecordReader and written by the
+ * BulkQuoteWriter in chunked commits, so neither the file nor the written quotes pile up in
+ * memory. New symbols are added to the StockSymbolRegistry right after their commit, the
+ * StockListener only sees the new folders in its debounced batches.
+ *
+ * Imports are queued with the queueImport operation of the com.adobe.training:type=BulkQuoteImport MBean.
+ */
+@Component(
+		immediate = true,
+		service = {JobExecutor.class, BulkQuoteImportJobMBean.class},
+		property = {
+				JobExecutor.PROPERTY_TOPICS + "=" + BulkQuoteImportJob.JOB_TOPIC_STOCKIMPORT_BULK,
+				"jmx.objectname=com.adobe.training:type=BulkQuoteImport"
+		}
+)
+@Designate(ocd = BulkQuoteImportJob.Configuration.class)
+public class BulkQuoteImportJob implements JobExecutor, BulkQuoteImportJobMBean {
+	public static final String JOB_TOPIC_STOCKIMPORT_BULK = "com/adobe/training/core/jobs/stockbulkimportjob";
+	public static final String JOB_PROP_PATH = "path";
+	public static final String JOB_PROP_FORMAT = "format";
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	// Convenience string to find the log messages for this training example class
+	// Logs can be found in crx-quickstart/logs/error.log
+	private String searchableLogStr = "&&&&&";
+
+	@ObjectClassDefinition(name = "Training Bulk Quote Importer")
+	public @interface Configuration {
+		@AttributeDefinition(
+				name = "Chunk Size",
+				description = "Number of changed symbols written to the JCR before each commit",
+				type = AttributeType.INTEGER
+		)
+		int chunk_size() default 500;
+
+		@AttributeDefinition(
+				name = "Local Directory",
+				description = "Directory of the file system bulk quote files may be imported from. Empty allows repository files only",
+				type = AttributeType.STRING
+		)
+		String local_directory() default "";
+	}
+
+	@Reference
+	private ResourceResolverFactory resourceResolverFactory;
+
+	@Reference
+	private JobManager jobManager;
+
+	@Reference
+	private StockImportStatistics importStatistics;
+
+	@Reference
+	private StockSymbolRegistry symbolRegistry;
+
+	@Reference
+	private QuoteCache quoteCache;
+
+	@Reference
+	private PriceHistoryService priceHistory;
+
+	@Reference
+	private PriceRollupService priceRollups;
+
+	@Reference
+	private ImportRateLimiter rateLimiter;
+
+	@Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC)
+	private volatile List<QuoteUpdateListener> updateListeners;
+
+	private int chunkSize;
+	private Path localDirectory;
+
+	@Activate @Modified
+	protected void activate(Configuration config) {
+		chunkSize = Math.max(1, config.chunk_size());
+		String directory = config.local_directory().trim();
+		localDirectory = directory.isEmpty() ? null : Paths.get(directory).toAbsolutePath().normalize();
+	}
+
+	@Override
+	public String queueImport(String path) {
+		Map<String, Object> jobProps = new HashMap<>();
+		jobProps.put(JOB_PROP_PATH, path);
+		Job job = jobManager.addJob(JOB_TOPIC_STOCKIMPORT_BULK, jobProps);
+		return job != null ? job.getId() : null;
+	}
+
+	@Override
+	public JobExecutionResult process(Job job, JobExecutionContext context) {
+		String path = job.getProperty(JOB_PROP_PATH, String.class);
+		if (path == null || path.trim().isEmpty()) {
+			return context.result().message("No bulk quote file path").cancelled();
+		}
+		String formatProp = job.getProperty(JOB_PROP_FORMAT, String.class);
+		QuoteRecordReader.Format format;
+		try {
+			format = formatProp != null ? QuoteRecordReader.Format.valueOf(formatProp.toUpperCase(Locale.ROOT))
+					: QuoteRecordReader.Format.forFileName(path);
+		} catch (IllegalArgumentException e) {
+			format = null;
+		}
+		if (format == null) {
+			return context.result().message("Unknown bulk quote file format of " + path).cancelled();
+		}
+
+		//One resolver for the whole file, with the service user of the training subservice
+		long start = System.nanoTime();
+		try (ResourceResolver resourceResolver = resourceResolverFactory.getServiceResourceResolver(StockDataImporter.SERVICE_PARAMS);
+				QuoteRecordReader reader = new QuoteRecordReader(open(resourceResolver, path), format)) {
+			BulkQuoteWriter writer = new BulkQuoteWriter(resourceResolver, priceHistory, priceRollups, chunkSize,
+					rateLimiter, this::committed);
+			for (StockQuote quote = reader.next(); quote != null; quote = reader.next()) {
+				if (context.isStopped()) {
+					writer.commit();
+					return context.result().message("Stopped after " + writer.getReceivedCount() + " records").cancelled();
+				}
+				writer.write(quote);
+			}
+			writer.commit();
+
+			long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			String summary = "Read " + writer.getReceivedCount() + " records of " + path + " in " + millis + " ms ("
+					+ writer.getReceivedCount() * 1000 / millis + " records/s). Wrote " + writer.getWrittenCount()
+					+ " symbols in " + writer.getCommitCount() + " commits, " + writer.getIdenticalCount()
+					+ " identical to the JCR, " + writer.getStaleCount() + " older than the JCR, "
+					+ writer.getInvalidCount() + " invalid symbols, "
+					+ reader.getSkippedCount() + " undecodable records, " + writer.getFailedCount() + " failed";
+			if (reader.getLastError() != null) {
+				context.log("Last undecodable record: {0}", reader.getLastError());
+			}
+			if (writer.getLastFailure() != null) {
+				context.log("Last failed commit: {0}", writer.getLastFailure());
+			}
+			logger.info(searchableLogStr + summary);
+			if (writer.getFailedCount() > 0 && writer.getWrittenCount() == 0) {
+				return context.result().message(summary).failed();
+			}
+			return context.result().message(summary).succeeded();
+		} catch (FileNotFoundException e) {
+			return context.result().message("Bulk quote file not found: " + e.getMessage()).cancelled();
+		} catch (IOException e) {
+			logger.error(searchableLogStr + "Cannot import bulk quote file " + path, e);
+			return context.result().message("Cannot import " + path + ": " + e).failed();
+		} catch (LoginException e) {
+			logger.error(searchableLogStr + "Exception with getting the service resource resolver: ", e);
+			return context.result().message("Cannot login the training service user").failed();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return context.result().message("Bulk import of " + path + " interrupted").failed();
+		}
+	}
+
+	private InputStream open(ResourceResolver resourceResolver, String path) throws IOException {
+		Resource resource = resourceResolver.getResource(path);
+		if (resource != null) {
+			//A DAM asset keeps the file in its original rendition, an nt:file adapts directly
+			Resource original = resource.getChild("jcr:content/renditions/original");
+			InputStream in = (original != null ? original : resource).adaptTo(InputStream.class);
+			if (in == null) {
+				throw new FileNotFoundException(path + " has no file content");
+			}
+			return in;
+		}
+		if (localDirectory == null) {
+			throw new FileNotFoundException(path + " is not in the repository, local files are not enabled");
+		}
+		//Relative paths are files of the local directory, not of the working directory of AEM
+		Path file = localDirectory.resolve(path).normalize();
+		if (!file.startsWith(localDirectory)) {
+			throw new FileNotFoundException(path + " is not in " + localDirectory);
+		}
+		try {
+			return Files.newInputStream(file);
+		} catch (NoSuchFileException e) {
+			throw new FileNotFoundException(path);
+		}
+	}
+
+	//Caches and announces the quotes of every commit, new symbols join the scheduled imports
+	private void committed(List<QuoteSnapshot> quotes) {
+		importStatistics.recordWritten(quotes.size());
+		for (QuoteSnapshot quote : quotes) {
+			quoteCache.put(quote);
+			symbolRegistry.add(quote.getSymbol());
+		}
+		StockDataImporter.notifyUpdated(updateListeners, quotes);
+	}
+}
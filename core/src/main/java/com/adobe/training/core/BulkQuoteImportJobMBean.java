@@ -0,0 +1,15 @@
+package com.adobe.training.core;
+
+/**
+ * Starts bulk quote imports, registered as com.adobe.training:type=BulkQuoteImport
+ */
+public interface BulkQuoteImportJobMBean {
+
+    /**
+     * Queue the import of a bulk quote file
+     *
+     * @param path a DAM asset, an nt:file in the repository or a file in the configured local directory
+     * @return the id of the queued job
+     */
+    String queueImport(String path);
+}
@@ -0,0 +1,149 @@
+package com.adobe.training.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+
+import com.adobe.training.core.quotes.StockQuote;
+import com.adobe.training.core.services.ImportRateLimiter;
+import com.adobe.training.core.services.PriceHistoryService;
+import com.adobe.training.core.services.PriceRollupService;
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.StockSymbolRegistry;
+
+/**
+ * Writes the quotes of a bulk quote file to their trade nodes with one resource resolver and
+ * commits every "chunk size" changed symbols. Missing symbol folders are created together with
+ * their trade nodes, so new folders are added in bulk by the same commits. Like the import jobs,
+ * each quote is appended to the price history and candles of its symbol, and a quote older than
+ * the persisted trade is skipped as stale.
+ *
+ * Only as many changes as one chunk are held in the resolver. A chunk that cannot be committed
+ * is reverted and counted as failed, the following chunks are still written.
+ */
+final class BulkQuoteWriter {
+
+	private final ResourceResolver resourceResolver;
+	private final PriceHistoryService priceHistory;
+	private final PriceRollupService priceRollups;
+	private final int chunkSize;
+	private final ImportRateLimiter rateLimiter;
+	private final Consumer<List<QuoteSnapshot>> committed;
+	private final List<QuoteSnapshot> pending;
+
+	private long received;
+	private long invalid;
+	private long stale;
+	private long identical;
+	private long written;
+	private long failed;
+	private long commits;
+	private String lastFailure;
+
+	/**
+	 * @param rateLimiter waited for before every commit, null to commit at once
+	 * @param committed called with the quotes of every successful commit
+	 */
+	BulkQuoteWriter(ResourceResolver resourceResolver, PriceHistoryService priceHistory, PriceRollupService priceRollups,
+			int chunkSize, ImportRateLimiter rateLimiter, Consumer<List<QuoteSnapshot>> committed) {
+		this.resourceResolver = resourceResolver;
+		this.priceHistory = priceHistory;
+		this.priceRollups = priceRollups;
+		this.chunkSize = Math.max(1, chunkSize);
+		this.rateLimiter = rateLimiter;
+		this.committed = committed;
+		this.pending = new ArrayList<>(this.chunkSize);
+	}
+
+	void write(StockQuote quote) throws PersistenceException, InterruptedException {
+		received++;
+		if (!StockSymbolRegistry.SYMBOL.matcher(quote.getSymbol()).matches()) {
+			invalid++;
+			return;
+		}
+		QuoteSnapshot snapshot = StockDataImporter.toSnapshot(quote);
+		if (StockDataImporter.isOlderThanTrade(resourceResolver, snapshot)) {
+			stale++;
+			return;
+		}
+		int propertiesWritten = StockDataImporter.writeTrade(resourceResolver, snapshot);
+		boolean appended = priceHistory.append(resourceResolver, quote);
+		boolean rolledUp = priceRollups.update(resourceResolver, quote);
+		if (propertiesWritten == 0 && !appended && !rolledUp) {
+			//The JCR already has these values
+			identical++;
+			return;
+		}
+		pending.add(snapshot);
+		if (pending.size() >= chunkSize) {
+			commit();
+		}
+	}
+
+	//Commits the pending quotes, call once more after the last write
+	void commit() throws InterruptedException {
+		if (pending.isEmpty()) {
+			return;
+		}
+		try {
+			if (rateLimiter != null) {
+				rateLimiter.acquireCommit();
+			}
+			resourceResolver.commit();
+			commits++;
+			written += pending.size();
+			committed.accept(new ArrayList<>(pending));
+		} catch (PersistenceException e) {
+			resourceResolver.revert();
+			failed += pending.size();
+			lastFailure = e.getMessage();
+		} catch (InterruptedException e) {
+			resourceResolver.revert();
+			failed += pending.size();
+			throw e;
+		} finally {
+			pending.clear();
+		}
+	}
+
+	//Quotes passed to write
+	long getReceivedCount() {
+		return received;
+	}
+
+	//Quotes with a symbol that is not a valid stock symbol
+	long getInvalidCount() {
+		return invalid;
+	}
+
+	//Quotes older than the persisted trade of their symbol
+	long getStaleCount() {
+		return stale;
+	}
+
+	//Quotes whose values were all already persisted
+	long getIdenticalCount() {
+		return identical;
+	}
+
+	long getWrittenCount() {
+		return written;
+	}
+
+	//Quotes of chunks that could not be committed
+	long getFailedCount() {
+		return failed;
+	}
+
+	long getCommitCount() {
+		return commits;
+	}
+
+	//Why the last failed chunk could not be committed, null if none failed
+	String getLastFailure() {
+		return lastFailure;
+	}
+}
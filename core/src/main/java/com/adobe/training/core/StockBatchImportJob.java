@@ -0,0 +1,471 @@
+package com.adobe.training.core;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.apache.sling.event.jobs.consumer.JobExecutionResult;
+import org.apache.sling.event.jobs.consumer.JobExecutor;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.training.core.quotes.StockQuote;
+import com.adobe.training.core.quotes.StockQuoteDecoder;
+import com.adobe.training.core.schedulers.StockImportScheduler;
+import com.adobe.training.core.services.FetchResult;
+import com.adobe.training.core.services.ImportRateLimiter;
+import com.adobe.training.core.services.PriceHistoryService;
+import com.adobe.training.core.services.PriceRollupService;
+import com.adobe.training.core.services.QuoteCache;
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.QuoteSource;
+import com.adobe.training.core.services.QuoteUpdateListener;
+import com.adobe.training.core.services.SourceUnavailableException;
+import com.adobe.training.core.services.StockImportStatistics;
+import com.adobe.training.core.services.StockImportStatistics.Stage;
+
+/**
+ * This job executor imports many stock symbols in one Sling Job. The quotes are fetched
+ * concurrently and all trade nodes are written with a single service resource resolver,
+ * committing every "Commit Batch Size" symbols instead of once per symbol.
+ *
+ * The outcome for every symbol is added to the job log and summarized in the job result
+ * message. A batch only fails as a whole when no symbol could be imported; failed symbols
+ * are picked up again on the next scheduled run. While the circuit breaker of the data source
+ * is open the fetches fail at once and the batch is cancelled instead of retried. Quotes that
+ * did not change since the last run are neither parsed nor written, and decoded quotes are only
+ * written where they differ from the persisted trade values. Every moved quote is appended to the price history and
+ * added to the OHLC candles.
+ */
+@Component(
+		immediate = true,
+		service = JobExecutor.class,
+		property = {
+				JobExecutor.PROPERTY_TOPICS + "=" + StockImportScheduler.JOB_TOPIC_STOCKIMPORT_BATCH
+		}
+)
+@Designate(ocd = StockBatchImportJob.Configuration.class)
+public class StockBatchImportJob implements JobExecutor {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	// Convenience string to find the log messages for this training example class
+	// Logs can be found in crx-quickstart/logs/error.log
+	private String searchableLogStr = "&&&&&";
+
+	@ObjectClassDefinition(name = "Training Stock Batch Importer")
+	public @interface Configuration {
+		@AttributeDefinition(
+				name = "Fetch Threads",
+				description = "Number of stock quotes requested at the same time. The Training Stock Data Fetcher limits the connections per host",
+				type = AttributeType.INTEGER
+		)
+		int fetch_threads() default 8;
+
+		@AttributeDefinition(
+				name = "Commit Batch Size",
+				description = "Number of symbols written to the JCR before each commit",
+				type = AttributeType.INTEGER
+		)
+		int commit_batch_size() default 200;
+	}
+
+	@Reference
+	private ResourceResolverFactory resourceResolverFactory;
+
+	@Reference(cardinality = ReferenceCardinality.AT_LEAST_ONE, policy = ReferencePolicy.DYNAMIC)
+	private volatile List<QuoteSource> quoteSources;
+
+	@Reference
+	private StockImportStatistics importStatistics;
+
+	@Reference
+	private PriceHistoryService priceHistory;
+
+	@Reference
+	private PriceRollupService priceRollups;
+
+	@Reference
+	private QuoteCache quoteCache;
+
+	@Reference
+	private ImportRateLimiter rateLimiter;
+
+	@Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC)
+	private volatile List<QuoteUpdateListener> updateListeners;
+
+	//Replaced on modification, running jobs keep waiting for the fetches of the previous one
+	private volatile ExecutorService fetchExecutor;
+	private volatile int commitBatchSize;
+
+	@Activate @Modified
+	protected void activate(Configuration config) {
+		ExecutorService previous = fetchExecutor;
+		fetchExecutor = Executors.newFixedThreadPool(Math.max(1, config.fetch_threads()), new FetchThreadFactory());
+		commitBatchSize = Math.max(1, config.commit_batch_size());
+		if (previous != null) {
+			//Runs the fetches that are already queued and then ends its threads
+			previous.shutdown();
+		}
+	}
+
+	@Deactivate
+	protected void deactivate() {
+		ExecutorService executor = fetchExecutor;
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+				//Queued fetches that never run are cancelled, so no job waits for them
+				for (Runnable queued : executor.shutdownNow()) {
+					if (queued instanceof Future) {
+						((Future<?>) queued).cancel(false);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public JobExecutionResult process(Job job, JobExecutionContext context) {
+		String[] symbolProp = job.getProperty(StockImportScheduler.JOB_PROP_SYMBOLS, String[].class);
+		String stockUrl = job.getProperty(StockImportScheduler.JOB_PROP_URL, StockImportScheduler.DEFAULT_IMPORT_URL);
+		if (symbolProp == null || symbolProp.length == 0) {
+			return context.result().message("No stock symbols in batch").cancelled();
+		}
+
+		Set<String> symbols = new LinkedHashSet<>();
+		for (String symbol : symbolProp) {
+			if (symbol != null && !symbol.trim().isEmpty()) {
+				symbols.add(symbol.trim().toUpperCase());
+			}
+		}
+
+		StockDataImporter.recordQueueWait(importStatistics, job);
+		QuoteSource quoteSource;
+		try {
+			quoteSource = StockDataImporter.quoteSource(quoteSources, stockUrl);
+		} catch (IOException e) {
+			return context.result().message(e.getMessage()).cancelled();
+		}
+
+		Map<String, String> failures = new LinkedHashMap<>();
+		int written = 0;
+		int unchanged = 0;
+		int unavailable = 0;
+		int identical = 0;
+		int propertiesReceived = 0;
+		int propertiesChanged = 0;
+
+		//One resolver for the whole batch, with the service user of the training subservice
+		try (ResourceResolver resourceResolver = resourceResolverFactory.getServiceResourceResolver(StockDataImporter.SERVICE_PARAMS)) {
+			//Request all quotes up front, the fetch threads work while the first results are written
+			Map<String, Future<FetchResult>> fetches = new LinkedHashMap<>();
+			Set<String> uncommittedSymbols = new LinkedHashSet<>(symbols);
+			AtomicBoolean abandoned = new AtomicBoolean();
+			for (String symbol : symbols) {
+				try {
+					fetches.put(symbol, submit(() -> {
+						FetchResult fetchResult = timedFetch(quoteSource, stockUrl, symbol);
+						if (abandoned.get()) {
+							//The job gave up on this symbol while it was fetched
+							quoteSource.forget(symbol);
+						}
+						return fetchResult;
+					}));
+				} catch (RejectedExecutionException e) {
+					//The component was deactivated
+					failures.put(symbol, "fetch rejected");
+				}
+			}
+
+			//The written snapshots and their quotes since the last commit
+			List<QuoteSnapshot> uncommitted = new ArrayList<>();
+			List<StockQuote> uncommittedQuotes = new ArrayList<>();
+			try {
+				for (Map.Entry<String, Future<FetchResult>> fetch : fetches.entrySet()) {
+					String symbol = fetch.getKey();
+					FetchResult fetchResult;
+					try {
+						fetchResult = await(fetch.getValue(), context);
+					} catch (CancellationException e) {
+						failures.put(symbol, "fetch cancelled");
+						continue;
+					} catch (ExecutionException e) {
+						if (e.getCause() instanceof SourceUnavailableException) {
+							unavailable++;
+							failures.put(symbol, "source unavailable");
+						} else if (e.getCause() instanceof FileNotFoundException) {
+							failures.put(symbol, "unknown symbol");
+						} else {
+							failures.put(symbol, "fetch failed: " + e.getCause());
+						}
+						context.log("{0} fetch failed: {1}", symbol, e.getCause());
+						continue;
+					}
+					if (fetchResult == null) {
+						failures.put(symbol, "job stopped");
+						continue;
+					}
+					importStatistics.recordFetch(fetchResult.getStatus());
+					if (!fetchResult.isModified()) {
+						//Nothing to parse or write, the quote is the same as the last import
+						unchanged++;
+						uncommittedSymbols.remove(symbol);
+						continue;
+					}
+					StockQuote quote;
+					QuoteSnapshot snapshot;
+					try {
+						long start = System.nanoTime();
+						quote = StockQuoteDecoder.decode(symbol, fetchResult.getBody());
+						importStatistics.recordTime(Stage.PARSE, System.nanoTime() - start);
+						snapshot = StockDataImporter.toSnapshot(quote);
+					} catch (IOException | RuntimeException e) {
+						writeFailed(quoteSource, symbol, e, failures, context);
+						continue;
+					}
+					try {
+						long parsed = System.nanoTime();
+						int propertiesWritten = StockDataImporter.writeTrade(resourceResolver, snapshot);
+						importStatistics.recordProperties(StockDataImporter.TRADE_PROPERTY_COUNT, propertiesWritten);
+						propertiesReceived += StockDataImporter.TRADE_PROPERTY_COUNT;
+						boolean appended = priceHistory.append(resourceResolver, quote);
+						boolean rolledUp = priceRollups.update(resourceResolver, quote);
+						importStatistics.recordTime(Stage.WRITE, System.nanoTime() - parsed);
+						if (propertiesWritten == 0 && !appended && !rolledUp) {
+							//The JCR already has these values, nothing to commit for this symbol
+							identical++;
+							uncommittedSymbols.remove(symbol);
+							quoteCache.put(snapshot);
+						} else {
+							propertiesChanged += propertiesWritten;
+							uncommitted.add(snapshot);
+							uncommittedQuotes.add(quote);
+						}
+					} catch (IOException | RuntimeException e) {
+						writeFailed(quoteSource, symbol, e, failures, context);
+						//Part of the quote may be written, the next commit must not persist it
+						rewrite(resourceResolver, quoteSource, uncommitted, uncommittedQuotes, failures, context);
+					}
+
+					if (uncommitted.size() >= commitBatchSize) {
+						written += commit(resourceResolver, quoteSource, uncommitted, uncommittedQuotes, uncommittedSymbols,
+								failures, context);
+					}
+				}
+				written += commit(resourceResolver, quoteSource, uncommitted, uncommittedQuotes, uncommittedSymbols,
+						failures, context);
+			} finally {
+				forgetUncommitted(quoteSource, fetches, uncommittedSymbols, abandoned);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return context.result().message("Batch import interrupted after " + written + " symbols").failed();
+		} catch (LoginException e) {
+			logger.error(searchableLogStr + "Exception with getting the service resource resolver: ", e);
+			return context.result().message("Cannot login the training service user").failed();
+		}
+
+		String summary = "Imported " + written + " of " + symbols.size() + " stock symbols, "
+				+ unchanged + " unchanged, " + identical + " identical to the JCR. Wrote " + propertiesChanged
+				+ " of " + propertiesReceived + " trade properties" + (failures.isEmpty() ? "" : ". Failed: " + failures);
+		logger.info(searchableLogStr + summary);
+		if (unavailable == symbols.size()) {
+			//Retrying the batch would not send a single request, the next scheduled run tries again
+			return context.result().message(summary).cancelled();
+		}
+		if (written == 0 && unchanged == 0 && identical == 0 && !failures.isEmpty()) {
+			return context.result().message(summary).failed();
+		}
+		return context.result().message(summary).succeeded();
+	}
+
+	//Submits to the current executor, again if a modification replaced it in the meantime
+	private Future<FetchResult> submit(Callable<FetchResult> fetch) {
+		while (true) {
+			ExecutorService executor = fetchExecutor;
+			try {
+				return executor.submit(fetch);
+			} catch (RejectedExecutionException e) {
+				if (executor == fetchExecutor) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits for a fetch, checking every second whether the job was stopped.
+	 *
+	 * @return the fetch result, null if the job was stopped first
+	 */
+	private static FetchResult await(Future<FetchResult> fetch, JobExecutionContext context)
+			throws InterruptedException, ExecutionException {
+		while (!context.isStopped()) {
+			try {
+				return fetch.get(1, TimeUnit.SECONDS);
+			} catch (TimeoutException e) {
+				//Not fetched yet
+			}
+		}
+		return null;
+	}
+
+	private FetchResult timedFetch(QuoteSource quoteSource, String stockUrl, String symbol) throws IOException {
+		long start = System.nanoTime();
+		try {
+			return quoteSource.fetch(stockUrl, symbol);
+		} finally {
+			importStatistics.recordTime(Stage.FETCH, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Cancels the fetches of the symbols that were not committed and forgets their quotes. A
+	 * fetch that stored its validators would otherwise make the next run skip the symbol with a
+	 * 304, and its quote would never be written. Fetches still running forget their symbol themselves.
+	 */
+	private static void forgetUncommitted(QuoteSource quoteSource, Map<String, Future<FetchResult>> fetches,
+			Set<String> uncommittedSymbols, AtomicBoolean abandoned) {
+		abandoned.set(true);
+		for (String symbol : uncommittedSymbols) {
+			Future<FetchResult> fetch = fetches.get(symbol);
+			if (fetch != null) {
+				fetch.cancel(true);
+			}
+			quoteSource.forget(symbol);
+		}
+	}
+
+	private static void writeFailed(QuoteSource quoteSource, String symbol, Exception e, Map<String, String> failures,
+			JobExecutionContext context) {
+		//Request the full quote again on the next run
+		quoteSource.forget(symbol);
+		failures.put(symbol, "write failed: " + e);
+		context.log("{0} write failed: {1}", symbol, e);
+	}
+
+	/**
+	 * Reverts all changes since the last commit and writes the pending quotes again, without the
+	 * one that failed. If they cannot be written again, all of them are reported as failed.
+	 */
+	private void rewrite(ResourceResolver resourceResolver, QuoteSource quoteSource, List<QuoteSnapshot> uncommitted,
+			List<StockQuote> uncommittedQuotes, Map<String, String> failures, JobExecutionContext context) {
+		resourceResolver.revert();
+		try {
+			for (int i = 0; i < uncommitted.size(); i++) {
+				StockDataImporter.writeTrade(resourceResolver, uncommitted.get(i));
+				priceHistory.append(resourceResolver, uncommittedQuotes.get(i));
+				priceRollups.update(resourceResolver, uncommittedQuotes.get(i));
+			}
+		} catch (IOException | RuntimeException e) {
+			resourceResolver.revert();
+			for (QuoteSnapshot snapshot : uncommitted) {
+				writeFailed(quoteSource, snapshot.getSymbol(), e, failures, context);
+			}
+			uncommitted.clear();
+			uncommittedQuotes.clear();
+		}
+	}
+
+	/**
+	 * Commits the pending trade nodes, caches their snapshots and notifies the update listeners.
+	 * Waits for a commit token of the import rate limiter first.
+	 * If the commit fails all symbols in it are reported as failed.
+	 *
+	 * @return the number of symbols that were committed
+	 */
+	private int commit(ResourceResolver resourceResolver, QuoteSource quoteSource, List<QuoteSnapshot> uncommitted,
+			List<StockQuote> uncommittedQuotes, Set<String> uncommittedSymbols, Map<String, String> failures,
+			JobExecutionContext context) throws InterruptedException {
+		int count = uncommitted.size();
+		if (count == 0) {
+			return 0;
+		}
+		List<String> symbols = new ArrayList<>(count);
+		for (QuoteSnapshot snapshot : uncommitted) {
+			symbols.add(snapshot.getSymbol());
+		}
+		long start = System.nanoTime();
+		try {
+			rateLimiter.acquireCommit();
+		} catch (InterruptedException e) {
+			//Nothing of the batch is written, request the full quotes again on the next run
+			resourceResolver.revert();
+			for (String symbol : symbols) {
+				quoteSource.forget(symbol);
+			}
+			throw e;
+		}
+		importStatistics.recordTime(Stage.COMMIT_WAIT, System.nanoTime() - start);
+		start = System.nanoTime();
+		try {
+			resourceResolver.commit();
+			importStatistics.recordTime(Stage.COMMIT, System.nanoTime() - start);
+			importStatistics.recordWritten(count);
+			uncommittedSymbols.removeAll(symbols);
+			for (QuoteSnapshot snapshot : uncommitted) {
+				quoteCache.put(snapshot);
+			}
+			StockDataImporter.notifyUpdated(updateListeners, new ArrayList<>(uncommitted));
+			context.log("Committed {0}", symbols);
+		} catch (PersistenceException e) {
+			logger.error(searchableLogStr + "Exception with writing resources: ", e);
+			resourceResolver.revert();
+			for (String symbol : symbols) {
+				quoteSource.forget(symbol);
+				failures.put(symbol, "commit failed: " + e.getMessage());
+			}
+			count = 0;
+		}
+		uncommitted.clear();
+		uncommittedQuotes.clear();
+		return count;
+	}
+
+	private static final class FetchThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "stock-import-fetch-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
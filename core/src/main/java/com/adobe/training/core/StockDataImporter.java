@@ -0,0 +1,218 @@
+package com.adobe.training.core;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.event.jobs.Job;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.day.cq.commons.jcr.JcrConstants;
+
+import com.adobe.training.core.quotes.StockQuote;
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.QuoteSource;
+import com.adobe.training.core.services.QuoteUpdateListener;
+import com.adobe.training.core.services.StockImportStatistics;
+
+import static com.adobe.training.core.StockDataWriterJob.*;
+
+/**
+ * Shared write step used by both the single symbol StockDataWriterJob
+ * and the multi symbol StockBatchImportJob.
+ *
+ * Writing does not commit, so callers decide how many symbols go into one commit.
+ */
+final class StockDataImporter {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(StockDataImporter.class);
+
+	private StockDataImporter() {
+	}
+
+	//Number of trade properties written from every quote
+	static final int TRADE_PROPERTY_COUNT = 14;
+
+	//Get the service user (training-user) that belongs to the training.core:training subservice
+	static final Map<String, Object> SERVICE_PARAMS =
+			Collections.singletonMap(ResourceResolverFactory.SUBSERVICE, "training");
+
+	//Formatters and zone are immutable and thread safe, so every import thread shares them
+	private static final ZoneId TIME_ZONE = ZoneId.of("America/New_York");
+	//will store timeOfUpdate as:  Hour:Minute AM/PM, TimeZone    e.g.   11:34 AM, EDT
+	private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("hh:mm a zz");
+	private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("E MMMM d, yyyy");
+
+	//The display times of the last formatted minute, quotes of one import run mostly share it
+	private static volatile UpdateTime lastUpdateTime = new UpdateTime(Long.MIN_VALUE, null, null);
+
+	/**
+	 * Converts a decoded quote into the values of its trade node, with the update time
+	 * formatted for display in New York time. Prices the data source did not deliver are null,
+	 * so writeTrade removes them from the trade node.
+	 */
+	static QuoteSnapshot toSnapshot(StockQuote quote) {
+		UpdateTime updateTime = updateTime(quote.getLatestUpdate());
+		return new QuoteSnapshot(quote.getSymbol(), quote.getCompanyName(), quote.getSector(),
+				updateTime.timeOfDay, updateTime.day, value(quote.getLatestPrice()), value(quote.getOpen()),
+				value(quote.getHigh()), value(quote.getLow()), quote.getLatestVolume(), value(quote.getChange()),
+				value(quote.getWeek52High()), value(quote.getWeek52Low()), value(quote.getYtdChange()),
+				quote.getLatestUpdate());
+	}
+
+	//Missing values of a QuoteSnapshot are null, not NaN
+	private static Double value(double price) {
+		return Double.isNaN(price) ? null : price;
+	}
+
+	//Neither display value shows seconds, so both are the same for every update of a minute
+	private static UpdateTime updateTime(long latestUpdate) {
+		long minute = Math.floorDiv(latestUpdate, TimeUnit.MINUTES.toMillis(1));
+		UpdateTime updateTime = lastUpdateTime;
+		if (updateTime.minute != minute) {
+			// Transform the time stamp into a readable format
+			ZonedDateTime timeWithZone = ZonedDateTime.ofInstant(Instant.ofEpochMilli(latestUpdate), TIME_ZONE);
+			updateTime = new UpdateTime(minute, timeWithZone.format(TIME_FORMATTER),
+					timeWithZone.format(DAY_FORMATTER));
+			lastUpdateTime = updateTime;
+		}
+		return updateTime;
+	}
+
+	private static final class UpdateTime {
+		private final long minute;
+		private final String timeOfDay;
+		private final String day;
+
+		private UpdateTime(long minute, String timeOfDay, String day) {
+			this.minute = minute;
+			this.timeOfDay = timeOfDay;
+			this.day = day;
+		}
+	}
+
+	/**
+	 * Creates or updates the trade node of a symbol with the quote data.
+	 * Only properties whose persisted value differs from the quote are set, so a quote that did
+	 * not move leaves the resolver without changes and the caller can skip the commit.
+	 * The changes are left uncommitted on the given resolver.
+	 *
+	 *  + <STOCK_SYMBOL> [sling:OrderedFolder]
+	 *     + trade [nt:unstructured]
+	 *       - companyName = <value>
+	 *       - ...
+	 *
+	 * @return the number of properties that were set, 0 when the trade node already had all values
+	 */
+	static int writeTrade(ResourceResolver resourceResolver, QuoteSnapshot quote)
+			throws PersistenceException {
+
+		String stockSymbol = quote.getSymbol();
+		Map<String, Object> tradeValues = quote.toTradeProperties();
+
+		String stockPath = STOCK_IMPORT_FOLDER + "/" + stockSymbol;
+		String tradePath = stockPath + "/trade";
+		Resource trade = resourceResolver.getResource(tradePath);
+
+		if (trade == null) {
+			//Test if stock import folder exists, otherwise create it
+			Resource stockFolder = ResourceUtil.getOrCreateResource(resourceResolver, stockPath, "", "", false);
+
+			// set jcr:primaryType to nt:unstructured and all values when the resource is created
+			Map<String, Object> stockData = new HashMap<>(2 * TRADE_PROPERTY_COUNT + 2);
+			stockData.put(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
+			int written = 0;
+			for (Map.Entry<String, Object> value : tradeValues.entrySet()) {
+				if (value.getValue() != null) {
+					stockData.put(value.getKey(), value.getValue());
+					written++;
+				}
+			}
+			resourceResolver.create(stockFolder, "trade", stockData);
+			return written;
+		}
+
+		ModifiableValueMap stockData = trade.adaptTo(ModifiableValueMap.class);
+		int written = 0;
+		for (Map.Entry<String, Object> value : tradeValues.entrySet()) {
+			//A missing price is null and removed once, an absent property equals null afterwards
+			if (!Objects.equals(stockData.get(value.getKey()), value.getValue())) {
+				if (value.getValue() == null) {
+					stockData.remove(value.getKey());
+				} else {
+					stockData.put(value.getKey(), value.getValue());
+				}
+				written++;
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * True if the persisted trade of the symbol was updated later than the quote, writing the
+	 * quote would roll the price back.
+	 */
+	static boolean isOlderThanTrade(ResourceResolver resourceResolver, QuoteSnapshot quote) {
+		Resource trade = resourceResolver.getResource(STOCK_IMPORT_FOLDER + "/" + quote.getSymbol() + "/trade");
+		if (trade == null || quote.getLatestUpdate() == null) {
+			return false;
+		}
+		Long persisted = trade.getValueMap().get(LATESTUPDATE, Long.class);
+		return persisted != null && persisted > quote.getLatestUpdate();
+	}
+
+	/**
+	 * Reports committed quotes to the update listeners. A failing listener is logged and does
+	 * not keep the others or the import from completing.
+	 */
+	static void notifyUpdated(List<QuoteUpdateListener> listeners, List<QuoteSnapshot> quotes) {
+		if (listeners == null || quotes.isEmpty()) {
+			return;
+		}
+		for (QuoteUpdateListener listener : listeners) {
+			try {
+				listener.quotesUpdated(quotes);
+			} catch (RuntimeException e) {
+				LOGGER.warn("Quote update listener {} failed", listener, e);
+			}
+		}
+	}
+
+	//Time between the creation of a job and the start of its processing
+	static void recordQueueWait(StockImportStatistics statistics, Job job) {
+		Calendar created = job.getCreated();
+		Calendar started = job.getProcessingStarted();
+		if (created != null && started != null) {
+			long waited = Math.max(0, started.getTimeInMillis() - created.getTimeInMillis());
+			statistics.recordTime(StockImportStatistics.Stage.QUEUE_WAIT, TimeUnit.MILLISECONDS.toNanos(waited));
+		}
+	}
+
+	//The first quote source that accepts the stock url of a job
+	static QuoteSource quoteSource(List<QuoteSource> sources, String stockUrl) throws IOException {
+		if (sources != null) {
+			for (QuoteSource source : sources) {
+				if (source.accepts(stockUrl)) {
+					return source;
+				}
+			}
+		}
+		throw new IOException("No quote source for " + stockUrl);
+	}
+}
@@ -1,46 +1,47 @@
 package com.adobe.training.core;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.SocketTimeoutException;
-import java.net.URL;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
-import java.util.Map;
-
-import javax.jcr.RepositoryException;
-import javax.net.ssl.HttpsURLConnection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.sling.api.resource.LoginException;
-import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.PersistenceException;
-import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
-import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.event.jobs.Job;
 import org.apache.sling.event.jobs.consumer.JobConsumer;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.day.cq.commons.jcr.JcrConstants;
-import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
+import com.adobe.training.core.quotes.StockQuote;
+import com.adobe.training.core.quotes.StockQuoteDecoder;
 import com.adobe.training.core.schedulers.StockImportScheduler;
+import com.adobe.training.core.services.FetchResult;
+import com.adobe.training.core.services.ImportRateLimiter;
+import com.adobe.training.core.services.PriceHistoryService;
+import com.adobe.training.core.services.PriceRollupService;
+import com.adobe.training.core.services.QuoteCache;
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.QuoteSource;
+import com.adobe.training.core.services.QuoteUpdateListener;
+import com.adobe.training.core.services.SourceUnavailableException;
+import com.adobe.training.core.services.StockImportStatistics;
+import com.adobe.training.core.services.StockImportStatistics.Stage;
 
 /**
-* This job consumer takes in a data source url and stock symbol
+* This job consumer takes in a data source url and stock symbol, gets the quote from
+* the QuoteSource that accepts the url
 * and creates the node structure below.
 * 
 * /content/stocks/
@@ -59,6 +60,7 @@ import com.adobe.training.core.schedulers.StockImportScheduler;
 *           - week52High = <value>
 *           - week52Low = <value>
 *           - ytdChange = <value>
+*           - latestUpdate = <value>
 */
 
 @Component(
@@ -91,9 +93,48 @@ public class StockDataWriterJob implements JobConsumer {
 	public static final String WEEK52LOW = "week52Low";
 	public static final String WEEK52HIGH = "week52High";
 	public static final String YTDCHANGE = "ytdPercentageChange";
+	//Epoch milliseconds of the quote, used for HTTP caching headers
+	public static final String LATESTUPDATE = "latestUpdate";
+
+	//How long a job thread reuses its service resolver before logging in again
+	private static final long RESOLVER_MAX_AGE_MINUTES = 5;
 	
 	@Reference
 	private ResourceResolverFactory resourceResolverFactory;
+
+	@Reference(cardinality = ReferenceCardinality.AT_LEAST_ONE, policy = ReferencePolicy.DYNAMIC)
+	private volatile List<QuoteSource> quoteSources;
+
+	@Reference
+	private StockImportStatistics importStatistics;
+
+	@Reference
+	private PriceHistoryService priceHistory;
+
+	@Reference
+	private PriceRollupService priceRollups;
+
+	@Reference
+	private QuoteCache quoteCache;
+
+	@Reference
+	private ImportRateLimiter rateLimiter;
+
+	@Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC)
+	private volatile List<QuoteUpdateListener> updateListeners;
+
+	private WorkerResourceResolvers resourceResolvers;
+
+	@Activate
+	protected void activate() {
+		resourceResolvers = new WorkerResourceResolvers(resourceResolverFactory, RESOLVER_MAX_AGE_MINUTES,
+				TimeUnit.MINUTES);
+	}
+
+	@Deactivate
+	protected void deactivate() {
+		resourceResolvers.closeAll();
+	}
 		
 	/**
 	 * Method that runs on the desired schedule. 
@@ -106,58 +147,68 @@ public class StockDataWriterJob implements JobConsumer {
 		//extract properties added to the Job in Scheduler: 
 		String symbol = job.getProperty(StockImportScheduler.JOB_PROP_SYMBOL).toString().toUpperCase();
 		String stock_url = job.getProperty(StockImportScheduler.JOB_PROP_URL).toString();
+		StockDataImporter.recordQueueWait(importStatistics, job);
 		
-		//https://raw.githubusercontent.com/Adobe-Marketing-Cloud/ADLS-Samples/master/stock-data/
-		String stockUrl = stock_url + symbol + ".json";
-		
-		HttpsURLConnection request = null;
 		try {
-			URL sourceUrl = new URL(stockUrl);
-			request = (HttpsURLConnection) sourceUrl.openConnection();
-			request.setConnectTimeout(5000);
-			request.setReadTimeout(10000);
-			request.connect();
-		
-			// Convert data return to a JSON object
-			ObjectMapper objMapper = new ObjectMapper();
-			JsonFactory factory = new JsonFactory();
-			JobResult jobResult = null;
-			if(request != null) {
-				//Create a JsonParser based on the stream from the request content
-				try(JsonParser parser  = factory.createParser(new InputStreamReader((InputStream) request.getContent()))){
+			QuoteSource quoteSource = StockDataImporter.quoteSource(quoteSources, stock_url);
+			long start = System.nanoTime();
+			FetchResult fetchResult;
+			try {
+				fetchResult = quoteSource.fetch(stock_url, symbol);
+			} finally {
+				importStatistics.recordTime(Stage.FETCH, System.nanoTime() - start);
+			}
+			importStatistics.recordFetch(fetchResult.getStatus());
+			if (!fetchResult.isModified()) {
+				//Nothing to parse or write, the quote is the same as the last import
+				logger.info("Stock data for symbol {} is unchanged ({})", symbol, fetchResult.getStatus());
+				return JobConsumer.JobResult.OK;
+			}
 
-					//Create a Map from the JsonParser
-					Map<String, String> allQuoteData = objMapper.readValue(parser,
-							new TypeReference<Map<String,String>>(){});
+			//The fetcher stored the validators of this quote, unless it is written the next run
+			//has to request the full quote again or it would never be written
+			boolean stored = false;
+			try {
+				start = System.nanoTime();
+				StockQuote quote = StockQuoteDecoder.decode(symbol, fetchResult.getBody());
+				importStatistics.recordTime(Stage.PARSE, System.nanoTime() - start);
 
-					logger.info("Last trade for stock symbol {} was {}", symbol, allQuoteData.get("latestPrice"));
-					//Use the map to write nodes and properties to the JCR
-					jobResult = writeToRepository(symbol, allQuoteData);
-				}
-				catch (RepositoryException e) {
-					logger.error(searchableLogStr + "Cannot write stock info for " + symbol + " to the JCR: ", e);
-					return JobConsumer.JobResult.FAILED;
-				} catch (JsonParseException e) {
-					logger.error(searchableLogStr + "Cannot parse stock info for " + symbol, e);
-					return JobConsumer.JobResult.FAILED;
-				} catch (IOException e) {
-					logger.error(searchableLogStr + "IOException: ", e);
-					return JobConsumer.JobResult.FAILED;
+				logger.info("Last trade for stock symbol {} was {}", symbol, quote.getLatestPrice());
+				//Use the quote to write nodes and properties to the JCR
+				JobResult jobResult = writeToRepository(quote);
+				stored = jobResult == JobConsumer.JobResult.OK;
+				return jobResult;
+			} finally {
+				if (!stored) {
+					quoteSource.forget(symbol);
 				}
 			}
-			return jobResult;
-		} catch (SocketTimeoutException e) {
-			logger.error(searchableLogStr + "Five Second Timeout occured.");
+		} catch (JsonParseException e) {
+			logger.error(searchableLogStr + "Cannot parse stock info for " + symbol, e);
 			return JobConsumer.JobResult.FAILED;
-		}
-		catch (IOException e) {
+		} catch (FileNotFoundException e) {
+			//Retrying cannot make an unknown symbol appear
 			logger.error(searchableLogStr + "The stock symbol: " + symbol + " does not exist...");
-			return JobConsumer.JobResult.FAILED;
+			return JobConsumer.JobResult.CANCEL;
+		} catch (SourceUnavailableException e) {
+			//The fetcher does not request a failing data source, the next scheduled run tries again
+			logger.warn(searchableLogStr + "Stock data source unavailable, skipping " + symbol);
+			return JobConsumer.JobResult.CANCEL;
+		} catch (SocketTimeoutException e) {
+			//The fetcher already retried with backoff, a queue retry would only add load to a slow source
+			logger.error(searchableLogStr + "Timeout occured for " + symbol);
+			return JobConsumer.JobResult.CANCEL;
+		} catch (IOException e) {
+			logger.error(searchableLogStr + "Cannot request stock info for " + symbol + ": " + e.getMessage());
+			return JobConsumer.JobResult.CANCEL;
 		}
 	}
 	
 	/**
-	 * Creates the stock data structure
+	 * Creates the stock data structure for a single symbol and commits it.
+	 * The quote is also appended to the price history and added to the OHLC candles of the symbol.
+	 * Nothing is committed when the trade node already has the values of the quote, otherwise
+	 * the quote update listeners are notified after the commit.
 	 * 
 	 *  + <STOCK_SYMBOL> [sling:OrderedFolder]
 	 *     + trade [nt:unstructured]
@@ -174,85 +225,61 @@ public class StockDataWriterJob implements JobConsumer {
 	 *       - week52High = <value>
 	 *       - week52Low = <value>
 	 *       - ytdChange = <value>
+	 *       - latestUpdate = <value>
 	 * @return 
 	 */
-	private JobResult writeToRepository(String stockSymbol, Map<String, String> quoteData) throws RepositoryException {
-
-		logger.info(searchableLogStr + "Stock Symbol: " + stockSymbol);
-		logger.info(searchableLogStr + "JsonObject to Write: " + quoteData.toString());
-
-		//Get the service user (training-user) that belongs to the training.core:training subservice
-		Map<String, Object> serviceParams = new HashMap<>();
-		serviceParams.put(ResourceResolverFactory.SUBSERVICE, "training");
+	private JobResult writeToRepository(StockQuote quote) {
+		String stockSymbol = quote.getSymbol();
+		logger.debug("{}Quote to write for {}: {}", searchableLogStr, stockSymbol, quote);
 
-		try (ResourceResolver resourceResolver = resourceResolverFactory
-				.getServiceResourceResolver(serviceParams)) {
-
-			// Transform the time stamp into a readable format
-			ZoneId timeZone = ZoneId.of("America/New_York");
-			long latestUpdateTime = Long.parseLong(quoteData.get("latestUpdate"));
-			LocalDateTime timePerLatestUpdate = LocalDateTime.ofInstant(Instant.ofEpochMilli(latestUpdateTime),
-						timeZone);
-			ZonedDateTime timeWithZone = ZonedDateTime.of(timePerLatestUpdate, timeZone);
-			DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("hh:mm a zz");
-			//will store timeOfUpdate as:  Hour:Minute AM/PM, TimeZone    e.g.   11:34 AM, EDT
-			String UpdateTimeOfDay = timeWithZone.format(timeFormatter);
-			DateTimeFormatter dayFormatter = DateTimeFormatter.ofPattern("E MMMM d, yyyy");
-			String dayOfUpdate = timeWithZone.format(dayFormatter);
-
-			//Create variables in specific data type and put them into a map
-			Double lastPrice = Double.parseDouble(quoteData.get("latestPrice"));
-			Double open = Double.parseDouble(quoteData.get("open"));
-			Double high = Double.parseDouble(quoteData.get("high"));
-			Double low = Double.parseDouble(quoteData.get("low"));
-			Long latestVolume = Long.parseLong(quoteData.get("latestVolume"));
-			Double change = Double.parseDouble(quoteData.get("change"));
-			Double week52High = Double.parseDouble(quoteData.get("week52High"));
-			Double week52Low = Double.parseDouble(quoteData.get("week52Low"));
-			Double ytdChange = Double.parseDouble(quoteData.get("ytdChange"));
-
-			String stockPath = STOCK_IMPORT_FOLDER + "/" + stockSymbol;
-			String tradePath = stockPath + "/trade";
-			Resource trade = resourceResolver.getResource(tradePath);
-
-			//Test if stock import folder exists, otherwise create it
-			Resource stockFolder = ResourceUtil.getOrCreateResource(resourceResolver, stockPath, "", "", false);
-
-			if (trade == null) {
-				// set jcr:primaryType to nt:unstructured when resource is created
-				Map<String,Object> stockData = new HashMap<String,Object>() {
-					private static final long serialVersionUID = 1L;
-				{
-					put(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
-				}};
+		//The resolver of this job thread, it is kept open for the next job of the thread
+		ResourceResolver resourceResolver = null;
+		boolean committed = false;
+		try {
+			resourceResolver = resourceResolvers.get();
 
-				trade = resourceResolver.create(stockFolder, "trade", stockData);
+			long start = System.nanoTime();
+			QuoteSnapshot snapshot = StockDataImporter.toSnapshot(quote);
+			int written = StockDataImporter.writeTrade(resourceResolver, snapshot);
+			importStatistics.recordProperties(StockDataImporter.TRADE_PROPERTY_COUNT, written);
+			boolean appended = priceHistory.append(resourceResolver, quote);
+			boolean rolledUp = priceRollups.update(resourceResolver, quote);
+			importStatistics.recordTime(Stage.WRITE, System.nanoTime() - start);
+			if (written == 0 && !appended && !rolledUp) {
+				//Same values as in the JCR, a commit would only create a revision and observation events
+				logger.info("{}Trade data for {} is already up to date", searchableLogStr, stockSymbol);
+				committed = true;
+				quoteCache.put(snapshot);
+				return JobConsumer.JobResult.OK;
 			}
 
-			ModifiableValueMap stockData = trade.adaptTo(ModifiableValueMap.class);
-
-			stockData.put(COMPANY, quoteData.get("companyName"));
-			stockData.put(SECTOR, quoteData.get("sector"));
-			stockData.put(UPDATETIME, UpdateTimeOfDay);
-			stockData.put(DAYOFUPDATE, dayOfUpdate);
-			stockData.put(LASTTRADE, lastPrice);
-			stockData.put(OPENPRICE, open);
-			stockData.put(RANGEHIGH, high);
-			stockData.put(RANGELOW, low);
-			stockData.put(VOLUME, latestVolume);
-			stockData.put(UPDOWN,change );
-			stockData.put(WEEK52HIGH,week52High);
-			stockData.put(WEEK52LOW,week52Low);
-			stockData.put(YTDCHANGE,ytdChange);
-
-			logger.info(searchableLogStr + "Updated trade data for " + stockSymbol);
+			logger.info("{}Updated {} of {} trade properties for {}", searchableLogStr, written,
+					StockDataImporter.TRADE_PROPERTY_COUNT, stockSymbol);
 
-			//Write data into the JCR
+			//Write data into the JCR, at most as often as the import rate limiter allows
+			start = System.nanoTime();
+			rateLimiter.acquireCommit();
+			importStatistics.recordTime(Stage.COMMIT_WAIT, System.nanoTime() - start);
+			start = System.nanoTime();
 			resourceResolver.commit();
+			committed = true;
+			importStatistics.recordTime(Stage.COMMIT, System.nanoTime() - start);
+			importStatistics.recordWritten(1);
+			quoteCache.put(snapshot);
+			StockDataImporter.notifyUpdated(updateListeners, Collections.singletonList(snapshot));
 
 		} catch (LoginException | PersistenceException e) {
 			logger.error(searchableLogStr + "Exception with writing resource: ", e);
 			return JobConsumer.JobResult.FAILED;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.error(searchableLogStr + "Interrupted before writing " + stockSymbol);
+			return JobConsumer.JobResult.FAILED;
+		} finally {
+			if (resourceResolver != null && !committed && resourceResolver.isLive()) {
+				//The next job of this thread must not commit the changes of a failed one
+				resourceResolver.revert();
+			}
 		}
 		
 		return JobConsumer.JobResult.OK;
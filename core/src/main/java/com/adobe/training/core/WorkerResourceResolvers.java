@@ -0,0 +1,91 @@
+package com.adobe.training.core;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+
+/**
+ * One service resource resolver per job thread, reused for the jobs that thread processes
+ * instead of a login per job.
+ *
+ * A resource resolver is not thread safe, so a resolver is only handed to the thread that
+ * logged it in. It is refreshed before every reuse to see the commits of other threads, and
+ * replaced once it is older than the maximum age so long running workers do not hold on to an
+ * old session forever. Callers revert the resolver when a job fails before its commit.
+ */
+final class WorkerResourceResolvers {
+
+	private final ResourceResolverFactory resourceResolverFactory;
+	private final long maxAgeNanos;
+	private final Map<Thread, Worker> workers = new ConcurrentHashMap<>();
+
+	WorkerResourceResolvers(ResourceResolverFactory resourceResolverFactory, long maxAge, TimeUnit unit) {
+		this.resourceResolverFactory = resourceResolverFactory;
+		this.maxAgeNanos = unit.toNanos(maxAge);
+	}
+
+	/**
+	 * @return the resolver of the calling thread, refreshed, or a new one when it has none
+	 */
+	ResourceResolver get() throws LoginException {
+		Thread thread = Thread.currentThread();
+		Worker worker = workers.get(thread);
+		if (worker != null) {
+			if (worker.resolver.isLive() && System.nanoTime() - worker.loggedIn < maxAgeNanos) {
+				worker.resolver.refresh();
+				return worker.resolver;
+			}
+			workers.remove(thread);
+			close(worker.resolver);
+		}
+		//A thread pool may have ended threads since the last login
+		closeDeadWorkers();
+		ResourceResolver resolver = resourceResolverFactory
+				.getServiceResourceResolver(StockDataImporter.SERVICE_PARAMS);
+		workers.put(thread, new Worker(resolver, System.nanoTime()));
+		return resolver;
+	}
+
+	//Number of resolvers currently held
+	int size() {
+		return workers.size();
+	}
+
+	void closeAll() {
+		for (Iterator<Worker> it = workers.values().iterator(); it.hasNext();) {
+			close(it.next().resolver);
+			it.remove();
+		}
+	}
+
+	private void closeDeadWorkers() {
+		for (Iterator<Map.Entry<Thread, Worker>> it = workers.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Thread, Worker> worker = it.next();
+			if (!worker.getKey().isAlive()) {
+				close(worker.getValue().resolver);
+				it.remove();
+			}
+		}
+	}
+
+	private static void close(ResourceResolver resolver) {
+		if (resolver.isLive()) {
+			resolver.close();
+		}
+	}
+
+	private static final class Worker {
+		private final ResourceResolver resolver;
+		private final long loggedIn;
+
+		private Worker(ResourceResolver resolver, long loggedIn) {
+			this.resolver = resolver;
+			this.loggedIn = loggedIn;
+		}
+	}
+}
@@ -1,33 +1,59 @@
 package com.adobe.training.core.listeners;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Dictionary;
+import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.Hashtable;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.adobe.training.core.StockDataWriterJob;
 import com.adobe.training.core.schedulers.StockImportScheduler;
+import com.adobe.training.core.schedulers.StockRegistryScheduler;
+import com.adobe.training.core.services.StockSymbolRegistry;
 
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.observation.ResourceChange;
 import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.framework.Constants;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * This Sling listener listens to the StockDataWriterJob.STOCK_IMPORT_FOLDER location and creates a 
- * new scheduler config for each new stock folder added.
+ * This Sling listener listens to the StockDataWriterJob.STOCK_IMPORT_FOLDER location and adds the
+ * symbol of each new stock folder to the StockSymbolRegistry. The StockRegistryScheduler imports all
+ * registered symbols, so no OSGi config is created per symbol.
+ *
+ * Changes are only queued on the observation thread. The queue keeps the latest change per folder
+ * and is processed after a short debounce window on a thread of the listener, so a bulk upload of
+ * symbol folders is handled in batches with one service resource resolver and one commit. When the
+ * queue is full, the next batch reads all symbol folders again instead. Queue depth and lag are
+ * exposed as the com.adobe.training:type=StockListener MBean.
  * 
  * To add a symbol from the UI, go to AEM Navigation > Sites > stocks and click the blue Create > Folder
  * Add the Stock symbol as the Title. Dummy stock data is available for ADBE,MSFT,GOOG,AMZN,APPL,WDAY
@@ -37,90 +63,323 @@ import org.slf4j.LoggerFactory;
  */
 
 @Component( immediate = true,
-property = {"resource.paths=" + StockDataWriterJob.STOCK_IMPORT_FOLDER,
+service = {ResourceChangeListener.class, StockListenerMBean.class},
+property = {"resource.paths=glob:" + StockDataWriterJob.STOCK_IMPORT_FOLDER + "/*",
 		"resource.change.types=ADDED",
-		"resource.change.types=REMOVED"
+		"resource.change.types=REMOVED",
+		"jmx.objectname=com.adobe.training:type=StockListener"
 		})
-
-public class StockListener implements ResourceChangeListener{
+@Designate(ocd = StockListener.StockListenerConfiguration.class)
+public class StockListener implements ResourceChangeListener, StockListenerMBean {
 	private final String stockImportSchedulerPID = "com.adobe.training.core.schedulers.StockImportScheduler";
 
+	private static final String STOCK_URL = "stock.url";
+	//Set by the framework and the config installers, not by whoever configured the import
+	private static final Set<String> FRAMEWORK_PROPERTIES = new HashSet<>(Arrays.asList(Constants.SERVICE_PID,
+			ConfigurationAdmin.SERVICE_FACTORYPID, ConfigurationAdmin.SERVICE_BUNDLELOCATION, "felix.fileinstall.filename"));
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 	// Convenience string to find the log messages for this training example class
 	// Logs can be found in crx-quickstart/logs/error.log
 	private String searchableLogStr = "$$$$$";
 
+	@ObjectClassDefinition(name = "Training Stock Folder Listener")
+	public @interface StockListenerConfiguration {
+		@AttributeDefinition(
+				name = "Debounce Window",
+				description = "Milliseconds changes of stock folders are collected before they are processed together",
+				type = AttributeType.INTEGER
+		)
+		int debounce_window() default 500;
+
+		@AttributeDefinition(
+				name = "Max Queued Folders",
+				description = "Folders waiting to be processed. Beyond this all symbol folders are read again",
+				type = AttributeType.INTEGER
+		)
+		int max_queued() default 10000;
+	}
+
 	// Service to get OSGi configurations
     @Reference
     private ConfigurationAdmin configAdmin;
+	// Symbols imported by the StockRegistryScheduler
+	@Reference
+	private StockSymbolRegistry symbolRegistry;
 	// Service to add/remove resources if needed
 	@Reference
 	private ResourceResolverFactory resourceResolverFactory;
 
+	//Latest change per folder path in arrival order, guarded by this
+	private Map<String, ResourceChange.ChangeType> pending = new LinkedHashMap<>();
+	private long oldestPendingTime;
+	private boolean resync;
+	private boolean flushScheduled;
+
+	private ScheduledExecutorService executor;
+	private long debounceMillis;
+	private int maxQueued;
+
+	private final AtomicLong processed = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong overflows = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+	private volatile int lastBatchSize;
+	private volatile long lastBatchLag;
+	private volatile long maxBatchLag;
+
+	@Activate @Modified
+	protected void activate(StockListenerConfiguration config) {
+		deactivate();
+		debounceMillis = Math.max(0, config.debounce_window());
+		maxQueued = Math.max(1, config.max_queued());
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "stock-folder-listener");
+			thread.setDaemon(true);
+			return thread;
+		});
+		removePerSymbolConfigs();
+	}
+
+	@Deactivate
+	protected void deactivate() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		synchronized (this) {
+			pending.clear();
+			flushScheduled = false;
+		}
+	}
+
+	/**
+	 * Earlier versions of this listener created one StockImportScheduler config per symbol folder.
+	 * These configs only have the symbol property and are deleted, the symbols are imported from the
+	 * registry now. A config is only deleted when the registry imports its symbol the same way: any
+	 * other property, such as a cron expression, a batch of symbols or another stock url, keeps it.
+	 */
+	private void removePerSymbolConfigs() {
+		String filter = '(' + ConfigurationAdmin.SERVICE_FACTORYPID + '=' + stockImportSchedulerPID + ')';
+		try {
+			Configuration[] configArray = configAdmin.listConfigurations(filter);
+			if (configArray == null) {
+				return;
+			}
+			String registryStockUrl = registryStockUrl();
+			for (Configuration config : configArray) {
+				Dictionary<String, Object> properties = config.getProperties();
+				Object configSymbolPropVal = properties.get(StockImportScheduler.JOB_PROP_SYMBOL);
+				if (configSymbolPropVal == null || !symbolRegistry.contains(configSymbolPropVal.toString())) {
+					continue;
+				}
+				if (isRegistryEquivalent(properties, registryStockUrl)) {
+					logger.info(searchableLogStr + "Removed " + configSymbolPropVal + " config with PID: " + config.getPid()
+							+ ", the symbol is imported from the registry");
+					config.delete();
+				} else {
+					logger.info(searchableLogStr + "Kept " + configSymbolPropVal + " config with PID: " + config.getPid()
+							+ ", it has its own import settings");
+				}
+			}
+		} catch (IOException | InvalidSyntaxException e) {
+			logger.error(searchableLogStr + "Could not remove the per symbol StockImportScheduler configs", e);
+		}
+	}
+
+	//Only the symbol and properties of the framework, or a stock url the registry scheduler uses as well
+	private static boolean isRegistryEquivalent(Dictionary<String, Object> properties, String registryStockUrl) {
+		for (Enumeration<String> keys = properties.keys(); keys.hasMoreElements();) {
+			String key = keys.nextElement();
+			if (FRAMEWORK_PROPERTIES.contains(key) || key.equals(StockImportScheduler.JOB_PROP_SYMBOL)) {
+				continue;
+			}
+			if (key.equals(STOCK_URL) && registryStockUrl.equals(properties.get(key))) {
+				continue;
+			}
+			return false;
+		}
+		return true;
+	}
+
+	private String registryStockUrl() throws IOException, InvalidSyntaxException {
+		Configuration[] configArray = configAdmin.listConfigurations(
+				'(' + Constants.SERVICE_PID + '=' + StockRegistryScheduler.class.getName() + ')');
+		if (configArray != null && configArray.length > 0 && configArray[0].getProperties() != null) {
+			Object stockUrl = configArray[0].getProperties().get(STOCK_URL);
+			if (stockUrl != null) {
+				return stockUrl.toString();
+			}
+		}
+		return StockImportScheduler.DEFAULT_IMPORT_URL;
+	}
+
 	@Override
 	public void onChange(List<ResourceChange> changes) {
+		synchronized (this) {
+			for (final ResourceChange change : changes) {
+				//Get the folder name from the path. Ex: /content/stocks/adbe > adbe
+				int slash = change.getPath().lastIndexOf("/");
+				String folderName = change.getPath().substring(slash+1);
+				if (slash != StockDataWriterJob.STOCK_IMPORT_FOLDER.length() || !isSymbolFolder(folderName)) {
+					continue;
+				}
+				if (pending.isEmpty()) {
+					oldestPendingTime = System.currentTimeMillis();
+				}
+				if (pending.containsKey(change.getPath())) {
+					coalesced.incrementAndGet();
+				} else if (pending.size() >= maxQueued) {
+					//Too many folders changed at once, the next batch reads all of them
+					resync = true;
+					overflows.incrementAndGet();
+					continue;
+				}
+				pending.put(change.getPath(), change.getType());
+			}
+			if ((!pending.isEmpty() || resync) && !flushScheduled && executor != null) {
+				flushScheduled = true;
+				executor.schedule(this::processPending, debounceMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
 
-		for (final ResourceChange change : changes) {
-			logger.info(searchableLogStr + "Resource Change Detected: {}", change);
+	/**
+	 * Processes the queued changes as one batch. Added uppercase folders are registered and
+	 * removed folders are unregistered. Lowercase folders are recreated in uppercase with one
+	 * commit for the batch, the folders created by that commit are registered by the next batch.
+	 * Runs on the thread of the listener, tests call it directly.
+	 */
+	void processPending() {
+		Map<String, ResourceChange.ChangeType> batch;
+		boolean readAll;
+		long lag;
+		synchronized (this) {
+			batch = pending;
+			readAll = resync;
+			lag = System.currentTimeMillis() - oldestPendingTime;
+			pending = new LinkedHashMap<>();
+			resync = false;
+			flushScheduled = false;
+		}
 
-			//Get the folder name from the path. Ex: /content/stocks/adbe > adbe
-			String folderName = change.getPath().substring(change.getPath().lastIndexOf("/")+1);
-			//In this example a stock symbol must be 4 characters and not be the 'trade' node from the StockDataWriterJob
-			if((folderName.length() == 4) && (folderName.matches("^[a-zA-Z]*$")) && !folderName.equals("trade")) {
-				
-				//Check if the added folder is uppercase. If it's not, autofix
-				if(!folderName.equals(folderName.toUpperCase())&&change.getType().equals(ResourceChange.ChangeType.ADDED)){
-					//Get the service user (training-user) that belongs to the training.core:training subservice
-					Map<String, Object> serviceParams = new HashMap<>();
-					serviceParams.put(ResourceResolverFactory.SUBSERVICE, "training");
-					try (ResourceResolver resourceResolver = resourceResolverFactory.getServiceResourceResolver(serviceParams)) {
-							logger.info(searchableLogStr + "Folder added is not uppercase. Recreating resource: "+ change.getPath());
-							//Remove resource
-							resourceResolver.delete(resourceResolver.getResource(change.getPath()));
-							//Recreate resource as uppercase
-							ResourceUtil.getOrCreateResource(resourceResolver, change.getPath().replace(folderName, folderName.toUpperCase()), "", "", false);
-							resourceResolver.commit();
-					} catch (LoginException | PersistenceException e) {
-						logger.error(searchableLogStr + "Exception with updating resource to uppercase ", e);
+		//Get the service user (training-user) that belongs to the training.core:training subservice
+		Map<String, Object> serviceParams = new HashMap<>();
+		serviceParams.put(ResourceResolverFactory.SUBSERVICE, "training");
+		try (ResourceResolver resourceResolver = resourceResolverFactory.getServiceResourceResolver(serviceParams)) {
+			if (readAll) {
+				addAllFolders(resourceResolver, batch);
+			}
+			int recreated = 0;
+			for (Map.Entry<String, ResourceChange.ChangeType> change : batch.entrySet()) {
+				String path = change.getKey();
+				String folderName = path.substring(path.lastIndexOf("/")+1);
+				if (change.getValue() == ResourceChange.ChangeType.REMOVED) {
+					//Unregister the symbol of the folder removed
+					if (symbolRegistry.remove(folderName)) {
+						logger.info(searchableLogStr + "Unregistered " + folderName);
 					}
+					continue;
 				}
-
-				//Create a StockImportScheduler config for the symbol folder added
-				else if(change.getType().equals(ResourceChange.ChangeType.ADDED)) {
-					try{
-							//Get the StockImportScheduler factory from the config admin
-							Configuration config = configAdmin.createFactoryConfiguration(stockImportSchedulerPID);
-								
-							//Add the folder name to the configuration
-							Dictionary<String, Object> properties = new Hashtable<String, Object>();
-							properties.put(StockImportScheduler.JOB_PROP_SYMBOL, folderName);
-							config.update(properties);
-							logger.info(searchableLogStr + "Added " + folderName + " config with PID: "+ config.getPid());
-					} catch (IOException e) {
-						logger.error(searchableLogStr + "Could not add OSGi config for: " + folderName);
-					}
+				Resource folder = resourceResolver.getResource(path);
+				if (folder == null) {
+					//Removed again before the batch ran
+					continue;
 				}
-				//Remove the StockImportScheduler config for the symbol folder removed
-				else if (change.getType().equals(ResourceChange.ChangeType.REMOVED)) {
-					try {
-						String filter = '(' + ConfigurationAdmin.SERVICE_FACTORYPID + '=' + stockImportSchedulerPID + ')';
-						//Find all the StockImportScheduler configs
-						Configuration[] configArray = configAdmin.listConfigurations(filter);
-						//Find the config that matches the removed folder name and delete the config
-						for( Configuration config :configArray) {
-							Object configSymbolPropVal = config.getProperties().get(StockImportScheduler.JOB_PROP_SYMBOL);
-							if(configSymbolPropVal.equals(folderName)) {
-								logger.info(searchableLogStr + "Removed " + folderName + " config with PID: "+ config.getPid());
-								config.delete();
-							}
-						}
-					} catch (IOException e) {
-						logger.error(searchableLogStr + "Could not delete OSGi config for: " + folderName);
-					} catch (InvalidSyntaxException e) {
-						logger.error(searchableLogStr + "Could not delete OSGi config for: " + folderName);
-					}
+				//Check if the added folder is uppercase. If it's not, autofix
+				if (!folderName.equals(folderName.toUpperCase())) {
+					logger.info(searchableLogStr + "Folder added is not uppercase. Recreating resource: " + path);
+					resourceResolver.delete(folder);
+					ResourceUtil.getOrCreateResource(resourceResolver, path.substring(0, path.lastIndexOf("/")+1) + folderName.toUpperCase(), "", "", false);
+					recreated++;
+				}
+				//Register the symbol of the folder added, the StockRegistryScheduler imports it from the next run
+				else if (symbolRegistry.add(folderName)) {
+					logger.info(searchableLogStr + "Registered " + folderName);
+				}
+			}
+			if (recreated > 0) {
+				resourceResolver.commit();
+			}
+		} catch (LoginException | PersistenceException | RuntimeException e) {
+			logger.error(searchableLogStr + "Exception with processing stock folder changes ", e);
+		}
+
+		processed.addAndGet(batch.size());
+		batches.incrementAndGet();
+		lastBatchSize = batch.size();
+		lastBatchLag = lag;
+		maxBatchLag = Math.max(maxBatchLag, lag);
+		logger.info(searchableLogStr + "Processed " + batch.size() + " stock folder changes after " + lag + " ms, "
+				+ symbolRegistry.size() + " symbols are imported");
+	}
+
+	//Queues every symbol folder as added and unregisters symbols whose folder is gone
+	private void addAllFolders(ResourceResolver resourceResolver, Map<String, ResourceChange.ChangeType> batch) {
+		Resource stocks = resourceResolver.getResource(StockDataWriterJob.STOCK_IMPORT_FOLDER);
+		Set<String> folders = new HashSet<>();
+		if (stocks != null) {
+			for (Resource folder : stocks.getChildren()) {
+				if (isSymbolFolder(folder.getName())) {
+					folders.add(folder.getName());
+					batch.putIfAbsent(folder.getPath(), ResourceChange.ChangeType.ADDED);
 				}
 			}
 		}
+		for (String symbol : symbolRegistry.getSymbols()) {
+			if (!folders.contains(symbol)) {
+				batch.putIfAbsent(StockDataWriterJob.STOCK_IMPORT_FOLDER + "/" + symbol, ResourceChange.ChangeType.REMOVED);
+			}
+		}
+	}
+
+	//Symbol folders in any case, lowercase ones are recreated in uppercase
+	private static boolean isSymbolFolder(String folderName) {
+		return StockSymbolRegistry.SYMBOL.matcher(folderName.toUpperCase()).matches();
+	}
+
+	@Override
+	public synchronized int getQueueDepth() {
+		return pending.size();
+	}
+
+	@Override
+	public synchronized long getQueueLag() {
+		return pending.isEmpty() ? 0 : System.currentTimeMillis() - oldestPendingTime;
+	}
+
+	@Override
+	public long getLastBatchLag() {
+		return lastBatchLag;
+	}
+
+	@Override
+	public long getMaxBatchLag() {
+		return maxBatchLag;
+	}
+
+	@Override
+	public int getLastBatchSize() {
+		return lastBatchSize;
+	}
+
+	@Override
+	public long getBatchCount() {
+		return batches.get();
+	}
+
+	@Override
+	public long getProcessedCount() {
+		return processed.get();
+	}
+
+	@Override
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	@Override
+	public long getOverflowCount() {
+		return overflows.get();
 	}
 }
@@ -0,0 +1,32 @@
+package com.adobe.training.core.listeners;
+
+/**
+ * Queue metrics of the StockListener, registered as com.adobe.training:type=StockListener
+ */
+public interface StockListenerMBean {
+
+    //Folders waiting to be processed
+    int getQueueDepth();
+
+    //Milliseconds the oldest waiting change has been queued, 0 when the queue is empty
+    long getQueueLag();
+
+    //Milliseconds between the first change of the last batch and its processing
+    long getLastBatchLag();
+
+    long getMaxBatchLag();
+
+    //Folders processed in the last batch
+    int getLastBatchSize();
+
+    long getBatchCount();
+
+    //Folder changes processed since the listener was activated
+    long getProcessedCount();
+
+    //Changes that replaced a queued change of the same folder
+    long getCoalescedCount();
+
+    //Changes dropped from a full queue, each overflow makes the next batch read all folders
+    long getOverflowCount();
+}
@@ -20,6 +20,12 @@ public interface Stockplex {
 
     //Getter for dialog input
     String getShowStockInfo();
+
+    //Getter for dialog input, true when the quote is loaded in the browser instead of rendered with the page
+    boolean isRenderInBrowser();
+
+    //Url of the JSON quote document of the symbol, used by the component when rendered in the browser
+    String getQuoteUrl();
     
     //Calculated current price based on imported stock info
     Double getCurrentPrice();
@@ -0,0 +1,121 @@
+package com.adobe.training.core.models.impl;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import com.adobe.training.core.services.QuoteSnapshot;
+
+import static com.adobe.training.core.quotes.QuoteJson.writeNumberField;
+
+/**
+ * Writes the Adobe Client Data Layer JSON of a Stockplex component straight from the quote
+ * snapshot with a shared JsonFactory. The JSON is remembered per component id and written
+ * again only when the quote snapshot or the component's values change.
+ */
+final class StockplexDataLayer {
+
+	//JsonFactory is thread safe, generators are created per call
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	//Least recently rendered components are dropped first, ids of removed components age out
+	static final int MAX_ENTRIES = 1000;
+	private static final Map<String, Entry> ENTRIES = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private StockplexDataLayer() {
+	}
+
+	/**
+	 * The data layer JSON {"<id>":{"@type":..,"symbol":..,...,"stockInfo":{..}}} of a component.
+	 *
+	 * @param quote snapshot of the symbol, null if it has not been imported
+	 */
+	static String toJson(String id, String type, String symbol, String summary, String showStockInfo,
+			QuoteSnapshot quote) throws IOException {
+		Entry entry;
+		synchronized (ENTRIES) {
+			entry = ENTRIES.get(id);
+		}
+		//Snapshots are immutable and replaced on every import, so identity is the quote version
+		if (entry != null && entry.quote == quote && entry.matches(type, symbol, summary, showStockInfo)) {
+			return entry.json;
+		}
+		String json = write(id, type, symbol, summary, showStockInfo, quote);
+		synchronized (ENTRIES) {
+			ENTRIES.put(id, new Entry(type, symbol, summary, showStockInfo, quote, json));
+		}
+		return json;
+	}
+
+	static String write(String id, String type, String symbol, String summary, String showStockInfo,
+			QuoteSnapshot quote) throws IOException {
+		StringWriter json = new StringWriter(512);
+		try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+			generator.writeStartObject();
+			generator.writeObjectFieldStart(id);
+			generator.writeStringField("@type", type);
+			generator.writeStringField("symbol", symbol);
+			generator.writeStringField("summary", summary);
+			generator.writeStringField("showStockInfo", showStockInfo);
+			writeNumberField(generator, "currentPrice", quote != null ? quote.getLastTrade() : Double.valueOf(0));
+			generator.writeObjectFieldStart("stockInfo");
+			if (quote != null) {
+				generator.writeStringField("Request Date", quote.getDayOfUpdate());
+				generator.writeStringField("Request Time", quote.getTimeOfUpdate());
+				writeNumberField(generator, "UpDown", quote.getUpDown());
+				writeNumberField(generator, "Open Price", quote.getOpenPrice());
+				writeNumberField(generator, "Range High", quote.getRangeHigh());
+				writeNumberField(generator, "Range Low", quote.getRangeLow());
+				if (quote.getVolume() != null) {
+					generator.writeNumberField("Volume", quote.getVolume());
+				} else {
+					generator.writeNullField("Volume");
+				}
+				generator.writeStringField("Company", quote.getCompanyName());
+				generator.writeStringField("Sector", quote.getSector());
+				writeNumberField(generator, "52 Week Low", quote.getWeek52Low());
+			} else if (symbol != null) {
+				generator.writeStringField(symbol, StockplexImpl.NO_IMPORT_MESSAGE);
+			}
+			generator.writeEndObject();
+			generator.writeEndObject();
+			generator.writeEndObject();
+		}
+		return json.toString();
+	}
+
+	private static final class Entry {
+		private final String type;
+		private final String symbol;
+		private final String summary;
+		private final String showStockInfo;
+		private final QuoteSnapshot quote;
+		private final String json;
+
+		Entry(String type, String symbol, String summary, String showStockInfo, QuoteSnapshot quote, String json) {
+			this.type = type;
+			this.symbol = symbol;
+			this.summary = summary;
+			this.showStockInfo = showStockInfo;
+			this.quote = quote;
+			this.json = json;
+		}
+
+		boolean matches(String type, String symbol, String summary, String showStockInfo) {
+			return Objects.equals(this.type, type) && Objects.equals(this.symbol, symbol)
+					&& Objects.equals(this.summary, summary) && Objects.equals(this.showStockInfo, showStockInfo);
+		}
+	}
+}
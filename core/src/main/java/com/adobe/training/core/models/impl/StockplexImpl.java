@@ -1,13 +1,15 @@
 package com.adobe.training.core.models.impl;
 
 import com.adobe.training.core.models.Stockplex;
-import com.adobe.training.core.StockDataWriterJob;
+import com.adobe.training.core.services.QuoteCache;
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.quotes.QuoteJson;
 import com.day.cq.wcm.api.designer.Style;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.resource.Resource;
-import org.apache.sling.api.resource.ValueMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,7 +17,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.sling.models.annotations.DefaultInjectionStrategy;
 import org.apache.sling.models.annotations.Exporter;
 import org.apache.sling.models.annotations.Model;
-import org.apache.sling.models.annotations.injectorspecific.ResourcePath;
+import org.apache.sling.models.annotations.injectorspecific.OSGiService;
 import org.apache.sling.models.annotations.injectorspecific.ScriptVariable;
 import org.apache.sling.models.annotations.injectorspecific.ValueMapValue;
 import javax.annotation.PostConstruct;
@@ -25,14 +27,12 @@ import com.day.cq.wcm.api.Page;
 import com.day.cq.wcm.api.components.ComponentContext;
 import org.apache.sling.models.annotations.injectorspecific.Self;
 import com.adobe.cq.wcm.core.components.util.ComponentUtils;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 
 /**
  * This model is used as the backend logic for the stockplex component. Using a Sling model allows the component
  * to be exportable via JSON for a headless scenarios. Stock data that this model uses is imported into the JCR
- * via StockImportScheduler.java
+ * via StockImportScheduler.java and read through the QuoteCache service
  * 
  * The stock data that is expected is in the form:
  * /content/stocks
@@ -42,6 +42,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  *     - sector = <value>
  *     - lastTrade = <value
  *     - ..
+ *
+ * When renderInBrowser is set in the dialog the component renders a shell without quote values,
+ * which the stockplex clientlib fills from the quote document at getQuoteUrl(). The page then does
+ * not change with the quotes and can be cached, only the small quote documents change.
  */
 
 @Model(adaptables=SlingHttpServletRequest.class,		
@@ -52,6 +56,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 @Exporter(name="jackson", extensions = "json")
 public class StockplexImpl implements Stockplex{
 	protected static final String RESOURCE_TYPE = "wetrain/components/stockplex";
+	static final String NO_IMPORT_MESSAGE = "No import config found. New stock symbols can be added in the Sites console under the stocks folder.";
     private static final Logger LOGGER = LoggerFactory.getLogger(StockplexImpl.class);
 	
     //Annotations to support data layer enablement and population
@@ -72,45 +77,38 @@ public class StockplexImpl implements Stockplex{
     private String symbol;
     @ValueMapValue
     private String summary;
+    @ValueMapValue
+    private boolean renderInBrowser;
 
-    //content root of for stock data. /content/stocks
-    @ResourcePath(path = StockDataWriterJob.STOCK_IMPORT_FOLDER)
-    private Resource stocksRoot;
+    //Imported trade values, read from memory instead of /content/stocks on every request
+    @OSGiService
+    private QuoteCache quoteCache;
     
+    private QuoteSnapshot quote;
     private double currentPrice;
     private Map<String,Object> stockInfo;    
 
     @PostConstruct
     public void init() {
-        ValueMap tradeValues = null;
-        
         //Check to see if stock data has been imported into the JCR
-        if(stocksRoot != null) {
-	        Resource stockResource = stocksRoot.getChild(symbol);
-	    	if(stockResource != null) {
-	        	Resource lastTradeResource = stockResource.getChild("trade");
-	        	if(lastTradeResource != null){
-                    tradeValues = lastTradeResource.getValueMap();
-                } 
-	    	}
-        }
+        quote = quoteCache.get(symbol);
         
         stockInfo = new HashMap<>();
         //If stock information is in the JCR, display the data
-        if(tradeValues != null) {
-        	currentPrice = tradeValues.get(StockDataWriterJob.LASTTRADE, Double.class);   	
-            stockInfo.put("Request Date", tradeValues.get(StockDataWriterJob.DAYOFUPDATE, String.class));
-            stockInfo.put("Request Time", tradeValues.get(StockDataWriterJob.UPDATETIME, String.class));
-            stockInfo.put("UpDown", tradeValues.get(StockDataWriterJob.UPDOWN, Double.class));
-            stockInfo.put("Open Price", tradeValues.get(StockDataWriterJob.OPENPRICE, Double.class));
-            stockInfo.put("Range High", tradeValues.get(StockDataWriterJob.RANGEHIGH, Double.class));
-            stockInfo.put("Range Low", tradeValues.get(StockDataWriterJob.RANGELOW, Double.class));
-            stockInfo.put("Volume",  tradeValues.get(StockDataWriterJob.VOLUME, Integer.class));
-            stockInfo.put("Company", tradeValues.get(StockDataWriterJob.COMPANY, String.class));
-            stockInfo.put("Sector", tradeValues.get(StockDataWriterJob.SECTOR, String.class));
-            stockInfo.put("52 Week Low", tradeValues.get(StockDataWriterJob.WEEK52LOW, Double.class));
+        if(quote != null) {
+        	currentPrice = quote.getLastTrade() != null ? quote.getLastTrade() : 0;
+            stockInfo.put("Request Date", quote.getDayOfUpdate());
+            stockInfo.put("Request Time", quote.getTimeOfUpdate());
+            stockInfo.put("UpDown", quote.getUpDown());
+            stockInfo.put("Open Price", quote.getOpenPrice());
+            stockInfo.put("Range High", quote.getRangeHigh());
+            stockInfo.put("Range Low", quote.getRangeLow());
+            stockInfo.put("Volume", quote.getVolume());
+            stockInfo.put("Company", quote.getCompanyName());
+            stockInfo.put("Sector", quote.getSector());
+            stockInfo.put("52 Week Low", quote.getWeek52Low());
         } else {
-        	stockInfo.put(symbol,"No import config found. New stock symbols can be added in the Sites console under the stocks folder.");
+        	stockInfo.put(symbol, NO_IMPORT_MESSAGE);
         }
     }
     
@@ -134,9 +132,28 @@ public class StockplexImpl implements Stockplex{
         return currentPrice;
     }
 
-    //Getter for dialog input
+    //Getter for the content policy input, "false" when the policy does not set it
+    @Override
     public String getShowStockInfo() {
-        return currentStyle.get("showStockInfo").toString();
+        if (currentStyle == null) {
+            return Boolean.FALSE.toString();
+        }
+        return currentStyle.get("showStockInfo", Boolean.FALSE.toString());
+    }
+
+    //Getter for dialog input
+    @Override
+    public boolean isRenderInBrowser() {
+        return renderInBrowser;
+    }
+
+    //Same url for every page showing the symbol, so the dispatcher and browsers cache one document per symbol
+    @Override
+    public String getQuoteUrl() {
+        if (symbol == null) {
+            return null;
+        }
+        return request.getContextPath() + QuoteJson.PATH + ".json/" + symbol.trim().toUpperCase();
     }
 
     //Calculated trade values based on imported stock info 
@@ -157,25 +174,14 @@ public class StockplexImpl implements Stockplex{
         Resource stockplexResource = request.getResource();
         // Use ComponentUtils to verify if the DataLayer is enabled
         if (ComponentUtils.isDataLayerEnabled(stockplexResource)) {
-            //Create a map of properties we want to expose to the data layer
-            Map<String, Object> stockplexProperties = new HashMap<String,Object>();
-            stockplexProperties.put("@type", stockplexResource.getResourceType());
-            stockplexProperties.put("symbol", this.getSymbol());
-            stockplexProperties.put("summary", this.getSummary());
-            stockplexProperties.put("showStockInfo", this.getShowStockInfo());
-            stockplexProperties.put("currentPrice", this.getCurrentPrice());
-            stockplexProperties.put("stockInfo", this.getStockInfo());
-            
             //Use AEM Core Component utils to get a unique identifier for the stockplex component (in case multiple are on the page)
             String stockplexComponentID = ComponentUtils.getId(stockplexResource, this.currentPage, this.componentContext);
 
-            // Return the stockplexProperties as a JSON String with a key of the stockplexResource's ID
+            // Return the component properties as a JSON String with a key of the stockplexResource's ID
             try {
-                return String.format("{\"%s\":%s}",
-                    stockplexComponentID,
-                    // Use the ObjectMapper to serialize the stockplexProperties to a JSON string
-                    new ObjectMapper().writeValueAsString(stockplexProperties));
-            } catch (JsonProcessingException e) {
+                return StockplexDataLayer.toJson(stockplexComponentID, stockplexResource.getResourceType(),
+                    this.getSymbol(), this.getSummary(), this.getShowStockInfo(), quote);
+            } catch (IOException e) {
                 LOGGER.error("Unable to generate dataLayer JSON string", e);
             }
         }
@@ -0,0 +1,63 @@
+package com.adobe.training.core.quotes;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import com.adobe.training.core.services.QuoteSnapshot;
+
+import static com.adobe.training.core.StockDataWriterJob.*;
+
+/**
+ * Writes quote snapshots as JSON objects with the trade node property names. Shared by the quote
+ * servlets and the Stockplex data layer, which also links to the quotes servlet path.
+ */
+public final class QuoteJson {
+
+    /** Path of the servlet that serves the quote JSON, /bin/training/quotes.json/<symbol> */
+    public static final String PATH = "/bin/training/quotes";
+
+    //JsonFactory is thread safe, generators are created per response
+    public static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private QuoteJson() {
+    }
+
+    public static void writeQuote(JsonGenerator generator, QuoteSnapshot quote) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("symbol", quote.getSymbol());
+        generator.writeStringField(COMPANY, quote.getCompanyName());
+        generator.writeStringField(SECTOR, quote.getSector());
+        writeNumberField(generator, LASTTRADE, quote.getLastTrade());
+        writeNumberField(generator, OPENPRICE, quote.getOpenPrice());
+        writeNumberField(generator, RANGEHIGH, quote.getRangeHigh());
+        writeNumberField(generator, RANGELOW, quote.getRangeLow());
+        writeNumberField(generator, UPDOWN, quote.getUpDown());
+        writeNumberField(generator, WEEK52HIGH, quote.getWeek52High());
+        writeNumberField(generator, WEEK52LOW, quote.getWeek52Low());
+        writeNumberField(generator, YTDCHANGE, quote.getYtdChange());
+        writeNumberField(generator, VOLUME, quote.getVolume());
+        writeNumberField(generator, LATESTUPDATE, quote.getLatestUpdate());
+        generator.writeStringField(UPDATETIME, quote.getTimeOfUpdate());
+        generator.writeStringField(DAYOFUPDATE, quote.getDayOfUpdate());
+        generator.writeEndObject();
+    }
+
+    //NaN and infinity are not valid JSON numbers and are written as null
+    public static void writeNumberField(JsonGenerator generator, String name, Double value) throws IOException {
+        if (value == null || value.isNaN() || value.isInfinite()) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeNumberField(name, value);
+        }
+    }
+
+    private static void writeNumberField(JsonGenerator generator, String name, Long value) throws IOException {
+        if (value == null) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeNumberField(name, value);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.adobe.training.core.quotes;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+/**
+ * Streams the quotes of a bulk quote file, one record per line, so only the current line is in
+ * memory however large the file is.
+ *
+ * NDJSON files have one quote object per line with the fields of the stock data source JSON and
+ * a "symbol" field. CSV files start with a header line naming the same fields in any order, values
+ * may be quoted with double quotes but cannot span lines. A record that cannot be decoded is
+ * skipped and counted, so one bad line does not stop the import.
+ */
+public final class QuoteRecordReader implements Closeable {
+
+    public enum Format {
+        NDJSON,
+        CSV;
+
+        //The format of a file named *.ndjson, *.jsonl or *.csv, null for any other name
+        public static Format forFileName(String name) {
+            String lowerCase = name.toLowerCase(Locale.ROOT);
+            if (lowerCase.endsWith(".ndjson") || lowerCase.endsWith(".jsonl")) {
+                return NDJSON;
+            }
+            return lowerCase.endsWith(".csv") ? CSV : null;
+        }
+    }
+
+    private static final String[] CSV_FIELDS = {"symbol", "companyName", "sector", "latestPrice", "open", "high",
+            "low", "latestVolume", "change", "week52High", "week52Low", "ytdChange", "latestUpdate"};
+
+    private final BufferedReader reader;
+    private final Format format;
+    //Column of every CSV_FIELDS entry, -1 if the file does not have it
+    private int[] columns;
+    private long lineNumber;
+    private long skipped;
+    private String lastError;
+
+    public QuoteRecordReader(InputStream in, Format format) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        this.format = format;
+    }
+
+    /**
+     * @return the next quote of the file, null at the end
+     * @throws IOException if the file cannot be read
+     */
+    public StockQuote next() throws IOException {
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (format == Format.CSV && columns == null) {
+                readHeader(line);
+                continue;
+            }
+            try {
+                return format == Format.NDJSON ? StockQuoteDecoder.decodeRecord(line) : decodeCsv(line);
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                skipped++;
+                lastError = "line " + lineNumber + ": " + e.getMessage();
+            }
+        }
+        return null;
+    }
+
+    //Records that could not be decoded
+    public long getSkippedCount() {
+        return skipped;
+    }
+
+    //Why the last skipped record could not be decoded, null if none was skipped
+    public String getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void readHeader(String line) {
+        List<String> names = splitCsv(line);
+        columns = new int[CSV_FIELDS.length];
+        Arrays.fill(columns, -1);
+        for (int i = 0; i < names.size(); i++) {
+            //A byte order mark before the first name should not hide its column
+            String name = names.get(i).replace("\uFEFF", "");
+            for (int field = 0; field < CSV_FIELDS.length; field++) {
+                if (CSV_FIELDS[field].equals(name)) {
+                    columns[field] = i;
+                }
+            }
+        }
+    }
+
+    private StockQuote decodeCsv(String line) {
+        List<String> values = splitCsv(line);
+        String symbol = text(values, 0);
+        if (symbol == null) {
+            throw new IllegalArgumentException("Stock quote has no symbol");
+        }
+        double latestPrice = number(values, 3);
+        double latestUpdate = number(values, 12);
+        if (Double.isNaN(latestPrice) || Double.isNaN(latestUpdate) || latestUpdate < 0) {
+            throw new IllegalArgumentException("Stock quote for " + symbol + " has no latestPrice or latestUpdate");
+        }
+        double volume = number(values, 7);
+        return new StockQuote(symbol, text(values, 1), text(values, 2), latestPrice, number(values, 4),
+                number(values, 5), number(values, 6), Double.isNaN(volume) ? 0 : (long) volume, number(values, 8),
+                number(values, 9), number(values, 10), number(values, 11), (long) latestUpdate);
+    }
+
+    private String text(List<String> values, int field) {
+        int column = columns[field];
+        if (column < 0 || column >= values.size() || values.get(column).isEmpty()) {
+            return null;
+        }
+        return values.get(column);
+    }
+
+    //NaN for a missing value, NumberFormatException is an IllegalArgumentException and skips the record
+    private double number(List<String> values, int field) {
+        String value = text(values, field);
+        return value == null ? Double.NaN : Double.parseDouble(value);
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>(CSV_FIELDS.length);
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    //An escaped quote
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString().trim());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString().trim());
+        return values;
+    }
+}
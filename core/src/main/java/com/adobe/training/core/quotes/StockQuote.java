@@ -0,0 +1,100 @@
+package com.adobe.training.core.quotes;
+
+/**
+ * Immutable snapshot of the quote values that are imported for a stock symbol.
+ * Prices that the data source did not deliver are Double.NaN.
+ */
+public final class StockQuote {
+
+    private final String symbol;
+    private final String companyName;
+    private final String sector;
+    private final double latestPrice;
+    private final double open;
+    private final double high;
+    private final double low;
+    private final long latestVolume;
+    private final double change;
+    private final double week52High;
+    private final double week52Low;
+    private final double ytdChange;
+    private final long latestUpdate;
+
+    public StockQuote(String symbol, String companyName, String sector, double latestPrice, double open,
+            double high, double low, long latestVolume, double change, double week52High, double week52Low,
+            double ytdChange, long latestUpdate) {
+        this.symbol = symbol;
+        this.companyName = companyName;
+        this.sector = sector;
+        this.latestPrice = latestPrice;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.latestVolume = latestVolume;
+        this.change = change;
+        this.week52High = week52High;
+        this.week52Low = week52Low;
+        this.ytdChange = ytdChange;
+        this.latestUpdate = latestUpdate;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public String getCompanyName() {
+        return companyName;
+    }
+
+    public String getSector() {
+        return sector;
+    }
+
+    public double getLatestPrice() {
+        return latestPrice;
+    }
+
+    public double getOpen() {
+        return open;
+    }
+
+    public double getHigh() {
+        return high;
+    }
+
+    public double getLow() {
+        return low;
+    }
+
+    public long getLatestVolume() {
+        return latestVolume;
+    }
+
+    //Price change since the previous close
+    public double getChange() {
+        return change;
+    }
+
+    public double getWeek52High() {
+        return week52High;
+    }
+
+    public double getWeek52Low() {
+        return week52Low;
+    }
+
+    //Change since the start of the year as a fraction, e.g. -0.0325
+    public double getYtdChange() {
+        return ytdChange;
+    }
+
+    //Epoch milliseconds of the quote at the data source
+    public long getLatestUpdate() {
+        return latestUpdate;
+    }
+
+    @Override
+    public String toString() {
+        return "StockQuote[" + symbol + " latestPrice=" + latestPrice + " latestUpdate=" + latestUpdate + "]";
+    }
+}
@@ -0,0 +1,177 @@
+package com.adobe.training.core.quotes;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Decodes the JSON quote of the stock data source into a StockQuote.
+ *
+ * The tokens are streamed from the bytes with a shared JsonFactory. Only the fields that are
+ * imported are read, every other field, including nested objects, is skipped without binding.
+ * Numbers are accepted as JSON numbers or numeric strings.
+ */
+public final class StockQuoteDecoder {
+
+    //JsonFactory is thread safe once configured and reuses its symbol tables and buffers
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private StockQuoteDecoder() {
+    }
+
+    public static StockQuote decode(String symbol, byte[] json) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            return decode(symbol, parser);
+        }
+    }
+
+    public static StockQuote decode(String symbol, InputStream json) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            return decode(symbol, parser);
+        }
+    }
+
+    /**
+     * Decodes a quote object that names its symbol in a "symbol" field, e.g. a line of an NDJSON
+     * bulk quote file.
+     *
+     * @throws JsonParseException if the JSON is malformed or has no symbol, latestPrice or latestUpdate
+     */
+    public static StockQuote decodeRecord(String json) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            return decode(null, parser);
+        }
+    }
+
+    /**
+     * Reads one quote object from the parser. Without a symbol it is read from the "symbol" field. The parser can be positioned before or on the START_OBJECT.
+     *
+     * @throws JsonParseException if the JSON is malformed or has no latestPrice or latestUpdate
+     */
+    public static StockQuote decode(String symbol, JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT && parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Stock quote for " + symbol + " is not a JSON object");
+        }
+
+        String recordSymbol = null;
+        String companyName = null;
+        String sector = null;
+        double latestPrice = Double.NaN;
+        double open = Double.NaN;
+        double high = Double.NaN;
+        double low = Double.NaN;
+        long latestVolume = 0;
+        double change = Double.NaN;
+        double week52High = Double.NaN;
+        double week52Low = Double.NaN;
+        double ytdChange = Double.NaN;
+        long latestUpdate = -1;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "symbol":
+                    recordSymbol = textValue(parser, value);
+                    break;
+                case "companyName":
+                    companyName = textValue(parser, value);
+                    break;
+                case "sector":
+                    sector = textValue(parser, value);
+                    break;
+                case "latestPrice":
+                    latestPrice = doubleValue(parser, value);
+                    break;
+                case "open":
+                    open = doubleValue(parser, value);
+                    break;
+                case "high":
+                    high = doubleValue(parser, value);
+                    break;
+                case "low":
+                    low = doubleValue(parser, value);
+                    break;
+                case "latestVolume":
+                    latestVolume = longValue(parser, value, 0);
+                    break;
+                case "change":
+                    change = doubleValue(parser, value);
+                    break;
+                case "week52High":
+                    week52High = doubleValue(parser, value);
+                    break;
+                case "week52Low":
+                    week52Low = doubleValue(parser, value);
+                    break;
+                case "ytdChange":
+                    ytdChange = doubleValue(parser, value);
+                    break;
+                case "latestUpdate":
+                    latestUpdate = longValue(parser, value, -1);
+                    break;
+                default:
+                    //skips nested objects and arrays too
+                    parser.skipChildren();
+            }
+        }
+
+        String quoteSymbol = symbol != null ? symbol : recordSymbol;
+        if (quoteSymbol == null) {
+            throw new JsonParseException(parser, "Stock quote has no symbol");
+        }
+        if (Double.isNaN(latestPrice) || latestUpdate < 0) {
+            throw new JsonParseException(parser, "Stock quote for " + quoteSymbol + " has no latestPrice or latestUpdate");
+        }
+        return new StockQuote(quoteSymbol, companyName, sector, latestPrice, open, high, low, latestVolume, change,
+                week52High, week52Low, ytdChange, latestUpdate);
+    }
+
+    private static String textValue(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value.isScalarValue()) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static double doubleValue(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_FLOAT || value == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getDoubleValue();
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            try {
+                return Double.parseDouble(parser.getText());
+            } catch (NumberFormatException e) {
+                throw new JsonParseException(parser, "Not a number: " + parser.getText());
+            }
+        }
+        parser.skipChildren();
+        return Double.NaN;
+    }
+
+    private static long longValue(JsonParser parser, JsonToken value, long missing) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        if (value == JsonToken.VALUE_NUMBER_FLOAT) {
+            return (long) parser.getDoubleValue();
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            try {
+                return Long.parseLong(parser.getText());
+            } catch (NumberFormatException e) {
+                throw new JsonParseException(parser, "Not a number: " + parser.getText());
+            }
+        }
+        parser.skipChildren();
+        return missing;
+    }
+}
@@ -0,0 +1,161 @@
+package com.adobe.training.core.schedulers;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which registered symbols are fetched on a run of the StockRegistryScheduler.
+ *
+ * While the exchange is open a symbol is due after the trading interval, shortened for symbols
+ * whose price moved a lot between the last updates, down to the minimum interval. On weekends,
+ * holidays and outside of 9:30 to 16:00 New York time a symbol is due after the closed interval.
+ * Due symbols are fetched most overdue first, up to the request budget that accrued since the
+ * previous run. New symbols, and all symbols after a restart, start at a fixed offset per symbol
+ * within the trading interval, so their imports are spread over the interval from the start.
+ */
+final class ImportPlan {
+
+	static final ZoneId EXCHANGE_ZONE = ZoneId.of("America/New_York");
+	private static final LocalTime MARKET_OPEN = LocalTime.of(9, 30);
+	private static final LocalTime MARKET_CLOSE = LocalTime.of(16, 0);
+
+	//Weight of the latest price change in the volatility, and how fast it fades without updates
+	private static final double VOLATILITY_WEIGHT = 0.3;
+	private static final long VOLATILITY_HALF_LIFE = TimeUnit.MINUTES.toMillis(10);
+
+	private final long tradingInterval;
+	private final long minInterval;
+	private final long closedInterval;
+	private final double volatilityReference;
+	private final int requestsPerMinute;
+	private final Set<LocalDate> holidays;
+
+	private final Map<String, SymbolState> states = new HashMap<>();
+	private long lastRun;
+	private double requestCredit;
+
+	/**
+	 * @param volatilityReference price change in percent per update that halves the trading interval
+	 */
+	ImportPlan(long tradingInterval, long minInterval, long closedInterval, double volatilityReference,
+			int requestsPerMinute, Set<LocalDate> holidays) {
+		this.tradingInterval = tradingInterval;
+		this.minInterval = Math.min(minInterval, tradingInterval);
+		this.closedInterval = closedInterval;
+		this.volatilityReference = volatilityReference;
+		this.requestsPerMinute = requestsPerMinute;
+		this.holidays = holidays;
+	}
+
+	/**
+	 * Selects the symbols to fetch now and remembers them as fetched. Symbols that are no longer
+	 * registered are forgotten.
+	 */
+	synchronized List<String> due(Collection<String> symbols, long now) {
+		states.keySet().retainAll(symbols);
+
+		//Requests accrue at the budget rate, at most one minute worth is saved up
+		long elapsed = lastRun > 0 ? now - lastRun : TimeUnit.MINUTES.toMillis(1);
+		lastRun = now;
+		requestCredit = Math.min(requestsPerMinute, requestCredit + (double) requestsPerMinute * elapsed / TimeUnit.MINUTES.toMillis(1));
+		long budget = (long) requestCredit;
+
+		boolean trading = isTradingTime(now);
+		List<SymbolState> candidates = new ArrayList<>();
+		for (String symbol : symbols) {
+			SymbolState state = states.get(symbol);
+			if (state == null) {
+				state = new SymbolState(symbol);
+				//A new symbol is first due at its own offset into the interval, not all at once
+				long spread = trading ? tradingInterval : Math.min(tradingInterval, closedInterval);
+				state.lastFetch = now - (trading ? tradingInterval : closedInterval)
+						+ StockImportScheduler.offsetMillis(symbol, spread);
+				states.put(symbol, state);
+			}
+			long interval = trading ? tradingInterval(state, now) : closedInterval;
+			state.overdue = (double) (now - state.lastFetch) / interval;
+			if (state.overdue >= 1) {
+				candidates.add(state);
+			}
+		}
+		candidates.sort((a, b) -> Double.compare(b.overdue, a.overdue));
+
+		List<String> due = new ArrayList<>((int) Math.min(budget, candidates.size()));
+		for (SymbolState state : candidates) {
+			if (due.size() >= budget) {
+				break;
+			}
+			state.lastFetch = now;
+			due.add(state.symbol);
+		}
+		requestCredit -= due.size();
+		return due;
+	}
+
+	//Updates the volatility of a symbol with an imported price
+	synchronized void recordPrice(String symbol, double price, long time) {
+		SymbolState state = states.get(symbol);
+		if (state == null || Double.isNaN(price) || price <= 0) {
+			return;
+		}
+		if (state.lastPrice > 0) {
+			double change = Math.abs(price - state.lastPrice) / state.lastPrice * 100;
+			state.volatility = VOLATILITY_WEIGHT * change + (1 - VOLATILITY_WEIGHT) * decayedVolatility(state, time);
+		}
+		state.lastPrice = price;
+		state.lastPriceTime = time;
+	}
+
+	//Interval while trading: tradingInterval / (1 + volatility / reference), not below minInterval
+	synchronized long tradingInterval(String symbol, long now) {
+		SymbolState state = states.get(symbol);
+		return state != null ? tradingInterval(state, now) : tradingInterval;
+	}
+
+	private long tradingInterval(SymbolState state, long now) {
+		double factor = 1 + decayedVolatility(state, now) / volatilityReference;
+		return Math.max(minInterval, (long) (tradingInterval / factor));
+	}
+
+	private static double decayedVolatility(SymbolState state, long now) {
+		if (state.volatility == 0 || now <= state.lastPriceTime) {
+			return state.volatility;
+		}
+		return state.volatility * Math.pow(0.5, (double) (now - state.lastPriceTime) / VOLATILITY_HALF_LIFE);
+	}
+
+	boolean isTradingTime(long now) {
+		ZonedDateTime exchangeTime = Instant.ofEpochMilli(now).atZone(EXCHANGE_ZONE);
+		DayOfWeek day = exchangeTime.getDayOfWeek();
+		if (day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY || holidays.contains(exchangeTime.toLocalDate())) {
+			return false;
+		}
+		LocalTime time = exchangeTime.toLocalTime();
+		return !time.isBefore(MARKET_OPEN) && time.isBefore(MARKET_CLOSE);
+	}
+
+	private static final class SymbolState {
+		private final String symbol;
+		private long lastFetch;
+		private double lastPrice;
+		private long lastPriceTime;
+		//Average price change per update in percent
+		private double volatility;
+		private double overdue;
+
+		SymbolState(String symbol) {
+			this.symbol = symbol;
+		}
+	}
+}
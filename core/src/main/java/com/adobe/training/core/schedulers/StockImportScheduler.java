@@ -27,6 +27,9 @@ import org.slf4j.LoggerFactory;
  * This class adds a Sling Job to the job queue so that a job consumer can process
  * work. Sling Jobs are guaranteed to be proceed and the scheduler can be configured
  * based on an OSGi config node.
+ *
+ * The symbol folders below /content/stocks are imported by the StockRegistryScheduler. Configs
+ * of this factory are only needed for symbols with their own schedule or stock URL.
  */
 @Component(immediate = true,
 			configurationPid = "com.adobe.training.core.schedulers.StockImportScheduler",
@@ -34,7 +37,9 @@ import org.slf4j.LoggerFactory;
 @Designate(ocd = StockImportScheduler.StockImportConfiguration.class, factory=true)
 public class StockImportScheduler {
 	public static final String JOB_TOPIC_STOCKIMPORT = "com/adobe/training/core/jobs/stockimportjob";
+	public static final String JOB_TOPIC_STOCKIMPORT_BATCH = "com/adobe/training/core/jobs/stockimportbatchjob";
 	public static final String JOB_PROP_SYMBOL = "symbol";
+	public static final String JOB_PROP_SYMBOLS = "symbols";
 	public static final String JOB_PROP_URL = "url";
 	public static final String DEFAULT_IMPORT_URL = "https://raw.githubusercontent.com/Adobe-Marketing-Cloud/ADLS-Samples/master/stock-data/";
 	
@@ -52,6 +57,13 @@ public class StockImportScheduler {
 		)
 		public String symbol() default "";
 
+		@AttributeDefinition(
+				name = "Stock Symbols",
+				description = "Characters representing the stocks to be imported together in one batch job. When set, Stock Symbol is ignored",
+				type = AttributeType.STRING
+		)
+		public String[] symbols() default {};
+
 		@AttributeDefinition(
 			name = "Expression",
 			description = "Run every so often as defined in the cron-job expression.",
@@ -59,9 +71,16 @@ public class StockImportScheduler {
 		)
 		public String cronExpression() default "0 0/2 * * * ?";
 
+		@AttributeDefinition(
+				name = "Spread",
+				description = "Shift the seconds and the first minute of the expression by an offset derived from the symbol, so the symbols of the same expression do not all start in the same second",
+				type = AttributeType.BOOLEAN
+		)
+		public boolean spread() default true;
+
 		@AttributeDefinition(
 				name = "Stock URL",
-				description = "URL to request the stock data to be imported",
+				description = "URL to request the stock data to be imported. http(s) urls are requested, file: urls read a local directory and synthetic: generates quotes",
 				type = AttributeType.STRING
 		)
 		public String stock_url() default DEFAULT_IMPORT_URL;
@@ -96,15 +115,23 @@ public class StockImportScheduler {
 
     private void startScheduledJob(StockImportConfiguration config){
     	
-    	jobBuilder = jobManager.createJob(StockImportScheduler.JOB_TOPIC_STOCKIMPORT);
         // Create a properties map that contains the configurations we want to pass to the job
 		HashMap<String, Object> jobProps = new HashMap<>();
-		jobProps.put(JOB_PROP_SYMBOL, config.symbol());
+		if(config.symbols().length > 0) {
+			//One job covers all symbols of the batch
+			jobBuilder = jobManager.createJob(StockImportScheduler.JOB_TOPIC_STOCKIMPORT_BATCH);
+			jobProps.put(JOB_PROP_SYMBOLS, config.symbols());
+		} else {
+			jobBuilder = jobManager.createJob(StockImportScheduler.JOB_TOPIC_STOCKIMPORT);
+			jobProps.put(JOB_PROP_SYMBOL, config.symbol());
+		}
 		jobProps.put(JOB_PROP_URL, config.stock_url());
 		
         jobBuilder.properties(jobProps);
         scheduleBuilder = jobBuilder.schedule();
-    	scheduleBuilder.cron(config.cronExpression());
+    	String spreadKey = config.symbols().length > 0 ? String.join(",", config.symbols()) : config.symbol();
+    	String cronExpression = config.spread() ? spreadCron(config.cronExpression(), spreadKey) : config.cronExpression();
+    	scheduleBuilder.cron(cronExpression);
     	theScheduledJob = scheduleBuilder.add();
         if(theScheduledJob == null){
             List<String> errors = new ArrayList<>();
@@ -122,4 +149,43 @@ public class StockImportScheduler {
 			theScheduledJob.unschedule();
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Offset of a symbol within an interval. The offset only depends on the symbol, so a symbol
+	 * keeps its place in the interval across restarts and all symbols are spread evenly.
+	 */
+	public static long offsetMillis(String symbol, long intervalMillis) {
+		//Spread the bits of String.hashCode, similar symbols differ only in the low bits
+		long hash = symbol.hashCode() * 0x9E3779B97F4A7C15L;
+		return Math.floorMod(hash >>> 16, intervalMillis);
+	}
+
+	/**
+	 * Moves a cron expression that starts at second 0, like the default "0 0/2 * * * ?", to the
+	 * offset of the symbol within its period: "0/N" minutes start at minute offset / 60 and the
+	 * seconds field is offset % 60. Other expressions are returned unchanged.
+	 */
+	static String spreadCron(String cronExpression, String symbol) {
+		String[] fields = cronExpression.trim().split("\\s+");
+		if (symbol == null || symbol.isEmpty() || fields.length < 6 || !fields[0].equals("0")) {
+			return cronExpression;
+		}
+		int minutes = 1;
+		if (fields[1].startsWith("0/")) {
+			try {
+				minutes = Math.max(1, Math.min(59, Integer.parseInt(fields[1].substring(2))));
+			} catch (NumberFormatException e) {
+				return cronExpression;
+			}
+		} else if (!fields[1].equals("*")) {
+			//A fixed minute, only the seconds are spread
+			minutes = 0;
+		}
+		long offset = offsetMillis(symbol, Math.max(1, minutes) * 60_000L) / 1000;
+		fields[0] = Long.toString(offset % 60);
+		if (minutes > 1) {
+			fields[1] = (offset / 60) + "/" + minutes;
+		}
+		return String.join(" ", fields);
+	}
+}
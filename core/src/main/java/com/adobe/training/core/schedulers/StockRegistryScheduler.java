@@ -0,0 +1,227 @@
+package com.adobe.training.core.schedulers;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
+import org.apache.sling.event.jobs.ScheduledJobInfo;
+import org.apache.sling.event.jobs.consumer.JobConsumer;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.QuoteUpdateListener;
+import com.adobe.training.core.services.StockSymbolRegistry;
+
+/**
+ * Imports every symbol of the StockSymbolRegistry with one scheduled Sling Job, instead of one
+ * StockImportScheduler configuration and cron registration per symbol.
+ *
+ * Each run only imports the symbols that are due by the ImportPlan: often while the exchange is
+ * open and for symbols with large recent price changes, rarely while it is closed, and never more
+ * than the request budget. The due symbols are split into batch jobs of "Batch Size" symbols for
+ * the StockBatchImportJob. Imported prices are reported back as quote updates.
+ */
+@Component(immediate = true,
+		service = {JobConsumer.class, QuoteUpdateListener.class},
+		property = {
+				JobConsumer.PROPERTY_TOPICS + "=" + StockRegistryScheduler.JOB_TOPIC_STOCKIMPORT_REGISTRY
+		})
+@Designate(ocd = StockRegistryScheduler.Configuration.class)
+public class StockRegistryScheduler implements JobConsumer, QuoteUpdateListener {
+	public static final String JOB_TOPIC_STOCKIMPORT_REGISTRY = "com/adobe/training/core/jobs/stockimportregistryjob";
+	public static final String JOB_PROP_BATCH_SIZE = "batchSize";
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	// Convenience string to find the log messages for this training example class
+	// Logs can be found in crx-quickstart/logs/error.log
+	private String searchableLogStr = "*****";
+
+	@ObjectClassDefinition(name = "Training Stock Registry Importer")
+	public @interface Configuration {
+		@AttributeDefinition(
+				name = "Expression",
+				description = "Run every so often as defined in the cron-job expression. Each run imports the symbols that are due",
+				type = AttributeType.STRING
+		)
+		String cronExpression() default "0/15 * * * * ?";
+
+		@AttributeDefinition(
+				name = "Stock URL",
+				description = "URL to request the stock data to be imported. http(s) urls are requested, file: urls read a local directory and synthetic: generates quotes",
+				type = AttributeType.STRING
+		)
+		String stock_url() default StockImportScheduler.DEFAULT_IMPORT_URL;
+
+		@AttributeDefinition(
+				name = "Batch Size",
+				description = "Number of registered symbols imported by one batch job",
+				type = AttributeType.INTEGER
+		)
+		int batch_size() default 200;
+
+		@AttributeDefinition(
+				name = "Trading Interval",
+				description = "Seconds between two imports of a symbol while the exchange is open",
+				type = AttributeType.INTEGER
+		)
+		int trading_interval() default 120;
+
+		@AttributeDefinition(
+				name = "Min Interval",
+				description = "Seconds between two imports of a symbol with large price changes while the exchange is open",
+				type = AttributeType.INTEGER
+		)
+		int min_interval() default 30;
+
+		@AttributeDefinition(
+				name = "Closed Interval",
+				description = "Seconds between two imports of a symbol while the exchange is closed",
+				type = AttributeType.INTEGER
+		)
+		int closed_interval() default 3600;
+
+		@AttributeDefinition(
+				name = "Volatility Reference",
+				description = "Average price change per import in percent that halves the trading interval of a symbol",
+				type = AttributeType.DOUBLE
+		)
+		double volatility_reference() default 0.5;
+
+		@AttributeDefinition(
+				name = "Requests per Minute",
+				description = "Largest number of quotes requested from the stock data source per minute",
+				type = AttributeType.INTEGER
+		)
+		int requests_per_minute() default 600;
+
+		@AttributeDefinition(
+				name = "Market Holidays",
+				description = "Days in yyyy-MM-dd format the exchange is closed",
+				type = AttributeType.STRING
+		)
+		String[] market_holidays() default {};
+	}
+
+	@Reference
+	private JobManager jobManager;
+
+	@Reference
+	private StockSymbolRegistry symbolRegistry;
+
+	private volatile ImportPlan plan;
+
+	@Activate @Modified
+	protected void activate(Configuration config) {
+		unschedule();
+		plan = new ImportPlan(TimeUnit.SECONDS.toMillis(Math.max(1, config.trading_interval())),
+				TimeUnit.SECONDS.toMillis(Math.max(1, config.min_interval())),
+				TimeUnit.SECONDS.toMillis(Math.max(1, config.closed_interval())),
+				config.volatility_reference() > 0 ? config.volatility_reference() : 0.5,
+				Math.max(1, config.requests_per_minute()),
+				holidays(config.market_holidays()));
+
+		Map<String, Object> jobProps = new HashMap<>();
+		jobProps.put(StockImportScheduler.JOB_PROP_URL, config.stock_url());
+		jobProps.put(JOB_PROP_BATCH_SIZE, Math.max(1, config.batch_size()));
+		ScheduledJobInfo scheduledJob = jobManager.createJob(JOB_TOPIC_STOCKIMPORT_REGISTRY)
+				.properties(jobProps)
+				.schedule()
+				.cron(config.cronExpression())
+				.add();
+		if (scheduledJob == null) {
+			logger.error(searchableLogStr + "Could not schedule the stock registry import with '{}'", config.cronExpression());
+		} else {
+			logger.info(searchableLogStr + "Stock registry import scheduled, next execution: " + scheduledJob.getNextScheduledExecution());
+		}
+	}
+
+	@Deactivate
+	protected void deactivate() {
+		unschedule();
+	}
+
+	@Override
+	public JobResult process(Job job) {
+		String stockUrl = job.getProperty(StockImportScheduler.JOB_PROP_URL, StockImportScheduler.DEFAULT_IMPORT_URL);
+		int batchSize = Math.max(1, job.getProperty(JOB_PROP_BATCH_SIZE, 200));
+
+		List<String> due = plan.due(symbolRegistry.getSymbols(), System.currentTimeMillis());
+		List<String> batch = new ArrayList<>(batchSize);
+		int jobs = 0;
+		for (String symbol : due) {
+			batch.add(symbol);
+			if (batch.size() == batchSize) {
+				addBatchJob(batch, stockUrl);
+				jobs++;
+			}
+		}
+		if (!batch.isEmpty()) {
+			addBatchJob(batch, stockUrl);
+			jobs++;
+		}
+		if (jobs > 0) {
+			logger.info(searchableLogStr + "Queued " + jobs + " batch jobs for " + due.size() + " of "
+					+ symbolRegistry.size() + " registered symbols");
+		}
+		return JobResult.OK;
+	}
+
+	@Override
+	public void quotesUpdated(List<QuoteSnapshot> quotes) {
+		ImportPlan activePlan = plan;
+		if (activePlan == null) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		for (QuoteSnapshot quote : quotes) {
+			if (quote.getLastTrade() != null) {
+				activePlan.recordPrice(quote.getSymbol(), quote.getLastTrade(), now);
+			}
+		}
+	}
+
+	private void addBatchJob(List<String> batch, String stockUrl) {
+		Map<String, Object> jobProps = new HashMap<>();
+		jobProps.put(StockImportScheduler.JOB_PROP_SYMBOLS, batch.toArray(new String[0]));
+		jobProps.put(StockImportScheduler.JOB_PROP_URL, stockUrl);
+		jobManager.addJob(StockImportScheduler.JOB_TOPIC_STOCKIMPORT_BATCH, jobProps);
+		batch.clear();
+	}
+
+	private Set<LocalDate> holidays(String[] dates) {
+		Set<LocalDate> holidays = new HashSet<>();
+		for (String date : dates) {
+			try {
+				holidays.add(LocalDate.parse(date.trim()));
+			} catch (DateTimeParseException e) {
+				logger.warn(searchableLogStr + "Ignoring market holiday '{}', expected yyyy-MM-dd", date);
+			}
+		}
+		return holidays;
+	}
+
+	//Scheduled jobs are persisted, so schedules left over from a previous start are removed as well
+	private void unschedule() {
+		for (ScheduledJobInfo info : jobManager.getScheduledJobs(JOB_TOPIC_STOCKIMPORT_REGISTRY, 0)) {
+			info.unschedule();
+		}
+	}
+}
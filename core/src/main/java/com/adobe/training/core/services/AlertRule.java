@@ -0,0 +1,79 @@
+package com.adobe.training.core.services;
+
+import java.util.Objects;
+
+/**
+ * A price alert of one user on one symbol. Rules trigger when a quote crosses the threshold,
+ * so a price that stays above an ABOVE threshold triggers once and again only after it fell
+ * below the threshold in between.
+ */
+public final class AlertRule {
+
+    public enum Condition {
+        //lastTrade rises to or above the threshold
+        ABOVE,
+        //lastTrade falls to or below the threshold
+        BELOW,
+        //The change against the previous close reaches the threshold in percent, either direction
+        DAY_MOVE
+    }
+
+    private final String ruleId;
+    private final String userId;
+    private final String symbol;
+    private final Condition condition;
+    private final double threshold;
+
+    public AlertRule(String ruleId, String userId, String symbol, Condition condition, double threshold) {
+        this.ruleId = ruleId;
+        this.userId = userId;
+        this.symbol = symbol;
+        this.condition = condition;
+        this.threshold = threshold;
+    }
+
+    public String getRuleId() {
+        return ruleId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public Condition getCondition() {
+        return condition;
+    }
+
+    //A price for ABOVE and BELOW, a percentage for DAY_MOVE
+    public double getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof AlertRule)) {
+            return false;
+        }
+        AlertRule that = (AlertRule) other;
+        return Objects.equals(ruleId, that.ruleId) && Objects.equals(userId, that.userId)
+                && Objects.equals(symbol, that.symbol) && condition == that.condition
+                && Double.compare(threshold, that.threshold) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ruleId, userId, symbol, condition, threshold);
+    }
+
+    @Override
+    public String toString() {
+        return "AlertRule[" + ruleId + " " + userId + " " + symbol + " " + condition + " " + threshold + "]";
+    }
+}
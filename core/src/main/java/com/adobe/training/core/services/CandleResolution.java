@@ -0,0 +1,46 @@
+package com.adobe.training.core.services;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bucket sizes of the pre-aggregated OHLC candles. Buckets start at multiples of their
+ * length since the epoch, so a day bucket is a UTC day.
+ */
+public enum CandleResolution {
+
+    ONE_MINUTE("1m", TimeUnit.MINUTES.toMillis(1)),
+    FIVE_MINUTES("5m", TimeUnit.MINUTES.toMillis(5)),
+    ONE_HOUR("1h", TimeUnit.HOURS.toMillis(1)),
+    ONE_DAY("1d", TimeUnit.DAYS.toMillis(1));
+
+    private final String name;
+    private final long millis;
+
+    CandleResolution(String name, long millis) {
+        this.name = name;
+        this.millis = millis;
+    }
+
+    //Short name used as node name and request parameter, e.g. 5m
+    public String getName() {
+        return name;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    //Start of the bucket that contains the given epoch milliseconds
+    public long bucketStart(long time) {
+        return Math.floorDiv(time, millis) * millis;
+    }
+
+    public static CandleResolution fromName(String name) {
+        for (CandleResolution resolution : values()) {
+            if (resolution.name.equals(name)) {
+                return resolution;
+            }
+        }
+        return null;
+    }
+}
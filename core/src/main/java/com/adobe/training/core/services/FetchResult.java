@@ -0,0 +1,52 @@
+package com.adobe.training.core.services;
+
+/**
+ * Outcome of a conditional request to the stock data source
+ */
+public final class FetchResult {
+
+    public enum Status {
+        //New quote data, the body needs to be parsed and written
+        MODIFIED,
+        //The data source answered 304 Not Modified for the remembered ETag or Last-Modified
+        NOT_MODIFIED,
+        //The data source sent the same content as last time
+        UNCHANGED
+    }
+
+    private static final FetchResult NOT_MODIFIED_RESULT = new FetchResult(Status.NOT_MODIFIED, null);
+    private static final FetchResult UNCHANGED_RESULT = new FetchResult(Status.UNCHANGED, null);
+
+    private final Status status;
+    private final byte[] body;
+
+    private FetchResult(Status status, byte[] body) {
+        this.status = status;
+        this.body = body;
+    }
+
+    public static FetchResult modified(byte[] body) {
+        return new FetchResult(Status.MODIFIED, body);
+    }
+
+    public static FetchResult notModified() {
+        return NOT_MODIFIED_RESULT;
+    }
+
+    public static FetchResult unchanged() {
+        return UNCHANGED_RESULT;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isModified() {
+        return status == Status.MODIFIED;
+    }
+
+    //The response body, only available when the quote was modified
+    public byte[] getBody() {
+        return body;
+    }
+}
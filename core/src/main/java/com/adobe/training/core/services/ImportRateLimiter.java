@@ -0,0 +1,20 @@
+package com.adobe.training.core.services;
+
+/**
+ * Token buckets shared by all import threads, limiting the requests to the stock data source
+ * and the JCR commits of the import per second. A caller waits until a token is free.
+ */
+public interface ImportRateLimiter {
+
+    //Wait for a token before sending a request to the stock data source
+    void acquireRequest() throws InterruptedException;
+
+    //Wait for a token before committing imported quotes
+    void acquireCommit() throws InterruptedException;
+
+    //Milliseconds all callers waited for request tokens
+    long getRequestWaitMillis();
+
+    //Milliseconds all callers waited for commit tokens
+    long getCommitWaitMillis();
+}
@@ -0,0 +1,64 @@
+package com.adobe.training.core.services;
+
+import java.util.List;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+
+/**
+ * Price alerts of the users, stored below /var/wetrain/alerts and evaluated with every imported
+ * quote. A triggered rule is posted as an OSGi event on TOPIC_TRIGGERED, for the services that
+ * deliver the notifications:
+ *
+ * /var/wetrain/alerts/
+ *   + <userId>
+ *     + <ruleId> [nt:unstructured]
+ *       - userId = <value>
+ *       - symbol = <value>
+ *       - condition = ABOVE | BELOW | DAY_MOVE
+ *       - threshold = <value>
+ */
+public interface PriceAlertService {
+
+    String TOPIC_TRIGGERED = "com/adobe/training/core/alerts/TRIGGERED";
+
+    //Properties of the triggered events
+    String PROPERTY_RULE_ID = "ruleId";
+    String PROPERTY_USER_ID = "userId";
+    String PROPERTY_SYMBOL = "symbol";
+    String PROPERTY_CONDITION = "condition";
+    String PROPERTY_THRESHOLD = "threshold";
+    //The lastTrade, or the day move in percent for DAY_MOVE rules, that crossed the threshold
+    String PROPERTY_VALUE = "value";
+    String PROPERTY_PREVIOUS_VALUE = "previousValue";
+    String PROPERTY_LATEST_UPDATE = "latestUpdate";
+
+    /**
+     * Store a rule and evaluate it from the next quote of its symbol on. The change is committed.
+     *
+     * @param resourceResolver resolver that is allowed to write below /var/wetrain/alerts
+     * @param userId owner of the rule
+     * @param symbol uppercase stock symbol
+     * @param condition when the rule triggers
+     * @param threshold price or percentage, greater than 0
+     * @return the stored rule
+     * @throws PersistenceException if the rule could not be stored
+     */
+    AlertRule addRule(ResourceResolver resourceResolver, String userId, String symbol, AlertRule.Condition condition,
+            double threshold) throws PersistenceException;
+
+    /**
+     * @param resourceResolver resolver that is allowed to write below /var/wetrain/alerts
+     * @param userId owner of the rule
+     * @param ruleId id of the rule
+     * @return true if the rule was removed
+     * @throws PersistenceException if the rule could not be removed
+     */
+    boolean removeRule(ResourceResolver resourceResolver, String userId, String ruleId) throws PersistenceException;
+
+    //The stored rules of a user, read with the given resolver
+    List<AlertRule> getRules(ResourceResolver resourceResolver, String userId);
+
+    //Number of rules evaluated on import
+    int getRuleCount();
+}
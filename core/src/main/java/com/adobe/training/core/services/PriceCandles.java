@@ -0,0 +1,87 @@
+package com.adobe.training.core.services;
+
+/**
+ * OHLC candles of one symbol and resolution, ordered by bucket start, as parallel primitive arrays.
+ * The arrays are not copied, callers must not modify them.
+ *
+ * The data source delivers the cumulative volume of the trading day, so the volume of a candle
+ * is the session volume at its close. The volume traded within an intraday candle is the
+ * difference to the previous candle of the same day.
+ */
+public final class PriceCandles {
+
+    private final String symbol;
+    private final CandleResolution resolution;
+    private final long[] starts;
+    private final double[] opens;
+    private final double[] highs;
+    private final double[] lows;
+    private final double[] closes;
+    private final long[] volumes;
+
+    public PriceCandles(String symbol, CandleResolution resolution, long[] starts, double[] opens,
+            double[] highs, double[] lows, double[] closes, long[] volumes) {
+        int size = starts.length;
+        if (opens.length != size || highs.length != size || lows.length != size || closes.length != size
+                || volumes.length != size) {
+            throw new IllegalArgumentException("Candle arrays of " + symbol + " differ in length");
+        }
+        this.symbol = symbol;
+        this.resolution = resolution;
+        this.starts = starts;
+        this.opens = opens;
+        this.highs = highs;
+        this.lows = lows;
+        this.closes = closes;
+        this.volumes = volumes;
+    }
+
+    public static PriceCandles empty(String symbol, CandleResolution resolution) {
+        return new PriceCandles(symbol, resolution, new long[0], new double[0], new double[0], new double[0],
+                new double[0], new long[0]);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public CandleResolution getResolution() {
+        return resolution;
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    public boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    //Epoch milliseconds of the bucket starts
+    public long[] getStarts() {
+        return starts;
+    }
+
+    //Price of the earliest tick in each bucket
+    public double[] getOpens() {
+        return opens;
+    }
+
+    public double[] getHighs() {
+        return highs;
+    }
+
+    public double[] getLows() {
+        return lows;
+    }
+
+    //Price of the latest tick in each bucket
+    public double[] getCloses() {
+        return closes;
+    }
+
+    //Cumulative session volume at the close of each bucket
+    public long[] getVolumes() {
+        return volumes;
+    }
+}
@@ -0,0 +1,43 @@
+package com.adobe.training.core.services;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+
+import com.adobe.training.core.quotes.StockQuote;
+
+/**
+ * Append-only price history of the imported stock symbols. Ticks are packed into one binary
+ * chunk node per symbol and UTC day, so a trading day of two minute updates is a single node:
+ *
+ * /content/stocks/
+ *   + <STOCK_SYMBOL>
+ *     + history
+ *       + <yyyy>
+ *         + <MM-dd> [nt:unstructured]
+ *           - ticks = <binary, 24 bytes per tick>
+ *           - tickCount = <value>
+ */
+public interface PriceHistoryService {
+
+    /**
+     * Append the quote as a tick if it is newer than the last tick of its day and its price or
+     * volume differ from it. The change is left uncommitted on the given resolver.
+     *
+     * @param resourceResolver resolver that is allowed to write below /content/stocks
+     * @param quote the imported quote
+     * @return true if a tick was appended
+     * @throws PersistenceException if the chunk node could not be created
+     */
+    boolean append(ResourceResolver resourceResolver, StockQuote quote) throws PersistenceException;
+
+    /**
+     * Read the ticks of a symbol from the inclusive start to the exclusive end time.
+     *
+     * @param resourceResolver resolver that can read below /content/stocks
+     * @param symbol uppercase stock symbol
+     * @param from epoch milliseconds of the first tick to include
+     * @param to epoch milliseconds after the last tick to include, e.g. Long.MAX_VALUE for all ticks
+     * @return the ticks, empty if the symbol has no history in the range
+     */
+    PriceSeries getTicks(ResourceResolver resourceResolver, String symbol, long from, long to);
+}
@@ -0,0 +1,50 @@
+package com.adobe.training.core.services;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+
+import com.adobe.training.core.quotes.StockQuote;
+
+/**
+ * OHLC candles of the imported stock symbols at every CandleResolution, updated incrementally
+ * with each imported quote. The candles of a resolution are packed into binary chunk nodes:
+ *
+ * /content/stocks/
+ *   + <STOCK_SYMBOL>
+ *     + candles
+ *       + 1m / 5m / 1h
+ *         + <yyyy>
+ *           + <MM-dd>   one chunk per UTC day
+ *       + 1d
+ *         + <yyyy>
+ *           + <MM>      one chunk per month
+ *
+ * Updates are idempotent and independent of the order of the ticks: open and close belong to the
+ * earliest and latest tick of a bucket, a repeated tick changes nothing.
+ */
+public interface PriceRollupService {
+
+    /**
+     * Add the quote to its bucket at every resolution. The changes are left uncommitted on the
+     * given resolver.
+     *
+     * @param resourceResolver resolver that is allowed to write below /content/stocks
+     * @param quote the imported quote
+     * @return true if any candle was created or changed
+     * @throws PersistenceException if a chunk node could not be created
+     */
+    boolean update(ResourceResolver resourceResolver, StockQuote quote) throws PersistenceException;
+
+    /**
+     * Read the candles of a symbol whose bucket starts from the inclusive start to the exclusive end time.
+     *
+     * @param resourceResolver resolver that can read below /content/stocks
+     * @param symbol uppercase stock symbol
+     * @param resolution bucket size of the candles
+     * @param from epoch milliseconds
+     * @param to epoch milliseconds
+     * @return the candles, empty if the symbol has none in the range
+     */
+    PriceCandles getCandles(ResourceResolver resourceResolver, String symbol, CandleResolution resolution,
+            long from, long to);
+}
@@ -0,0 +1,57 @@
+package com.adobe.training.core.services;
+
+/**
+ * Ticks of one symbol in a time range, ordered by time, as parallel primitive arrays.
+ * The arrays are not copied, callers must not modify them.
+ */
+public final class PriceSeries {
+
+    private static final long[] NO_LONGS = new long[0];
+    private static final double[] NO_DOUBLES = new double[0];
+
+    private final String symbol;
+    private final long[] times;
+    private final double[] prices;
+    private final long[] volumes;
+
+    public PriceSeries(String symbol, long[] times, double[] prices, long[] volumes) {
+        if (times.length != prices.length || times.length != volumes.length) {
+            throw new IllegalArgumentException("Tick arrays of " + symbol + " differ in length");
+        }
+        this.symbol = symbol;
+        this.times = times;
+        this.prices = prices;
+        this.volumes = volumes;
+    }
+
+    public static PriceSeries empty(String symbol) {
+        return new PriceSeries(symbol, NO_LONGS, NO_DOUBLES, NO_LONGS);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    public boolean isEmpty() {
+        return times.length == 0;
+    }
+
+    //Epoch milliseconds of the quote updates
+    public long[] getTimes() {
+        return times;
+    }
+
+    //Latest price at each update
+    public double[] getPrices() {
+        return prices;
+    }
+
+    //Latest volume at each update
+    public long[] getVolumes() {
+        return volumes;
+    }
+}
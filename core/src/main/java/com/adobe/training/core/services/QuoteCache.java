@@ -0,0 +1,30 @@
+package com.adobe.training.core.services;
+
+/**
+ * In memory cache of the imported trade values per stock symbol. The import jobs put every
+ * committed quote, and changes to /content/stocks from anywhere else refresh or drop the
+ * cached snapshot, so components read quotes without repository access.
+ */
+public interface QuoteCache {
+
+    /**
+     * Get the snapshot of a symbol. On a miss the trade node is read with the training service
+     * user and the snapshot, or that the symbol is unknown, is cached the same for every caller.
+     *
+     * @param symbol uppercase stock symbol
+     * @return the snapshot, or null if the symbol has not been imported
+     */
+    QuoteSnapshot get(String symbol);
+
+    //Cache a snapshot that was committed to the JCR
+    void put(QuoteSnapshot snapshot);
+
+    //Drop the snapshot of a symbol, the next get reads the JCR
+    void invalidate(String symbol);
+
+    //Number of gets answered from memory
+    long getHitCount();
+
+    //Number of gets that read the JCR
+    long getMissCount();
+}
@@ -0,0 +1,185 @@
+package com.adobe.training.core.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.sling.api.resource.ValueMap;
+
+import static com.adobe.training.core.StockDataWriterJob.*;
+
+/**
+ * Immutable copy of the trade node of a stock symbol, as it is written by the import jobs
+ * and read by the components. Values missing on the trade node are null.
+ */
+public final class QuoteSnapshot {
+
+    private final String symbol;
+    private final String companyName;
+    private final String sector;
+    private final String timeOfUpdate;
+    private final String dayOfUpdate;
+    private final Double lastTrade;
+    private final Double openPrice;
+    private final Double rangeHigh;
+    private final Double rangeLow;
+    private final Long volume;
+    private final Double upDown;
+    private final Double week52High;
+    private final Double week52Low;
+    private final Double ytdChange;
+    private final Long latestUpdate;
+
+    public QuoteSnapshot(String symbol, String companyName, String sector, String timeOfUpdate, String dayOfUpdate,
+            Double lastTrade, Double openPrice, Double rangeHigh, Double rangeLow, Long volume, Double upDown,
+            Double week52High, Double week52Low, Double ytdChange, Long latestUpdate) {
+        this.symbol = symbol;
+        this.companyName = companyName;
+        this.sector = sector;
+        this.timeOfUpdate = timeOfUpdate;
+        this.dayOfUpdate = dayOfUpdate;
+        this.lastTrade = lastTrade;
+        this.openPrice = openPrice;
+        this.rangeHigh = rangeHigh;
+        this.rangeLow = rangeLow;
+        this.volume = volume;
+        this.upDown = upDown;
+        this.week52High = week52High;
+        this.week52Low = week52Low;
+        this.ytdChange = ytdChange;
+        this.latestUpdate = latestUpdate;
+    }
+
+    //Reads the properties of a /content/stocks/<SYMBOL>/trade node
+    public static QuoteSnapshot fromTrade(String symbol, ValueMap trade) {
+        return new QuoteSnapshot(symbol,
+                trade.get(COMPANY, String.class),
+                trade.get(SECTOR, String.class),
+                trade.get(UPDATETIME, String.class),
+                trade.get(DAYOFUPDATE, String.class),
+                trade.get(LASTTRADE, Double.class),
+                trade.get(OPENPRICE, Double.class),
+                trade.get(RANGEHIGH, Double.class),
+                trade.get(RANGELOW, Double.class),
+                trade.get(VOLUME, Long.class),
+                trade.get(UPDOWN, Double.class),
+                trade.get(WEEK52HIGH, Double.class),
+                trade.get(WEEK52LOW, Double.class),
+                trade.get(YTDCHANGE, Double.class),
+                trade.get(LATESTUPDATE, Long.class));
+    }
+
+    //The trade node properties in the order they are written, missing values are null
+    public Map<String, Object> toTradeProperties() {
+        //Sized for the 14 properties without a resize
+        Map<String, Object> trade = new LinkedHashMap<>(20);
+        trade.put(COMPANY, companyName);
+        trade.put(SECTOR, sector);
+        trade.put(UPDATETIME, timeOfUpdate);
+        trade.put(DAYOFUPDATE, dayOfUpdate);
+        trade.put(LASTTRADE, lastTrade);
+        trade.put(OPENPRICE, openPrice);
+        trade.put(RANGEHIGH, rangeHigh);
+        trade.put(RANGELOW, rangeLow);
+        trade.put(VOLUME, volume);
+        trade.put(UPDOWN, upDown);
+        trade.put(WEEK52HIGH, week52High);
+        trade.put(WEEK52LOW, week52Low);
+        trade.put(YTDCHANGE, ytdChange);
+        trade.put(LATESTUPDATE, latestUpdate);
+        return trade;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public String getCompanyName() {
+        return companyName;
+    }
+
+    public String getSector() {
+        return sector;
+    }
+
+    //e.g. 11:34 AM EDT
+    public String getTimeOfUpdate() {
+        return timeOfUpdate;
+    }
+
+    //e.g. Thu October 14, 2021
+    public String getDayOfUpdate() {
+        return dayOfUpdate;
+    }
+
+    public Double getLastTrade() {
+        return lastTrade;
+    }
+
+    public Double getOpenPrice() {
+        return openPrice;
+    }
+
+    public Double getRangeHigh() {
+        return rangeHigh;
+    }
+
+    public Double getRangeLow() {
+        return rangeLow;
+    }
+
+    public Long getVolume() {
+        return volume;
+    }
+
+    public Double getUpDown() {
+        return upDown;
+    }
+
+    public Double getWeek52High() {
+        return week52High;
+    }
+
+    public Double getWeek52Low() {
+        return week52Low;
+    }
+
+    public Double getYtdChange() {
+        return ytdChange;
+    }
+
+    //Epoch milliseconds of the quote at the data source, null for trade nodes imported before it was stored
+    public Long getLatestUpdate() {
+        return latestUpdate;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof QuoteSnapshot)) {
+            return false;
+        }
+        QuoteSnapshot that = (QuoteSnapshot) other;
+        return Objects.equals(symbol, that.symbol) && Objects.equals(companyName, that.companyName)
+                && Objects.equals(sector, that.sector) && Objects.equals(timeOfUpdate, that.timeOfUpdate)
+                && Objects.equals(dayOfUpdate, that.dayOfUpdate) && Objects.equals(lastTrade, that.lastTrade)
+                && Objects.equals(openPrice, that.openPrice) && Objects.equals(rangeHigh, that.rangeHigh)
+                && Objects.equals(rangeLow, that.rangeLow) && Objects.equals(volume, that.volume)
+                && Objects.equals(upDown, that.upDown) && Objects.equals(week52High, that.week52High)
+                && Objects.equals(week52Low, that.week52Low) && Objects.equals(ytdChange, that.ytdChange)
+                && Objects.equals(latestUpdate, that.latestUpdate);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(symbol, companyName, sector, timeOfUpdate, dayOfUpdate, lastTrade, openPrice, rangeHigh,
+                rangeLow, volume, upDown, week52High, week52Low, ytdChange, latestUpdate);
+    }
+
+    @Override
+    public String toString() {
+        return "QuoteSnapshot[" + symbol + " lastTrade=" + lastTrade + " " + dayOfUpdate + " " + timeOfUpdate + "]";
+    }
+}
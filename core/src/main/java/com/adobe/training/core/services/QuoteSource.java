@@ -0,0 +1,39 @@
+package com.adobe.training.core.services;
+
+import java.io.IOException;
+
+/**
+ * Source of stock quote JSON for the import jobs. Sources are registered as OSGi services and
+ * a job uses the first one that accepts its stock url: StockDataFetcher for http and https,
+ * a local directory of JSON files for file: urls and generated quotes for synthetic: urls.
+ *
+ * The JSON has the fields read by the StockQuoteDecoder.
+ */
+public interface QuoteSource {
+
+    /**
+     * @param baseUrl stock url of an import job
+     * @return true if this source serves quotes for the url
+     */
+    boolean accepts(String baseUrl);
+
+    /**
+     * Get the quote of a symbol. A source may report a quote as NOT_MODIFIED or UNCHANGED
+     * without a body when it did not change since the last fetch.
+     *
+     * @param baseUrl stock url accepted by this source, ending with a slash
+     * @param symbol uppercase stock symbol
+     * @return the quote, with the body when it was modified
+     * @throws java.io.FileNotFoundException if the source does not know the symbol
+     * @throws IOException if the quote could not be read
+     */
+    FetchResult fetch(String baseUrl, String symbol) throws IOException;
+
+    /**
+     * Forget what was remembered about the last quote of a symbol, so the next fetch returns
+     * the full quote. Called when a fetched quote could not be written to the JCR.
+     *
+     * @param symbol uppercase stock symbol
+     */
+    void forget(String symbol);
+}
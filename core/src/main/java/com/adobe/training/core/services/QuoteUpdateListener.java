@@ -0,0 +1,18 @@
+package com.adobe.training.core.services;
+
+import java.util.List;
+
+/**
+ * Whiteboard service notified by the import jobs after quotes were committed to the JCR.
+ * Quotes that did not change are not reported.
+ *
+ * Listeners are called on the import job thread and must return quickly, longer work is
+ * handed to a thread of the listener.
+ */
+public interface QuoteUpdateListener {
+
+    /**
+     * @param quotes the committed snapshots, at most one per symbol
+     */
+    void quotesUpdated(List<QuoteSnapshot> quotes);
+}
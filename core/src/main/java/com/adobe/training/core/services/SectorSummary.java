@@ -0,0 +1,59 @@
+package com.adobe.training.core.services;
+
+/**
+ * Aggregates of the latest quotes of one sector, as computed by the StockScreener.
+ */
+public final class SectorSummary {
+
+    private final String sector;
+    private final int symbolCount;
+    private final long totalVolume;
+    private final Double averageYtdChange;
+    private final int advancing;
+    private final int declining;
+    private final String leader;
+
+    public SectorSummary(String sector, int symbolCount, long totalVolume, Double averageYtdChange, int advancing,
+            int declining, String leader) {
+        this.sector = sector;
+        this.symbolCount = symbolCount;
+        this.totalVolume = totalVolume;
+        this.averageYtdChange = averageYtdChange;
+        this.advancing = advancing;
+        this.declining = declining;
+        this.leader = leader;
+    }
+
+    public String getSector() {
+        return sector;
+    }
+
+    public int getSymbolCount() {
+        return symbolCount;
+    }
+
+    //Sum of the volumes of the symbols that have one
+    public long getTotalVolume() {
+        return totalVolume;
+    }
+
+    //null if no symbol of the sector has a year to date change
+    public Double getAverageYtdChange() {
+        return averageYtdChange;
+    }
+
+    //Symbols with a positive upDown
+    public int getAdvancing() {
+        return advancing;
+    }
+
+    //Symbols with a negative upDown
+    public int getDeclining() {
+        return declining;
+    }
+
+    //Symbol with the highest year to date change, null if none has one
+    public String getLeader() {
+        return leader;
+    }
+}
@@ -0,0 +1,16 @@
+package com.adobe.training.core.services;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request while the circuit breaker of a stock data host is open,
+ * because the recent requests to that host timed out or failed with a server error.
+ */
+public class SourceUnavailableException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SourceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,55 @@
+package com.adobe.training.core.services;
+
+import java.io.IOException;
+
+/**
+ * Quote source for http and https stock urls. One instance is shared by all import job threads
+ * and keeps connections to the data source open between requests.
+ */
+public interface StockDataFetcher extends QuoteSource {
+
+    /**
+     * Request the quote of a symbol. The url requested is baseUrl + symbol + ".json"
+     *
+     * The ETag, Last-Modified and a hash of the content of the last response are remembered per
+     * symbol and sent as a conditional request, so an unchanged quote is reported as
+     * NOT_MODIFIED or UNCHANGED without a body.
+     *
+     * Requests that time out or get a server error are retried with backoff before failing.
+     *
+     * @param baseUrl url of the stock data source, ending with a slash
+     * @param symbol uppercase stock symbol
+     * @return the response, with the body when the quote was modified
+     * @throws java.io.FileNotFoundException if the data source does not know the symbol
+     * @throws SourceUnavailableException if the data source failed repeatedly and is not requested for now
+     * @throws IOException if the request failed or timed out
+     */
+    @Override
+    FetchResult fetch(String baseUrl, String symbol) throws IOException;
+
+    /**
+     * Forget the remembered validators of a symbol, so the next fetch returns the full quote.
+     *
+     * @param symbol uppercase stock symbol
+     */
+    @Override
+    void forget(String symbol);
+
+    //Number of requests sent to the data source
+    long getRequestCount();
+
+    //Number of requests sent again after a timeout or server error
+    long getRetryCount();
+
+    //Number of fetches rejected without a request because the data source was failing
+    long getShortCircuitCount();
+
+    //Number of new connections opened, every request on another connection reused a pooled one
+    long getConnectionCount();
+
+    //Number of TLS handshakes, one for every new https connection
+    long getHandshakeCount();
+
+    //Number of requests that were sent on an already open connection
+    long getConnectionReuseCount();
+}
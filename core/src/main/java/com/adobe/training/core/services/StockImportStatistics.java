@@ -0,0 +1,58 @@
+package com.adobe.training.core.services;
+
+/**
+ * Counters of the stock import, shared by the single symbol and the batch import jobs.
+ * Shows how much parsing and JCR writing the conditional requests and the
+ * diff against the persisted trade values save, and how long each stage of an import takes.
+ */
+public interface StockImportStatistics {
+
+    //Timed stages of the import jobs
+    enum Stage {
+        //From the creation of a job until a queue thread started it
+        QUEUE_WAIT,
+        //Requesting one quote, including retries and waiting for a request token
+        FETCH,
+        //Decoding one quote
+        PARSE,
+        //Setting the trade properties, price history and candles of one quote
+        WRITE,
+        //Waiting for a commit token of the import rate limiter
+        COMMIT_WAIT,
+        //One commit of the JCR session
+        COMMIT
+    }
+
+    //Record how long a stage took
+    void recordTime(Stage stage, long nanos);
+
+    //Count a quote that was requested from the data source
+    void recordFetch(FetchResult.Status status);
+
+    //Count quotes written to the JCR
+    void recordWritten(int symbols);
+
+    //Count the trade properties of a decoded quote and how many of them differed from the JCR
+    void recordProperties(int received, int written);
+
+    //Quotes skipped because the data source answered 304 Not Modified
+    long getNotModifiedCount();
+
+    //Quotes skipped because the data source sent the same content again
+    long getUnchangedCount();
+
+    //Quotes skipped without parsing or writing, the sum of not modified and unchanged
+    long getSkippedCount();
+
+    //Quotes written to the JCR
+    long getWrittenCount();
+
+    //Decoded quotes whose values were all already persisted, no commit was needed
+    long getIdenticalCount();
+
+    //Trade properties decoded from quotes
+    long getPropertiesReceivedCount();
+
+    //Trade properties set on the JCR, the write amplification is written / received
+    long getPropertiesWrittenCount();
+}
@@ -0,0 +1,27 @@
+package com.adobe.training.core.services;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * The pages that show a stock symbol, from the symbol property of their Stockplex components.
+ * The index is built when it starts and kept up to date from page changes, so the pages of an
+ * updated quote can be flushed from the dispatcher cache without flushing every page.
+ */
+public interface StockPageIndex {
+
+    /**
+     * @param symbol stock symbol in any case
+     * @return unmodifiable copy of the paths of the pages with a Stockplex component of the symbol
+     */
+    Set<String> getPages(String symbol);
+
+    /**
+     * @param symbols stock symbols in any case
+     * @return the pages of all symbols, every page once in the order of the symbols
+     */
+    Set<String> getPages(Collection<String> symbols);
+
+    //Number of pages with at least one Stockplex component
+    int getPageCount();
+}
@@ -0,0 +1,164 @@
+package com.adobe.training.core.services;
+
+import java.util.Objects;
+
+import com.adobe.training.core.StockDataWriterJob;
+
+/**
+ * Immutable screener query over the trade nodes: optional filters, one sort order and a page.
+ * Every with method returns a copy, e.g.
+ *
+ * StockQuery.all().withSector("Technology").withMinVolume(1000000L).sortBy(SortField.YTD_CHANGE, true).page(0, 25)
+ *
+ * Range bounds are inclusive and null leaves that side open.
+ */
+public final class StockQuery {
+
+    public static final int DEFAULT_LIMIT = 50;
+
+    //Trade node properties a screener can sort by, all of them are ordered in the stock index
+    public enum SortField {
+        COMPANY_NAME(StockDataWriterJob.COMPANY),
+        SECTOR(StockDataWriterJob.SECTOR),
+        LAST_TRADE(StockDataWriterJob.LASTTRADE),
+        YTD_CHANGE(StockDataWriterJob.YTDCHANGE),
+        VOLUME(StockDataWriterJob.VOLUME);
+
+        private final String property;
+
+        SortField(String property) {
+            this.property = property;
+        }
+
+        public String getProperty() {
+            return property;
+        }
+    }
+
+    private static final StockQuery ALL = new StockQuery(null, null, null, null, null, null, null,
+            SortField.COMPANY_NAME, false, 0, DEFAULT_LIMIT);
+
+    private final String sector;
+    private final String companyPrefix;
+    private final Double minLastTrade;
+    private final Double maxLastTrade;
+    private final Double minYtdChange;
+    private final Double maxYtdChange;
+    private final Long minVolume;
+    private final SortField sortField;
+    private final boolean descending;
+    private final int offset;
+    private final int limit;
+
+    private StockQuery(String sector, String companyPrefix, Double minLastTrade, Double maxLastTrade,
+            Double minYtdChange, Double maxYtdChange, Long minVolume, SortField sortField, boolean descending,
+            int offset, int limit) {
+        this.sector = sector;
+        this.companyPrefix = companyPrefix;
+        this.minLastTrade = minLastTrade;
+        this.maxLastTrade = maxLastTrade;
+        this.minYtdChange = minYtdChange;
+        this.maxYtdChange = maxYtdChange;
+        this.minVolume = minVolume;
+        this.sortField = sortField;
+        this.descending = descending;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    //All trade nodes by company name, first page
+    public static StockQuery all() {
+        return ALL;
+    }
+
+    public StockQuery withSector(String sector) {
+        return new StockQuery(sector, companyPrefix, minLastTrade, maxLastTrade, minYtdChange, maxYtdChange,
+                minVolume, sortField, descending, offset, limit);
+    }
+
+    //Company names starting with the prefix, case-sensitive
+    public StockQuery withCompanyPrefix(String companyPrefix) {
+        return new StockQuery(sector, companyPrefix, minLastTrade, maxLastTrade, minYtdChange, maxYtdChange,
+                minVolume, sortField, descending, offset, limit);
+    }
+
+    public StockQuery withLastTrade(Double min, Double max) {
+        return new StockQuery(sector, companyPrefix, min, max, minYtdChange, maxYtdChange,
+                minVolume, sortField, descending, offset, limit);
+    }
+
+    //Fractions as stored on the trade node, e.g. -0.05 for -5%
+    public StockQuery withYtdChange(Double min, Double max) {
+        return new StockQuery(sector, companyPrefix, minLastTrade, maxLastTrade, min, max,
+                minVolume, sortField, descending, offset, limit);
+    }
+
+    public StockQuery withMinVolume(Long minVolume) {
+        return new StockQuery(sector, companyPrefix, minLastTrade, maxLastTrade, minYtdChange, maxYtdChange,
+                minVolume, sortField, descending, offset, limit);
+    }
+
+    public StockQuery sortBy(SortField sortField, boolean descending) {
+        return new StockQuery(sector, companyPrefix, minLastTrade, maxLastTrade, minYtdChange, maxYtdChange,
+                minVolume, Objects.requireNonNull(sortField), descending, offset, limit);
+    }
+
+    public StockQuery page(int offset, int limit) {
+        if (offset < 0 || limit < 1) {
+            throw new IllegalArgumentException("Invalid page, offset " + offset + " limit " + limit);
+        }
+        return new StockQuery(sector, companyPrefix, minLastTrade, maxLastTrade, minYtdChange, maxYtdChange,
+                minVolume, sortField, descending, offset, limit);
+    }
+
+    public String getSector() {
+        return sector;
+    }
+
+    public String getCompanyPrefix() {
+        return companyPrefix;
+    }
+
+    public Double getMinLastTrade() {
+        return minLastTrade;
+    }
+
+    public Double getMaxLastTrade() {
+        return maxLastTrade;
+    }
+
+    public Double getMinYtdChange() {
+        return minYtdChange;
+    }
+
+    public Double getMaxYtdChange() {
+        return maxYtdChange;
+    }
+
+    public Long getMinVolume() {
+        return minVolume;
+    }
+
+    public SortField getSortField() {
+        return sortField;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return "StockQuery[sector=" + sector + " company=" + companyPrefix + " lastTrade=" + minLastTrade + ".."
+                + maxLastTrade + " ytdChange=" + minYtdChange + ".." + maxYtdChange + " minVolume=" + minVolume
+                + " sort=" + sortField + (descending ? " desc" : " asc") + " offset=" + offset + " limit=" + limit + "]";
+    }
+}
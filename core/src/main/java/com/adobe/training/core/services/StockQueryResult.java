@@ -0,0 +1,34 @@
+package com.adobe.training.core.services;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a screener query. The total number of matches is not counted, that would read
+ * every match, hasMore tells whether a next page exists.
+ */
+public final class StockQueryResult {
+
+    private final List<QuoteSnapshot> quotes;
+    private final int offset;
+    private final boolean hasMore;
+
+    public StockQueryResult(List<QuoteSnapshot> quotes, int offset, boolean hasMore) {
+        this.quotes = Collections.unmodifiableList(quotes);
+        this.offset = offset;
+        this.hasMore = hasMore;
+    }
+
+    //Quotes of the page in the order of the query
+    public List<QuoteSnapshot> getQuotes() {
+        return quotes;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
@@ -0,0 +1,18 @@
+package com.adobe.training.core.services;
+
+import org.apache.sling.api.resource.ResourceResolver;
+
+/**
+ * Screener queries over the trade nodes of the imported stock symbols. Filters, sort order and
+ * paging are answered by the wetrainStockTrade index, so a page is read without traversing
+ * /content/stocks.
+ */
+public interface StockQueryService {
+
+    /**
+     * @param resourceResolver resolver that can read below /content/stocks
+     * @param query filters, sort order and page
+     * @return the page of matching quotes, empty if the query fails
+     */
+    StockQueryResult search(ResourceResolver resourceResolver, StockQuery query);
+}
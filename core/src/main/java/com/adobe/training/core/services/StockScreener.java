@@ -0,0 +1,30 @@
+package com.adobe.training.core.services;
+
+import java.util.List;
+
+/**
+ * In memory screener over the latest quote of every imported symbol, for market overviews such
+ * as the top gainers or the highest volumes of a sector. It answers the same queries as the
+ * StockQueryService without repository access.
+ */
+public interface StockScreener {
+
+    /**
+     * @param query filters, sort order and page. Quotes missing the sort value are sorted last
+     * @return the page of matching quotes
+     * @throws IllegalArgumentException if the offset is beyond the quotes the screener pages through
+     */
+    StockQueryResult search(StockQuery query);
+
+    /**
+     * @param filter filters of the symbols to aggregate, its sort order and page are ignored
+     * @return one summary per sector with matching symbols, ordered by sector name
+     */
+    List<SectorSummary> getSectorSummaries(StockQuery filter);
+
+    //Number of symbols
+    int size();
+
+    //Changes with every update of the quotes, e.g. for ETags
+    long getVersion();
+}
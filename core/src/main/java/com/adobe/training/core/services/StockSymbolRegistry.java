@@ -0,0 +1,37 @@
+package com.adobe.training.core.services;
+
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The stock symbols imported on schedule. The registry is filled from the symbol folders below
+ * /content/stocks when it starts and kept up to date by the StockListener, so adding or removing
+ * a symbol does not create or delete any OSGi configuration.
+ */
+public interface StockSymbolRegistry {
+
+    /**
+     * Form of every stock symbol and symbol folder name, e.g. GE or BRK.B. Symbols start with a
+     * letter or digit, so they are always a single node name below /content/stocks.
+     */
+    Pattern SYMBOL = Pattern.compile("[A-Z0-9][A-Z0-9.\\-]{0,9}");
+
+    /**
+     * @param symbol uppercase stock symbol
+     * @return true if the symbol was added, false if it was already registered or is not a valid symbol
+     */
+    boolean add(String symbol);
+
+    /**
+     * @param symbol uppercase stock symbol
+     * @return true if the symbol was registered
+     */
+    boolean remove(String symbol);
+
+    boolean contains(String symbol);
+
+    //Unmodifiable sorted copy of the registered symbols
+    Set<String> getSymbols();
+
+    int size();
+}
@@ -0,0 +1,148 @@
+package com.adobe.training.core.services.impl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary layout of a candle chunk: fixed size big endian records ordered by bucket start of
+ * start, open time, close time (longs), open, high, low, close (doubles), volume, open volume
+ * and close volume (longs).
+ */
+final class CandleChunk {
+
+	static final int CANDLE_BYTES = 80;
+	static final byte[] EMPTY = new byte[0];
+
+	private static final int START = 0;
+	private static final int OPEN_TIME = 8;
+	private static final int CLOSE_TIME = 16;
+	private static final int OPEN = 24;
+	private static final int HIGH = 32;
+	private static final int LOW = 40;
+	private static final int CLOSE = 48;
+	private static final int VOLUME = 56;
+	private static final int OPEN_VOLUME = 64;
+	private static final int CLOSE_VOLUME = 72;
+
+	private CandleChunk() {
+	}
+
+	static int count(byte[] chunk) {
+		return chunk.length / CANDLE_BYTES;
+	}
+
+	//Index of the first candle starting at or after the given time, count(chunk) if there is none
+	static int indexOf(byte[] chunk, long start) {
+		ByteBuffer buffer = ByteBuffer.wrap(chunk);
+		int low = 0;
+		int high = count(chunk);
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (buffer.getLong(middle * CANDLE_BYTES + START) < start) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	static boolean hasStart(byte[] chunk, int index, long start) {
+		return index < count(chunk) && ByteBuffer.wrap(chunk).getLong(index * CANDLE_BYTES + START) == start;
+	}
+
+	//Returns a new chunk with a candle of a single tick inserted at the index
+	static byte[] insert(byte[] chunk, int index, long start, long time, double price, long volume) {
+		byte[] grown = new byte[chunk.length + CANDLE_BYTES];
+		int position = index * CANDLE_BYTES;
+		System.arraycopy(chunk, 0, grown, 0, position);
+		System.arraycopy(chunk, position, grown, position + CANDLE_BYTES, chunk.length - position);
+		ByteBuffer.wrap(grown)
+				.putLong(position + START, start)
+				.putLong(position + OPEN_TIME, time)
+				.putLong(position + CLOSE_TIME, time)
+				.putDouble(position + OPEN, price)
+				.putDouble(position + HIGH, price)
+				.putDouble(position + LOW, price)
+				.putDouble(position + CLOSE, price)
+				.putLong(position + VOLUME, volume)
+				.putLong(position + OPEN_VOLUME, volume)
+				.putLong(position + CLOSE_VOLUME, volume);
+		return grown;
+	}
+
+	/**
+	 * Adds a tick to the candle at the index, in place. Ticks are ordered by time, then by the
+	 * cumulative volume of the day, which only grows, and then by price. Open and close only move
+	 * to a strictly earlier or later tick in that order, high, low and the cumulative volume keep
+	 * their extremes, so applying the same ticks in any order or more than once gives the same candle.
+	 *
+	 * @return true if the candle changed
+	 */
+	static boolean merge(byte[] chunk, int index, long time, double price, long volume) {
+		ByteBuffer buffer = ByteBuffer.wrap(chunk);
+		int position = index * CANDLE_BYTES;
+		boolean changed = false;
+		if (compare(time, volume, price, buffer.getLong(position + OPEN_TIME), buffer.getLong(position + OPEN_VOLUME),
+				buffer.getDouble(position + OPEN)) < 0) {
+			buffer.putLong(position + OPEN_TIME, time).putDouble(position + OPEN, price)
+					.putLong(position + OPEN_VOLUME, volume);
+			changed = true;
+		}
+		if (compare(time, volume, price, buffer.getLong(position + CLOSE_TIME), buffer.getLong(position + CLOSE_VOLUME),
+				buffer.getDouble(position + CLOSE)) > 0) {
+			buffer.putLong(position + CLOSE_TIME, time).putDouble(position + CLOSE, price)
+					.putLong(position + CLOSE_VOLUME, volume);
+			changed = true;
+		}
+		if (price > buffer.getDouble(position + HIGH)) {
+			buffer.putDouble(position + HIGH, price);
+			changed = true;
+		}
+		if (price < buffer.getDouble(position + LOW)) {
+			buffer.putDouble(position + LOW, price);
+			changed = true;
+		}
+		if (volume > buffer.getLong(position + VOLUME)) {
+			buffer.putLong(position + VOLUME, volume);
+			changed = true;
+		}
+		return changed;
+	}
+
+	private static int compare(long time, long volume, double price, long otherTime, long otherVolume,
+			double otherPrice) {
+		if (time != otherTime) {
+			return Long.compare(time, otherTime);
+		}
+		if (volume != otherVolume) {
+			return Long.compare(volume, otherVolume);
+		}
+		return Double.compare(price, otherPrice);
+	}
+
+	/**
+	 * Copies the candles starting from the inclusive start to the exclusive end time into the arrays.
+	 *
+	 * @return the offset after the last copied candle
+	 */
+	static int copy(byte[] chunk, long from, long to, long[] starts, double[] opens, double[] highs,
+			double[] lows, double[] closes, long[] volumes, int offset) {
+		ByteBuffer buffer = ByteBuffer.wrap(chunk);
+		int count = count(chunk);
+		for (int index = indexOf(chunk, from); index < count; index++) {
+			int position = index * CANDLE_BYTES;
+			long start = buffer.getLong(position + START);
+			if (start >= to) {
+				break;
+			}
+			starts[offset] = start;
+			opens[offset] = buffer.getDouble(position + OPEN);
+			highs[offset] = buffer.getDouble(position + HIGH);
+			lows[offset] = buffer.getDouble(position + LOW);
+			closes[offset] = buffer.getDouble(position + CLOSE);
+			volumes[offset] = buffer.getLong(position + VOLUME);
+			offset++;
+		}
+		return offset;
+	}
+}
@@ -0,0 +1,95 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker for one stock data host. After "failureThreshold" failed requests in a row
+ * the circuit opens and requests are rejected without being sent. Once the open time is over a
+ * single probe request is let through: when it succeeds the circuit closes, when it fails the
+ * circuit opens again for twice as long, up to the max open time.
+ */
+final class CircuitBreaker {
+
+	enum State { CLOSED, OPEN, HALF_OPEN }
+
+	private final int failureThreshold;
+	private final long openMillis;
+	private final long maxOpenMillis;
+	private final LongSupplier clock;
+
+	private State state = State.CLOSED;
+	private int failures;
+	private long currentOpenMillis;
+	private long openUntil;
+	private boolean probing;
+
+	CircuitBreaker(int failureThreshold, long openMillis, long maxOpenMillis) {
+		this(failureThreshold, openMillis, maxOpenMillis, System::currentTimeMillis);
+	}
+
+	CircuitBreaker(int failureThreshold, long openMillis, long maxOpenMillis, LongSupplier clock) {
+		this.failureThreshold = Math.max(1, failureThreshold);
+		this.openMillis = Math.max(1, openMillis);
+		this.maxOpenMillis = Math.max(this.openMillis, maxOpenMillis);
+		this.clock = clock;
+		this.currentOpenMillis = this.openMillis;
+	}
+
+	/**
+	 * @return true if a request may be sent, its outcome has to be reported with onSuccess or onFailure
+	 */
+	synchronized boolean tryAcquire() {
+		switch (state) {
+			case CLOSED:
+				return true;
+			case OPEN:
+				if (clock.getAsLong() < openUntil) {
+					return false;
+				}
+				state = State.HALF_OPEN;
+				probing = true;
+				return true;
+			default:
+				//Only one probe at a time while half open
+				if (probing) {
+					return false;
+				}
+				probing = true;
+				return true;
+		}
+	}
+
+	//The host answered, even with a permanent error like 404
+	synchronized void onSuccess() {
+		state = State.CLOSED;
+		failures = 0;
+		probing = false;
+		currentOpenMillis = openMillis;
+	}
+
+	//The request timed out, could not connect or got a server error
+	synchronized void onFailure() {
+		if (state == State.HALF_OPEN) {
+			currentOpenMillis = Math.min(maxOpenMillis, currentOpenMillis * 2);
+			open();
+		} else if (state == State.CLOSED && ++failures >= failureThreshold) {
+			open();
+		}
+	}
+
+	//A request was let through but not sent, e.g. the thread was interrupted
+	synchronized void release() {
+		probing = false;
+	}
+
+	synchronized State getState() {
+		return state;
+	}
+
+	private void open() {
+		state = State.OPEN;
+		probing = false;
+		failures = 0;
+		openUntil = clock.getAsLong() + currentOpenMillis;
+	}
+}
@@ -0,0 +1,381 @@
+package com.adobe.training.core.services.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.QuoteUpdateListener;
+import com.adobe.training.core.services.StockPageIndex;
+
+/**
+ * Flushes the pages that show an updated quote from the dispatcher cache.
+ *
+ * The pages of the symbols committed by an import batch are looked up in the StockPageIndex and
+ * collected for a short delay, so the single symbol jobs of one import run end up in the same
+ * flush round and a page showing several updated symbols is flushed once. Every page is sent with
+ * CQ-Action-Scope ResourceOnly, which removes the cached files of that page without touching the
+ * stat files and so without invalidating the rest of the cache. Handles are mapped with the
+ * resource resolver mappings, so they match the paths the dispatcher cached. When more pages are
+ * affected than the configured maximum, the round invalidates the content roots instead.
+ *
+ * Requests that fail are queued for the next round, which waits twice as long after every round
+ * with failures. A path that failed "Flush Attempts" times is dropped and counted. Without
+ * dispatcher urls nothing is flushed, each environment configures its own.
+ */
+@Component(immediate = true,
+		service = {QuoteUpdateListener.class, DispatcherInvalidatorMBean.class},
+		property = "jmx.objectname=com.adobe.training:type=DispatcherInvalidator")
+@Designate(ocd = DispatcherInvalidator.Configuration.class)
+public class DispatcherInvalidator implements QuoteUpdateListener, DispatcherInvalidatorMBean {
+
+	static final String ACTION = "CQ-Action";
+	static final String HANDLE = "CQ-Handle";
+	static final String SCOPE = "CQ-Action-Scope";
+	static final String RESOURCE_ONLY = "ResourceOnly";
+
+	//The delay after failed rounds doubles up to 64 times the flush delay
+	private static final int MAX_BACKOFF_SHIFT = 6;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@ObjectClassDefinition(name = "Training Dispatcher Stock Page Invalidator")
+	public @interface Configuration {
+		@AttributeDefinition(
+				name = "Dispatcher Flush URLs",
+				description = "Invalidation urls of the dispatchers, e.g. http://localhost:80/dispatcher/invalidate.cache. Nothing is flushed without one"
+		)
+		String[] dispatcher_urls() default {};
+
+		@AttributeDefinition(
+				name = "Flush Delay",
+				description = "Milliseconds the pages of updated quotes are collected before they are flushed together",
+				type = AttributeType.INTEGER
+		)
+		int flush_delay() default 1000;
+
+		@AttributeDefinition(
+				name = "Max Pages",
+				description = "Pages flushed one by one per round. Beyond this the content roots are invalidated instead",
+				type = AttributeType.INTEGER
+		)
+		int max_pages() default 500;
+
+		@AttributeDefinition(
+				name = "Content Roots",
+				description = "Invalidated when more than the max pages are affected"
+		)
+		String[] content_roots() default {"/content/wetrain"};
+
+		@AttributeDefinition(
+				name = "Timeout",
+				description = "Milliseconds to connect to a dispatcher and to wait for its response",
+				type = AttributeType.INTEGER
+		)
+		int timeout() default 5000;
+
+		@AttributeDefinition(
+				name = "Flush Attempts",
+				description = "Rounds a path is sent in before it is dropped when its flush keeps failing",
+				type = AttributeType.INTEGER
+		)
+		int max_attempts() default 5;
+	}
+
+	@Reference
+	private StockPageIndex pageIndex;
+
+	@Reference
+	private ResourceResolverFactory resourceResolverFactory;
+
+	//Pages waiting for the next round in arrival order with their failed attempts, guarded by the map itself
+	private final Map<String, Integer> pending = new LinkedHashMap<>();
+	private boolean flushScheduled;
+	private int failedRounds;
+
+	private ScheduledExecutorService executor;
+	private CloseableHttpClient httpClient;
+	private String[] dispatcherUrls;
+	private String[] contentRoots;
+	private long flushDelayMillis;
+	private int maxPages;
+	private int maxAttempts;
+
+	private final AtomicLong affected = new AtomicLong();
+	private final AtomicLong deduplicated = new AtomicLong();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong broadFlushes = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile int lastRoundSize;
+	private volatile long lastRoundMillis;
+
+	@Activate @Modified
+	protected void activate(Configuration config) {
+		deactivate();
+		dispatcherUrls = config.dispatcher_urls();
+		contentRoots = config.content_roots();
+		flushDelayMillis = Math.max(0, config.flush_delay());
+		maxPages = Math.max(1, config.max_pages());
+		maxAttempts = Math.max(1, config.max_attempts());
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(config.timeout())
+				.setSocketTimeout(config.timeout())
+				.setConnectionRequestTimeout(config.timeout())
+				.build();
+		//Flushing a page twice does no harm, so a request sent on a connection the dispatcher already
+		//closed is sent once more
+		httpClient = HttpClients.custom()
+				.setDefaultRequestConfig(requestConfig)
+				.setRetryHandler(new DefaultHttpRequestRetryHandler(1, true))
+				.disableCookieManagement()
+				.build();
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "dispatcher-invalidator");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Deactivate
+	protected void deactivate() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		if (httpClient != null) {
+			try {
+				httpClient.close();
+			} catch (IOException e) {
+				logger.warn("Could not close the dispatcher http client", e);
+			}
+			httpClient = null;
+		}
+		synchronized (pending) {
+			pending.clear();
+			flushScheduled = false;
+			failedRounds = 0;
+		}
+	}
+
+	@Override
+	public void quotesUpdated(List<QuoteSnapshot> quotes) {
+		if (dispatcherUrls == null || dispatcherUrls.length == 0) {
+			return;
+		}
+		List<String> symbols = new ArrayList<>(quotes.size());
+		for (QuoteSnapshot quote : quotes) {
+			symbols.add(quote.getSymbol());
+		}
+		Set<String> pages = pageIndex.getPages(symbols);
+		affected.addAndGet(pages.size());
+		queue(pages);
+	}
+
+	/**
+	 * Sends the pending pages to every dispatcher. Runs on the thread of the invalidator, tests
+	 * call it directly.
+	 */
+	void flush() {
+		Map<String, Integer> attempts;
+		synchronized (pending) {
+			attempts = new LinkedHashMap<>(pending);
+			pending.clear();
+			flushScheduled = false;
+		}
+		if (attempts.isEmpty()) {
+			return;
+		}
+		List<String> pages = new ArrayList<>(attempts.keySet());
+		long start = System.currentTimeMillis();
+		boolean broad = pages.size() > maxPages;
+		List<String> paths = broad ? Arrays.asList(contentRoots) : pages;
+		Map<String, String> handles = handles(paths);
+
+		Set<String> failed = new LinkedHashSet<>();
+		for (String dispatcherUrl : dispatcherUrls) {
+			for (String path : paths) {
+				if (!invalidate(dispatcherUrl, handles.get(path), !broad)) {
+					failed.add(path);
+				}
+			}
+		}
+		if (broad) {
+			broadFlushes.incrementAndGet();
+			logger.info("{} pages of updated quotes, invalidated the content roots instead", pages.size());
+			//A failed broad flush is repeated with the pages, which exceed the maximum again
+			if (!failed.isEmpty()) {
+				failed = new LinkedHashSet<>(pages);
+			}
+		}
+		lastRoundSize = pages.size();
+		lastRoundMillis = System.currentTimeMillis() - start;
+		Map<String, Integer> retries = new LinkedHashMap<>();
+		List<String> droppedPaths = new ArrayList<>();
+		for (String path : failed) {
+			int attempt = attempts.get(path) + 1;
+			if (attempt < maxAttempts) {
+				retries.put(path, attempt);
+			} else {
+				droppedPaths.add(path);
+			}
+		}
+		if (!droppedPaths.isEmpty()) {
+			dropped.addAndGet(droppedPaths.size());
+			logger.error("Dropped {} after {} failed flush attempts", droppedPaths, maxAttempts);
+		}
+		if (!retries.isEmpty()) {
+			logger.warn("Could not flush {} of {} paths, they are flushed with the next round", retries.size(),
+					paths.size());
+		}
+		synchronized (pending) {
+			failedRounds = failed.isEmpty() ? 0 : failedRounds + 1;
+			for (Map.Entry<String, Integer> retry : retries.entrySet()) {
+				pending.merge(retry.getKey(), retry.getValue(), Math::max);
+			}
+			schedule();
+		}
+	}
+
+	private void queue(Set<String> pages) {
+		synchronized (pending) {
+			for (String page : pages) {
+				if (pending.putIfAbsent(page, 0) != null) {
+					deduplicated.incrementAndGet();
+				}
+			}
+			schedule();
+		}
+	}
+
+	//Called while holding the pending lock
+	private void schedule() {
+		if (!pending.isEmpty() && !flushScheduled && executor != null) {
+			flushScheduled = true;
+			long delay = flushDelayMillis << Math.min(failedRounds, MAX_BACKOFF_SHIFT);
+			executor.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	//The paths as the dispatcher sees them, e.g. without the /content/wetrain prefix on publish
+	private Map<String, String> handles(List<String> paths) {
+		Map<String, String> handles = new HashMap<>();
+		//Get the service user (training-user) that belongs to the training.core:training subservice
+		Map<String, Object> serviceParams = new HashMap<>();
+		serviceParams.put(ResourceResolverFactory.SUBSERVICE, "training");
+		try (ResourceResolver resourceResolver = resourceResolverFactory.getServiceResourceResolver(serviceParams)) {
+			for (String path : paths) {
+				String handle = resourceResolver.map(path);
+				//A content root mapped to the server root
+				handles.put(path, handle.isEmpty() ? "/" : handle);
+			}
+		} catch (LoginException e) {
+			logger.warn("Cannot map the paths to flush, flushing the repository paths", e);
+			for (String path : paths) {
+				handles.put(path, path);
+			}
+		}
+		return handles;
+	}
+
+	private boolean invalidate(String dispatcherUrl, String handle, boolean resourceOnly) {
+		HttpPost request = new HttpPost(dispatcherUrl);
+		request.setHeader(ACTION, "Activate");
+		request.setHeader(HANDLE, handle);
+		if (resourceOnly) {
+			request.setHeader(SCOPE, RESOURCE_ONLY);
+		}
+		requests.incrementAndGet();
+		try (CloseableHttpResponse response = httpClient.execute(request)) {
+			EntityUtils.consume(response.getEntity());
+			int status = response.getStatusLine().getStatusCode();
+			if (status >= 200 && status < 300) {
+				return true;
+			}
+			logger.warn("Dispatcher {} answered {} to the flush of {}", dispatcherUrl, status, handle);
+		} catch (IOException e) {
+			logger.warn("Cannot flush {} from dispatcher {}: {}", handle, dispatcherUrl, e.getMessage());
+		}
+		failures.incrementAndGet();
+		return false;
+	}
+
+	@Override
+	public long getAffectedPageCount() {
+		return affected.get();
+	}
+
+	@Override
+	public long getDeduplicatedCount() {
+		return deduplicated.get();
+	}
+
+	@Override
+	public long getFlushRequestCount() {
+		return requests.get();
+	}
+
+	@Override
+	public long getFailedRequestCount() {
+		return failures.get();
+	}
+
+	@Override
+	public long getBroadFlushCount() {
+		return broadFlushes.get();
+	}
+
+	@Override
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	@Override
+	public int getPendingCount() {
+		synchronized (pending) {
+			return pending.size();
+		}
+	}
+
+	@Override
+	public int getLastRoundSize() {
+		return lastRoundSize;
+	}
+
+	@Override
+	public long getLastRoundMillis() {
+		return lastRoundMillis;
+	}
+}
@@ -0,0 +1,30 @@
+package com.adobe.training.core.services.impl;
+
+/**
+ * Counters of the dispatcher flushes for updated quotes, registered as
+ * com.adobe.training:type=DispatcherInvalidator
+ */
+public interface DispatcherInvalidatorMBean {
+
+    //Pages of updated symbols, counted once per quote update
+    long getAffectedPageCount();
+
+    //Affected pages that were already waiting for the next flush
+    long getDeduplicatedCount();
+
+    long getFlushRequestCount();
+
+    long getFailedRequestCount();
+
+    //Rounds that flushed the content roots because too many pages were affected
+    long getBroadFlushCount();
+
+    //Paths given up on after their flush failed in every attempt
+    long getDroppedCount();
+
+    int getPendingCount();
+
+    int getLastRoundSize();
+
+    long getLastRoundMillis();
+}
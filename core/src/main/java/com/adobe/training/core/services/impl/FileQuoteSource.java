@@ -0,0 +1,106 @@
+package com.adobe.training.core.services.impl;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.osgi.service.component.annotations.Component;
+
+import com.adobe.training.core.services.FetchResult;
+import com.adobe.training.core.services.QuoteSource;
+
+/**
+ * Quote source for file: stock urls, reading &lt;SYMBOL&gt;.json from a local directory, e.g.
+ * file:/data/stock-data/. No network and no rate limit is involved, so it can be used to load
+ * test the import on a laptop.
+ *
+ * A file is memory mapped and copied in one go. Its modification time and size are remembered
+ * per symbol, an unchanged file is reported as NOT_MODIFIED. Update the files by moving new
+ * ones into place, a file that shrinks while it is mapped cannot be read.
+ */
+@Component(service = QuoteSource.class)
+public class FileQuoteSource implements QuoteSource {
+
+	static final String SCHEME = "file:";
+
+	//Modification time and size of the last file read per symbol
+	private final Map<String, FileVersion> versions = new ConcurrentHashMap<>();
+
+	@Override
+	public boolean accepts(String baseUrl) {
+		return baseUrl.startsWith(SCHEME);
+	}
+
+	@Override
+	public FetchResult fetch(String baseUrl, String symbol) throws IOException {
+		Path file;
+		try {
+			file = Paths.get(URI.create(baseUrl + symbol + ".json"));
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Not a file url: " + baseUrl, e);
+		}
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			versions.remove(symbol);
+			throw new FileNotFoundException(file.toString());
+		}
+
+		FileVersion version = new FileVersion(file, attributes.lastModifiedTime().toMillis(), attributes.size());
+		if (version.equals(versions.put(symbol, version))) {
+			return FetchResult.notModified();
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			byte[] body = new byte[buffer.remaining()];
+			buffer.get(body);
+			return FetchResult.modified(body);
+		} catch (IOException e) {
+			versions.remove(symbol);
+			throw e;
+		}
+	}
+
+	@Override
+	public void forget(String symbol) {
+		versions.remove(symbol);
+	}
+
+	private static final class FileVersion {
+		private final Path file;
+		private final long lastModified;
+		private final long size;
+
+		FileVersion(Path file, long lastModified, long size) {
+			this.file = file;
+			this.lastModified = lastModified;
+			this.size = size;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof FileVersion)) {
+				return false;
+			}
+			FileVersion version = (FileVersion) other;
+			return file.equals(version.file) && lastModified == version.lastModified && size == version.size;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(file, lastModified, size);
+		}
+	}
+}
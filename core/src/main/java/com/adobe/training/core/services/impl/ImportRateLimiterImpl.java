@@ -0,0 +1,90 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import com.adobe.training.core.services.ImportRateLimiter;
+
+/**
+ * ImportRateLimiter with one TokenBucket for requests and one for commits. The burst lets a few
+ * calls through at once after an idle period, beyond that calls are spaced at the configured rate.
+ */
+@Component(service = ImportRateLimiter.class)
+@Designate(ocd = ImportRateLimiterImpl.Configuration.class)
+public class ImportRateLimiterImpl implements ImportRateLimiter {
+
+	@ObjectClassDefinition(name = "Training Import Rate Limiter")
+	public @interface Configuration {
+		@AttributeDefinition(
+				name = "Requests per Second",
+				description = "Requests sent to the stock data source per second by all import threads",
+				type = AttributeType.DOUBLE
+		)
+		double requests_per_second() default 50;
+
+		@AttributeDefinition(
+				name = "Request Burst",
+				description = "Requests sent at once after an idle period",
+				type = AttributeType.INTEGER
+		)
+		int request_burst() default 10;
+
+		@AttributeDefinition(
+				name = "Commits per Second",
+				description = "JCR commits of imported quotes per second",
+				type = AttributeType.DOUBLE
+		)
+		double commits_per_second() default 20;
+
+		@AttributeDefinition(
+				name = "Commit Burst",
+				description = "Commits made at once after an idle period",
+				type = AttributeType.INTEGER
+		)
+		int commit_burst() default 5;
+	}
+
+	private final AtomicLong requestWait = new AtomicLong();
+	private final AtomicLong commitWait = new AtomicLong();
+
+	private volatile TokenBucket requests;
+	private volatile TokenBucket commits;
+
+	@Activate @Modified
+	protected void activate(Configuration config) {
+		requests = new TokenBucket(positive(config.requests_per_second(), 50), config.request_burst());
+		commits = new TokenBucket(positive(config.commits_per_second(), 20), config.commit_burst());
+	}
+
+	@Override
+	public void acquireRequest() throws InterruptedException {
+		requestWait.addAndGet(TimeUnit.NANOSECONDS.toMillis(requests.acquire()));
+	}
+
+	@Override
+	public void acquireCommit() throws InterruptedException {
+		commitWait.addAndGet(TimeUnit.NANOSECONDS.toMillis(commits.acquire()));
+	}
+
+	@Override
+	public long getRequestWaitMillis() {
+		return requestWait.get();
+	}
+
+	@Override
+	public long getCommitWaitMillis() {
+		return commitWait.get();
+	}
+
+	private static double positive(double value, double fallback) {
+		return value > 0 ? value : fallback;
+	}
+}
@@ -0,0 +1,509 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jackrabbit.util.Text;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.day.cq.commons.jcr.JcrConstants;
+
+import com.adobe.training.core.services.AlertRule;
+import com.adobe.training.core.services.PriceAlertService;
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.QuoteUpdateListener;
+
+/**
+ * Evaluates the price alerts inline with every quote an import job commits.
+ *
+ * The rules of a symbol are kept per condition in arrays sorted by threshold. A quote only
+ * triggers the rules whose threshold lies between the previous and the new value of the symbol,
+ * so two binary searches find them and the cost of a quote is its triggered rules, not the rules
+ * of the symbol. The arrays of a symbol are replaced when its rules change, quotes read them
+ * without locking.
+ *
+ * The first quote of a symbol after the engine started only sets the previous value, so a restart
+ * does not trigger the rules again. The day move starts over when the day of the quotes changes.
+ *
+ * The rules are loaded from /var/wetrain/alerts on a thread of the engine when it starts and
+ * follow the changes below it.
+ */
+@Component(immediate = true,
+		service = {PriceAlertService.class, QuoteUpdateListener.class, ResourceChangeListener.class},
+		property = {
+				ResourceChangeListener.PATHS + "=glob:" + PriceAlertEngine.ALERTS_ROOT + "/*",
+				ResourceChangeListener.PATHS + "=glob:" + PriceAlertEngine.ALERTS_ROOT + "/*/*",
+				ResourceChangeListener.CHANGES + "=ADDED",
+				ResourceChangeListener.CHANGES + "=CHANGED",
+				ResourceChangeListener.CHANGES + "=REMOVED"
+		})
+public class PriceAlertEngine implements PriceAlertService, QuoteUpdateListener, ResourceChangeListener {
+
+	static final String ALERTS_ROOT = "/var/wetrain/alerts";
+	static final String USER_ID = "userId";
+	static final String SYMBOL = "symbol";
+	static final String CONDITION = "condition";
+	static final String THRESHOLD = "threshold";
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@Reference
+	private ResourceResolverFactory resourceResolverFactory;
+
+	@Reference
+	private EventAdmin eventAdmin;
+
+	//Sorted rules per symbol, replaced as a whole under the lock of the engine
+	private final Map<String, SymbolRules> rulesBySymbol = new ConcurrentHashMap<>();
+	//All rules by id, guarded by this
+	private final Map<String, AlertRule> rulesById = new HashMap<>();
+	//Previous values per symbol
+	private final Map<String, SymbolState> states = new ConcurrentHashMap<>();
+
+	private final AtomicLong triggered = new AtomicLong();
+	private ExecutorService loader;
+
+	public PriceAlertEngine() {
+	}
+
+	PriceAlertEngine(EventAdmin eventAdmin) {
+		this.eventAdmin = eventAdmin;
+	}
+
+	@Activate
+	protected void activate() {
+		loader = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "price-alert-loader");
+			thread.setDaemon(true);
+			return thread;
+		});
+		loader.execute(() -> {
+			try (ResourceResolver resourceResolver = getServiceResolver()) {
+				load(resourceResolver);
+			} catch (LoginException | RuntimeException e) {
+				logger.error("Cannot load the price alerts, only rules added from now on are evaluated", e);
+			}
+		});
+	}
+
+	@Deactivate
+	protected void deactivate() {
+		if (loader != null) {
+			loader.shutdownNow();
+			loader = null;
+		}
+	}
+
+	//Indexes all stored rules at once, so every symbol is sorted once
+	void load(ResourceResolver resourceResolver) {
+		Resource root = resourceResolver.getResource(ALERTS_ROOT);
+		if (root == null) {
+			return;
+		}
+		List<AlertRule> rules = new ArrayList<>();
+		for (Resource user : root.getChildren()) {
+			for (Resource rule : user.getChildren()) {
+				AlertRule alertRule = read(rule);
+				if (alertRule != null) {
+					rules.add(alertRule);
+				}
+			}
+		}
+		index(rules, Collections.emptySet());
+		logger.info("Loaded {} price alerts", rules.size());
+	}
+
+	@Override
+	public AlertRule addRule(ResourceResolver resourceResolver, String userId, String symbol,
+			AlertRule.Condition condition, double threshold) throws PersistenceException {
+		if (userId == null || userId.isEmpty() || symbol == null || symbol.trim().isEmpty() || condition == null) {
+			throw new IllegalArgumentException("A rule needs a user, a symbol and a condition");
+		}
+		if (!(threshold > 0) || Double.isInfinite(threshold)) {
+			throw new IllegalArgumentException("Invalid threshold " + threshold);
+		}
+		AlertRule rule = new AlertRule(Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36),
+				userId, symbol.trim().toUpperCase(Locale.ROOT), condition, threshold);
+		Resource user = ResourceUtil.getOrCreateResource(resourceResolver, userPath(userId), "sling:Folder",
+				"sling:Folder", false);
+		Map<String, Object> properties = new HashMap<>();
+		properties.put(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
+		properties.put(USER_ID, rule.getUserId());
+		properties.put(SYMBOL, rule.getSymbol());
+		properties.put(CONDITION, rule.getCondition().name());
+		properties.put(THRESHOLD, rule.getThreshold());
+		resourceResolver.create(user, rule.getRuleId(), properties);
+		resourceResolver.commit();
+		index(Collections.singletonList(rule), Collections.emptySet());
+		return rule;
+	}
+
+	@Override
+	public boolean removeRule(ResourceResolver resourceResolver, String userId, String ruleId)
+			throws PersistenceException {
+		Resource rule = resourceResolver.getResource(userPath(userId) + "/" + ruleId);
+		if (rule == null) {
+			return false;
+		}
+		resourceResolver.delete(rule);
+		resourceResolver.commit();
+		index(Collections.emptyList(), Collections.singleton(ruleId));
+		return true;
+	}
+
+	@Override
+	public List<AlertRule> getRules(ResourceResolver resourceResolver, String userId) {
+		Resource user = resourceResolver.getResource(userPath(userId));
+		if (user == null) {
+			return Collections.emptyList();
+		}
+		List<AlertRule> rules = new ArrayList<>();
+		for (Resource rule : user.getChildren()) {
+			AlertRule alertRule = read(rule);
+			if (alertRule != null) {
+				rules.add(alertRule);
+			}
+		}
+		return rules;
+	}
+
+	@Override
+	public synchronized int getRuleCount() {
+		return rulesById.size();
+	}
+
+	//Number of triggered rules since the engine started
+	long getTriggeredCount() {
+		return triggered.get();
+	}
+
+	@Override
+	public void quotesUpdated(List<QuoteSnapshot> quotes) {
+		for (QuoteSnapshot quote : quotes) {
+			evaluate(quote);
+		}
+	}
+
+	/**
+	 * Posts an event for every rule of the symbol the quote crossed.
+	 *
+	 * @return number of triggered rules
+	 */
+	int evaluate(QuoteSnapshot quote) {
+		Double lastTrade = quote.getLastTrade();
+		if (lastTrade == null || lastTrade.isNaN()) {
+			return 0;
+		}
+		double price = lastTrade;
+		double move = dayMovePercent(quote);
+		SymbolState state = states.computeIfAbsent(quote.getSymbol(), symbol -> new SymbolState());
+		boolean known;
+		double previousPrice;
+		double previousMove;
+		synchronized (state) {
+			known = state.known;
+			previousPrice = state.price;
+			boolean sameDay = quote.getDayOfUpdate() != null && quote.getDayOfUpdate().equals(state.day);
+			previousMove = sameDay && !Double.isNaN(state.move) ? state.move : 0;
+			state.known = true;
+			state.price = price;
+			//A quote without upDown keeps the last move of the day for the next one
+			if (!Double.isNaN(move) || !sameDay) {
+				state.move = move;
+			}
+			state.day = quote.getDayOfUpdate();
+		}
+		SymbolRules rules = rulesBySymbol.get(quote.getSymbol());
+		if (!known || rules == null) {
+			return 0;
+		}
+
+		int count = 0;
+		if (price > previousPrice) {
+			//previous < threshold <= price
+			ThresholdIndex above = rules.above;
+			count += fire(above, above.firstAbove(previousPrice), above.firstAbove(price), quote, price, previousPrice);
+		} else if (price < previousPrice) {
+			//price <= threshold < previous
+			ThresholdIndex below = rules.below;
+			count += fire(below, below.firstAtOrAbove(price), below.firstAtOrAbove(previousPrice), quote, price,
+					previousPrice);
+		}
+		if (move > previousMove) {
+			ThresholdIndex dayMove = rules.dayMove;
+			count += fire(dayMove, dayMove.firstAbove(previousMove), dayMove.firstAbove(move), quote, move, previousMove);
+		}
+		return count;
+	}
+
+	private int fire(ThresholdIndex index, int from, int to, QuoteSnapshot quote, double value, double previousValue) {
+		for (int i = from; i < to; i++) {
+			AlertRule rule = index.rules[i];
+			Map<String, Object> properties = new HashMap<>();
+			properties.put(PROPERTY_RULE_ID, rule.getRuleId());
+			properties.put(PROPERTY_USER_ID, rule.getUserId());
+			properties.put(PROPERTY_SYMBOL, rule.getSymbol());
+			properties.put(PROPERTY_CONDITION, rule.getCondition().name());
+			properties.put(PROPERTY_THRESHOLD, rule.getThreshold());
+			properties.put(PROPERTY_VALUE, value);
+			properties.put(PROPERTY_PREVIOUS_VALUE, previousValue);
+			if (quote.getLatestUpdate() != null) {
+				properties.put(PROPERTY_LATEST_UPDATE, quote.getLatestUpdate());
+			}
+			eventAdmin.postEvent(new Event(TOPIC_TRIGGERED, properties));
+		}
+		int count = Math.max(0, to - from);
+		if (count > 0) {
+			triggered.addAndGet(count);
+			logger.debug("{} alerts of {} triggered at {}", count, quote.getSymbol(), value);
+		}
+		return count;
+	}
+
+	//Absolute change against the previous close in percent, NaN without upDown
+	private static double dayMovePercent(QuoteSnapshot quote) {
+		Double upDown = quote.getUpDown();
+		if (upDown == null) {
+			return Double.NaN;
+		}
+		double previousClose = quote.getLastTrade() - upDown;
+		return previousClose > 0 ? Math.abs(upDown) / previousClose * 100 : Double.NaN;
+	}
+
+	@Override
+	public void onChange(List<ResourceChange> changes) {
+		//The last change of a rule wins, a changed rule that can no longer be read is removed
+		Map<String, AlertRule> added = new LinkedHashMap<>();
+		Set<String> removed = new HashSet<>();
+		try (ResourceResolver resourceResolver = getServiceResolver()) {
+			for (ResourceChange change : changes) {
+				String path = change.getPath();
+				boolean rulePath = path.lastIndexOf('/') > ALERTS_ROOT.length();
+				if (change.getType() == ResourceChange.ChangeType.REMOVED) {
+					if (rulePath) {
+						added.remove(Text.getName(path));
+						removed.add(Text.getName(path));
+					} else {
+						removed.addAll(ruleIdsOf(Text.getName(path)));
+					}
+				} else if (rulePath) {
+					Resource rule = resourceResolver.getResource(path);
+					AlertRule alertRule = rule != null ? read(rule) : null;
+					if (alertRule != null) {
+						removed.remove(alertRule.getRuleId());
+						added.put(alertRule.getRuleId(), alertRule);
+					} else {
+						added.remove(Text.getName(path));
+						removed.add(Text.getName(path));
+					}
+				}
+			}
+		} catch (LoginException e) {
+			logger.error("Cannot read {} changed price alerts", changes.size(), e);
+		}
+		if (!added.isEmpty() || !removed.isEmpty()) {
+			index(added.values(), removed);
+		}
+	}
+
+	//Ids of the rules in the folder of a user, the name of the folder is the escaped user id
+	private synchronized Set<String> ruleIdsOf(String userFolder) {
+		Set<String> ruleIds = new HashSet<>();
+		for (AlertRule rule : rulesById.values()) {
+			if (Text.escapeIllegalJcrChars(rule.getUserId()).equals(userFolder)) {
+				ruleIds.add(rule.getRuleId());
+			}
+		}
+		return ruleIds;
+	}
+
+	/**
+	 * Adds or replaces the given rules and removes the rules of the given ids. The arrays of every
+	 * affected symbol are sorted again once.
+	 */
+	synchronized void index(Collection<AlertRule> added, Collection<String> removedIds) {
+		Set<String> symbols = new HashSet<>();
+		for (String ruleId : removedIds) {
+			AlertRule previous = rulesById.remove(ruleId);
+			if (previous != null) {
+				symbols.add(previous.getSymbol());
+			}
+		}
+		Map<String, List<AlertRule>> addedBySymbol = new HashMap<>();
+		for (AlertRule rule : added) {
+			AlertRule previous = rulesById.put(rule.getRuleId(), rule);
+			if (rule.equals(previous)) {
+				//Already indexed, e.g. the change event of a rule added with addRule
+				rulesById.put(rule.getRuleId(), previous);
+				continue;
+			}
+			if (previous != null) {
+				symbols.add(previous.getSymbol());
+			}
+			symbols.add(rule.getSymbol());
+			addedBySymbol.computeIfAbsent(rule.getSymbol(), symbol -> new ArrayList<>()).add(rule);
+		}
+		for (String symbol : symbols) {
+			//The current rules of the symbol, replaced and removed ones are no longer in rulesById
+			List<AlertRule> rules = new ArrayList<>();
+			SymbolRules current = rulesBySymbol.get(symbol);
+			if (current != null) {
+				current.collect(rules, rulesById);
+			}
+			List<AlertRule> symbolAdded = addedBySymbol.get(symbol);
+			if (symbolAdded != null) {
+				for (AlertRule rule : symbolAdded) {
+					if (rulesById.get(rule.getRuleId()) == rule) {
+						rules.add(rule);
+					}
+				}
+			}
+			if (rules.isEmpty()) {
+				rulesBySymbol.remove(symbol);
+			} else {
+				rulesBySymbol.put(symbol, new SymbolRules(rules));
+			}
+		}
+	}
+
+	private static AlertRule read(Resource rule) {
+		ValueMap properties = rule.getValueMap();
+		String userId = properties.get(USER_ID, String.class);
+		String symbol = properties.get(SYMBOL, String.class);
+		String condition = properties.get(CONDITION, String.class);
+		Double threshold = properties.get(THRESHOLD, Double.class);
+		if (userId == null || symbol == null || condition == null || threshold == null) {
+			return null;
+		}
+		try {
+			return new AlertRule(rule.getName(), userId, symbol, AlertRule.Condition.valueOf(condition), threshold);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private static String userPath(String userId) {
+		return ALERTS_ROOT + "/" + Text.escapeIllegalJcrChars(userId);
+	}
+
+	private ResourceResolver getServiceResolver() throws LoginException {
+		//Get the service user (training-user) that belongs to the training.core:training subservice
+		Map<String, Object> serviceParams = new HashMap<>();
+		serviceParams.put(ResourceResolverFactory.SUBSERVICE, "training");
+		return resourceResolverFactory.getServiceResourceResolver(serviceParams);
+	}
+
+	//Last values seen for a symbol, guarded by the state itself
+	private static final class SymbolState {
+		private boolean known;
+		private double price;
+		private double move;
+		private String day;
+	}
+
+	//The rules of one symbol, never modified once built
+	private static final class SymbolRules {
+		private final ThresholdIndex above;
+		private final ThresholdIndex below;
+		private final ThresholdIndex dayMove;
+
+		SymbolRules(List<AlertRule> rules) {
+			Map<AlertRule.Condition, List<AlertRule>> byCondition = new HashMap<>();
+			for (AlertRule rule : rules) {
+				byCondition.computeIfAbsent(rule.getCondition(), condition -> new ArrayList<>()).add(rule);
+			}
+			above = new ThresholdIndex(byCondition.get(AlertRule.Condition.ABOVE));
+			below = new ThresholdIndex(byCondition.get(AlertRule.Condition.BELOW));
+			dayMove = new ThresholdIndex(byCondition.get(AlertRule.Condition.DAY_MOVE));
+		}
+
+		//Adds the rules that are still current
+		void collect(List<AlertRule> rules, Map<String, AlertRule> current) {
+			for (ThresholdIndex index : Arrays.asList(above, below, dayMove)) {
+				for (AlertRule rule : index.rules) {
+					if (current.get(rule.getRuleId()) == rule) {
+						rules.add(rule);
+					}
+				}
+			}
+		}
+	}
+
+	//Rules of one condition sorted by threshold, with the thresholds as a primitive array to search
+	private static final class ThresholdIndex {
+		private static final Comparator<AlertRule> BY_THRESHOLD = Comparator.comparingDouble(AlertRule::getThreshold);
+
+		private final double[] thresholds;
+		private final AlertRule[] rules;
+
+		ThresholdIndex(List<AlertRule> conditionRules) {
+			rules = conditionRules != null ? conditionRules.toArray(new AlertRule[0]) : new AlertRule[0];
+			Arrays.sort(rules, BY_THRESHOLD);
+			thresholds = new double[rules.length];
+			for (int i = 0; i < rules.length; i++) {
+				thresholds[i] = rules[i].getThreshold();
+			}
+		}
+
+		//First position with a threshold above the value
+		int firstAbove(double value) {
+			int low = 0;
+			int high = thresholds.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (thresholds[middle] <= value) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		//First position with a threshold at or above the value
+		int firstAtOrAbove(double value) {
+			int low = 0;
+			int high = thresholds.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (thresholds[middle] < value) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+	}
+}
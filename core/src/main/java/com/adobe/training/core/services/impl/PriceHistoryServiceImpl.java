@@ -0,0 +1,193 @@
+package com.adobe.training.core.services.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+import org.osgi.service.component.annotations.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.day.cq.commons.jcr.JcrConstants;
+
+import com.adobe.training.core.StockDataWriterJob;
+import com.adobe.training.core.quotes.StockQuote;
+import com.adobe.training.core.services.PriceHistoryService;
+import com.adobe.training.core.services.PriceSeries;
+
+/**
+ * Stores the price history in one binary chunk per symbol and UTC day. Appending rewrites the
+ * binary of the day, which stays a few kilobytes for a trading day of two minute updates,
+ * and a range read resolves one node per day instead of one node per tick.
+ */
+@Component(service = PriceHistoryService.class)
+public class PriceHistoryServiceImpl implements PriceHistoryService {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	static final String HISTORY = "history";
+	static final String TICKS = "ticks";
+	static final String TICK_COUNT = "tickCount";
+
+	private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+	@Override
+	public boolean append(ResourceResolver resourceResolver, StockQuote quote) throws PersistenceException {
+		long time = quote.getLatestUpdate();
+		double price = quote.getLatestPrice();
+		long volume = quote.getLatestVolume();
+		LocalDate day = LocalDate.ofEpochDay(Math.floorDiv(time, DAY_MILLIS));
+		String yearPath = historyPath(quote.getSymbol()) + "/" + day.getYear();
+
+		Resource chunk = resourceResolver.getResource(yearPath + "/" + chunkName(day));
+		if (chunk == null) {
+			Resource year = ResourceUtil.getOrCreateResource(resourceResolver, yearPath, "", "", false);
+			Map<String, Object> chunkData = new HashMap<>();
+			chunkData.put(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
+			chunkData.put(TICKS, new ByteArrayInputStream(TickChunk.append(TickChunk.EMPTY, time, price, volume)));
+			chunkData.put(TICK_COUNT, 1L);
+			resourceResolver.create(year, chunkName(day), chunkData);
+			return true;
+		}
+
+		byte[] ticks;
+		try {
+			ticks = readTicks(chunk);
+		} catch (IOException e) {
+			throw new PersistenceException("Cannot read the price history " + chunk.getPath(), e);
+		}
+		int last = TickChunk.count(ticks) - 1;
+		if (last >= 0) {
+			//Only newer ticks are appended, and only when the quote moved
+			if (time <= TickChunk.time(ticks, last)) {
+				return false;
+			}
+			if (Double.compare(price, TickChunk.price(ticks, last)) == 0 && volume == TickChunk.volume(ticks, last)) {
+				return false;
+			}
+		}
+		ModifiableValueMap chunkData = chunk.adaptTo(ModifiableValueMap.class);
+		chunkData.put(TICKS, new ByteArrayInputStream(TickChunk.append(ticks, time, price, volume)));
+		chunkData.put(TICK_COUNT, (long) last + 2);
+		return true;
+	}
+
+	@Override
+	public PriceSeries getTicks(ResourceResolver resourceResolver, String symbol, long from, long to) {
+		if (to <= from) {
+			return PriceSeries.empty(symbol);
+		}
+		//An open range is bounded by the year and day nodes that exist, not by the clock
+		LocalDate firstDay = utcDay(from);
+		LocalDate lastDay = utcDay(to - 1);
+		Resource history = resourceResolver.getResource(historyPath(symbol));
+		if (history == null) {
+			return PriceSeries.empty(symbol);
+		}
+
+		//Only the year and day nodes that exist are visited, in date order
+		List<byte[]> chunks = new ArrayList<>();
+		int total = 0;
+		for (Resource year : sortedChildren(history)) {
+			int yearNumber;
+			try {
+				yearNumber = Integer.parseInt(year.getName());
+			} catch (NumberFormatException e) {
+				continue;
+			}
+			if (yearNumber < firstDay.getYear() || yearNumber > lastDay.getYear()) {
+				continue;
+			}
+			String firstChunk = yearNumber == firstDay.getYear() ? chunkName(firstDay) : "";
+			String lastChunk = yearNumber == lastDay.getYear() ? chunkName(lastDay) : "~";
+			for (Resource chunk : sortedChildren(year)) {
+				if (chunk.getName().compareTo(firstChunk) < 0 || chunk.getName().compareTo(lastChunk) > 0) {
+					continue;
+				}
+				try {
+					byte[] ticks = readTicks(chunk);
+					chunks.add(ticks);
+					total += TickChunk.count(ticks);
+				} catch (IOException e) {
+					logger.warn("Cannot read the price history {}", chunk.getPath(), e);
+				}
+			}
+		}
+		if (total == 0) {
+			return PriceSeries.empty(symbol);
+		}
+
+		long[] times = new long[total];
+		double[] prices = new double[total];
+		long[] volumes = new long[total];
+		int size = 0;
+		for (byte[] ticks : chunks) {
+			size = TickChunk.copy(ticks, from, to, times, prices, volumes, size);
+		}
+		if (size < total) {
+			//The first and last day can have ticks outside of the range
+			times = Arrays.copyOf(times, size);
+			prices = Arrays.copyOf(prices, size);
+			volumes = Arrays.copyOf(volumes, size);
+		}
+		return new PriceSeries(symbol, times, prices, volumes);
+	}
+
+	private static byte[] readTicks(Resource chunk) throws IOException {
+		ValueMap chunkData = chunk.getValueMap();
+		long count = chunkData.get(TICK_COUNT, 0L);
+		if (count == 0) {
+			return TickChunk.EMPTY;
+		}
+		try (InputStream in = chunkData.get(TICKS, InputStream.class)) {
+			if (in == null) {
+				throw new IOException("Missing " + TICKS + " of " + count + " ticks");
+			}
+			byte[] ticks = new byte[Math.toIntExact(count * TickChunk.TICK_BYTES)];
+			new DataInputStream(in).readFully(ticks);
+			return ticks;
+		}
+	}
+
+	//UTC day of the epoch milliseconds, times beyond the years of LocalDate give its first or last day
+	static LocalDate utcDay(long time) {
+		long epochDay = Math.floorDiv(time, DAY_MILLIS);
+		return LocalDate.ofEpochDay(Math.max(LocalDate.MIN.toEpochDay(), Math.min(LocalDate.MAX.toEpochDay(), epochDay)));
+	}
+
+	//Year names have four digits and chunk names are MM-dd, so the name order is the date order
+	static List<Resource> sortedChildren(Resource parent) {
+		List<Resource> children = new ArrayList<>();
+		for (Resource child : parent.getChildren()) {
+			children.add(child);
+		}
+		children.sort(Comparator.comparing(Resource::getName));
+		return children;
+	}
+
+	private static String historyPath(String symbol) {
+		return StockDataWriterJob.STOCK_IMPORT_FOLDER + "/" + symbol + "/" + HISTORY;
+	}
+
+	//Chunk node name MM-dd below the year node
+	private static String chunkName(LocalDate day) {
+		int month = day.getMonthValue();
+		int dayOfMonth = day.getDayOfMonth();
+		return (month < 10 ? "0" : "") + month + (dayOfMonth < 10 ? "-0" : "-") + dayOfMonth;
+	}
+}
@@ -0,0 +1,207 @@
+package com.adobe.training.core.services.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+import org.osgi.service.component.annotations.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.day.cq.commons.jcr.JcrConstants;
+
+import com.adobe.training.core.StockDataWriterJob;
+import com.adobe.training.core.quotes.StockQuote;
+import com.adobe.training.core.services.CandleResolution;
+import com.adobe.training.core.services.PriceCandles;
+import com.adobe.training.core.services.PriceRollupService;
+
+/**
+ * Keeps the candles of every resolution in binary chunks. Minute and hour candles are chunked per
+ * UTC day and day candles per month. Every tick rewrites one chunk per resolution, so the chunks
+ * are kept to the candles of a day or a month instead of growing over a month or a year.
+ */
+@Component(service = PriceRollupService.class)
+public class PriceRollupServiceImpl implements PriceRollupService {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	static final String CANDLES = "candles";
+	static final String CANDLE_COUNT = "candleCount";
+
+	private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+	@Override
+	public boolean update(ResourceResolver resourceResolver, StockQuote quote) throws PersistenceException {
+		boolean changed = false;
+		for (CandleResolution resolution : CandleResolution.values()) {
+			changed |= update(resourceResolver, quote, resolution);
+		}
+		return changed;
+	}
+
+	private boolean update(ResourceResolver resourceResolver, StockQuote quote, CandleResolution resolution)
+			throws PersistenceException {
+		long time = quote.getLatestUpdate();
+		long start = resolution.bucketStart(time);
+		LocalDate chunkDay = chunkStart(resolution, LocalDate.ofEpochDay(Math.floorDiv(time, DAY_MILLIS)));
+		String chunkPath = resolutionPath(quote.getSymbol(), resolution) + "/" + chunkName(resolution, chunkDay);
+
+		Resource chunk = resourceResolver.getResource(chunkPath);
+		if (chunk == null) {
+			String parentPath = ResourceUtil.getParent(chunkPath);
+			Resource parent = ResourceUtil.getOrCreateResource(resourceResolver, parentPath, "", "", false);
+			Map<String, Object> chunkData = new HashMap<>();
+			chunkData.put(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
+			chunkData.put(CANDLES, new ByteArrayInputStream(CandleChunk.insert(CandleChunk.EMPTY, 0, start, time,
+					quote.getLatestPrice(), quote.getLatestVolume())));
+			chunkData.put(CANDLE_COUNT, 1L);
+			resourceResolver.create(parent, ResourceUtil.getName(chunkPath), chunkData);
+			return true;
+		}
+
+		byte[] candles;
+		try {
+			candles = readCandles(chunk);
+		} catch (IOException e) {
+			throw new PersistenceException("Cannot read the candles " + chunk.getPath(), e);
+		}
+		int index = CandleChunk.indexOf(candles, start);
+		if (CandleChunk.hasStart(candles, index, start)) {
+			if (!CandleChunk.merge(candles, index, time, quote.getLatestPrice(), quote.getLatestVolume())) {
+				//A repeated tick or one inside the bucket's range, nothing to write
+				return false;
+			}
+		} else {
+			//Also covers ticks that arrive after a later bucket was already started
+			candles = CandleChunk.insert(candles, index, start, time, quote.getLatestPrice(), quote.getLatestVolume());
+		}
+		ModifiableValueMap chunkData = chunk.adaptTo(ModifiableValueMap.class);
+		chunkData.put(CANDLES, new ByteArrayInputStream(candles));
+		chunkData.put(CANDLE_COUNT, (long) CandleChunk.count(candles));
+		return true;
+	}
+
+	@Override
+	public PriceCandles getCandles(ResourceResolver resourceResolver, String symbol, CandleResolution resolution,
+			long from, long to) {
+		if (to <= from) {
+			return PriceCandles.empty(symbol, resolution);
+		}
+		//An open range is bounded by the year and chunk nodes that exist, not by the clock
+		LocalDate firstDay = PriceHistoryServiceImpl.utcDay(from);
+		LocalDate lastDay = PriceHistoryServiceImpl.utcDay(to - 1);
+		String firstChunk = chunkName(resolution, chunkStart(resolution, firstDay));
+		String lastChunk = chunkName(resolution, chunkStart(resolution, lastDay));
+		Resource candleRoot = resourceResolver.getResource(resolutionPath(symbol, resolution));
+		if (candleRoot == null) {
+			return PriceCandles.empty(symbol, resolution);
+		}
+
+		//Only the chunk nodes that exist are visited, chunk names sort in date order
+		List<Resource> chunkResources = new ArrayList<>();
+		for (Resource year : PriceHistoryServiceImpl.sortedChildren(candleRoot)) {
+			int yearNumber;
+			try {
+				yearNumber = Integer.parseInt(year.getName());
+			} catch (NumberFormatException e) {
+				continue;
+			}
+			if (yearNumber < firstDay.getYear() || yearNumber > lastDay.getYear()) {
+				continue;
+			}
+			for (Resource chunk : PriceHistoryServiceImpl.sortedChildren(year)) {
+				String chunkName = year.getName() + "/" + chunk.getName();
+				if (chunkName.compareTo(firstChunk) >= 0 && chunkName.compareTo(lastChunk) <= 0) {
+					chunkResources.add(chunk);
+				}
+			}
+		}
+
+		List<byte[]> chunks = new ArrayList<>();
+		int total = 0;
+		for (Resource chunk : chunkResources) {
+			try {
+				byte[] candles = readCandles(chunk);
+				chunks.add(candles);
+				total += CandleChunk.count(candles);
+			} catch (IOException e) {
+				logger.warn("Cannot read the candles {}", chunk.getPath(), e);
+			}
+		}
+		if (total == 0) {
+			return PriceCandles.empty(symbol, resolution);
+		}
+
+		long[] starts = new long[total];
+		double[] opens = new double[total];
+		double[] highs = new double[total];
+		double[] lows = new double[total];
+		double[] closes = new double[total];
+		long[] volumes = new long[total];
+		int size = 0;
+		for (byte[] candles : chunks) {
+			size = CandleChunk.copy(candles, from, to, starts, opens, highs, lows, closes, volumes, size);
+		}
+		if (size < total) {
+			//The first and last chunk can have candles outside of the range
+			starts = Arrays.copyOf(starts, size);
+			opens = Arrays.copyOf(opens, size);
+			highs = Arrays.copyOf(highs, size);
+			lows = Arrays.copyOf(lows, size);
+			closes = Arrays.copyOf(closes, size);
+			volumes = Arrays.copyOf(volumes, size);
+		}
+		return new PriceCandles(symbol, resolution, starts, opens, highs, lows, closes, volumes);
+	}
+
+	private static byte[] readCandles(Resource chunk) throws IOException {
+		ValueMap chunkData = chunk.getValueMap();
+		long count = chunkData.get(CANDLE_COUNT, 0L);
+		if (count == 0) {
+			return CandleChunk.EMPTY;
+		}
+		try (InputStream in = chunkData.get(CANDLES, InputStream.class)) {
+			if (in == null) {
+				throw new IOException("Missing " + CANDLES + " of " + count + " candles");
+			}
+			byte[] candles = new byte[Math.toIntExact(count * CandleChunk.CANDLE_BYTES)];
+			new DataInputStream(in).readFully(candles);
+			return candles;
+		}
+	}
+
+	private static String resolutionPath(String symbol, CandleResolution resolution) {
+		return StockDataWriterJob.STOCK_IMPORT_FOLDER + "/" + symbol + "/" + CANDLES + "/" + resolution.getName();
+	}
+
+	//First day of the chunk that holds the candles of the given day
+	private static LocalDate chunkStart(CandleResolution resolution, LocalDate day) {
+		return resolution == CandleResolution.ONE_DAY ? day.withDayOfMonth(1) : day;
+	}
+
+	//Chunk path below the resolution node: yyyy/MM-dd, or yyyy/MM for day candles
+	private static String chunkName(CandleResolution resolution, LocalDate chunkDay) {
+		String year = String.valueOf(chunkDay.getYear());
+		int month = chunkDay.getMonthValue();
+		if (resolution == CandleResolution.ONE_DAY) {
+			return year + (month < 10 ? "/0" : "/") + month;
+		}
+		int dayOfMonth = chunkDay.getDayOfMonth();
+		return year + (month < 10 ? "/0" : "/") + month + (dayOfMonth < 10 ? "-0" : "-") + dayOfMonth;
+	}
+}
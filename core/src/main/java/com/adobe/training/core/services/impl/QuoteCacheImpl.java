@@ -0,0 +1,211 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.training.core.StockDataWriterJob;
+import com.adobe.training.core.services.QuoteCache;
+import com.adobe.training.core.services.QuoteSnapshot;
+
+/**
+ * QuoteCache that listens to changes of the trade nodes. A changed trade node is read again with
+ * the training service user, a removed trade node or symbol folder drops the snapshot. The history
+ * and candle nodes below a symbol are not observed.
+ *
+ * Misses are read with the service user as well, so the cached values do not depend on the access
+ * rights of whoever asked first. Every drop increments the generation of the symbol, and a miss
+ * only caches what it read when the generation did not change while it read, so a read that started
+ * before a removal cannot put the removed quote back.
+ *
+ * Symbols without a trade node are remembered as absent under the same generation check, so
+ * requests for unknown symbols do not read the JCR each time. A put, a read trade node or a drop
+ * forgets the symbol again.
+ *
+ * The cache holds one small snapshot and one generation per imported symbol and is not bounded.
+ * At most MAX_ABSENT unknown symbols are remembered, beyond that they are all forgotten.
+ */
+@Component(
+		service = {QuoteCache.class, ResourceChangeListener.class},
+		property = {
+				ResourceChangeListener.PATHS + "=glob:" + StockDataWriterJob.STOCK_IMPORT_FOLDER + "/*",
+				ResourceChangeListener.PATHS + "=glob:" + StockDataWriterJob.STOCK_IMPORT_FOLDER + "/*/" + QuoteCacheImpl.TRADE,
+				ResourceChangeListener.CHANGES + "=ADDED",
+				ResourceChangeListener.CHANGES + "=CHANGED",
+				ResourceChangeListener.CHANGES + "=REMOVED"
+		}
+)
+public class QuoteCacheImpl implements QuoteCache, ResourceChangeListener {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	static final String TRADE = "trade";
+	static final int MAX_ABSENT = 10000;
+
+	private final Map<String, QuoteSnapshot> snapshots = new ConcurrentHashMap<>();
+	//Drops per symbol, only changed inside a compute of the symbol's snapshot
+	private final Map<String, Long> generations = new ConcurrentHashMap<>();
+	//Symbols read without a trade node, only added inside a compute of the symbol's snapshot
+	private final Set<String> absent = ConcurrentHashMap.newKeySet();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	@Reference
+	private ResourceResolverFactory resourceResolverFactory;
+
+	@Override
+	public QuoteSnapshot get(String symbol) {
+		if (symbol == null) {
+			return null;
+		}
+		QuoteSnapshot snapshot = snapshots.get(symbol);
+		if (snapshot != null || absent.contains(symbol)) {
+			hits.incrementAndGet();
+			return snapshot;
+		}
+		misses.incrementAndGet();
+		Long generation = generation(symbol);
+		try (ResourceResolver serviceResolver = getServiceResolver()) {
+			snapshot = read(serviceResolver, symbol);
+		} catch (LoginException e) {
+			logger.error("Cannot get the service resource resolver to read the quote of {}", symbol, e);
+			return null;
+		}
+		return cache(symbol, generation, snapshot);
+	}
+
+	//Drops of the symbol so far, null if there was none
+	Long generation(String symbol) {
+		return generations.get(symbol);
+	}
+
+	/**
+	 * Caches a snapshot read on a miss, or remembers the symbol as absent if nothing was read,
+	 * unless the symbol was dropped since the given generation. A put from the import job in the
+	 * meantime is newer than what was read and is kept.
+	 *
+	 * @return the cached snapshot, or the read one if it was not cached
+	 */
+	QuoteSnapshot cache(String symbol, Long generation, QuoteSnapshot read) {
+		QuoteSnapshot current = snapshots.compute(symbol, (key, cached) -> {
+			if (cached != null || !Objects.equals(generations.get(key), generation)) {
+				return cached;
+			}
+			if (read == null) {
+				if (absent.size() >= MAX_ABSENT) {
+					absent.clear();
+				}
+				absent.add(key);
+			}
+			return read;
+		});
+		return current != null ? current : read;
+	}
+
+	@Override
+	public void put(QuoteSnapshot snapshot) {
+		snapshots.compute(snapshot.getSymbol(), (key, cached) -> {
+			absent.remove(key);
+			return snapshot;
+		});
+	}
+
+	@Override
+	public void invalidate(String symbol) {
+		snapshots.compute(symbol, (key, cached) -> {
+			generations.merge(key, 1L, Long::sum);
+			absent.remove(key);
+			return null;
+		});
+	}
+
+	@Override
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	@Override
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	@Override
+	public void onChange(List<ResourceChange> changes) {
+		ResourceResolver serviceResolver = null;
+		try {
+			for (ResourceChange change : changes) {
+				String symbol = symbolOf(change.getPath());
+				if (symbol == null) {
+					continue;
+				}
+				if (change.getType() == ResourceChange.ChangeType.REMOVED) {
+					invalidate(symbol);
+				} else if (change.getPath().endsWith("/" + TRADE)) {
+					if (serviceResolver == null) {
+						serviceResolver = getServiceResolver();
+					}
+					refresh(serviceResolver, symbol);
+				}
+			}
+		} catch (LoginException e) {
+			//Without a resolver the changed snapshots are dropped and read again on the next get
+			logger.error("Cannot get the service resource resolver to refresh cached quotes", e);
+			for (ResourceChange change : changes) {
+				String symbol = symbolOf(change.getPath());
+				if (symbol != null) {
+					invalidate(symbol);
+				}
+			}
+		} finally {
+			if (serviceResolver != null) {
+				serviceResolver.close();
+			}
+		}
+	}
+
+	//Symbol of a /content/stocks/<SYMBOL> or /content/stocks/<SYMBOL>/trade path
+	private static String symbolOf(String path) {
+		String prefix = StockDataWriterJob.STOCK_IMPORT_FOLDER + "/";
+		if (!path.startsWith(prefix) || path.length() == prefix.length()) {
+			return null;
+		}
+		int slash = path.indexOf('/', prefix.length());
+		return slash < 0 ? path.substring(prefix.length()) : path.substring(prefix.length(), slash);
+	}
+
+	private void refresh(ResourceResolver serviceResolver, String symbol) {
+		QuoteSnapshot snapshot = read(serviceResolver, symbol);
+		if (snapshot != null) {
+			put(snapshot);
+		} else {
+			invalidate(symbol);
+		}
+	}
+
+	private static QuoteSnapshot read(ResourceResolver resourceResolver, String symbol) {
+		Resource trade = resourceResolver.getResource(StockDataWriterJob.STOCK_IMPORT_FOLDER + "/" + symbol + "/" + TRADE);
+		return trade != null ? QuoteSnapshot.fromTrade(symbol, trade.getValueMap()) : null;
+	}
+
+	private ResourceResolver getServiceResolver() throws LoginException {
+		//Get the service user (training-user) that belongs to the training.core:training subservice
+		Map<String, Object> serviceParams = new HashMap<>();
+		serviceParams.put(ResourceResolverFactory.SUBSERVICE, "training");
+		return resourceResolverFactory.getServiceResourceResolver(serviceParams);
+	}
+}
@@ -0,0 +1,479 @@
+package com.adobe.training.core.services.impl;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.training.core.services.FetchResult;
+import com.adobe.training.core.services.ImportRateLimiter;
+import com.adobe.training.core.services.QuoteSource;
+import com.adobe.training.core.services.SourceUnavailableException;
+import com.adobe.training.core.services.StockDataFetcher;
+
+/**
+ * StockDataFetcher backed by a pooled Apache HttpClient. Connections to the stock data source
+ * are kept alive and reused by all import threads, so a TLS handshake is only needed when the
+ * pool has no idle connection to the host.
+ *
+ * Validators of the last response are kept in memory per symbol, so after a restart every
+ * quote is requested and written once in full.
+ *
+ * Every request waits for a token of the ImportRateLimiter, so the import threads together stay
+ * within the configured request rate.
+ *
+ * Requests that time out or get a server error are retried after a random exponential backoff.
+ * A circuit breaker per host stops sending requests after repeated failures, so while the data
+ * source is down the imports fail at once with a SourceUnavailableException and only a probe
+ * request is sent now and then to find out whether it is back.
+ */
+@Component(service = {StockDataFetcher.class, QuoteSource.class})
+@Designate(ocd = StockDataFetcherImpl.Configuration.class)
+public class StockDataFetcherImpl implements StockDataFetcher {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@ObjectClassDefinition(name = "Training Stock Data Fetcher")
+	public @interface Configuration {
+		@AttributeDefinition(
+				name = "Max Connections",
+				description = "Size of the connection pool shared by all import threads",
+				type = AttributeType.INTEGER
+		)
+		int max_connections() default 20;
+
+		@AttributeDefinition(
+				name = "Max Connections per Host",
+				description = "Number of concurrent requests allowed to a single stock data host",
+				type = AttributeType.INTEGER
+		)
+		int max_connections_per_host() default 8;
+
+		@AttributeDefinition(
+				name = "Connect Timeout",
+				description = "Milliseconds to wait for a connection to the stock data source",
+				type = AttributeType.INTEGER
+		)
+		int connect_timeout() default 5000;
+
+		@AttributeDefinition(
+				name = "Read Timeout",
+				description = "Milliseconds to wait for data from the stock data source",
+				type = AttributeType.INTEGER
+		)
+		int read_timeout() default 10000;
+
+		@AttributeDefinition(
+				name = "Pool Timeout",
+				description = "Milliseconds to wait for a free connection from the pool",
+				type = AttributeType.INTEGER
+		)
+		int pool_timeout() default 5000;
+
+		@AttributeDefinition(
+				name = "Idle Timeout",
+				description = "Seconds an unused connection is kept open",
+				type = AttributeType.INTEGER
+		)
+		int idle_timeout() default 60;
+
+		@AttributeDefinition(
+				name = "Max Retries",
+				description = "Retries of a request that timed out or got a server error, after a random backoff",
+				type = AttributeType.INTEGER
+		)
+		int max_retries() default 2;
+
+		@AttributeDefinition(
+				name = "Retry Backoff",
+				description = "Milliseconds of the longest wait before the first retry, doubled for every further retry",
+				type = AttributeType.INTEGER
+		)
+		int retry_backoff() default 500;
+
+		@AttributeDefinition(
+				name = "Max Retry Backoff",
+				description = "Milliseconds of the longest wait before any retry",
+				type = AttributeType.INTEGER
+		)
+		int max_retry_backoff() default 5000;
+
+		@AttributeDefinition(
+				name = "Circuit Failure Threshold",
+				description = "Failed requests in a row to a host after which no more requests are sent to it for the open time",
+				type = AttributeType.INTEGER
+		)
+		int circuit_failure_threshold() default 5;
+
+		@AttributeDefinition(
+				name = "Circuit Open Time",
+				description = "Seconds until a single probe request is sent to a failing host, doubled while the probes fail",
+				type = AttributeType.INTEGER
+		)
+		int circuit_open_time() default 30;
+
+		@AttributeDefinition(
+				name = "Max Circuit Open Time",
+				description = "Seconds between probe requests to a host that keeps failing",
+				type = AttributeType.INTEGER
+		)
+		int max_circuit_open_time() default 600;
+	}
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong connections = new AtomicLong();
+	private final AtomicLong handshakes = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong shortCircuits = new AtomicLong();
+
+	//Validators of the last response per symbol
+	private final Map<String, Validators> validators = new ConcurrentHashMap<>();
+
+	//Circuit breaker per stock data host
+	private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+	@Reference
+	private ImportRateLimiter rateLimiter;
+
+	//Replaced on modification, requests that already use the previous client fail with an IOException
+	private volatile CloseableHttpClient httpClient;
+
+	private int maxRetries;
+	private long baseBackoffMillis;
+	private long maxBackoffMillis;
+	private int failureThreshold;
+	private long openMillis;
+	private long maxOpenMillis;
+
+	@Activate @Modified
+	protected void activate(Configuration config) {
+		maxRetries = Math.max(0, config.max_retries());
+		baseBackoffMillis = Math.max(1, config.retry_backoff());
+		maxBackoffMillis = Math.max(baseBackoffMillis, config.max_retry_backoff());
+		failureThreshold = Math.max(1, config.circuit_failure_threshold());
+		openMillis = TimeUnit.SECONDS.toMillis(Math.max(1, config.circuit_open_time()));
+		maxOpenMillis = TimeUnit.SECONDS.toMillis(Math.max(1, config.max_circuit_open_time()));
+		breakers.clear();
+
+		Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+				.register("http", new CountingSocketFactory(PlainConnectionSocketFactory.getSocketFactory(), false))
+				.register("https", new CountingSocketFactory(SSLConnectionSocketFactory.getSocketFactory(), true))
+				.build();
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactories);
+		connectionManager.setMaxTotal(Math.max(1, config.max_connections()));
+		connectionManager.setDefaultMaxPerRoute(Math.max(1, config.max_connections_per_host()));
+
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(config.connect_timeout())
+				.setSocketTimeout(config.read_timeout())
+				.setConnectionRequestTimeout(config.pool_timeout())
+				.build();
+
+		CloseableHttpClient previous = httpClient;
+		httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.evictExpiredConnections()
+				.evictIdleConnections(config.idle_timeout(), TimeUnit.SECONDS)
+				.disableCookieManagement()
+				.build();
+		close(previous);
+	}
+
+	@Deactivate
+	protected void deactivate() {
+		close(httpClient);
+	}
+
+	@Override
+	public boolean accepts(String baseUrl) {
+		return baseUrl.startsWith("http://") || baseUrl.startsWith("https://");
+	}
+
+	@Override
+	public FetchResult fetch(String baseUrl, String symbol) throws IOException {
+		String url = baseUrl + symbol + ".json";
+		String host = URI.create(url).getHost();
+		CircuitBreaker breaker = breakers.computeIfAbsent(host != null ? host : url,
+				key -> new CircuitBreaker(failureThreshold, openMillis, maxOpenMillis));
+
+		for (int attempt = 0; ; attempt++) {
+			if (!breaker.tryAcquire()) {
+				shortCircuits.incrementAndGet();
+				throw new SourceUnavailableException("Circuit open for " + host + ", not requesting " + url);
+			}
+			try {
+				rateLimiter.acquireRequest();
+			} catch (InterruptedException e) {
+				breaker.release();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting to request " + url);
+			}
+
+			IOException failure = null;
+			//Every outcome is reported to the breaker, a half open breaker would not let any request through otherwise
+			boolean reported = false;
+			try {
+				FetchResult result = send(url, symbol);
+				breaker.onSuccess();
+				reported = true;
+				return result;
+			} catch (FileNotFoundException e) {
+				//The host is fine, it just does not know the symbol
+				breaker.onSuccess();
+				reported = true;
+				throw e;
+			} catch (StatusException e) {
+				if (!e.isRetryable()) {
+					breaker.onSuccess();
+					reported = true;
+					throw e;
+				}
+				failure = e;
+			} catch (IOException e) {
+				if (Thread.currentThread().isInterrupted()) {
+					//Cancelled by the caller, says nothing about the host
+					throw e;
+				}
+				//Timeouts, refused connections and broken responses
+				failure = e;
+			} finally {
+				if (!reported && failure == null) {
+					breaker.release();
+				}
+			}
+
+			breaker.onFailure();
+			if (attempt >= maxRetries) {
+				throw failure;
+			}
+			retries.incrementAndGet();
+			logger.debug("Retrying {} after {}", url, failure.toString());
+			try {
+				TimeUnit.MILLISECONDS.sleep(backoffMillis(attempt));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting to retry " + url);
+			}
+		}
+	}
+
+	//Full jitter: a random wait up to the exponential backoff, so failed requests do not retry in lockstep
+	private long backoffMillis(int attempt) {
+		long backoff = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 20));
+		return ThreadLocalRandom.current().nextLong(backoff + 1);
+	}
+
+	private FetchResult send(String url, String symbol) throws IOException {
+		HttpGet request = new HttpGet(url);
+		Validators previous = validators.get(symbol);
+		if (previous != null && previous.url.equals(url)) {
+			if (previous.etag != null) {
+				request.setHeader(HttpHeaders.IF_NONE_MATCH, previous.etag);
+			}
+			if (previous.lastModified != null) {
+				request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, previous.lastModified);
+			}
+		} else {
+			previous = null;
+		}
+
+		requests.incrementAndGet();
+		//The response is always read to the end and closed, which hands the connection back to the pool
+		try (CloseableHttpResponse response = httpClient.execute(request)) {
+			int status = response.getStatusLine().getStatusCode();
+			HttpEntity entity = response.getEntity();
+			byte[] body = entity != null ? EntityUtils.toByteArray(entity) : new byte[0];
+			if (status == HttpStatus.SC_NOT_MODIFIED && previous != null) {
+				return FetchResult.notModified();
+			}
+			if (status == HttpStatus.SC_NOT_FOUND) {
+				validators.remove(symbol);
+				throw new FileNotFoundException(url);
+			}
+			if (status != HttpStatus.SC_OK) {
+				throw new StatusException(status, url);
+			}
+
+			byte[] contentHash = hash(body);
+			validators.put(symbol, new Validators(url, headerValue(response, HttpHeaders.ETAG),
+					headerValue(response, HttpHeaders.LAST_MODIFIED), contentHash));
+			if (previous != null && Arrays.equals(previous.contentHash, contentHash)) {
+				return FetchResult.unchanged();
+			}
+			return FetchResult.modified(body);
+		} catch (IllegalStateException e) {
+			//The connection pool of a replaced or deactivated client is shut down, a retry uses the current client
+			throw new IOException("Stock data client closed while requesting " + url, e);
+		}
+	}
+
+	@Override
+	public void forget(String symbol) {
+		validators.remove(symbol);
+	}
+
+	@Override
+	public long getRequestCount() {
+		return requests.get();
+	}
+
+	@Override
+	public long getRetryCount() {
+		return retries.get();
+	}
+
+	@Override
+	public long getShortCircuitCount() {
+		return shortCircuits.get();
+	}
+
+	@Override
+	public long getConnectionCount() {
+		return connections.get();
+	}
+
+	@Override
+	public long getHandshakeCount() {
+		return handshakes.get();
+	}
+
+	@Override
+	public long getConnectionReuseCount() {
+		return Math.max(0, requests.get() - connections.get());
+	}
+
+	private static String headerValue(HttpResponse response, String name) {
+		Header header = response.getFirstHeader(name);
+		return header != null ? header.getValue() : null;
+	}
+
+	private static byte[] hash(byte[] content) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(content);
+		} catch (NoSuchAlgorithmException e) {
+			//every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void close(CloseableHttpClient client) {
+		if (client != null) {
+			try {
+				client.close();
+			} catch (IOException e) {
+				logger.warn("Could not close the stock data http client", e);
+			}
+		}
+	}
+
+	//Status other than 200, 304 and 404. Server errors and 429 Too Many Requests are worth a retry
+	private static final class StatusException extends IOException {
+		private static final long serialVersionUID = 1L;
+		private final int status;
+
+		StatusException(int status, String url) {
+			super("Unexpected status " + status + " for " + url);
+			this.status = status;
+		}
+
+		boolean isRetryable() {
+			return status >= 500 || status == 429;
+		}
+	}
+
+	private static final class Validators {
+		private final String url;
+		private final String etag;
+		private final String lastModified;
+		private final byte[] contentHash;
+
+		Validators(String url, String etag, String lastModified, byte[] contentHash) {
+			this.url = url;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.contentHash = contentHash;
+		}
+	}
+
+	/**
+	 * Counts every new connection opened by the pool. For https the delegate completes the
+	 * TLS handshake inside connectSocket, so each counted connection is one handshake.
+	 */
+	private final class CountingSocketFactory implements LayeredConnectionSocketFactory {
+		private final ConnectionSocketFactory delegate;
+		private final boolean tls;
+
+		CountingSocketFactory(ConnectionSocketFactory delegate, boolean tls) {
+			this.delegate = delegate;
+			this.tls = tls;
+		}
+
+		@Override
+		public Socket createSocket(HttpContext context) throws IOException {
+			return delegate.createSocket(context);
+		}
+
+		@Override
+		public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+				InetSocketAddress localAddress, HttpContext context) throws IOException {
+			Socket connected = delegate.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+			connections.incrementAndGet();
+			if (tls) {
+				handshakes.incrementAndGet();
+			}
+			return connected;
+		}
+
+		@Override
+		public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+			if (delegate instanceof LayeredConnectionSocketFactory) {
+				handshakes.incrementAndGet();
+				return ((LayeredConnectionSocketFactory) delegate).createLayeredSocket(socket, target, port, context);
+			}
+			return socket;
+		}
+	}
+}
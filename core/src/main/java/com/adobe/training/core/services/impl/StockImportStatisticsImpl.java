@@ -0,0 +1,144 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.osgi.service.component.annotations.Component;
+
+import com.adobe.training.core.services.FetchResult;
+import com.adobe.training.core.services.StockImportStatistics;
+
+/**
+ * In memory counters and stage timing histograms of the stock import since the bundle was
+ * started, exposed as the com.adobe.training:type=StockImportStatistics MBean
+ */
+@Component(service = {StockImportStatistics.class, StockImportStatisticsMBean.class},
+		property = "jmx.objectname=com.adobe.training:type=StockImportStatistics")
+public class StockImportStatisticsImpl implements StockImportStatistics, StockImportStatisticsMBean {
+
+	private static final String[] TIMING_ITEMS = {"stage", "count", "meanMillis", "p50Millis", "p90Millis", "p99Millis", "maxMillis"};
+	private static final CompositeType TIMING_TYPE;
+	private static final TabularType TIMINGS_TYPE;
+
+	static {
+		try {
+			OpenType<?>[] types = {SimpleType.STRING, SimpleType.LONG, SimpleType.DOUBLE, SimpleType.DOUBLE,
+					SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE};
+			TIMING_TYPE = new CompositeType("StageTiming", "Timing of an import stage", TIMING_ITEMS, TIMING_ITEMS, types);
+			TIMINGS_TYPE = new TabularType("StageTimings", "Timings of the import stages", TIMING_TYPE, new String[] {"stage"});
+		} catch (OpenDataException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private final AtomicLong notModified = new AtomicLong();
+	private final AtomicLong unchanged = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong identical = new AtomicLong();
+	private final AtomicLong propertiesReceived = new AtomicLong();
+	private final AtomicLong propertiesWritten = new AtomicLong();
+	private final Map<Stage, LatencyHistogram> timings = new EnumMap<>(Stage.class);
+
+	public StockImportStatisticsImpl() {
+		for (Stage stage : Stage.values()) {
+			timings.put(stage, new LatencyHistogram());
+		}
+	}
+
+	@Override
+	public void recordTime(Stage stage, long nanos) {
+		timings.get(stage).record(nanos);
+	}
+
+	@Override
+	public void recordFetch(FetchResult.Status status) {
+		if (status == FetchResult.Status.NOT_MODIFIED) {
+			notModified.incrementAndGet();
+		} else if (status == FetchResult.Status.UNCHANGED) {
+			unchanged.incrementAndGet();
+		}
+	}
+
+	@Override
+	public void recordWritten(int symbols) {
+		written.addAndGet(symbols);
+	}
+
+	@Override
+	public void recordProperties(int received, int written) {
+		propertiesReceived.addAndGet(received);
+		propertiesWritten.addAndGet(written);
+		if (written == 0) {
+			identical.incrementAndGet();
+		}
+	}
+
+	@Override
+	public long getNotModifiedCount() {
+		return notModified.get();
+	}
+
+	@Override
+	public long getUnchangedCount() {
+		return unchanged.get();
+	}
+
+	@Override
+	public long getSkippedCount() {
+		return notModified.get() + unchanged.get();
+	}
+
+	@Override
+	public long getWrittenCount() {
+		return written.get();
+	}
+
+	@Override
+	public long getIdenticalCount() {
+		return identical.get();
+	}
+
+	@Override
+	public long getPropertiesReceivedCount() {
+		return propertiesReceived.get();
+	}
+
+	@Override
+	public long getPropertiesWrittenCount() {
+		return propertiesWritten.get();
+	}
+
+	@Override
+	public TabularData getTimings() {
+		TabularDataSupport table = new TabularDataSupport(TIMINGS_TYPE);
+		for (Map.Entry<Stage, LatencyHistogram> timing : timings.entrySet()) {
+			LatencyHistogram histogram = timing.getValue();
+			Object[] values = {timing.getKey().name(), histogram.getCount(), histogram.getMeanMillis(),
+					histogram.getPercentileMillis(50), histogram.getPercentileMillis(90),
+					histogram.getPercentileMillis(99), histogram.getMaxMillis()};
+			try {
+				table.put(new CompositeDataSupport(TIMING_TYPE, TIMING_ITEMS, values));
+			} catch (OpenDataException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return table;
+	}
+
+	@Override
+	public void resetTimings() {
+		for (LatencyHistogram histogram : timings.values()) {
+			histogram.reset();
+		}
+	}
+}
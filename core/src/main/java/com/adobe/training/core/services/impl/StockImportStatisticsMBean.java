@@ -0,0 +1,28 @@
+package com.adobe.training.core.services.impl;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * Counters and stage timings of the stock import, registered as
+ * com.adobe.training:type=StockImportStatistics
+ */
+public interface StockImportStatisticsMBean {
+
+    long getNotModifiedCount();
+
+    long getUnchangedCount();
+
+    long getWrittenCount();
+
+    long getIdenticalCount();
+
+    long getPropertiesReceivedCount();
+
+    long getPropertiesWrittenCount();
+
+    //One row per stage with count, mean, 50th, 90th and 99th percentile and max in milliseconds
+    TabularData getTimings();
+
+    //Start new timing histograms, e.g. before a load test
+    void resetTimings();
+}
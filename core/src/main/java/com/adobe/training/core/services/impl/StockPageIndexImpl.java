@@ -0,0 +1,308 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.day.cq.commons.jcr.JcrConstants;
+
+import com.adobe.training.core.services.StockPageIndex;
+
+/**
+ * StockPageIndex of the pages below the configured content roots. Every jcr:content of a page is
+ * searched for Stockplex components when the index is activated. Afterwards only the pages whose
+ * content changed are read again, after a short debounce window on a thread of the index, so a
+ * page edit or a tree activation is handled in one pass.
+ *
+ * Stockplex components rendered in the browser are left out, their pages show no quote values.
+ *
+ * The content roots are the resource.paths of the change listener, so the index only receives
+ * events of the pages it covers.
+ */
+@Component(immediate = true,
+		service = {StockPageIndex.class, ResourceChangeListener.class},
+		property = {
+				"resource.change.types=ADDED",
+				"resource.change.types=CHANGED",
+				"resource.change.types=REMOVED"
+		})
+@Designate(ocd = StockPageIndexImpl.Configuration.class)
+public class StockPageIndexImpl implements StockPageIndex, ResourceChangeListener {
+
+	static final String STOCKPLEX_RESOURCE_TYPE = "wetrain/components/stockplex";
+	static final String SYMBOL = "symbol";
+	static final String RENDER_IN_BROWSER = "renderInBrowser";
+
+	private static final String PAGE_CONTENT = "/" + JcrConstants.JCR_CONTENT;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@ObjectClassDefinition(name = "Training Stock Page Index")
+	public @interface Configuration {
+		@AttributeDefinition(
+				name = "Content Roots",
+				description = "Pages below these paths are searched for Stockplex components"
+		)
+		String[] resource_paths() default {"/content/wetrain"};
+
+		@AttributeDefinition(
+				name = "Debounce Window",
+				description = "Milliseconds page changes are collected before the pages are read again",
+				type = AttributeType.INTEGER
+		)
+		int debounce_window() default 1000;
+	}
+
+	@Reference
+	private ResourceResolverFactory resourceResolverFactory;
+
+	//Symbols per page and pages per symbol, guarded by this
+	private final Map<String, Set<String>> symbolsByPage = new HashMap<>();
+	private final Map<String, Set<String>> pagesBySymbol = new HashMap<>();
+
+	//Latest change per path in arrival order, guarded by the map itself
+	private final Map<String, ResourceChange.ChangeType> pending = new LinkedHashMap<>();
+	private boolean updateScheduled;
+
+	private ScheduledExecutorService executor;
+	private long debounceMillis;
+
+	@Activate @Modified
+	protected void activate(Configuration config) {
+		deactivate();
+		debounceMillis = Math.max(0, config.debounce_window());
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "stock-page-index");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try (ResourceResolver resourceResolver = serviceResourceResolver()) {
+			rebuild(resourceResolver, config.resource_paths());
+		} catch (LoginException e) {
+			logger.error("Cannot read the pages with Stockplex components, the index starts empty", e);
+		}
+	}
+
+	@Deactivate
+	protected void deactivate() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		synchronized (pending) {
+			pending.clear();
+			updateScheduled = false;
+		}
+	}
+
+	@Override
+	public synchronized Set<String> getPages(String symbol) {
+		Set<String> pages = pagesBySymbol.get(normalize(symbol));
+		return pages == null ? Collections.emptySet() : Collections.unmodifiableSet(new TreeSet<>(pages));
+	}
+
+	@Override
+	public synchronized Set<String> getPages(Collection<String> symbols) {
+		Set<String> pages = new LinkedHashSet<>();
+		for (String symbol : symbols) {
+			Set<String> symbolPages = pagesBySymbol.get(normalize(symbol));
+			if (symbolPages != null) {
+				pages.addAll(symbolPages);
+			}
+		}
+		return Collections.unmodifiableSet(pages);
+	}
+
+	@Override
+	public synchronized int getPageCount() {
+		return symbolsByPage.size();
+	}
+
+	@Override
+	public void onChange(List<ResourceChange> changes) {
+		synchronized (pending) {
+			for (ResourceChange change : changes) {
+				//Properties of a page node or folder do not name symbols, only added or removed trees matter
+				if (change.getType() == ResourceChange.ChangeType.CHANGED && pageOf(change.getPath()) == null) {
+					continue;
+				}
+				pending.put(change.getPath(), change.getType());
+			}
+			if (!pending.isEmpty() && !updateScheduled && executor != null) {
+				updateScheduled = true;
+				executor.schedule(this::processPending, debounceMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	private void processPending() {
+		Map<String, ResourceChange.ChangeType> changes;
+		synchronized (pending) {
+			changes = new LinkedHashMap<>(pending);
+			pending.clear();
+			updateScheduled = false;
+		}
+		try (ResourceResolver resourceResolver = serviceResourceResolver()) {
+			update(resourceResolver, changes);
+		} catch (LoginException | RuntimeException e) {
+			logger.error("Cannot update the stock page index for {} changed paths", changes.size(), e);
+		}
+	}
+
+	//Replaces the index with the pages found below the roots
+	void rebuild(ResourceResolver resourceResolver, String[] roots) {
+		Map<String, Set<String>> pages = new HashMap<>();
+		for (String root : roots) {
+			Resource resource = resourceResolver.getResource(root);
+			if (resource != null) {
+				collectPages(resource, pages);
+			}
+		}
+		synchronized (this) {
+			symbolsByPage.clear();
+			pagesBySymbol.clear();
+			for (Map.Entry<String, Set<String>> page : pages.entrySet()) {
+				setSymbols(page.getKey(), page.getValue());
+			}
+		}
+		logger.info("Indexed {} pages with Stockplex components", pages.size());
+	}
+
+	/**
+	 * Reads the changed pages again. A change inside a jcr:content updates the symbols of its page,
+	 * an added tree is searched for pages and a removed tree drops all of its pages.
+	 */
+	void update(ResourceResolver resourceResolver, Map<String, ResourceChange.ChangeType> changes) {
+		Set<String> changedPages = new LinkedHashSet<>();
+		for (Map.Entry<String, ResourceChange.ChangeType> change : changes.entrySet()) {
+			String path = change.getKey();
+			String page = pageOf(path);
+			if (page != null) {
+				changedPages.add(page);
+			} else if (change.getValue() == ResourceChange.ChangeType.REMOVED) {
+				removeTree(path);
+			} else {
+				Resource added = resourceResolver.getResource(path);
+				if (added != null) {
+					Map<String, Set<String>> pages = new HashMap<>();
+					collectPages(added, pages);
+					changedPages.addAll(pages.keySet());
+				}
+			}
+		}
+		for (String page : changedPages) {
+			Set<String> symbols = new TreeSet<>();
+			Resource content = resourceResolver.getResource(page + PAGE_CONTENT);
+			if (content != null) {
+				collectSymbols(content, symbols);
+			}
+			synchronized (this) {
+				setSymbols(page, symbols);
+			}
+		}
+	}
+
+	//Searches the jcr:content of every page in the tree, pages can have child pages
+	private static void collectPages(Resource resource, Map<String, Set<String>> pages) {
+		for (Resource child : resource.getChildren()) {
+			if (JcrConstants.JCR_CONTENT.equals(child.getName())) {
+				Set<String> symbols = new TreeSet<>();
+				collectSymbols(child, symbols);
+				if (!symbols.isEmpty()) {
+					pages.put(resource.getPath(), symbols);
+				}
+			} else {
+				collectPages(child, pages);
+			}
+		}
+	}
+
+	private static void collectSymbols(Resource resource, Set<String> symbols) {
+		//A component that loads its quote in the browser does not make its page change with the quote
+		if (resource.getResourceResolver().isResourceType(resource, STOCKPLEX_RESOURCE_TYPE)
+				&& !resource.getValueMap().get(RENDER_IN_BROWSER, false)) {
+			String symbol = normalize(resource.getValueMap().get(SYMBOL, String.class));
+			if (!symbol.isEmpty()) {
+				symbols.add(symbol);
+			}
+		}
+		for (Resource child : resource.getChildren()) {
+			collectSymbols(child, symbols);
+		}
+	}
+
+	//Guarded by this
+	private void setSymbols(String page, Set<String> symbols) {
+		Set<String> previous = symbols.isEmpty() ? symbolsByPage.remove(page) : symbolsByPage.put(page, symbols);
+		if (previous != null) {
+			for (String symbol : previous) {
+				Set<String> pages = pagesBySymbol.get(symbol);
+				pages.remove(page);
+				if (pages.isEmpty()) {
+					pagesBySymbol.remove(symbol);
+				}
+			}
+		}
+		for (String symbol : symbols) {
+			pagesBySymbol.computeIfAbsent(symbol, key -> new TreeSet<>()).add(page);
+		}
+	}
+
+	private synchronized void removeTree(String path) {
+		for (String page : new ArrayList<>(symbolsByPage.keySet())) {
+			if (page.equals(path) || page.startsWith(path + "/")) {
+				setSymbols(page, Collections.emptySet());
+			}
+		}
+	}
+
+	//The page of a path inside a jcr:content, null for any other path
+	private static String pageOf(String path) {
+		int content = path.indexOf(PAGE_CONTENT);
+		if (content < 0) {
+			return null;
+		}
+		int end = content + PAGE_CONTENT.length();
+		return end == path.length() || path.charAt(end) == '/' ? path.substring(0, content) : null;
+	}
+
+	private static String normalize(String symbol) {
+		return symbol == null ? "" : symbol.trim().toUpperCase(Locale.ROOT);
+	}
+
+	private ResourceResolver serviceResourceResolver() throws LoginException {
+		//Get the service user (training-user) that belongs to the training.core:training subservice
+		Map<String, Object> serviceParams = new HashMap<>();
+		serviceParams.put(ResourceResolverFactory.SUBSERVICE, "training");
+		return resourceResolverFactory.getServiceResourceResolver(serviceParams);
+	}
+}
@@ -0,0 +1,154 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.ValueFactory;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.osgi.service.component.annotations.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.day.cq.commons.jcr.JcrConstants;
+
+import com.adobe.training.core.StockDataWriterJob;
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.StockQuery;
+import com.adobe.training.core.services.StockQueryResult;
+import com.adobe.training.core.services.StockQueryService;
+
+/**
+ * Answers screener queries with one JCR-SQL2 query over the trade nodes. The statement only
+ * restricts and orders by properties of the wetrainStockTrade index, which also indexes the node
+ * name, and the page is applied as offset and limit of the query, so the index returns the page
+ * in order and no result set is sorted or skipped in memory. Filter values are bound as
+ * variables, never concatenated into the statement.
+ *
+ * The index definition is installed by the RepositoryInitializer~wetrain-stockindex config.
+ */
+@Component(service = StockQueryService.class)
+public class StockQueryServiceImpl implements StockQueryService {
+
+	static final String INDEX_NAME = "wetrainStockTrade";
+	static final int MAX_LIMIT = 500;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@Override
+	public StockQueryResult search(ResourceResolver resourceResolver, StockQuery query) {
+		Session session = resourceResolver.adaptTo(Session.class);
+		if (session == null) {
+			logger.warn("Cannot query the stocks without a JCR session: {}", query);
+			return new StockQueryResult(Collections.emptyList(), query.getOffset(), false);
+		}
+		int limit = Math.min(query.getLimit(), MAX_LIMIT);
+		List<QuoteSnapshot> quotes = new ArrayList<>(limit);
+		boolean hasMore = false;
+		try {
+			//One row beyond the page tells whether there is a next page
+			Query jcrQuery = createQuery(session, query, false);
+			jcrQuery.setOffset(query.getOffset());
+			jcrQuery.setLimit(limit + 1L);
+			NodeIterator nodes = jcrQuery.execute().getNodes();
+			while (nodes.hasNext()) {
+				Node node = nodes.nextNode();
+				if (quotes.size() == limit) {
+					hasMore = true;
+					break;
+				}
+				Resource trade = resourceResolver.getResource(node.getPath());
+				if (trade != null) {
+					quotes.add(QuoteSnapshot.fromTrade(trade.getParent().getName(), trade.getValueMap()));
+				}
+			}
+		} catch (RepositoryException e) {
+			logger.error("Stock query failed: {}", query, e);
+			return new StockQueryResult(Collections.emptyList(), query.getOffset(), false);
+		}
+		return new StockQueryResult(quotes, query.getOffset(), hasMore);
+	}
+
+	//The query with its variables bound, explain for the query plan instead of the rows
+	Query createQuery(Session session, StockQuery query, boolean explain) throws RepositoryException {
+		QueryManager queryManager = session.getWorkspace().getQueryManager();
+		Query jcrQuery = queryManager.createQuery((explain ? "explain " : "") + statement(query), Query.JCR_SQL2);
+		ValueFactory values = session.getValueFactory();
+		if (query.getSector() != null) {
+			jcrQuery.bindValue("sector", values.createValue(query.getSector()));
+		}
+		if (query.getCompanyPrefix() != null) {
+			jcrQuery.bindValue("company", values.createValue(escapeLike(query.getCompanyPrefix()) + "%"));
+		}
+		if (query.getMinLastTrade() != null) {
+			jcrQuery.bindValue("minLastTrade", values.createValue(query.getMinLastTrade()));
+		}
+		if (query.getMaxLastTrade() != null) {
+			jcrQuery.bindValue("maxLastTrade", values.createValue(query.getMaxLastTrade()));
+		}
+		if (query.getMinYtdChange() != null) {
+			jcrQuery.bindValue("minYtdChange", values.createValue(query.getMinYtdChange()));
+		}
+		if (query.getMaxYtdChange() != null) {
+			jcrQuery.bindValue("maxYtdChange", values.createValue(query.getMaxYtdChange()));
+		}
+		if (query.getMinVolume() != null) {
+			jcrQuery.bindValue("minVolume", values.createValue(query.getMinVolume()));
+		}
+		return jcrQuery;
+	}
+
+	static String statement(StockQuery query) {
+		StringBuilder statement = new StringBuilder(400);
+		statement.append("SELECT * FROM [nt:unstructured] AS t WHERE ISDESCENDANTNODE(t, '")
+				.append(StockDataWriterJob.STOCK_IMPORT_FOLDER)
+				.append("') AND NAME(t) = '").append(QuoteCacheImpl.TRADE).append("'");
+		if (query.getSector() != null) {
+			condition(statement, StockDataWriterJob.SECTOR, "=", "sector");
+		}
+		if (query.getCompanyPrefix() != null) {
+			condition(statement, StockDataWriterJob.COMPANY, "LIKE", "company");
+		}
+		if (query.getMinLastTrade() != null) {
+			condition(statement, StockDataWriterJob.LASTTRADE, ">=", "minLastTrade");
+		}
+		if (query.getMaxLastTrade() != null) {
+			condition(statement, StockDataWriterJob.LASTTRADE, "<=", "maxLastTrade");
+		}
+		if (query.getMinYtdChange() != null) {
+			condition(statement, StockDataWriterJob.YTDCHANGE, ">=", "minYtdChange");
+		}
+		if (query.getMaxYtdChange() != null) {
+			condition(statement, StockDataWriterJob.YTDCHANGE, "<=", "maxYtdChange");
+		}
+		if (query.getMinVolume() != null) {
+			condition(statement, StockDataWriterJob.VOLUME, ">=", "minVolume");
+		}
+		String direction = query.isDescending() ? " DESC" : "";
+		statement.append(" ORDER BY t.[").append(query.getSortField().getProperty()).append(']').append(direction);
+		//Company names break ties for display but are not unique. The path of the trade is unique,
+		//it makes the order total, so pages neither overlap nor skip a trade
+		if (query.getSortField() != StockQuery.SortField.COMPANY_NAME) {
+			statement.append(", t.[").append(StockDataWriterJob.COMPANY).append(']');
+		}
+		statement.append(", t.[").append(JcrConstants.JCR_PATH).append(']');
+		return statement.toString();
+	}
+
+	private static void condition(StringBuilder statement, String property, String operator, String variable) {
+		statement.append(" AND t.[").append(property).append("] ").append(operator).append(" $").append(variable);
+	}
+
+	//% and _ of a company name are matched literally
+	private static String escapeLike(String value) {
+		return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+	}
+}
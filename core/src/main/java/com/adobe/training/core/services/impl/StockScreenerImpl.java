@@ -0,0 +1,507 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.training.core.StockDataWriterJob;
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.QuoteUpdateListener;
+import com.adobe.training.core.services.SectorSummary;
+import com.adobe.training.core.services.StockQuery;
+import com.adobe.training.core.services.StockQueryResult;
+import com.adobe.training.core.services.StockScreener;
+
+/**
+ * StockScreener that keeps the screened values of all symbols in parallel primitive arrays, one
+ * row per symbol, with the sector as an index into the interned sector names. A query scans the
+ * columns it filters and sorts by and keeps the best rows in a bounded heap of row numbers, so
+ * neither a search nor an aggregation allocates per symbol.
+ *
+ * The rows are filled from the trade nodes when the screener starts, updated with every quote an
+ * import job commits and, like the QuoteCache, with trade nodes changed by replication. A removed
+ * symbol is replaced by the last row. Missing prices and changes are NaN and a missing volume -1,
+ * they never match a range and sort last.
+ */
+@Component(immediate = true,
+		service = {StockScreener.class, QuoteUpdateListener.class, ResourceChangeListener.class},
+		property = {
+				ResourceChangeListener.PATHS + "=glob:" + StockDataWriterJob.STOCK_IMPORT_FOLDER + "/*",
+				ResourceChangeListener.PATHS + "=glob:" + StockDataWriterJob.STOCK_IMPORT_FOLDER + "/*/" + QuoteCacheImpl.TRADE,
+				ResourceChangeListener.CHANGES + "=ADDED",
+				ResourceChangeListener.CHANGES + "=CHANGED",
+				ResourceChangeListener.CHANGES + "=REMOVED"
+		})
+public class StockScreenerImpl implements StockScreener, QuoteUpdateListener, ResourceChangeListener {
+
+	//Largest offset plus limit of a search, the heap holds that many rows
+	static final int MAX_WINDOW = 10000;
+	static final int MAX_LIMIT = 500;
+
+	private static final int NO_SECTOR = -1;
+	private static final long NO_VOLUME = -1;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@Reference
+	private ResourceResolverFactory resourceResolverFactory;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	//Columns, guarded by the lock
+	private int size;
+	private String[] symbols = new String[0];
+	private QuoteSnapshot[] quotes = new QuoteSnapshot[0];
+	private String[] companies = new String[0];
+	private int[] sectors = new int[0];
+	private double[] lastTrades = new double[0];
+	private double[] ytdChanges = new double[0];
+	private double[] upDowns = new double[0];
+	private long[] volumes = new long[0];
+
+	private final Map<String, Integer> rows = new HashMap<>();
+	private final List<String> sectorNames = new ArrayList<>();
+	private final Map<String, Integer> sectorIds = new HashMap<>();
+
+	private volatile long version;
+
+	@Activate
+	protected void activate() {
+		try (ResourceResolver resourceResolver = getServiceResolver()) {
+			load(resourceResolver);
+		} catch (LoginException e) {
+			logger.error("Cannot read the trade nodes, the screener starts empty", e);
+		}
+	}
+
+	//Adds the trade nodes of all symbols
+	void load(ResourceResolver resourceResolver) {
+		Resource stocks = resourceResolver.getResource(StockDataWriterJob.STOCK_IMPORT_FOLDER);
+		if (stocks == null) {
+			return;
+		}
+		List<QuoteSnapshot> snapshots = new ArrayList<>();
+		for (Resource stock : stocks.getChildren()) {
+			Resource trade = stock.getChild(QuoteCacheImpl.TRADE);
+			if (trade != null) {
+				snapshots.add(QuoteSnapshot.fromTrade(stock.getName(), trade.getValueMap()));
+			}
+		}
+		quotesUpdated(snapshots);
+		logger.info("Loaded {} symbols into the stock screener", snapshots.size());
+	}
+
+	@Override
+	public void quotesUpdated(List<QuoteSnapshot> updated) {
+		lock.writeLock().lock();
+		try {
+			for (QuoteSnapshot quote : updated) {
+				Integer row = rows.get(quote.getSymbol());
+				if (row == null) {
+					row = size;
+					ensureCapacity(size + 1);
+					rows.put(quote.getSymbol(), row);
+					size++;
+				}
+				set(row, quote);
+			}
+			version++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void onChange(List<ResourceChange> changes) {
+		List<QuoteSnapshot> updated = new ArrayList<>();
+		try (ResourceResolver resourceResolver = getServiceResolver()) {
+			for (ResourceChange change : changes) {
+				String symbol = symbolOf(change.getPath());
+				if (symbol == null) {
+					continue;
+				}
+				Resource trade = resourceResolver.getResource(StockDataWriterJob.STOCK_IMPORT_FOLDER + "/" + symbol
+						+ "/" + QuoteCacheImpl.TRADE);
+				if (trade != null) {
+					updated.add(QuoteSnapshot.fromTrade(symbol, trade.getValueMap()));
+				} else {
+					remove(symbol);
+				}
+			}
+		} catch (LoginException e) {
+			logger.error("Cannot read {} changed trade nodes for the stock screener", changes.size(), e);
+		}
+		if (!updated.isEmpty()) {
+			quotesUpdated(updated);
+		}
+	}
+
+	void remove(String symbol) {
+		lock.writeLock().lock();
+		try {
+			Integer row = rows.remove(symbol);
+			if (row == null) {
+				return;
+			}
+			int last = --size;
+			if (row != last) {
+				symbols[row] = symbols[last];
+				quotes[row] = quotes[last];
+				companies[row] = companies[last];
+				sectors[row] = sectors[last];
+				lastTrades[row] = lastTrades[last];
+				ytdChanges[row] = ytdChanges[last];
+				upDowns[row] = upDowns[last];
+				volumes[row] = volumes[last];
+				rows.put(symbols[row], row);
+			}
+			symbols[last] = null;
+			quotes[last] = null;
+			companies[last] = null;
+			version++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public StockQueryResult search(StockQuery query) {
+		int offset = query.getOffset();
+		if (offset >= MAX_WINDOW) {
+			throw new IllegalArgumentException("Offset " + offset + " beyond the first " + MAX_WINDOW + " quotes");
+		}
+		int limit = Math.min(Math.min(query.getLimit(), MAX_LIMIT), MAX_WINDOW - offset);
+		lock.readLock().lock();
+		try {
+			Filter filter = new Filter(query);
+			if (filter.sector == NO_SECTOR && query.getSector() != null) {
+				return new StockQueryResult(Collections.emptyList(), offset, false);
+			}
+			//The best offset + limit + 1 rows, the one beyond the page tells whether there is a next page
+			Order order = new Order(query.getSortField(), query.isDescending());
+			int[] heap = new int[Math.min(offset + limit + 1, Math.max(size, 1))];
+			int count = 0;
+			for (int row = 0; row < size; row++) {
+				if (!filter.matches(row)) {
+					continue;
+				}
+				if (count < heap.length) {
+					heap[count] = row;
+					siftUp(heap, count++, order);
+				} else if (!order.sortedAfter(row, heap[0]) && order.compare(row, heap[0]) < 0) {
+					heap[0] = row;
+					siftDown(heap, count, order);
+				}
+			}
+			//Heap sort, the row sorted last is taken from the root first
+			for (int end = count - 1; end > 0; end--) {
+				int last = heap[0];
+				heap[0] = heap[end];
+				heap[end] = last;
+				siftDown(heap, end, order);
+			}
+			List<QuoteSnapshot> page = new ArrayList<>(Math.max(0, Math.min(limit, count - offset)));
+			for (int i = offset; i < count && i < offset + limit; i++) {
+				page.add(quotes[heap[i]]);
+			}
+			return new StockQueryResult(page, offset, count > offset + limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<SectorSummary> getSectorSummaries(StockQuery filterQuery) {
+		lock.readLock().lock();
+		try {
+			Filter filter = new Filter(filterQuery);
+			int sectorCount = sectorNames.size();
+			int[] counts = new int[sectorCount];
+			long[] totalVolumes = new long[sectorCount];
+			double[] ytdSums = new double[sectorCount];
+			int[] ytdCounts = new int[sectorCount];
+			int[] advancing = new int[sectorCount];
+			int[] declining = new int[sectorCount];
+			int[] leaders = new int[sectorCount];
+			Arrays.fill(leaders, -1);
+			for (int row = 0; row < size; row++) {
+				int sector = sectors[row];
+				if (sector == NO_SECTOR || !filter.matches(row)) {
+					continue;
+				}
+				counts[sector]++;
+				if (volumes[row] != NO_VOLUME) {
+					totalVolumes[sector] += volumes[row];
+				}
+				double ytdChange = ytdChanges[row];
+				if (!Double.isNaN(ytdChange)) {
+					ytdSums[sector] += ytdChange;
+					ytdCounts[sector]++;
+					if (leaders[sector] < 0 || ytdChange > ytdChanges[leaders[sector]]) {
+						leaders[sector] = row;
+					}
+				}
+				if (upDowns[row] > 0) {
+					advancing[sector]++;
+				} else if (upDowns[row] < 0) {
+					declining[sector]++;
+				}
+			}
+			Map<String, SectorSummary> summaries = new TreeMap<>();
+			for (int sector = 0; sector < sectorCount; sector++) {
+				if (counts[sector] > 0) {
+					String name = sectorNames.get(sector);
+					summaries.put(name, new SectorSummary(name, counts[sector], totalVolumes[sector],
+							ytdCounts[sector] > 0 ? ytdSums[sector] / ytdCounts[sector] : null,
+							advancing[sector], declining[sector], leaders[sector] >= 0 ? symbols[leaders[sector]] : null));
+				}
+			}
+			return new ArrayList<>(summaries.values());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public long getVersion() {
+		return version;
+	}
+
+	//Guarded by the write lock
+	private void set(int row, QuoteSnapshot quote) {
+		symbols[row] = quote.getSymbol();
+		quotes[row] = quote;
+		companies[row] = quote.getCompanyName();
+		sectors[row] = sectorId(quote.getSector(), true);
+		lastTrades[row] = value(quote.getLastTrade());
+		ytdChanges[row] = value(quote.getYtdChange());
+		upDowns[row] = value(quote.getUpDown());
+		volumes[row] = quote.getVolume() != null ? quote.getVolume() : NO_VOLUME;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= symbols.length) {
+			return;
+		}
+		int length = Math.max(capacity, Math.max(16, symbols.length * 2));
+		symbols = Arrays.copyOf(symbols, length);
+		quotes = Arrays.copyOf(quotes, length);
+		companies = Arrays.copyOf(companies, length);
+		sectors = Arrays.copyOf(sectors, length);
+		lastTrades = Arrays.copyOf(lastTrades, length);
+		ytdChanges = Arrays.copyOf(ytdChanges, length);
+		upDowns = Arrays.copyOf(upDowns, length);
+		volumes = Arrays.copyOf(volumes, length);
+	}
+
+	//Interned sector ids, new sectors are only added under the write lock
+	private int sectorId(String sector, boolean add) {
+		if (sector == null) {
+			return NO_SECTOR;
+		}
+		Integer id = sectorIds.get(sector);
+		if (id == null) {
+			if (!add) {
+				return NO_SECTOR;
+			}
+			id = sectorNames.size();
+			sectorNames.add(sector);
+			sectorIds.put(sector, id);
+		}
+		return id;
+	}
+
+	private static double value(Double value) {
+		return value != null ? value : Double.NaN;
+	}
+
+	//Max heap by the order, the root is the row sorted last
+	private static void siftUp(int[] heap, int index, Order order) {
+		int row = heap[index];
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (order.compare(row, heap[parent]) <= 0) {
+				break;
+			}
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = row;
+	}
+
+	private static void siftDown(int[] heap, int count, Order order) {
+		int index = 0;
+		int row = heap[0];
+		while (true) {
+			int child = 2 * index + 1;
+			if (child >= count) {
+				break;
+			}
+			if (child + 1 < count && order.compare(heap[child + 1], heap[child]) > 0) {
+				child++;
+			}
+			if (order.compare(heap[child], row) <= 0) {
+				break;
+			}
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = row;
+	}
+
+	//Symbol of a /content/stocks/<SYMBOL> or /content/stocks/<SYMBOL>/trade path
+	private static String symbolOf(String path) {
+		String prefix = StockDataWriterJob.STOCK_IMPORT_FOLDER + "/";
+		if (!path.startsWith(prefix) || path.length() == prefix.length()) {
+			return null;
+		}
+		int slash = path.indexOf('/', prefix.length());
+		return slash < 0 ? path.substring(prefix.length()) : path.substring(prefix.length(), slash);
+	}
+
+	private ResourceResolver getServiceResolver() throws LoginException {
+		//Get the service user (training-user) that belongs to the training.core:training subservice
+		Map<String, Object> serviceParams = new HashMap<>();
+		serviceParams.put(ResourceResolverFactory.SUBSERVICE, "training");
+		return resourceResolverFactory.getServiceResourceResolver(serviceParams);
+	}
+
+	//The filters of a query as primitives, matched under the read lock
+	private final class Filter {
+		private final int sector;
+		private final boolean bySector;
+		private final String companyPrefix;
+		private final double minLastTrade;
+		private final double maxLastTrade;
+		private final boolean byLastTrade;
+		private final double minYtdChange;
+		private final double maxYtdChange;
+		private final boolean byYtdChange;
+		private final long minVolume;
+		private final boolean byVolume;
+
+		Filter(StockQuery query) {
+			bySector = query.getSector() != null;
+			sector = sectorId(query.getSector(), false);
+			companyPrefix = query.getCompanyPrefix();
+			byLastTrade = query.getMinLastTrade() != null || query.getMaxLastTrade() != null;
+			minLastTrade = query.getMinLastTrade() != null ? query.getMinLastTrade() : Double.NEGATIVE_INFINITY;
+			maxLastTrade = query.getMaxLastTrade() != null ? query.getMaxLastTrade() : Double.POSITIVE_INFINITY;
+			byYtdChange = query.getMinYtdChange() != null || query.getMaxYtdChange() != null;
+			minYtdChange = query.getMinYtdChange() != null ? query.getMinYtdChange() : Double.NEGATIVE_INFINITY;
+			maxYtdChange = query.getMaxYtdChange() != null ? query.getMaxYtdChange() : Double.POSITIVE_INFINITY;
+			byVolume = query.getMinVolume() != null;
+			minVolume = byVolume ? query.getMinVolume() : 0;
+		}
+
+		//NaN fails every comparison, so a missing value never matches a range
+		boolean matches(int row) {
+			return (!bySector || sectors[row] == sector)
+					&& (!byLastTrade || (lastTrades[row] >= minLastTrade && lastTrades[row] <= maxLastTrade))
+					&& (!byYtdChange || (ytdChanges[row] >= minYtdChange && ytdChanges[row] <= maxYtdChange))
+					&& (!byVolume || (volumes[row] != NO_VOLUME && volumes[row] >= minVolume))
+					&& (companyPrefix == null || (companies[row] != null && companies[row].startsWith(companyPrefix)));
+		}
+	}
+
+	//Sort order of rows, ties are broken by symbol
+	private final class Order {
+		private final StockQuery.SortField field;
+		private final boolean descending;
+
+		Order(StockQuery.SortField field, boolean descending) {
+			this.field = field;
+			this.descending = descending;
+		}
+
+		/**
+		 * Cheap test on the primitive sort column whether row a is sorted after row b, which
+		 * rejects most rows once the heap is full. False when unsure, compare decides then.
+		 */
+		boolean sortedAfter(int a, int b) {
+			switch (field) {
+				case LAST_TRADE:
+					return doubleSortedAfter(lastTrades[a], lastTrades[b]);
+				case YTD_CHANGE:
+					return doubleSortedAfter(ytdChanges[a], ytdChanges[b]);
+				case VOLUME:
+					return volumes[a] == NO_VOLUME ? volumes[b] != NO_VOLUME
+							: volumes[b] != NO_VOLUME && (descending ? volumes[a] < volumes[b] : volumes[a] > volumes[b]);
+				default:
+					return false;
+			}
+		}
+
+		private boolean doubleSortedAfter(double a, double b) {
+			//Comparisons with NaN are false, a missing value of a is only sorted after a present one of b
+			return (descending ? a < b : a > b) || (Double.isNaN(a) && !Double.isNaN(b));
+		}
+
+		//Negative if row a is sorted before row b
+		int compare(int a, int b) {
+			int result;
+			switch (field) {
+				case LAST_TRADE:
+					result = compareDoubles(lastTrades[a], lastTrades[b]);
+					break;
+				case YTD_CHANGE:
+					result = compareDoubles(ytdChanges[a], ytdChanges[b]);
+					break;
+				case VOLUME:
+					result = volumes[a] == NO_VOLUME || volumes[b] == NO_VOLUME
+							? Boolean.compare(volumes[a] == NO_VOLUME, volumes[b] == NO_VOLUME)
+							: direction(Long.compare(volumes[a], volumes[b]));
+					break;
+				case SECTOR:
+					result = compareStrings(sectors[a] != NO_SECTOR ? sectorNames.get(sectors[a]) : null,
+							sectors[b] != NO_SECTOR ? sectorNames.get(sectors[b]) : null);
+					break;
+				default:
+					result = compareStrings(companies[a], companies[b]);
+			}
+			return result != 0 ? result : symbols[a].compareTo(symbols[b]);
+		}
+
+		private int compareDoubles(double a, double b) {
+			boolean missingA = Double.isNaN(a);
+			boolean missingB = Double.isNaN(b);
+			return missingA || missingB ? Boolean.compare(missingA, missingB) : direction(Double.compare(a, b));
+		}
+
+		private int compareStrings(String a, String b) {
+			return a == null || b == null ? Boolean.compare(a == null, b == null) : direction(a.compareTo(b));
+		}
+
+		private int direction(int result) {
+			return descending ? -result : result;
+		}
+	}
+}
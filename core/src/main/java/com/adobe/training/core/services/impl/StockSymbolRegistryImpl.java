@@ -0,0 +1,80 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.training.core.StockDataWriterJob;
+import com.adobe.training.core.services.StockSymbolRegistry;
+
+/**
+ * StockSymbolRegistry held in a concurrent hash set. The JCR is the store of the registry: on
+ * activation every symbol folder below /content/stocks is registered, afterwards symbols are
+ * added and removed one at a time as their folders change.
+ */
+@Component(service = StockSymbolRegistry.class, immediate = true)
+public class StockSymbolRegistryImpl implements StockSymbolRegistry {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final Set<String> symbols = ConcurrentHashMap.newKeySet();
+
+	@Reference
+	private ResourceResolverFactory resourceResolverFactory;
+
+	@Activate
+	protected void activate() {
+		//Get the service user (training-user) that belongs to the training.core:training subservice
+		Map<String, Object> serviceParams = new HashMap<>();
+		serviceParams.put(ResourceResolverFactory.SUBSERVICE, "training");
+		try (ResourceResolver resourceResolver = resourceResolverFactory.getServiceResourceResolver(serviceParams)) {
+			Resource stocks = resourceResolver.getResource(StockDataWriterJob.STOCK_IMPORT_FOLDER);
+			if (stocks != null) {
+				for (Resource symbolFolder : stocks.getChildren()) {
+					add(symbolFolder.getName());
+				}
+			}
+			logger.info("Registered {} stock symbols from {}", symbols.size(), StockDataWriterJob.STOCK_IMPORT_FOLDER);
+		} catch (LoginException e) {
+			logger.error("Cannot read the stock symbols, the registry starts empty", e);
+		}
+	}
+
+	@Override
+	public boolean add(String symbol) {
+		return symbol != null && SYMBOL.matcher(symbol).matches() && symbols.add(symbol);
+	}
+
+	@Override
+	public boolean remove(String symbol) {
+		return symbol != null && symbols.remove(symbol);
+	}
+
+	@Override
+	public boolean contains(String symbol) {
+		return symbol != null && symbols.contains(symbol);
+	}
+
+	@Override
+	public Set<String> getSymbols() {
+		return Collections.unmodifiableSet(new TreeSet<>(symbols));
+	}
+
+	@Override
+	public int size() {
+		return symbols.size();
+	}
+}
@@ -0,0 +1,194 @@
+package com.adobe.training.core.services.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import com.adobe.training.core.services.FetchResult;
+import com.adobe.training.core.services.QuoteSource;
+
+/**
+ * Quote source for synthetic: stock urls that generates quotes for any symbol, to load test
+ * and benchmark the import without a stock data source.
+ *
+ * Every symbol starts at a price derived from its name and moves in a geometric random walk,
+ * "Ticks per Second" times per second. A fetch returns the quote after all ticks since the
+ * previous fetch, or NOT_MODIFIED when no tick was due. High, low, volume, change and the 52
+ * week range follow the walk. With the same seed the same ticks produce the same prices.
+ */
+@Component(service = QuoteSource.class)
+@Designate(ocd = SyntheticQuoteSource.Configuration.class)
+public class SyntheticQuoteSource implements QuoteSource {
+
+	static final String SCHEME = "synthetic:";
+
+	private static final String[] SECTORS = {"Technology", "Health Care", "Financials", "Energy", "Industrials", "Consumer Staples"};
+	//Ticks caught up in one fetch, older ones are skipped
+	private static final int MAX_TICKS_PER_FETCH = 1000;
+
+	//JsonFactory is thread safe, generators are created per call
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	@ObjectClassDefinition(name = "Training Synthetic Quote Source")
+	public @interface Configuration {
+		@AttributeDefinition(
+				name = "Ticks per Second",
+				description = "Price changes per second and symbol",
+				type = AttributeType.DOUBLE
+		)
+		double ticks_per_second() default 1.0;
+
+		@AttributeDefinition(
+				name = "Volatility",
+				description = "Standard deviation of a price change in percent",
+				type = AttributeType.DOUBLE
+		)
+		double volatility() default 0.1;
+
+		@AttributeDefinition(
+				name = "Seed",
+				description = "Seed of the random walks",
+				type = AttributeType.LONG
+		)
+		long seed() default 0;
+	}
+
+	private final Map<String, RandomWalk> walks = new ConcurrentHashMap<>();
+	private final LongSupplier nanoClock;
+
+	private double ticksPerNano;
+	private double volatility;
+	private long seed;
+
+	public SyntheticQuoteSource() {
+		this(System::nanoTime);
+	}
+
+	SyntheticQuoteSource(LongSupplier nanoClock) {
+		this.nanoClock = nanoClock;
+	}
+
+	@Activate @Modified
+	protected void activate(Configuration config) {
+		ticksPerNano = Math.max(0, config.ticks_per_second()) / TimeUnit.SECONDS.toNanos(1);
+		volatility = Math.max(0, config.volatility()) / 100;
+		seed = config.seed();
+		walks.clear();
+	}
+
+	@Override
+	public boolean accepts(String baseUrl) {
+		return baseUrl.startsWith(SCHEME);
+	}
+
+	@Override
+	public FetchResult fetch(String baseUrl, String symbol) throws IOException {
+		RandomWalk walk = walks.computeIfAbsent(symbol, key -> new RandomWalk(key, seed, nanoClock.getAsLong()));
+		synchronized (walk) {
+			long ticks = (long) ((nanoClock.getAsLong() - walk.started) * ticksPerNano);
+			long due = ticks - walk.ticks;
+			if (due <= 0 && !walk.forgotten) {
+				return FetchResult.notModified();
+			}
+			for (long i = Math.max(0, due - MAX_TICKS_PER_FETCH); i < due; i++) {
+				walk.tick(volatility);
+			}
+			walk.ticks = Math.max(walk.ticks, ticks);
+			walk.forgotten = false;
+			return FetchResult.modified(walk.toJson());
+		}
+	}
+
+	@Override
+	public void forget(String symbol) {
+		RandomWalk walk = walks.get(symbol);
+		if (walk != null) {
+			synchronized (walk) {
+				walk.forgotten = true;
+			}
+		}
+	}
+
+	private static final class RandomWalk {
+		private final String symbol;
+		private final String sector;
+		private final Random random;
+		private final long started;
+		private final double previousClose;
+		private final double yearOpen;
+		private double price;
+		private double high;
+		private double low;
+		private double week52High;
+		private double week52Low;
+		private long volume;
+		private long ticks;
+		//The first fetch returns the full quote
+		private boolean forgotten = true;
+
+		RandomWalk(String symbol, long seed, long started) {
+			this.symbol = symbol;
+			this.random = new Random(seed ^ symbol.hashCode());
+			this.started = started;
+			this.sector = SECTORS[Math.floorMod(symbol.hashCode(), SECTORS.length)];
+			//Between 10 and 1000, the same for a symbol every time
+			price = round(10 * Math.pow(100, random.nextDouble()));
+			previousClose = round(price * (1 + random.nextGaussian() * 0.01));
+			yearOpen = round(price * (1 + random.nextGaussian() * 0.1));
+			high = price;
+			low = price;
+			week52High = round(Math.max(price, yearOpen) * (1 + random.nextDouble() * 0.3));
+			week52Low = round(Math.min(price, yearOpen) * (1 - random.nextDouble() * 0.3));
+		}
+
+		void tick(double volatility) {
+			price = Math.max(0.01, round(price * Math.exp(volatility * random.nextGaussian())));
+			high = Math.max(high, price);
+			low = Math.min(low, price);
+			week52High = Math.max(week52High, price);
+			week52Low = Math.min(week52Low, price);
+			volume += 100 + random.nextInt(10000);
+		}
+
+		byte[] toJson() throws IOException {
+			ByteArrayOutputStream json = new ByteArrayOutputStream(512);
+			try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+				generator.writeStartObject();
+				generator.writeStringField("symbol", symbol);
+				generator.writeStringField("companyName", symbol + " Inc.");
+				generator.writeStringField("sector", sector);
+				generator.writeNumberField("open", previousClose);
+				generator.writeNumberField("high", high);
+				generator.writeNumberField("low", low);
+				generator.writeNumberField("latestPrice", price);
+				generator.writeNumberField("latestUpdate", System.currentTimeMillis());
+				generator.writeNumberField("latestVolume", volume);
+				generator.writeNumberField("change", round(price - previousClose));
+				generator.writeNumberField("week52High", week52High);
+				generator.writeNumberField("week52Low", week52Low);
+				generator.writeNumberField("ytdChange", Math.round((price / yearOpen - 1) * 10000) / 10000.0);
+				generator.writeEndObject();
+			}
+			return json.toByteArray();
+		}
+
+		private static double round(double price) {
+			return Math.round(price * 100) / 100.0;
+		}
+	}
+}
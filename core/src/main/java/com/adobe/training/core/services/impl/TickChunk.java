@@ -0,0 +1,81 @@
+package com.adobe.training.core.services.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Binary layout of a price history chunk: fixed size big endian records of
+ * time (long), price (double) and volume (long), ordered by time.
+ */
+final class TickChunk {
+
+	static final int TICK_BYTES = 24;
+	static final byte[] EMPTY = new byte[0];
+
+	private TickChunk() {
+	}
+
+	static int count(byte[] chunk) {
+		return chunk.length / TICK_BYTES;
+	}
+
+	static long time(byte[] chunk, int index) {
+		return ByteBuffer.wrap(chunk).getLong(index * TICK_BYTES);
+	}
+
+	static double price(byte[] chunk, int index) {
+		return ByteBuffer.wrap(chunk).getDouble(index * TICK_BYTES + 8);
+	}
+
+	static long volume(byte[] chunk, int index) {
+		return ByteBuffer.wrap(chunk).getLong(index * TICK_BYTES + 16);
+	}
+
+	//Returns a new chunk with the tick added at the end, the caller keeps the ticks ordered
+	static byte[] append(byte[] chunk, long time, double price, long volume) {
+		byte[] grown = Arrays.copyOf(chunk, chunk.length + TICK_BYTES);
+		ByteBuffer.wrap(grown)
+				.putLong(chunk.length, time)
+				.putDouble(chunk.length + 8, price)
+				.putLong(chunk.length + 16, volume);
+		return grown;
+	}
+
+	//Index of the first tick at or after the given time, count(chunk) if there is none
+	static int indexOf(byte[] chunk, long from) {
+		ByteBuffer buffer = ByteBuffer.wrap(chunk);
+		int low = 0;
+		int high = count(chunk);
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (buffer.getLong(middle * TICK_BYTES) < from) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Copies the ticks from the inclusive start to the exclusive end time into the arrays.
+	 *
+	 * @return the offset after the last copied tick
+	 */
+	static int copy(byte[] chunk, long from, long to, long[] times, double[] prices, long[] volumes, int offset) {
+		ByteBuffer buffer = ByteBuffer.wrap(chunk);
+		int count = count(chunk);
+		for (int index = indexOf(chunk, from); index < count; index++) {
+			int position = index * TICK_BYTES;
+			long time = buffer.getLong(position);
+			if (time >= to) {
+				break;
+			}
+			times[offset] = time;
+			prices[offset] = buffer.getDouble(position + 8);
+			volumes[offset] = buffer.getLong(position + 16);
+			offset++;
+		}
+		return offset;
+	}
+}
@@ -0,0 +1,57 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket that refills at a fixed rate up to its capacity. Tokens are reserved in call
+ * order, a caller that finds the bucket empty is told how long to wait for its token, so
+ * waiting callers are released evenly at the refill rate.
+ */
+final class TokenBucket {
+
+	private final double tokensPerNano;
+	private final double capacity;
+	private final LongSupplier nanoClock;
+
+	private double tokens;
+	private long lastRefill;
+
+	TokenBucket(double tokensPerSecond, int capacity) {
+		this(tokensPerSecond, capacity, System::nanoTime);
+	}
+
+	TokenBucket(double tokensPerSecond, int capacity, LongSupplier nanoClock) {
+		this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.capacity = Math.max(1, capacity);
+		this.nanoClock = nanoClock;
+		this.tokens = this.capacity;
+		this.lastRefill = nanoClock.getAsLong();
+	}
+
+	/**
+	 * Takes one token, the bucket may go into debt for callers that have to wait.
+	 *
+	 * @return nanoseconds until the token is available, 0 if it is available now
+	 */
+	synchronized long reserve() {
+		long now = nanoClock.getAsLong();
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+		lastRefill = now;
+		tokens -= 1;
+		return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+	}
+
+	/**
+	 * Takes one token and sleeps until it is available.
+	 *
+	 * @return nanoseconds waited
+	 */
+	long acquire() throws InterruptedException {
+		long wait = reserve();
+		if (wait > 0) {
+			TimeUnit.NANOSECONDS.sleep(wait);
+		}
+		return wait;
+	}
+}
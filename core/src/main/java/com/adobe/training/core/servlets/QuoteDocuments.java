@@ -0,0 +1,107 @@
+package com.adobe.training.core.servlets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import com.adobe.training.core.quotes.QuoteJson;
+import com.adobe.training.core.services.QuoteCache;
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.QuoteUpdateListener;
+
+/**
+ * The JSON document of the latest quote per symbol, serialized once when the quote is imported so
+ * responses only copy bytes. The quote cache stays the source of the quotes: a document is only
+ * returned for the snapshot the cache holds, and a quote that reached the cache some other way,
+ * e.g. by replication to a publish instance, is serialized on its first request.
+ */
+@Component(service = {QuoteDocuments.class, QuoteUpdateListener.class})
+public class QuoteDocuments implements QuoteUpdateListener {
+
+	@Reference
+	private QuoteCache quoteCache;
+
+	private final Map<String, Document> documents = new ConcurrentHashMap<>();
+
+	@Override
+	public void quotesUpdated(List<QuoteSnapshot> quotes) {
+		for (QuoteSnapshot quote : quotes) {
+			documents.put(quote.getSymbol(), new Document(quote));
+		}
+	}
+
+	/**
+	 * @param symbol uppercase stock symbol
+	 * @return the document of the cached quote of the symbol, null if it has not been imported
+	 */
+	Document get(String symbol) {
+		QuoteSnapshot quote = quoteCache.get(symbol);
+		if (quote == null) {
+			documents.remove(symbol);
+			return null;
+		}
+		Document document = documents.get(symbol);
+		if (document == null || (document.quote != quote && !document.quote.equals(quote))) {
+			document = new Document(quote);
+			documents.put(symbol, document);
+		}
+		return document;
+	}
+
+	static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			//Every Java platform implements SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static final class Document {
+		private final QuoteSnapshot quote;
+		private final byte[] json;
+		private final byte[] digest;
+
+		private Document(QuoteSnapshot quote) {
+			this.quote = quote;
+			this.json = serialize(quote);
+			this.digest = sha256().digest(json);
+		}
+
+		QuoteSnapshot getQuote() {
+			return quote;
+		}
+
+		//UTF-8 JSON object of the quote, not to be modified
+		byte[] getJson() {
+			return json;
+		}
+
+		//SHA-256 of the JSON, changes with any value of the quote, not to be modified
+		byte[] getDigest() {
+			return digest;
+		}
+
+		private static byte[] serialize(QuoteSnapshot quote) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+			try (JsonGenerator generator = QuoteJson.JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+				QuoteJson.writeQuote(generator, quote);
+			} catch (IOException e) {
+				//Writing to memory does not fail
+				throw new UncheckedIOException(e);
+			}
+			return out.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package com.adobe.training.core.servlets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import com.adobe.training.core.quotes.QuoteJson;
+import com.adobe.training.core.services.QuoteSnapshot;
+
+/**
+ * Fan-out of quote updates to the connected Server-Sent Events clients of this JVM.
+ *
+ * Published quotes are only kept as the latest snapshot per symbol until the next flush, so a
+ * symbol that is updated many times between two flushes is sent once. Each flushed quote is
+ * encoded once and the same bytes are handed to every client of the symbol.
+ */
+final class QuoteStreamHub {
+
+	static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * A connected client. Sending must not block the hub, a client queues the event and writes
+	 * it when its connection is ready.
+	 */
+	interface Client {
+		/**
+		 * @return false when the client is gone or too far behind, it is then dropped and closed
+		 */
+		boolean send(byte[] event);
+
+		void close();
+	}
+
+	private final int maxClients;
+
+	private final Map<Client, Collection<String>> clients = new ConcurrentHashMap<>();
+	private final Map<String, Set<Client>> clientsBySymbol = new ConcurrentHashMap<>();
+	//Latest unsent snapshot per subscribed symbol
+	private final Map<String, QuoteSnapshot> pending = new ConcurrentHashMap<>();
+
+	private final AtomicLong published = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong sent = new AtomicLong();
+
+	QuoteStreamHub(int maxClients) {
+		this.maxClients = maxClients;
+	}
+
+	/**
+	 * @return false when the hub already has the maximum number of clients
+	 */
+	synchronized boolean subscribe(Client client, Collection<String> symbols) {
+		if (clients.size() >= maxClients) {
+			return false;
+		}
+		clients.put(client, symbols);
+		for (String symbol : symbols) {
+			clientsBySymbol.computeIfAbsent(symbol, key -> ConcurrentHashMap.newKeySet()).add(client);
+		}
+		return true;
+	}
+
+	synchronized void unsubscribe(Client client) {
+		Collection<String> symbols = clients.remove(client);
+		if (symbols == null) {
+			return;
+		}
+		for (String symbol : symbols) {
+			Set<Client> subscribers = clientsBySymbol.get(symbol);
+			if (subscribers != null) {
+				subscribers.remove(client);
+				if (subscribers.isEmpty()) {
+					clientsBySymbol.remove(symbol);
+				}
+			}
+		}
+	}
+
+	//Called by the import jobs, only replaces the pending snapshot of the symbol
+	void publish(QuoteSnapshot quote) {
+		if (!clientsBySymbol.containsKey(quote.getSymbol())) {
+			return;
+		}
+		published.incrementAndGet();
+		if (pending.put(quote.getSymbol(), quote) != null) {
+			coalesced.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Sends the pending snapshots to their subscribers.
+	 *
+	 * @return the number of events that were encoded
+	 */
+	int flush() {
+		int events = 0;
+		for (String symbol : pending.keySet()) {
+			QuoteSnapshot quote = pending.remove(symbol);
+			Set<Client> subscribers = clientsBySymbol.get(symbol);
+			if (quote == null || subscribers == null || subscribers.isEmpty()) {
+				continue;
+			}
+			send(subscribers, encode(quote));
+			events++;
+		}
+		return events;
+	}
+
+	//A comment line keeps proxies from closing idle streams and finds clients that disconnected
+	void heartbeat() {
+		send(clients.keySet(), HEARTBEAT);
+	}
+
+	void closeAll() {
+		for (Client client : new ArrayList<>(clients.keySet())) {
+			unsubscribe(client);
+			client.close();
+		}
+		pending.clear();
+	}
+
+	private void send(Collection<Client> subscribers, byte[] event) {
+		List<Client> dropped = null;
+		for (Client client : subscribers) {
+			if (client.send(event)) {
+				sent.incrementAndGet();
+			} else {
+				if (dropped == null) {
+					dropped = new ArrayList<>();
+				}
+				dropped.add(client);
+			}
+		}
+		if (dropped != null) {
+			for (Client client : dropped) {
+				unsubscribe(client);
+				client.close();
+			}
+		}
+	}
+
+	/**
+	 * Encodes a quote as one SSE event of type quote, with the quote time as event id:
+	 *
+	 *   event: quote
+	 *   id: 1634241600456
+	 *   data: {"symbol":"ADBE",...}
+	 */
+	static byte[] encode(QuoteSnapshot quote) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+		try {
+			out.write("event: quote\n".getBytes(StandardCharsets.UTF_8));
+			if (quote.getLatestUpdate() != null) {
+				out.write(("id: " + quote.getLatestUpdate() + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+			out.write("data: ".getBytes(StandardCharsets.UTF_8));
+			//The generator writes no line breaks, so the JSON stays on the single data line
+			try (JsonGenerator generator = QuoteJson.JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+				generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+				QuoteJson.writeQuote(generator, quote);
+			}
+			out.write("\n\n".getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			//ByteArrayOutputStream does not throw
+			throw new UncheckedIOException(e);
+		}
+		return out.toByteArray();
+	}
+
+	boolean isFull() {
+		return clients.size() >= maxClients;
+	}
+
+	int getClientCount() {
+		return clients.size();
+	}
+
+	//Number of published quotes for subscribed symbols
+	long getPublishedCount() {
+		return published.get();
+	}
+
+	//Number of published quotes replaced by a newer one before they were sent
+	long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	//Number of events and heartbeats handed to clients
+	long getSentCount() {
+		return sent.get();
+	}
+}
@@ -0,0 +1,336 @@
+package com.adobe.training.core.servlets;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Servlet;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.apache.sling.servlets.annotations.SlingServletPaths;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.training.core.services.QuoteCache;
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.QuoteUpdateListener;
+
+/**
+ * Pushes quote updates to browsers as Server-Sent Events:
+ *
+ *   new EventSource("/bin/training/quotestream/ADBE,MSFT")
+ *     .addEventListener("quote", e => render(JSON.parse(e.data)));
+ *
+ * The servlet is notified by the import jobs after each commit and feeds one QuoteStreamHub per
+ * JVM, so connected clients never read the repository. The current quotes are sent right after
+ * connecting.
+ *
+ * Connections are held with Servlet 3 async requests and written with non-blocking output, so an
+ * idle client holds no request thread. A client that cannot keep up with its events is dropped,
+ * EventSource reconnects on its own.
+ */
+@Component(service = {Servlet.class, QuoteUpdateListener.class})
+@SlingServletPaths(QuoteStreamServlet.PATH)
+@Designate(ocd = QuoteStreamServlet.Configuration.class)
+public class QuoteStreamServlet extends SlingSafeMethodsServlet implements QuoteUpdateListener {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient Logger logger = LoggerFactory.getLogger(getClass());
+
+	static final String PATH = "/bin/training/quotestream";
+
+	//Browsers wait this long before reconnecting a closed stream
+	private static final byte[] RETRY = "retry: 5000\n\n".getBytes(StandardCharsets.UTF_8);
+
+	@ObjectClassDefinition(name = "Training Quote Stream Servlet")
+	public @interface Configuration {
+		@AttributeDefinition(
+				name = "Max Symbols",
+				description = "Largest number of symbols one client can subscribe to",
+				type = AttributeType.INTEGER
+		)
+		int max_symbols() default 50;
+
+		@AttributeDefinition(
+				name = "Max Clients",
+				description = "Number of streams this instance keeps open, more clients are answered with 503",
+				type = AttributeType.INTEGER
+		)
+		int max_clients() default 10000;
+
+		@AttributeDefinition(
+				name = "Flush Interval",
+				description = "Milliseconds between two sends, updates of a symbol in between are sent once",
+				type = AttributeType.INTEGER
+		)
+		int flush_interval() default 500;
+
+		@AttributeDefinition(
+				name = "Heartbeat Interval",
+				description = "Seconds between comment lines that keep idle streams open",
+				type = AttributeType.INTEGER
+		)
+		int heartbeat_interval() default 20;
+
+		@AttributeDefinition(
+				name = "Max Queued Events",
+				description = "Events waiting to be written to one client before it is dropped as too slow",
+				type = AttributeType.INTEGER
+		)
+		int max_queued_events() default 200;
+
+		@AttributeDefinition(
+				name = "Stream Timeout",
+				description = "Minutes after which a stream is closed and the browser reconnects",
+				type = AttributeType.INTEGER
+		)
+		int stream_timeout() default 30;
+	}
+
+	@Reference
+	private transient QuoteCache quoteCache;
+
+	private transient QuoteStreamHub hub;
+	private transient ScheduledExecutorService scheduler;
+	private int maxSymbols;
+	private int maxQueuedEvents;
+	private long streamTimeoutMillis;
+
+	@Activate @Modified
+	protected void activate(Configuration config) {
+		deactivate();
+		maxSymbols = Math.max(1, config.max_symbols());
+		maxQueuedEvents = Math.max(1, config.max_queued_events());
+		streamTimeoutMillis = TimeUnit.MINUTES.toMillis(Math.max(1, config.stream_timeout()));
+		hub = new QuoteStreamHub(Math.max(1, config.max_clients()));
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "quote-stream-hub");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long flushInterval = Math.max(10, config.flush_interval());
+		long heartbeatInterval = TimeUnit.SECONDS.toMillis(Math.max(1, config.heartbeat_interval()));
+		QuoteStreamHub activeHub = hub;
+		scheduler.scheduleWithFixedDelay(() -> run(activeHub::flush), flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+		scheduler.scheduleWithFixedDelay(() -> run(activeHub::heartbeat), heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+	}
+
+	@Deactivate
+	protected void deactivate() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+		if (hub != null) {
+			hub.closeAll();
+			hub = null;
+		}
+	}
+
+	@Override
+	public void quotesUpdated(List<QuoteSnapshot> quotes) {
+		QuoteStreamHub activeHub = hub;
+		if (activeHub != null) {
+			for (QuoteSnapshot quote : quotes) {
+				activeHub.publish(quote);
+			}
+		}
+	}
+
+	@Override
+	protected void doGet(SlingHttpServletRequest request, SlingHttpServletResponse response) throws IOException {
+		Set<String> symbols = StockQuotesServlet.requestedSymbols(request);
+		if (symbols.isEmpty() || symbols.size() > maxSymbols) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Request 1 to " + maxSymbols + " stock symbols");
+			return;
+		}
+		for (String symbol : symbols) {
+			if (!StockQuotesServlet.isValidSymbol(symbol)) {
+				response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid stock symbol");
+				return;
+			}
+		}
+		QuoteStreamHub activeHub = hub;
+		if (activeHub == null || activeHub.isFull() || !request.isAsyncSupported()) {
+			response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Quote streams are not available");
+			return;
+		}
+
+		//Current quotes are read before going async, while the request resolver is still open
+		List<byte[]> initial = new ArrayList<>(symbols.size() + 1);
+		initial.add(RETRY);
+		for (String symbol : symbols) {
+			QuoteSnapshot quote = quoteCache.get(symbol);
+			if (quote != null) {
+				initial.add(QuoteStreamHub.encode(quote));
+			}
+		}
+
+		response.setContentType("text/event-stream");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Cache-Control", "no-cache, no-store");
+		response.setHeader("X-Accel-Buffering", "no");
+
+		AsyncContext async = request.startAsync();
+		async.setTimeout(streamTimeoutMillis);
+		StreamClient client = new StreamClient(activeHub, async, response.getOutputStream(),
+				Math.max(maxQueuedEvents, initial.size()));
+		async.addListener(client);
+		for (byte[] event : initial) {
+			client.send(event);
+		}
+		if (!activeHub.subscribe(client, new ArrayList<>(symbols))) {
+			//Another request took the last free place in the meantime
+			logger.warn("Quote stream limit of {} clients reached", activeHub.getClientCount());
+			client.close();
+			return;
+		}
+		client.start();
+	}
+
+	private void run(Runnable task) {
+		try {
+			task.run();
+		} catch (RuntimeException e) {
+			//An exception would cancel the scheduled task for good
+			logger.error("Quote stream task failed", e);
+		}
+	}
+
+	/**
+	 * One async response. Events are queued and written while the output stream is ready, the
+	 * container calls onWritePossible when a blocked write has drained.
+	 */
+	private static final class StreamClient implements QuoteStreamHub.Client, WriteListener, AsyncListener {
+		private final QuoteStreamHub hub;
+		private final AsyncContext async;
+		private final ServletOutputStream out;
+		private final int maxQueued;
+		private final Queue<byte[]> queue = new ArrayDeque<>();
+		private boolean started;
+		private boolean unflushed;
+		private boolean closed;
+
+		StreamClient(QuoteStreamHub hub, AsyncContext async, ServletOutputStream out, int maxQueued) {
+			this.hub = hub;
+			this.async = async;
+			this.out = out;
+			this.maxQueued = maxQueued;
+		}
+
+		//Switches the response to non-blocking output, the container then calls onWritePossible
+		synchronized void start() {
+			started = true;
+			out.setWriteListener(this);
+		}
+
+		@Override
+		public synchronized boolean send(byte[] event) {
+			if (closed || queue.size() >= maxQueued) {
+				return false;
+			}
+			queue.add(event);
+			if (started) {
+				try {
+					drain();
+				} catch (IOException | IllegalStateException e) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public synchronized void onWritePossible() throws IOException {
+			drain();
+		}
+
+		private void drain() throws IOException {
+			while (!closed && out.isReady()) {
+				byte[] event = queue.poll();
+				if (event != null) {
+					out.write(event);
+					unflushed = true;
+				} else if (unflushed) {
+					out.flush();
+					unflushed = false;
+				} else {
+					return;
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+				queue.clear();
+			}
+			try {
+				async.complete();
+			} catch (IllegalStateException e) {
+				//already completed by the container
+			}
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			hub.unsubscribe(this);
+			close();
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			hub.unsubscribe(this);
+			synchronized (this) {
+				closed = true;
+			}
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			hub.unsubscribe(this);
+			close();
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			hub.unsubscribe(this);
+			close();
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			//not restarted
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package com.adobe.training.core.servlets;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.apache.sling.servlets.annotations.SlingServletPaths;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import com.adobe.training.core.quotes.QuoteJson;
+import com.adobe.training.core.services.StockSymbolRegistry;
+
+
+/**
+ * Returns the latest quotes of many symbols in one JSON response, for ticker strips that would
+ * otherwise request one model.json per Stockplex. Symbols are given as a comma separated suffix,
+ * which the dispatcher and browsers can cache, or as the symbols parameter:
+ *
+ *   /bin/training/quotes.json/ADBE,MSFT,GOOG
+ *   {"ADBE":{"symbol":"ADBE","companyName":..,"lastTrade":..,..},"MSFT":{..},"GOOG":null}
+ *
+ * Symbols that have not been imported are null. The ETag is a SHA-256 of the symbols and quotes,
+ * and max-age lasts until the next import is due after the latest quote update. The dispatcher
+ * keeps a response for its max-age (enableTTL), no flush is needed when a quote changes. The quotes are
+ * copied from the documents QuoteDocuments serialized on import, Stockplex components rendered in
+ * the browser request their symbol from here.
+ */
+@Component(service = Servlet.class)
+@SlingServletPaths(StockQuotesServlet.PATH)
+@Designate(ocd = StockQuotesServlet.Configuration.class)
+public class StockQuotesServlet extends SlingSafeMethodsServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	static final String PATH = QuoteJson.PATH;
+	static final String PARAM_SYMBOLS = "symbols";
+
+	private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+	@ObjectClassDefinition(name = "Training Stock Quotes Servlet")
+	public @interface Configuration {
+		@AttributeDefinition(
+				name = "Max Symbols",
+				description = "Largest number of symbols accepted in one request",
+				type = AttributeType.INTEGER
+		)
+		int max_symbols() default 500;
+
+		@AttributeDefinition(
+				name = "Update Interval",
+				description = "Seconds between two imports of a symbol, the longest time a response is cached",
+				type = AttributeType.INTEGER
+		)
+		int update_interval() default 120;
+	}
+
+	@Reference
+	private transient QuoteDocuments quoteDocuments;
+
+	private int maxSymbols;
+	private long updateIntervalMillis;
+
+	@Activate @Modified
+	protected void activate(Configuration config) {
+		maxSymbols = Math.max(1, config.max_symbols());
+		updateIntervalMillis = TimeUnit.SECONDS.toMillis(Math.max(1, config.update_interval()));
+	}
+
+	@Override
+	protected void doGet(SlingHttpServletRequest request, SlingHttpServletResponse response) throws IOException {
+		Set<String> symbols = requestedSymbols(request);
+		if (symbols.isEmpty()) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No stock symbols requested");
+			return;
+		}
+		if (symbols.size() > maxSymbols) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "At most " + maxSymbols + " symbols per request");
+			return;
+		}
+		for (String symbol : symbols) {
+			if (!isValidSymbol(symbol)) {
+				response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid stock symbol");
+				return;
+			}
+		}
+
+		//The documents were serialized on import, the response only copies their bytes
+		QuoteDocuments.Document[] documents = new QuoteDocuments.Document[symbols.size()];
+		MessageDigest etagDigest = QuoteDocuments.sha256();
+		long latestUpdate = 0;
+		int length = 2;
+		int index = 0;
+		for (String symbol : symbols) {
+			QuoteDocuments.Document document = quoteDocuments.get(symbol);
+			documents[index++] = document;
+			etagDigest.update(symbol.getBytes(StandardCharsets.US_ASCII));
+			//Symbols have no colon and document digests a fixed length, so the input has a single reading
+			etagDigest.update((byte) ':');
+			if (document != null) {
+				etagDigest.update((byte) 1);
+				etagDigest.update(document.getDigest());
+			} else {
+				etagDigest.update((byte) 0);
+			}
+			if (document != null && document.getQuote().getLatestUpdate() != null) {
+				latestUpdate = Math.max(latestUpdate, document.getQuote().getLatestUpdate());
+			}
+			//"SYMBOL": and the document or null, separated by commas
+			length += symbol.length() + 4 + (document != null ? document.getJson().length : NULL.length);
+		}
+
+		String etag = "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(etagDigest.digest()) + "\"";
+		response.setHeader("ETag", etag);
+		response.setHeader("Cache-Control", "public, max-age=" + maxAgeSeconds(latestUpdate, System.currentTimeMillis()));
+		if (latestUpdate > 0) {
+			response.setDateHeader("Last-Modified", latestUpdate);
+		}
+		if (etag.equals(request.getHeader("If-None-Match"))) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		//Validated symbols are plain ASCII and need no escaping
+		byte[] body = new byte[length - 1];
+		int position = 0;
+		body[position++] = '{';
+		index = 0;
+		for (String symbol : symbols) {
+			QuoteDocuments.Document document = documents[index];
+			if (index++ > 0) {
+				body[position++] = ',';
+			}
+			body[position++] = '"';
+			for (int i = 0; i < symbol.length(); i++) {
+				body[position++] = (byte) symbol.charAt(i);
+			}
+			body[position++] = '"';
+			body[position++] = ':';
+			byte[] json = document != null ? document.getJson() : NULL;
+			System.arraycopy(json, 0, body, position, json.length);
+			position += json.length;
+		}
+		body[position] = '}';
+		response.setContentLength(body.length);
+		response.getOutputStream().write(body);
+	}
+
+	/**
+	 * Seconds until the next import is due, counted in update intervals from the latest quote
+	 * update. Without any update time the response is cached for one interval.
+	 */
+	long maxAgeSeconds(long latestUpdate, long now) {
+		long remaining = updateIntervalMillis;
+		if (latestUpdate > 0 && latestUpdate <= now) {
+			remaining = updateIntervalMillis - (now - latestUpdate) % updateIntervalMillis;
+		}
+		return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remaining));
+	}
+
+	/**
+	 * Uppercase symbols of the comma separated suffix and symbols parameters, in request order
+	 * and without duplicates.
+	 */
+	static Set<String> requestedSymbols(SlingHttpServletRequest request) {
+		Set<String> symbols = new LinkedHashSet<>();
+		String suffix = request.getRequestPathInfo().getSuffix();
+		if (suffix != null) {
+			addSymbols(symbols, suffix.substring(1));
+		}
+		String[] parameters = request.getParameterValues(PARAM_SYMBOLS);
+		if (parameters != null) {
+			for (String parameter : parameters) {
+				addSymbols(symbols, parameter);
+			}
+		}
+		return symbols;
+	}
+
+	static boolean isValidSymbol(String symbol) {
+		return StockSymbolRegistry.SYMBOL.matcher(symbol).matches();
+	}
+
+	private static void addSymbols(Set<String> symbols, String list) {
+		for (String symbol : list.split(",")) {
+			String trimmed = symbol.trim().toUpperCase();
+			if (!trimmed.isEmpty()) {
+				symbols.add(trimmed);
+			}
+		}
+	}
+}
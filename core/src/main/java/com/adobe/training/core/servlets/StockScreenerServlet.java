@@ -0,0 +1,188 @@
+package com.adobe.training.core.servlets;
+
+import java.io.IOException;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.apache.sling.servlets.annotations.SlingServletPaths;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import com.adobe.training.core.quotes.QuoteJson;
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.SectorSummary;
+import com.adobe.training.core.services.StockQuery;
+import com.adobe.training.core.services.StockQueryResult;
+import com.adobe.training.core.services.StockScreener;
+
+import static com.adobe.training.core.StockDataWriterJob.*;
+
+/**
+ * Screens the latest quotes of all symbols in memory, for market overview pages:
+ *
+ *   /bin/training/screener.json?sector=Technology&sort=ytdPercentageChange&order=desc&limit=10
+ *   {"offset":0,"hasMore":true,"quotes":[{"symbol":..,"companyName":..,..},..]}
+ *
+ *   /bin/training/screener.sectors.json?minVolume=1000000
+ *   {"sectors":[{"sector":"Energy","symbols":..,"totalVolume":..,"averageYtdChange":..,..},..]}
+ *
+ * Filters are sector, company (name prefix), minPrice, maxPrice, minYtdChange, maxYtdChange and
+ * minVolume. The sort parameter is one of the trade property names of StockQuery.SortField. The
+ * ETag changes with every update of the screener.
+ */
+@Component(service = Servlet.class)
+@SlingServletPaths(StockScreenerServlet.PATH)
+public class StockScreenerServlet extends SlingSafeMethodsServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String PATH = "/bin/training/screener";
+	static final String SECTORS_SELECTOR = "sectors";
+
+	@Reference
+	private transient StockScreener screener;
+
+	@Override
+	protected void doGet(SlingHttpServletRequest request, SlingHttpServletResponse response) throws IOException {
+		StockQuery query;
+		StockQueryResult result = null;
+		try {
+			query = query(request);
+			if (!isSectorsRequest(request)) {
+				result = screener.search(query);
+			}
+		} catch (IllegalArgumentException e) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+			return;
+		}
+
+		String etag = "\"" + Long.toHexString(screener.getVersion()) + "\"";
+		response.setHeader("ETag", etag);
+		if (etag.equals(request.getHeader("If-None-Match"))) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		try (JsonGenerator generator = QuoteJson.JSON_FACTORY.createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+			generator.writeStartObject();
+			if (isSectorsRequest(request)) {
+				generator.writeArrayFieldStart("sectors");
+				for (SectorSummary summary : screener.getSectorSummaries(query)) {
+					writeSummary(generator, summary);
+				}
+				generator.writeEndArray();
+			} else {
+				generator.writeNumberField("offset", result.getOffset());
+				generator.writeBooleanField("hasMore", result.hasMore());
+				generator.writeArrayFieldStart("quotes");
+				for (QuoteSnapshot quote : result.getQuotes()) {
+					QuoteJson.writeQuote(generator, quote);
+				}
+				generator.writeEndArray();
+			}
+			generator.writeEndObject();
+		}
+	}
+
+	//The query of the request parameters, IllegalArgumentException for invalid values
+	static StockQuery query(SlingHttpServletRequest request) {
+		StockQuery query = StockQuery.all()
+				.withSector(parameter(request, "sector"))
+				.withCompanyPrefix(parameter(request, "company"))
+				.withLastTrade(doubleParameter(request, "minPrice"), doubleParameter(request, "maxPrice"))
+				.withYtdChange(doubleParameter(request, "minYtdChange"), doubleParameter(request, "maxYtdChange"))
+				.withMinVolume(longParameter(request, "minVolume"));
+		String sort = parameter(request, "sort");
+		if (sort != null) {
+			StockQuery.SortField sortField = null;
+			for (StockQuery.SortField field : StockQuery.SortField.values()) {
+				if (field.getProperty().equals(sort)) {
+					sortField = field;
+				}
+			}
+			if (sortField == null) {
+				throw new IllegalArgumentException("Invalid sort " + sort);
+			}
+			query = query.sortBy(sortField, "desc".equalsIgnoreCase(request.getParameter("order")));
+		}
+		Long offset = longParameter(request, "offset");
+		Long limit = longParameter(request, "limit");
+		if (offset != null || limit != null) {
+			long pageOffset = offset != null ? offset : 0;
+			long pageLimit = limit != null ? limit : StockQuery.DEFAULT_LIMIT;
+			if (pageOffset > Integer.MAX_VALUE || pageLimit > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Invalid page");
+			}
+			query = query.page((int) pageOffset, (int) pageLimit);
+		}
+		return query;
+	}
+
+	private static boolean isSectorsRequest(SlingHttpServletRequest request) {
+		for (String selector : request.getRequestPathInfo().getSelectors()) {
+			if (SECTORS_SELECTOR.equals(selector)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//null for a missing or empty parameter
+	private static String parameter(SlingHttpServletRequest request, String name) {
+		String value = request.getParameter(name);
+		return value == null || value.isEmpty() ? null : value;
+	}
+
+	private static Double doubleParameter(SlingHttpServletRequest request, String name) {
+		String value = parameter(request, name);
+		if (value == null) {
+			return null;
+		}
+		try {
+			double number = Double.parseDouble(value);
+			if (Double.isNaN(number)) {
+				throw new NumberFormatException();
+			}
+			return number;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + name);
+		}
+	}
+
+	private static Long longParameter(SlingHttpServletRequest request, String name) {
+		String value = parameter(request, name);
+		if (value == null) {
+			return null;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + name);
+		}
+	}
+
+	private static void writeSummary(JsonGenerator generator, SectorSummary summary) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField(SECTOR, summary.getSector());
+		generator.writeNumberField("symbols", summary.getSymbolCount());
+		generator.writeNumberField("totalVolume", summary.getTotalVolume());
+		if (summary.getAverageYtdChange() != null) {
+			generator.writeNumberField("averageYtdChange", summary.getAverageYtdChange());
+		} else {
+			generator.writeNullField("averageYtdChange");
+		}
+		generator.writeNumberField("advancing", summary.getAdvancing());
+		generator.writeNumberField("declining", summary.getDeclining());
+		generator.writeStringField("leader", summary.getLeader());
+		generator.writeEndObject();
+	}
+}
@@ -0,0 +1,159 @@
+package com.adobe.training.core;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.testing.mock.sling.MockSling;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.adobe.training.core.quotes.QuoteRecordReader;
+import com.adobe.training.core.quotes.StockQuote;
+import com.adobe.training.core.services.impl.PriceHistoryServiceImpl;
+import com.adobe.training.core.services.impl.PriceRollupServiceImpl;
+
+/**
+ * Imports a generated full market snapshot of "records" quotes, once only decoding the file and
+ * once writing every quote to the trade nodes of a mocked resource resolver in chunked commits.
+ * Reports records per second and, as the peakHeapMb counter, the peak heap used during the
+ * iteration. A small heap (-Dbenchmark.args="-jvmArgs -Xmx256m") shows the file is not loaded.
+ *
+ * mvn test-compile exec:exec -Pbenchmark -Dbenchmark=BulkQuoteImportBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkQuoteImportBenchmark {
+
+    @Param({"100000"})
+    private int records;
+
+    @Param({"NDJSON", "CSV"})
+    private QuoteRecordReader.Format format;
+
+    private Path file;
+    private ResourceResolver resolver;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long recordsPerSecond;
+        public long peakHeapMb;
+    }
+
+    @Setup
+    public void writeFile() throws IOException {
+        file = Files.createTempFile("market", "." + format.name().toLowerCase());
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (format == QuoteRecordReader.Format.CSV) {
+                out.write("symbol,companyName,sector,latestPrice,open,high,low,latestVolume,change,week52High,week52Low,ytdChange,latestUpdate\n");
+            }
+            for (int i = 0; i < records; i++) {
+                String symbol = symbol(i);
+                double price = 10 + i % 990 + (i % 100) / 100.0;
+                if (format == QuoteRecordReader.Format.CSV) {
+                    out.write(symbol + "," + symbol + " Inc.,Technology," + price + "," + price + "," + price + "," + price
+                            + ",2153447,9.52,699.54,420.78,-0.0325,1634241600456\n");
+                } else {
+                    out.write("{\"symbol\":\"" + symbol + "\",\"companyName\":\"" + symbol + " Inc.\",\"sector\":\"Technology\","
+                            + "\"latestPrice\":" + price + ",\"open\":" + price + ",\"high\":" + price + ",\"low\":" + price
+                            + ",\"latestVolume\":2153447,\"change\":9.52,\"week52High\":699.54,\"week52Low\":420.78,"
+                            + "\"ytdChange\":-0.0325,\"latestUpdate\":1634241600456}\n");
+                }
+            }
+        }
+    }
+
+    @TearDown
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Setup(Level.Iteration)
+    public void newRepository() {
+        resolver = MockSling.newResourceResolver(ResourceResolverType.RESOURCERESOLVER_MOCK);
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeRepository() {
+        resolver.close();
+    }
+
+    @Benchmark
+    public long decode(Counters counters) throws IOException {
+        long start = System.nanoTime();
+        long count = 0;
+        try (InputStream in = Files.newInputStream(file); QuoteRecordReader reader = new QuoteRecordReader(in, format)) {
+            for (StockQuote quote = reader.next(); quote != null; quote = reader.next()) {
+                count++;
+            }
+        }
+        report(counters, count, start);
+        return count;
+    }
+
+    @Benchmark
+    public long importToRepository(Counters counters) throws Exception {
+        long start = System.nanoTime();
+        BulkQuoteWriter writer = new BulkQuoteWriter(resolver, new PriceHistoryServiceImpl(), new PriceRollupServiceImpl(),
+                500, null, quotes -> { });
+        try (InputStream in = Files.newInputStream(file); QuoteRecordReader reader = new QuoteRecordReader(in, format)) {
+            for (StockQuote quote = reader.next(); quote != null; quote = reader.next()) {
+                writer.write(quote);
+            }
+        }
+        writer.commit();
+        report(counters, writer.getWrittenCount(), start);
+        return writer.getWrittenCount();
+    }
+
+    private static void report(Counters counters, long count, long start) {
+        counters.recordsPerSecond = count * TimeUnit.SECONDS.toNanos(1) / Math.max(1, System.nanoTime() - start);
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        counters.peakHeapMb = peak >> 20;
+    }
+
+    //AAAA, AAAB, ... unique for the first 26^4 records
+    private static String symbol(int index) {
+        char[] symbol = new char[4];
+        for (int i = 3; i >= 0; i--) {
+            symbol[i] = (char) ('A' + index % 26);
+            index /= 26;
+        }
+        return new String(symbol);
+    }
+}
@@ -0,0 +1,83 @@
+package com.adobe.training.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import com.adobe.training.core.quotes.StockQuote;
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.impl.PriceHistoryServiceImpl;
+import com.adobe.training.core.services.impl.PriceRollupServiceImpl;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@ExtendWith(AemContextExtension.class)
+class BulkQuoteWriterTest {
+
+    private static final long UPDATE = 1634241600456L;
+
+    @Test
+    void testChunkedCommits(AemContext context) throws Exception {
+        List<List<QuoteSnapshot>> commits = new ArrayList<>();
+        BulkQuoteWriter writer = new BulkQuoteWriter(context.resourceResolver(), new PriceHistoryServiceImpl(),
+                new PriceRollupServiceImpl(), 2, null, commits::add);
+
+        writer.write(quote("ADBE", 483.85));
+        writer.write(quote("MSFT", 304.21));
+        writer.write(quote("../ESCAPE", 1));
+        writer.write(quote("GOOG", 2800.0));
+        writer.write(quote("ADBE", 483.85));
+        writer.commit();
+
+        assertEquals(5, writer.getReceivedCount());
+        assertEquals(1, writer.getInvalidCount());
+        assertEquals(1, writer.getIdenticalCount());
+        assertEquals(3, writer.getWrittenCount());
+        assertEquals(2, writer.getCommitCount());
+        assertEquals(2, commits.get(0).size());
+        assertEquals("GOOG", commits.get(1).get(0).getSymbol());
+
+        assertNotNull(context.resourceResolver().getResource(StockDataWriterJob.STOCK_IMPORT_FOLDER + "/GOOG/trade"));
+        assertNull(context.resourceResolver().getResource("/content/ESCAPE"));
+        Double msft = context.resourceResolver().getResource(StockDataWriterJob.STOCK_IMPORT_FOLDER + "/MSFT/trade")
+                .getValueMap().get(StockDataWriterJob.LASTTRADE, Double.class);
+        assertEquals(304.21, msft.doubleValue());
+        assertNotNull(context.resourceResolver().getResource(StockDataWriterJob.STOCK_IMPORT_FOLDER + "/MSFT/history"));
+        assertNotNull(context.resourceResolver().getResource(StockDataWriterJob.STOCK_IMPORT_FOLDER + "/MSFT/candles"));
+    }
+
+    @Test
+    void testOlderQuotesDoNotRollBackPrices(AemContext context) throws Exception {
+        BulkQuoteWriter writer = new BulkQuoteWriter(context.resourceResolver(), new PriceHistoryServiceImpl(),
+                new PriceRollupServiceImpl(), 10, null, quotes -> { });
+        writer.write(quote("ADBE", 483.85));
+        writer.commit();
+
+        writer.write(quote("ADBE", 470.0, UPDATE - TimeUnit.DAYS.toMillis(1)));
+        writer.write(quote("ADBE", 490.0, UPDATE + TimeUnit.MINUTES.toMillis(2)));
+        writer.commit();
+
+        assertEquals(1, writer.getStaleCount());
+        assertEquals(2, writer.getWrittenCount());
+        Double adbe = context.resourceResolver().getResource(StockDataWriterJob.STOCK_IMPORT_FOLDER + "/ADBE/trade")
+                .getValueMap().get(StockDataWriterJob.LASTTRADE, Double.class);
+        assertEquals(490.0, adbe.doubleValue());
+    }
+
+    private static StockQuote quote(String symbol, double price) {
+        return quote(symbol, price, UPDATE);
+    }
+
+    private static StockQuote quote(String symbol, double price, long latestUpdate) {
+        return new StockQuote(symbol, symbol + " Inc.", "Technology", price, price, price, price, 1000L, 0.0,
+                price, price, 0.0, latestUpdate);
+    }
+}
@@ -0,0 +1,168 @@
+package com.adobe.training.core;
+
+import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+
+import com.adobe.training.core.schedulers.StockImportScheduler;
+import com.adobe.training.core.services.FetchResult;
+import com.adobe.training.core.services.QuoteSource;
+import com.adobe.training.core.services.impl.ImportRateLimiterImpl;
+import com.adobe.training.core.services.impl.PriceHistoryServiceImpl;
+import com.adobe.training.core.services.impl.PriceRollupServiceImpl;
+import com.adobe.training.core.services.impl.QuoteCacheImpl;
+import com.adobe.training.core.services.impl.StockImportStatisticsImpl;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(AemContextExtension.class)
+class StockBatchImportJobTest {
+
+    private static final String URL = "stub:/";
+
+    private final StubQuoteSource quoteSource = new StubQuoteSource();
+    private AemContext context;
+    private StockImportStatisticsImpl statistics;
+    private JobExecutionContext jobContext;
+    private JobExecutionContext.ResultBuilder result;
+
+    @BeforeEach
+    public void setup(AemContext context) {
+        this.context = context;
+        context.registerService(QuoteSource.class, quoteSource);
+        statistics = context.registerInjectActivateService(new StockImportStatisticsImpl());
+        context.registerInjectActivateService(new PriceHistoryServiceImpl());
+        context.registerInjectActivateService(new PriceRollupServiceImpl());
+        context.registerInjectActivateService(new QuoteCacheImpl());
+        context.registerInjectActivateService(new ImportRateLimiterImpl(), "commits.per.second", 1000.0);
+
+        result = mock(JobExecutionContext.ResultBuilder.class, RETURNS_SELF);
+        jobContext = mock(JobExecutionContext.class);
+        when(jobContext.result()).thenReturn(result);
+    }
+
+    @Test
+    void testFailedSymbolsAreReportedPerSymbol() {
+        importer(200).process(job("ADBE", "NOPE", "BROKEN", "MSFT"), jobContext);
+
+        String message = message();
+        verify(result).succeeded();
+        assertTrue(message.startsWith("Imported 2 of 4 stock symbols"), message);
+        assertTrue(message.contains("NOPE=unknown symbol"), message);
+        assertTrue(message.contains("BROKEN=write failed"), message);
+        assertNotNull(trade("ADBE"));
+        assertNotNull(trade("MSFT"));
+        assertNull(trade("BROKEN"));
+        //Both are requested in full again on the next run
+        assertTrue(quoteSource.forgotten.containsAll(Arrays.asList("NOPE", "BROKEN")), quoteSource.forgotten.toString());
+        assertFalse(quoteSource.forgotten.contains("ADBE"));
+        assertFalse(quoteSource.forgotten.contains("MSFT"));
+    }
+
+    @Test
+    void testCommitsEveryBatchSize() {
+        importer(2).process(job("ADBE", "MSFT", "GOOG"), jobContext);
+
+        verify(result).succeeded();
+        verify(jobContext).log("Committed {0}", Arrays.asList("ADBE", "MSFT"));
+        verify(jobContext).log("Committed {0}", Collections.singletonList("GOOG"));
+        assertEquals(3, statistics.getWrittenCount());
+        assertNotNull(trade("GOOG"));
+    }
+
+    @Test
+    void testUncommittedSymbolsAreForgotten() {
+        when(jobContext.isStopped()).thenReturn(true);
+        StockBatchImportJob importer = importer(200);
+        importer.process(job("ADBE", "MSFT"), jobContext);
+
+        verify(result).failed();
+        assertTrue(message().contains("ADBE=job stopped"), message());
+        assertTrue(quoteSource.forgotten.containsAll(Arrays.asList("ADBE", "MSFT")), quoteSource.forgotten.toString());
+        assertNull(trade("ADBE"));
+
+        //The next run gets the full quotes instead of skipping them as not modified
+        when(jobContext.isStopped()).thenReturn(false);
+        importer.process(job("ADBE", "MSFT"), jobContext);
+        verify(result, never()).cancelled();
+        verify(result).succeeded();
+        assertNotNull(trade("ADBE"));
+        assertNotNull(trade("MSFT"));
+    }
+
+    private StockBatchImportJob importer(int commitBatchSize) {
+        return context.registerInjectActivateService(new StockBatchImportJob(),
+                "fetch.threads", 2, "commit.batch.size", commitBatchSize);
+    }
+
+    private static Job job(String... symbols) {
+        Job job = mock(Job.class);
+        when(job.getProperty(StockImportScheduler.JOB_PROP_SYMBOLS, String[].class)).thenReturn(symbols);
+        when(job.getProperty(StockImportScheduler.JOB_PROP_URL, StockImportScheduler.DEFAULT_IMPORT_URL)).thenReturn(URL);
+        return job;
+    }
+
+    private String message() {
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(result, atLeastOnce()).message(message.capture());
+        return message.getValue();
+    }
+
+    private Resource trade(String symbol) {
+        return context.resourceResolver().getResource(StockDataWriterJob.STOCK_IMPORT_FOLDER + "/" + symbol + "/trade");
+    }
+
+    //Serves a generated quote per symbol, NOT_MODIFIED until the symbol is forgotten
+    private static final class StubQuoteSource implements QuoteSource {
+        private final Set<String> fetched = ConcurrentHashMap.newKeySet();
+        private final Set<String> forgotten = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public boolean accepts(String baseUrl) {
+            return baseUrl.startsWith(URL);
+        }
+
+        @Override
+        public FetchResult fetch(String baseUrl, String symbol) throws FileNotFoundException {
+            if ("NOPE".equals(symbol)) {
+                throw new FileNotFoundException(baseUrl + symbol);
+            }
+            if (!fetched.add(symbol)) {
+                return FetchResult.notModified();
+            }
+            String json = "BROKEN".equals(symbol) ? "{\"symbol\":" : "{\"symbol\":\"" + symbol
+                    + "\",\"companyName\":\"" + symbol + " Inc.\",\"latestPrice\":100.5,\"latestUpdate\":1634241600456}";
+            return FetchResult.modified(json.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void forget(String symbol) {
+            fetched.remove(symbol);
+            forgotten.add(symbol);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.adobe.training.core;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.testing.mock.sling.MockSling;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.adobe.training.core.quotes.StockQuote;
+import com.adobe.training.core.services.QuoteSnapshot;
+
+/**
+ * Per quote cost of the write step of the import jobs: converting a quote into its trade values,
+ * compared with the previous conversion that created the zone and both formatters for every quote,
+ * and writing an unchanged quote to its trade node, the common case of a scheduled import.
+ *
+ * The allocation per quote is the gc.alloc.rate.norm of the gc profiler. The snapshot conversion
+ * should stay at the snapshot and its boxed numbers, about 300 bytes, StockDataImporterTest checks
+ * the same budget in the unit tests.
+ *
+ * mvn test-compile exec:exec -Pbenchmark -Dbenchmark=StockDataImporterBenchmark -Dbenchmark.args="-prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StockDataImporterBenchmark {
+
+    //Thursday October 14 2021, 16:00 in New York
+    private static final long CLOSE = 1634241600456L;
+
+    private StockQuote[] quotes;
+    private QuoteSnapshot[] snapshots;
+    private ResourceResolver resolver;
+    private int next;
+
+    @Setup
+    public void createQuotes() throws PersistenceException {
+        quotes = new StockQuote[500];
+        snapshots = new QuoteSnapshot[quotes.length];
+        resolver = MockSling.newResourceResolver(ResourceResolverType.RESOURCERESOLVER_MOCK);
+        for (int i = 0; i < quotes.length; i++) {
+            double price = 10 + i;
+            //Quotes of one import run share a few minutes
+            quotes[i] = new StockQuote("S" + i, "S" + i + " Inc.", "Technology", price, price, price, price,
+                    2153447L, 9.52, 699.54, 420.78, -0.0325, CLOSE + i * 1000L);
+            snapshots[i] = StockDataImporter.toSnapshot(quotes[i]);
+            StockDataImporter.writeTrade(resolver, snapshots[i]);
+        }
+        resolver.commit();
+    }
+
+    @TearDown
+    public void closeRepository() {
+        resolver.close();
+    }
+
+    @Benchmark
+    public QuoteSnapshot snapshot() {
+        return StockDataImporter.toSnapshot(nextQuote());
+    }
+
+    @Benchmark
+    public QuoteSnapshot previousSnapshot() {
+        StockQuote quote = nextQuote();
+        ZoneId timeZone = ZoneId.of("America/New_York");
+        LocalDateTime timePerLatestUpdate = LocalDateTime.ofInstant(Instant.ofEpochMilli(quote.getLatestUpdate()),
+                timeZone);
+        ZonedDateTime timeWithZone = ZonedDateTime.of(timePerLatestUpdate, timeZone);
+        String timeOfUpdate = timeWithZone.format(DateTimeFormatter.ofPattern("hh:mm a zz"));
+        String dayOfUpdate = timeWithZone.format(DateTimeFormatter.ofPattern("E MMMM d, yyyy"));
+        return new QuoteSnapshot(quote.getSymbol(), quote.getCompanyName(), quote.getSector(), timeOfUpdate,
+                dayOfUpdate, quote.getLatestPrice(), quote.getOpen(), quote.getHigh(), quote.getLow(),
+                quote.getLatestVolume(), quote.getChange(), quote.getWeek52High(), quote.getWeek52Low(),
+                quote.getYtdChange(), quote.getLatestUpdate());
+    }
+
+    @Benchmark
+    public int writeUnchangedTrade() throws PersistenceException {
+        int written = StockDataImporter.writeTrade(resolver, snapshots[next]);
+        next = (next + 1) % snapshots.length;
+        return written;
+    }
+
+    private StockQuote nextQuote() {
+        StockQuote quote = quotes[next];
+        next = (next + 1) % quotes.length;
+        return quote;
+    }
+}
@@ -0,0 +1,122 @@
+package com.adobe.training.core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import com.adobe.training.core.quotes.StockQuote;
+import com.adobe.training.core.services.QuoteSnapshot;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@ExtendWith(AemContextExtension.class)
+class StockDataImporterTest {
+
+    //Thursday October 14 2021, 16:00 in New York
+    private static final long CLOSE = 1634241600456L;
+
+    @Test
+    void testSnapshotTimes() {
+        for (long latestUpdate : new long[] {CLOSE, CLOSE + 30_000, CLOSE + 60_000, CLOSE - 86_400_000}) {
+            QuoteSnapshot snapshot = StockDataImporter.toSnapshot(quote("ADBE", latestUpdate));
+            ZonedDateTime time = ZonedDateTime.ofInstant(Instant.ofEpochMilli(latestUpdate),
+                    ZoneId.of("America/New_York"));
+            assertEquals(time.format(DateTimeFormatter.ofPattern("hh:mm a zz")), snapshot.getTimeOfUpdate());
+            assertEquals(time.format(DateTimeFormatter.ofPattern("E MMMM d, yyyy")), snapshot.getDayOfUpdate());
+        }
+    }
+
+    @Test
+    void testWriteTrade(AemContext context) throws Exception {
+        QuoteSnapshot snapshot = StockDataImporter.toSnapshot(quote("ADBE", CLOSE));
+
+        assertEquals(StockDataImporter.TRADE_PROPERTY_COUNT, StockDataImporter.writeTrade(context.resourceResolver(),
+                snapshot));
+        context.resourceResolver().commit();
+        assertEquals(0, StockDataImporter.writeTrade(context.resourceResolver(), snapshot));
+        assertEquals("nt:unstructured", context.resourceResolver()
+                .getResource(StockDataWriterJob.STOCK_IMPORT_FOLDER + "/ADBE/trade").getResourceType());
+    }
+
+    @Test
+    void testMissingPriceIsNull() {
+        QuoteSnapshot snapshot = StockDataImporter.toSnapshot(new StockQuote("ADBE", "Adobe Inc.", "Technology",
+                483.85, Double.NaN, 485.5, 479.1, 1000L, 3.85, 699.54, 420.78, -0.12, CLOSE));
+
+        assertNull(snapshot.getOpenPrice());
+        assertEquals(Double.valueOf(483.85), snapshot.getLastTrade());
+    }
+
+    @Test
+    void testMissingPriceIsRemovedFromTheTrade(AemContext context) throws Exception {
+        StockDataImporter.writeTrade(context.resourceResolver(), StockDataImporter.toSnapshot(quote("ADBE", CLOSE)));
+        context.resourceResolver().commit();
+
+        QuoteSnapshot snapshot = StockDataImporter.toSnapshot(new StockQuote("ADBE", "ADBE Inc.", "Technology",
+                483.85, Double.NaN, 485.5, 479.1, 1000L, 3.85, 699.54, 420.78, -0.12, CLOSE));
+        assertEquals(1, StockDataImporter.writeTrade(context.resourceResolver(), snapshot));
+        context.resourceResolver().commit();
+        assertFalse(context.resourceResolver().getResource(StockDataWriterJob.STOCK_IMPORT_FOLDER + "/ADBE/trade")
+                .getValueMap().containsKey(StockDataWriterJob.OPENPRICE));
+        assertEquals(0, StockDataImporter.writeTrade(context.resourceResolver(), snapshot));
+    }
+
+    @Test
+    void testSnapshotAllocation() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        StockQuote[] quotes = new StockQuote[100];
+        for (int i = 0; i < quotes.length; i++) {
+            quotes[i] = quote("S" + i, CLOSE + i);
+        }
+        String timeOfUpdate = StockDataImporter.toSnapshot(quotes[0]).getTimeOfUpdate();
+        String dayOfUpdate = StockDataImporter.toSnapshot(quotes[0]).getDayOfUpdate();
+
+        //Object sizes depend on the JVM and its flags, so the conversion is compared with creating
+        //the same snapshot directly: formatting a known minute must not add to it
+        long converted = 0;
+        long created = 0;
+        for (int round = 0; round < 5; round++) {
+            converted = allocatedPerQuote(allocations, quotes, StockDataImporter::toSnapshot);
+            created = allocatedPerQuote(allocations, quotes, quote -> new QuoteSnapshot(quote.getSymbol(),
+                    quote.getCompanyName(), quote.getSector(), timeOfUpdate, dayOfUpdate, quote.getLatestPrice(),
+                    quote.getOpen(), quote.getHigh(), quote.getLow(), quote.getLatestVolume(), quote.getChange(),
+                    quote.getWeek52High(), quote.getWeek52Low(), quote.getYtdChange(), quote.getLatestUpdate()));
+        }
+        assertTrue(converted <= created + created / 10, converted + " bytes per converted quote, " + created
+                + " bytes per created snapshot");
+    }
+
+    private static long allocatedPerQuote(com.sun.management.ThreadMXBean allocations, StockQuote[] quotes,
+            Function<StockQuote, QuoteSnapshot> snapshot) {
+        QuoteSnapshot[] snapshots = new QuoteSnapshot[quotes.length];
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < quotes.length; i++) {
+                snapshots[i] = snapshot.apply(quotes[i]);
+            }
+        }
+        return (allocations.getThreadAllocatedBytes(threadId) - before) / (100 * quotes.length);
+    }
+
+    private static StockQuote quote(String symbol, long latestUpdate) {
+        return new StockQuote(symbol, symbol + " Inc.", "Technology", 483.85, 480.0, 485.5, 479.1, 1000L, 3.85,
+                699.54, 420.78, -0.12, latestUpdate);
+    }
+}
@@ -0,0 +1,112 @@
+package com.adobe.training.core.listeners;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import com.adobe.training.core.services.impl.StockSymbolRegistryImpl;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(AemContextExtension.class)
+class StockListenerTest {
+
+    private ResourceResolver resolver;
+    private StockSymbolRegistryImpl registry;
+    private StockListener listener;
+
+    @BeforeEach
+    public void setup(AemContext context) {
+        resolver = context.resourceResolver();
+        context.create().resource("/content/stocks/ADBE");
+        registry = context.registerInjectActivateService(new StockSymbolRegistryImpl());
+        //Batches are processed by the tests, not after the debounce window
+        listener = context.registerInjectActivateService(new StockListener(), "debounce.window", 60000);
+    }
+
+    @Test
+    void testChangesAreCoalescedIntoOneBatch() throws Exception {
+        resolver.create(resolver.getResource("/content/stocks"), "MSFT", Collections.emptyMap());
+        resolver.create(resolver.getResource("/content/stocks"), "GOOG", Collections.emptyMap());
+        resolver.commit();
+        listener.onChange(Arrays.asList(added("MSFT"), added("GOOG")));
+        listener.onChange(Collections.singletonList(added("MSFT")));
+        assertEquals(2, listener.getQueueDepth());
+        assertEquals(1, listener.getCoalescedCount());
+
+        listener.processPending();
+        assertEquals(1, listener.getBatchCount());
+        assertEquals(2, listener.getLastBatchSize());
+        assertEquals(0, listener.getQueueDepth());
+        assertTrue(registry.contains("MSFT"));
+        assertTrue(registry.contains("GOOG"));
+    }
+
+    @Test
+    void testOnlySymbolFoldersAreQueued() throws Exception {
+        listener.onChange(Arrays.asList(added("ABCDEFGHIJK"), added(".."), added("A_B"), added("ADBE/trade")));
+        assertEquals(0, listener.getQueueDepth());
+        listener.onChange(Arrays.asList(added("GE"), added("BRK.B")));
+        assertEquals(2, listener.getQueueDepth());
+        listener.processPending();
+
+        //Lowercase folders are queued and recreated in uppercase
+        resolver.create(resolver.getResource("/content/stocks"), "wday", Collections.emptyMap());
+        resolver.commit();
+        listener.onChange(Collections.singletonList(added("wday")));
+        assertEquals(1, listener.getQueueDepth());
+        listener.processPending();
+        resolver.refresh();
+        assertNull(resolver.getResource("/content/stocks/wday"));
+        assertNotNull(resolver.getResource("/content/stocks/WDAY"));
+    }
+
+    @Test
+    void testShortSymbolsAreUnregistered() throws Exception {
+        resolver.create(resolver.getResource("/content/stocks"), "GE", Collections.emptyMap());
+        resolver.commit();
+        listener.onChange(Collections.singletonList(added("GE")));
+        listener.processPending();
+        assertTrue(registry.contains("GE"));
+
+        resolver.delete(resolver.getResource("/content/stocks/GE"));
+        resolver.commit();
+        listener.onChange(Collections.singletonList(removed("GE")));
+        listener.processPending();
+        assertFalse(registry.contains("GE"));
+    }
+
+    @Test
+    void testRemovedFoldersAreUnregistered() throws Exception {
+        assertTrue(registry.contains("ADBE"));
+        resolver.create(resolver.getResource("/content/stocks"), "MSFT", Collections.emptyMap());
+        resolver.delete(resolver.getResource("/content/stocks/ADBE"));
+        resolver.commit();
+        //The latest change of a folder wins
+        listener.onChange(Arrays.asList(added("MSFT"), added("ADBE"), removed("ADBE")));
+
+        listener.processPending();
+        assertFalse(registry.contains("ADBE"));
+        assertTrue(registry.contains("MSFT"));
+    }
+
+    private static ResourceChange added(String folder) {
+        return new ResourceChange(ResourceChange.ChangeType.ADDED, "/content/stocks/" + folder, false);
+    }
+
+    private static ResourceChange removed(String folder) {
+        return new ResourceChange(ResourceChange.ChangeType.REMOVED, "/content/stocks/" + folder, false);
+    }
+}
@@ -0,0 +1,75 @@
+package com.adobe.training.core.models.impl;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Throughput of the Stockplex data layer JSON. previousGetData is the former getData body, which
+ * created an ObjectMapper and two HashMaps per call and spliced the id in with String.format.
+ *
+ * mvn test-compile exec:exec -Pbenchmark -Dbenchmark=StockplexDataLayerBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StockplexDataLayerBenchmark {
+
+    private static final String ID = "stockplex-5b3b9a2c1d";
+    private static final String TYPE = "wetrain/components/stockplex";
+
+    private final QuoteSnapshot quote = StockplexDataLayerTest.snapshot(483.85);
+
+    @Benchmark
+    public String previousGetData() throws IOException {
+        Map<String, Object> stockInfo = new HashMap<>();
+        stockInfo.put("Request Date", quote.getDayOfUpdate());
+        stockInfo.put("Request Time", quote.getTimeOfUpdate());
+        stockInfo.put("UpDown", quote.getUpDown());
+        stockInfo.put("Open Price", quote.getOpenPrice());
+        stockInfo.put("Range High", quote.getRangeHigh());
+        stockInfo.put("Range Low", quote.getRangeLow());
+        stockInfo.put("Volume", quote.getVolume());
+        stockInfo.put("Company", quote.getCompanyName());
+        stockInfo.put("Sector", quote.getSector());
+        stockInfo.put("52 Week Low", quote.getWeek52Low());
+
+        Map<String, Object> stockplexProperties = new HashMap<String,Object>();
+        stockplexProperties.put("@type", TYPE);
+        stockplexProperties.put("symbol", "ADBE");
+        stockplexProperties.put("summary", "Adobe summary");
+        stockplexProperties.put("showStockInfo", "true");
+        stockplexProperties.put("currentPrice", quote.getLastTrade());
+        stockplexProperties.put("stockInfo", stockInfo);
+        return String.format("{\"%s\":%s}", ID, new ObjectMapper().writeValueAsString(stockplexProperties));
+    }
+
+    //Every call writes the JSON, as after each quote import
+    @Benchmark
+    public String streamingWrite() throws IOException {
+        return StockplexDataLayer.write(ID, TYPE, "ADBE", "Adobe summary", "true", quote);
+    }
+
+    //Repeated renders of the same component and quote
+    @Benchmark
+    public String memoizedGetData() throws IOException {
+        return StockplexDataLayer.toJson(ID, TYPE, "ADBE", "Adobe summary", "true", quote);
+    }
+}
@@ -0,0 +1,73 @@
+package com.adobe.training.core.models.impl;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class StockplexDataLayerTest {
+
+    private static final String TYPE = "wetrain/components/stockplex";
+
+    @Test
+    void testJsonMatchesTheSnapshot() throws Exception {
+        String json = StockplexDataLayer.write("stockplex-1", TYPE, "ADBE", "Say \"hi\"", "true", snapshot(483.85));
+
+        Map<String, Map<String, Object>> data = new ObjectMapper().readValue(json,
+                new TypeReference<Map<String, Map<String, Object>>>() {});
+        Map<String, Object> component = data.get("stockplex-1");
+        assertEquals(TYPE, component.get("@type"));
+        assertEquals("Say \"hi\"", component.get("summary"));
+        assertEquals(483.85, component.get("currentPrice"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stockInfo = (Map<String, Object>) component.get("stockInfo");
+        assertEquals("Adobe Inc.", stockInfo.get("Company"));
+        assertEquals(2153447, stockInfo.get("Volume"));
+        assertNull(stockInfo.get("UpDown"));
+    }
+
+    @Test
+    void testJsonIsRememberedUntilTheQuoteChanges() throws Exception {
+        QuoteSnapshot quote = snapshot(483.85);
+        String first = StockplexDataLayer.toJson("stockplex-2", TYPE, "ADBE", "summary", "true", quote);
+        assertSame(first, StockplexDataLayer.toJson("stockplex-2", TYPE, "ADBE", "summary", "true", quote));
+
+        String changedQuote = StockplexDataLayer.toJson("stockplex-2", TYPE, "ADBE", "summary", "true", snapshot(490.0));
+        assertNotSame(first, changedQuote);
+        String changedSummary = StockplexDataLayer.toJson("stockplex-2", TYPE, "ADBE", "other", "true", snapshot(490.0));
+        assertNotSame(changedQuote, changedSummary);
+    }
+
+    @Test
+    void testRecentlyRenderedJsonOutlivesAFullMemo() throws Exception {
+        QuoteSnapshot quote = snapshot(483.85);
+        String hot = StockplexDataLayer.toJson("stockplex-hot", TYPE, "ADBE", "summary", "true", quote);
+        for (int i = 0; i < 2 * StockplexDataLayer.MAX_ENTRIES; i++) {
+            StockplexDataLayer.toJson("stockplex-cold-" + i, TYPE, "ADBE", "summary", "true", quote);
+            assertSame(hot, StockplexDataLayer.toJson("stockplex-hot", TYPE, "ADBE", "summary", "true", quote));
+        }
+        String cold = StockplexDataLayer.toJson("stockplex-cold-0", TYPE, "ADBE", "summary", "true", quote);
+        assertNotSame(cold, StockplexDataLayer.toJson("stockplex-cold-0", TYPE, "ADBE", "other", "true", quote));
+    }
+
+    @Test
+    void testMissingQuote() throws Exception {
+        String json = StockplexDataLayer.write("stockplex-3", TYPE, "ABCD", null, "false", null);
+        assertEquals("{\"stockplex-3\":{\"@type\":\"" + TYPE + "\",\"symbol\":\"ABCD\",\"summary\":null,"
+                + "\"showStockInfo\":\"false\",\"currentPrice\":0.0,\"stockInfo\":{\"ABCD\":\""
+                + StockplexImpl.NO_IMPORT_MESSAGE + "\"}}}", json);
+    }
+
+    static QuoteSnapshot snapshot(double lastTrade) {
+        return new QuoteSnapshot("ADBE", "Adobe Inc.", "Technology", "04:00 PM EDT", "Thu October 14, 2021",
+                lastTrade, 478.12, 485.47, 476.3, 2153447L, Double.NaN, 699.54, 420.78, -0.0325, 1634241600456L);
+    }
+}
@@ -0,0 +1,69 @@
+package com.adobe.training.core.quotes;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuoteRecordReaderTest {
+
+    @Test
+    void testNdjsonSkipsBadLines() throws Exception {
+        String file = "{\"symbol\":\"ADBE\",\"companyName\":\"Adobe Inc.\",\"latestPrice\":483.85,\"latestUpdate\":1634241600456}\n"
+                + "\n"
+                + "{\"symbol\":\"MSFT\",\"latestPrice\":\n"
+                + "{\"companyName\":\"No symbol\",\"latestPrice\":1,\"latestUpdate\":1}\n"
+                + "{\"symbol\":\"MSFT\",\"latestPrice\":\"304.21\",\"latestUpdate\":1634241600000,\"quote\":{\"nested\":[1,2]}}\n";
+        try (QuoteRecordReader reader = reader(file, QuoteRecordReader.Format.NDJSON)) {
+            StockQuote adbe = reader.next();
+            assertEquals("ADBE", adbe.getSymbol());
+            assertEquals("Adobe Inc.", adbe.getCompanyName());
+            assertEquals(483.85, adbe.getLatestPrice());
+            StockQuote msft = reader.next();
+            assertEquals("MSFT", msft.getSymbol());
+            assertEquals(304.21, msft.getLatestPrice());
+            assertNull(reader.next());
+
+            assertEquals(2, reader.getSkippedCount());
+            assertTrue(reader.getLastError().startsWith("line 4: "));
+        }
+    }
+
+    @Test
+    void testCsvColumnsInAnyOrder() throws Exception {
+        String file = "latestUpdate,symbol,companyName,latestPrice,latestVolume\n"
+                + "1634241600456,ADBE,\"Adobe, Inc.\",483.85,2153447\n"
+                + "1634241600000,MSFT,\"Microsoft \"\"MSFT\"\"\",304.21,\n"
+                + "1634241600000,GOOG,Alphabet,n/a,1\n";
+        try (QuoteRecordReader reader = reader(file, QuoteRecordReader.Format.CSV)) {
+            StockQuote adbe = reader.next();
+            assertEquals("ADBE", adbe.getSymbol());
+            assertEquals("Adobe, Inc.", adbe.getCompanyName());
+            assertEquals(2153447L, adbe.getLatestVolume());
+            assertEquals(1634241600456L, adbe.getLatestUpdate());
+            assertTrue(Double.isNaN(adbe.getHigh()));
+
+            StockQuote msft = reader.next();
+            assertEquals("Microsoft \"MSFT\"", msft.getCompanyName());
+            assertEquals(0, msft.getLatestVolume());
+            assertNull(reader.next());
+            assertEquals(1, reader.getSkippedCount());
+        }
+    }
+
+    @Test
+    void testFormatForFileName() {
+        assertEquals(QuoteRecordReader.Format.NDJSON, QuoteRecordReader.Format.forFileName("/content/dam/market.ndjson"));
+        assertEquals(QuoteRecordReader.Format.NDJSON, QuoteRecordReader.Format.forFileName("market.JSONL"));
+        assertEquals(QuoteRecordReader.Format.CSV, QuoteRecordReader.Format.forFileName("market.csv"));
+        assertNull(QuoteRecordReader.Format.forFileName("market.xlsx"));
+    }
+
+    private static QuoteRecordReader reader(String file, QuoteRecordReader.Format format) {
+        return new QuoteRecordReader(new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)), format);
+    }
+}
@@ -0,0 +1,84 @@
+package com.adobe.training.core.quotes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares the StockQuoteDecoder with the previous parse path of the import job, which created an
+ * ObjectMapper and JsonFactory per quote, bound the whole document to a Map and parsed the numbers again.
+ *
+ * mvn test-compile exec:exec -Pbenchmark -Dbenchmark=StockQuoteDecoderBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StockQuoteDecoderBenchmark {
+
+    @Param({"ADBE", "MSFT"})
+    public String symbol;
+
+    private byte[] quoteJson;
+
+    @Setup
+    public void loadQuote() throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/stock-data/" + symbol + ".json")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            quoteJson = out.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public StockQuote streamingDecoder() throws IOException {
+        return StockQuoteDecoder.decode(symbol, quoteJson);
+    }
+
+    @Benchmark
+    public StockQuote mapBinding() throws IOException {
+        ObjectMapper objMapper = new ObjectMapper();
+        JsonFactory factory = new JsonFactory();
+        Map<String, String> quoteData;
+        try (JsonParser parser = factory.createParser(new InputStreamReader(new ByteArrayInputStream(quoteJson)))) {
+            quoteData = objMapper.readValue(parser, new TypeReference<Map<String, String>>() {});
+        }
+        return new StockQuote(symbol, quoteData.get("companyName"), quoteData.get("sector"),
+                Double.parseDouble(quoteData.get("latestPrice")),
+                Double.parseDouble(quoteData.get("open")),
+                Double.parseDouble(quoteData.get("high")),
+                Double.parseDouble(quoteData.get("low")),
+                Long.parseLong(quoteData.get("latestVolume")),
+                Double.parseDouble(quoteData.get("change")),
+                Double.parseDouble(quoteData.get("week52High")),
+                Double.parseDouble(quoteData.get("week52Low")),
+                Double.parseDouble(quoteData.get("ytdChange")),
+                Long.parseLong(quoteData.get("latestUpdate")));
+    }
+}
@@ -0,0 +1,67 @@
+package com.adobe.training.core.quotes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonParseException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies the StockQuoteDecoder against the quote format of the stock data source
+ */
+class StockQuoteDecoderTest {
+
+    @Test
+    void testDecodeQuoteFile() throws Exception {
+        StockQuote quote;
+        try (InputStream json = getClass().getResourceAsStream("/stock-data/ADBE.json")) {
+            quote = StockQuoteDecoder.decode("ADBE", json);
+        }
+
+        assertEquals("ADBE", quote.getSymbol());
+        assertEquals("Adobe Inc.", quote.getCompanyName());
+        assertEquals("Technology", quote.getSector());
+        assertEquals(483.85, quote.getLatestPrice());
+        assertEquals(478.12, quote.getOpen());
+        assertEquals(485.47, quote.getHigh());
+        assertEquals(476.3, quote.getLow());
+        assertEquals(2153447L, quote.getLatestVolume());
+        assertEquals(9.52, quote.getChange());
+        assertEquals(699.54, quote.getWeek52High());
+        assertEquals(420.78, quote.getWeek52Low());
+        assertEquals(-0.0325, quote.getYtdChange());
+        assertEquals(1634241600456L, quote.getLatestUpdate());
+    }
+
+    @Test
+    void testNumericStringsAndNulls() throws Exception {
+        StockQuote quote = decode("{\"latestPrice\":\"12.5\",\"latestUpdate\":\"1634241600456\","
+                + "\"open\":null,\"sector\":null,\"nested\":{\"latestPrice\":1},\"list\":[1,2]}");
+
+        assertEquals(12.5, quote.getLatestPrice());
+        assertEquals(1634241600456L, quote.getLatestUpdate());
+        assertTrue(Double.isNaN(quote.getOpen()));
+        assertNull(quote.getSector());
+    }
+
+    @Test
+    void testMissingLatestPrice() {
+        assertThrows(JsonParseException.class, () -> decode("{\"latestUpdate\":1634241600456}"));
+    }
+
+    @Test
+    void testMalformedNumber() {
+        assertThrows(JsonParseException.class, () -> decode("{\"latestPrice\":\"n/a\",\"latestUpdate\":1}"));
+    }
+
+    private static StockQuote decode(String json) throws IOException {
+        return StockQuoteDecoder.decode("TEST", json.getBytes(StandardCharsets.UTF_8));
+    }
+}
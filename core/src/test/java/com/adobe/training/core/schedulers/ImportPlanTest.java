@@ -0,0 +1,130 @@
+package com.adobe.training.core.schedulers;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImportPlanTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toMillis(1);
+    private static final List<String> SYMBOLS = Arrays.asList("ADBE", "MSFT", "GOOG");
+
+    //Thursday October 14 2021, 10:00 in New York
+    private static final long TRADING = time(2021, 10, 14, 10, 0);
+
+    private final ImportPlan plan = new ImportPlan(120 * SECOND, 30 * SECOND, 3600 * SECOND, 0.5, 600,
+            Collections.singleton(LocalDate.of(2021, 11, 25)));
+
+    @Test
+    void testMarketHours() {
+        assertTrue(plan.isTradingTime(TRADING));
+        assertTrue(plan.isTradingTime(time(2021, 10, 14, 9, 30)));
+        assertFalse(plan.isTradingTime(time(2021, 10, 14, 16, 0)));
+        assertFalse(plan.isTradingTime(time(2021, 10, 16, 11, 0)));
+        assertFalse(plan.isTradingTime(time(2021, 11, 25, 11, 0)));
+    }
+
+    @Test
+    void testSymbolsAreDueAfterTheTradingInterval() {
+        Map<String, List<Long>> fetches = run(plan, SYMBOLS, TRADING, TRADING + 600 * SECOND, SECOND);
+        for (String symbol : SYMBOLS) {
+            List<Long> times = fetches.get(symbol);
+            assertTrue(times.get(0) - TRADING <= 120 * SECOND);
+            for (int i = 1; i < times.size(); i++) {
+                assertEquals(120 * SECOND, times.get(i) - times.get(i - 1));
+            }
+        }
+    }
+
+    @Test
+    void testSymbolsAreDueAfterTheClosedInterval() {
+        long evening = time(2021, 10, 14, 18, 0);
+        Map<String, List<Long>> fetches = run(plan, SYMBOLS, evening, evening + 3 * 3600 * SECOND, SECOND);
+        for (String symbol : SYMBOLS) {
+            List<Long> times = fetches.get(symbol);
+            assertTrue(times.get(0) - evening <= 120 * SECOND);
+            assertEquals(3, times.size());
+            assertEquals(3600 * SECOND, times.get(1) - times.get(0));
+        }
+    }
+
+    @Test
+    void testNewSymbolsAreSpreadOverTheInterval() {
+        List<String> symbols = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            symbols.add("S" + i);
+        }
+        //Only symbols with offset 0 are due right away
+        assertTrue(plan.due(symbols, TRADING).size() < 10);
+        //Every following 15 second run of the 120 second interval takes about an eighth of the symbols
+        int[] perRun = new int[8];
+        for (int run = 0; run < perRun.length; run++) {
+            perRun[run] = plan.due(symbols, TRADING + (run + 1) * 15 * SECOND).size();
+        }
+        for (int count : perRun) {
+            assertTrue(count > 100 && count < 200, Arrays.toString(perRun));
+        }
+    }
+
+    @Test
+    void testLargePriceChangesShortenTheInterval() {
+        run(plan, SYMBOLS, TRADING, TRADING + 120 * SECOND, SECOND);
+        long changed = TRADING + 120 * SECOND;
+        plan.recordPrice("ADBE", 100.0, changed);
+        plan.recordPrice("ADBE", 110.0, changed);
+        plan.recordPrice("MSFT", 100.0, changed);
+        plan.recordPrice("MSFT", 100.01, changed);
+
+        assertEquals(30 * SECOND, plan.tradingInterval("ADBE", changed));
+        assertTrue(plan.tradingInterval("MSFT", changed) > 115 * SECOND);
+        assertEquals(120 * SECOND, plan.tradingInterval("GOOG", changed));
+
+        Map<String, List<Long>> fetches = run(plan, SYMBOLS, changed, changed + 240 * SECOND, SECOND);
+        assertTrue(fetches.get("ADBE").size() >= 6);
+        assertTrue(fetches.get("GOOG").size() <= 2);
+
+        //Without further changes the volatility fades and the interval grows again
+        assertTrue(plan.tradingInterval("ADBE", changed + TimeUnit.HOURS.toMillis(1)) > 100 * SECOND);
+    }
+
+    @Test
+    void testRequestBudget() {
+        ImportPlan limited = new ImportPlan(120 * SECOND, 30 * SECOND, 3600 * SECOND, 0.5, 4,
+                Collections.emptySet());
+        List<String> symbols = Arrays.asList("ADBE", "MSFT", "GOOG", "AMZN", "WDAY", "ORCL", "INTC", "CSCO", "NVDA", "IBM");
+        Map<String, List<Long>> fetches = run(limited, symbols, TRADING, TRADING + 600 * SECOND, SECOND);
+        int total = 0;
+        for (List<Long> times : fetches.values()) {
+            total += times.size();
+        }
+        //10 symbols every 2 minutes would be 50 requests, the budget allows 4 saved up plus 4 per minute
+        assertTrue(total >= 40 && total <= 44, "requests: " + total);
+    }
+
+    private static Map<String, List<Long>> run(ImportPlan plan, Collection<String> symbols, long from, long to, long step) {
+        Map<String, List<Long>> fetches = new HashMap<>();
+        for (long now = from; now < to; now += step) {
+            for (String symbol : plan.due(symbols, now)) {
+                fetches.computeIfAbsent(symbol, key -> new ArrayList<>()).add(now);
+            }
+        }
+        return fetches;
+    }
+
+    private static long time(int year, int month, int day, int hour, int minute) {
+        return ZonedDateTime.of(year, month, day, hour, minute, 0, 0, ImportPlan.EXCHANGE_ZONE).toInstant().toEpochMilli();
+    }
+}
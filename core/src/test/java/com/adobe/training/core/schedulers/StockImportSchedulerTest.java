@@ -0,0 +1,31 @@
+package com.adobe.training.core.schedulers;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StockImportSchedulerTest {
+
+    @Test
+    void testSpreadCronKeepsThePeriod() {
+        String adbe = StockImportScheduler.spreadCron("0 0/2 * * * ?", "ADBE");
+        String[] fields = adbe.split(" ");
+        assertTrue(Integer.parseInt(fields[0]) < 60, adbe);
+        assertTrue(fields[1].equals("0/2") || fields[1].equals("1/2"), adbe);
+        assertEquals(adbe, StockImportScheduler.spreadCron("0 0/2 * * * ?", "ADBE"));
+
+        assertTrue(StockImportScheduler.spreadCron("0 * * * * ?", "MSFT").endsWith(" * * * * ?"));
+        assertTrue(StockImportScheduler.spreadCron("0 30 9 * * ?", "MSFT").endsWith(" 30 9 * * ?"));
+        assertEquals("15 0/2 * * * ?", StockImportScheduler.spreadCron("15 0/2 * * * ?", "MSFT"));
+        assertEquals("0 0/2 * * * ?", StockImportScheduler.spreadCron("0 0/2 * * * ?", ""));
+    }
+
+    @Test
+    void testOffsetsStayInTheInterval() {
+        for (int i = 0; i < 1000; i++) {
+            long offset = StockImportScheduler.offsetMillis("S" + i, 120_000);
+            assertTrue(offset >= 0 && offset < 120_000);
+        }
+    }
+}
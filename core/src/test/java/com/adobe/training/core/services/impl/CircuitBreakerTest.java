@@ -0,0 +1,70 @@
+package com.adobe.training.core.services.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private long now = 1000;
+    private final CircuitBreaker breaker = new CircuitBreaker(3, 100, 250, () -> now);
+
+    @Test
+    void testOpensAfterFailuresInARow() {
+        fail(2);
+        breaker.onSuccess();
+        fail(2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        fail(1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void testSingleProbeAfterOpenTime() {
+        fail(3);
+        now += 100;
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // no other request while the probe is out
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void testFailedProbesDoubleTheOpenTime() {
+        fail(3);
+        now += 100;
+        fail(1);
+        now += 199;
+        assertFalse(breaker.tryAcquire());
+        now += 1;
+        fail(1);
+        // limited by the max open time
+        now += 249;
+        assertFalse(breaker.tryAcquire());
+        now += 1;
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void testReleasedProbeCanBeRetried() {
+        fail(3);
+        now += 100;
+        assertTrue(breaker.tryAcquire());
+        breaker.release();
+        assertTrue(breaker.tryAcquire());
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import com.adobe.training.core.services.QuoteSnapshot;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Flushes the pages of updated quotes from a local stub of the dispatcher flush endpoint
+ */
+@ExtendWith(AemContextExtension.class)
+class DispatcherInvalidatorTest {
+
+    private StubDispatcher dispatcher;
+    private DispatcherInvalidator invalidator;
+
+    @BeforeEach
+    public void setup(AemContext context) throws Exception {
+        addPage(context, "/content/wetrain/us/en", "ADBE");
+        addPage(context, "/content/wetrain/us/en/markets", "ADBE", "MSFT");
+        addPage(context, "/content/wetrain/us/en/tech", "GOOG");
+        context.registerInjectActivateService(new StockPageIndexImpl(), "resource.paths", "/content/wetrain");
+        dispatcher = new StubDispatcher();
+        //Rounds are flushed by the tests, not after the delay
+        invalidator = context.registerInjectActivateService(new DispatcherInvalidator(),
+                "dispatcher.urls", dispatcher.getFlushUrl(), "flush.delay", 60000, "max.pages", 2,
+                "max.attempts", 3);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dispatcher.close();
+    }
+
+    @Test
+    void testOnlyPagesOfUpdatedSymbolsAreFlushedOnce() {
+        invalidator.quotesUpdated(Arrays.asList(quote("ADBE"), quote("MSFT")));
+        invalidator.quotesUpdated(Collections.singletonList(quote("MSFT")));
+        invalidator.flush();
+
+        assertEquals(Arrays.asList("Activate /content/wetrain/us/en ResourceOnly",
+                "Activate /content/wetrain/us/en/markets ResourceOnly"), dispatcher.getFlushes());
+        assertEquals(3, invalidator.getAffectedPageCount());
+        assertEquals(1, invalidator.getDeduplicatedCount());
+        assertEquals(0, invalidator.getPendingCount());
+    }
+
+    @Test
+    void testTooManyPagesInvalidateTheContentRoots() {
+        invalidator.quotesUpdated(Arrays.asList(quote("ADBE"), quote("GOOG")));
+        invalidator.flush();
+
+        assertEquals(Collections.singletonList("Activate /content/wetrain"), dispatcher.getFlushes());
+        assertEquals(1, invalidator.getBroadFlushCount());
+    }
+
+    @Test
+    void testFailedFlushesAreQueuedAgain() {
+        dispatcher.setStatus(503);
+        invalidator.quotesUpdated(Collections.singletonList(quote("MSFT")));
+        invalidator.flush();
+        assertEquals(1, invalidator.getFailedRequestCount());
+        assertEquals(1, invalidator.getPendingCount());
+
+        dispatcher.setStatus(200);
+        invalidator.flush();
+        assertEquals(2, dispatcher.getFlushes().size());
+        assertEquals(0, invalidator.getPendingCount());
+    }
+
+    @Test
+    void testPathsAreDroppedAfterTheLastAttempt() {
+        dispatcher.setStatus(503);
+        invalidator.quotesUpdated(Collections.singletonList(quote("MSFT")));
+        for (int round = 0; round < 3; round++) {
+            invalidator.flush();
+        }
+        assertEquals(3, invalidator.getFailedRequestCount());
+        assertEquals(1, invalidator.getDroppedCount());
+        assertEquals(0, invalidator.getPendingCount());
+
+        invalidator.flush();
+        assertEquals(3, invalidator.getFlushRequestCount());
+    }
+
+    @Test
+    void testUnknownSymbolFlushesNothing() {
+        invalidator.quotesUpdated(Collections.singletonList(quote("WDAY")));
+        invalidator.flush();
+        assertTrue(dispatcher.getFlushes().isEmpty());
+    }
+
+    private static void addPage(AemContext context, String path, String... symbols) {
+        context.create().page(path);
+        for (int i = 0; i < symbols.length; i++) {
+            context.create().resource(path + "/jcr:content/root/stock" + i, "sling:resourceType",
+                    StockPageIndexImpl.STOCKPLEX_RESOURCE_TYPE, StockPageIndexImpl.SYMBOL, symbols[i]);
+        }
+    }
+
+    private static QuoteSnapshot quote(String symbol) {
+        return new QuoteSnapshot(symbol, symbol + " Inc.", "Technology", "04:00 PM EDT", "Thu October 14, 2021",
+                100.0, 100.0, 100.0, 100.0, 1000L, 0.0, 100.0, 100.0, 0.0, 1634241600456L);
+    }
+}
@@ -0,0 +1,65 @@
+package com.adobe.training.core.services.impl;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.adobe.training.core.quotes.StockQuoteDecoder;
+import com.adobe.training.core.services.FetchResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileQuoteSourceTest {
+
+    private final FileQuoteSource source = new FileQuoteSource();
+    private Path directory;
+    private String baseUrl;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("stock-data");
+        try (InputStream in = getClass().getResourceAsStream("/stock-data/ADBE.json")) {
+            Files.copy(in, directory.resolve("ADBE.json"));
+        }
+        baseUrl = directory.toUri().toString();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(directory.resolve("ADBE.json"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    void testReadsChangedFilesOnly() throws Exception {
+        assertTrue(source.accepts(baseUrl));
+        assertFalse(source.accepts("https://example.com/stock-data/"));
+
+        FetchResult first = source.fetch(baseUrl, "ADBE");
+        assertEquals(FetchResult.Status.MODIFIED, first.getStatus());
+        assertEquals(483.85, StockQuoteDecoder.decode("ADBE", first.getBody()).getLatestPrice(), 0.001);
+        assertEquals(FetchResult.Status.NOT_MODIFIED, source.fetch(baseUrl, "ADBE").getStatus());
+
+        Path file = directory.resolve("ADBE.json");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+        assertEquals(FetchResult.Status.MODIFIED, source.fetch(baseUrl, "ADBE").getStatus());
+
+        source.forget("ADBE");
+        assertEquals(FetchResult.Status.MODIFIED, source.fetch(baseUrl, "ADBE").getStatus());
+    }
+
+    @Test
+    void testUnknownSymbol() {
+        assertThrows(FileNotFoundException.class, () -> source.fetch(baseUrl, "ZZZZ"));
+    }
+}
@@ -0,0 +1,135 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.adobe.training.core.schedulers.StockImportScheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Simulates one import interval of N symbols on a virtual clock and checks the peak number of
+ * concurrent requests and how evenly the commits are spread over the seconds of the interval.
+ *
+ * Every symbol is fetched (FETCH_MILLIS) and committed once. Without spreading all jobs start on
+ * the same cron tick, with spreading each starts at its symbol offset and waits for request and
+ * commit tokens.
+ */
+class ImportDispatchSimulationTest {
+
+    private static final int SYMBOLS = 2000;
+    private static final long INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(2);
+    private static final long FETCH_MILLIS = 250;
+
+    @Test
+    void testCronTickStartsAllSymbolsAtOnce() {
+        Report report = simulate(false, 0, 0);
+        assertEquals(SYMBOLS, report.peakConcurrency, report.toString());
+        assertEquals(SYMBOLS, report.maxCommitsPerSecond, report.toString());
+    }
+
+    @Test
+    void testOffsetsAndTokenBucketsSmoothTheImport() {
+        Report report = simulate(true, 50, 20);
+        assertTrue(report.peakConcurrency <= 20, report.toString());
+        //The commit bucket allows its burst on top of 20 per second
+        assertTrue(report.maxCommitsPerSecond <= 25, report.toString());
+        assertTrue(report.commitVariation < 0.5, report.toString());
+        assertTrue(report.lastCommitMillis < INTERVAL_MILLIS + TimeUnit.SECONDS.toMillis(5), report.toString());
+    }
+
+    private static Report simulate(boolean spread, double requestsPerSecond, double commitsPerSecond) {
+        long[] clock = new long[1];
+        TokenBucket requests = spread ? new TokenBucket(requestsPerSecond, 10, () -> clock[0]) : null;
+        TokenBucket commits = spread ? new TokenBucket(commitsPerSecond, 5, () -> clock[0]) : null;
+
+        long[] arrivals = new long[SYMBOLS];
+        for (int i = 0; i < SYMBOLS; i++) {
+            arrivals[i] = spread ? StockImportScheduler.offsetMillis("S" + i, INTERVAL_MILLIS) : 0;
+        }
+        Arrays.sort(arrivals);
+
+        //Reservations are made in arrival order, so start and commit times never decrease
+        List<long[]> fetches = new ArrayList<>(SYMBOLS);
+        long[] commitTimes = new long[SYMBOLS];
+        for (int i = 0; i < SYMBOLS; i++) {
+            long start = arrivals[i];
+            if (spread) {
+                clock[0] = TimeUnit.MILLISECONDS.toNanos(start);
+                start += TimeUnit.NANOSECONDS.toMillis(requests.reserve());
+            }
+            long end = start + FETCH_MILLIS;
+            fetches.add(new long[] {start, end});
+            long commit = end;
+            if (spread) {
+                clock[0] = Math.max(clock[0], TimeUnit.MILLISECONDS.toNanos(end));
+                commit += TimeUnit.NANOSECONDS.toMillis(commits.reserve());
+            }
+            commitTimes[i] = commit;
+        }
+        return new Report(fetches, commitTimes);
+    }
+
+    private static final class Report {
+        private final int peakConcurrency;
+        private final int maxCommitsPerSecond;
+        //Standard deviation divided by the mean of the commits per second over the interval
+        private final double commitVariation;
+        private final long lastCommitMillis;
+
+        Report(List<long[]> fetches, long[] commitTimes) {
+            long[] starts = new long[fetches.size()];
+            long[] ends = new long[fetches.size()];
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = fetches.get(i)[0];
+                ends[i] = fetches.get(i)[1];
+            }
+            Arrays.sort(starts);
+            Arrays.sort(ends);
+            int concurrent = 0;
+            int peak = 0;
+            for (int s = 0, e = 0; s < starts.length; ) {
+                if (starts[s] < ends[e]) {
+                    peak = Math.max(peak, ++concurrent);
+                    s++;
+                } else {
+                    concurrent--;
+                    e++;
+                }
+            }
+            peakConcurrency = peak;
+
+            long last = 0;
+            for (long commit : commitTimes) {
+                last = Math.max(last, commit);
+            }
+            lastCommitMillis = last;
+            int seconds = (int) (Math.max(last, INTERVAL_MILLIS) / 1000) + 1;
+            int[] perSecond = new int[seconds];
+            for (long commit : commitTimes) {
+                perSecond[(int) (commit / 1000)]++;
+            }
+            int max = 0;
+            double mean = (double) commitTimes.length / seconds;
+            double variance = 0;
+            for (int count : perSecond) {
+                max = Math.max(max, count);
+                variance += (count - mean) * (count - mean) / seconds;
+            }
+            maxCommitsPerSecond = max;
+            commitVariation = Math.sqrt(variance) / mean;
+        }
+
+        @Override
+        public String toString() {
+            return SYMBOLS + " symbols, peak concurrent requests " + peakConcurrency + ", max commits per second "
+                    + maxCommitsPerSecond + ", commit rate variation " + String.format("%.2f", commitVariation)
+                    + ", last commit after " + lastCommitMillis + " ms";
+        }
+    }
+}
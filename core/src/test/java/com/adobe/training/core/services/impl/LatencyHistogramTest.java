@@ -0,0 +1,43 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testPercentilesAreBucketBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(200));
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(22.7, histogram.getMeanMillis(), 0.001);
+        assertEquals(200, histogram.getMaxMillis(), 0.001);
+        // 3000 microseconds fall into the bucket up to 4095
+        assertEquals(4.095, histogram.getPercentileMillis(50), 0.001);
+        assertEquals(4.095, histogram.getPercentileMillis(90), 0.001);
+        // never above the largest recorded duration
+        assertEquals(200, histogram.getPercentileMillis(99), 0.001);
+    }
+
+    @Test
+    void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.SECONDS.toNanos(1));
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMillis(99), 0.001);
+        histogram.record(500);
+        // below one microsecond
+        assertEquals(0, histogram.getPercentileMillis(50), 0.001);
+    }
+}
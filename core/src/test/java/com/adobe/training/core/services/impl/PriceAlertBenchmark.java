@@ -0,0 +1,108 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+
+import com.adobe.training.core.services.AlertRule;
+import com.adobe.training.core.services.QuoteSnapshot;
+
+/**
+ * Evaluation of one quote against "rules" price alerts spread evenly over "symbols" symbols,
+ * each symbol with ABOVE thresholds from 100.5 up, BELOW thresholds from 99.5 down and DAY_MOVE
+ * thresholds from 5%. The quiet tick moves the price without crossing a threshold, the moving
+ * tick alternates between 100 and 103 and triggers three rules on every rise. Both stay flat
+ * with the number of rules per symbol.
+ *
+ * mvn test-compile exec:exec -Pbenchmark -Dbenchmark=PriceAlertBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PriceAlertBenchmark {
+
+    private static final String DAY = "Thu October 14, 2021";
+
+    @Param({"1000000"})
+    private int rules;
+
+    @Param({"5000"})
+    private int symbols;
+
+    private PriceAlertEngine engine;
+    private QuoteSnapshot[] quietTicks;
+    private QuoteSnapshot[] movingTicks;
+    private int tick;
+
+    @Setup
+    public void indexRules() {
+        engine = new PriceAlertEngine(new EventAdmin() {
+            @Override
+            public void postEvent(Event event) {
+            }
+
+            @Override
+            public void sendEvent(Event event) {
+            }
+        });
+        int perSymbol = rules / symbols;
+        List<AlertRule> alertRules = new ArrayList<>(rules);
+        for (int s = 0; s < symbols; s++) {
+            String symbol = "S" + s;
+            for (int r = 0; r < perSymbol; r++) {
+                String ruleId = symbol + "-" + r;
+                switch (r % 5) {
+                    case 0:
+                    case 1:
+                        alertRules.add(new AlertRule(ruleId, "user" + r, symbol, AlertRule.Condition.ABOVE, 100.5 + r / 5));
+                        break;
+                    case 2:
+                    case 3:
+                        alertRules.add(new AlertRule(ruleId, "user" + r, symbol, AlertRule.Condition.BELOW, 99.5 - r / 5));
+                        break;
+                    default:
+                        alertRules.add(new AlertRule(ruleId, "user" + r, symbol, AlertRule.Condition.DAY_MOVE, 5 + r / 5));
+                }
+            }
+        }
+        engine.index(alertRules, Collections.emptySet());
+
+        quietTicks = new QuoteSnapshot[] {quote("S0", 100.0), quote("S0", 100.2)};
+        movingTicks = new QuoteSnapshot[] {quote("S1", 100.0), quote("S1", 103.0)};
+        engine.evaluate(quietTicks[0]);
+        engine.evaluate(movingTicks[0]);
+    }
+
+    @Benchmark
+    public int quietTick() {
+        return engine.evaluate(quietTicks[tick++ & 1]);
+    }
+
+    @Benchmark
+    public int movingTick() {
+        return engine.evaluate(movingTicks[tick++ & 1]);
+    }
+
+    private static QuoteSnapshot quote(String symbol, double price) {
+        return new QuoteSnapshot(symbol, symbol + " Inc.", "Technology", "4:00 PM EDT", DAY, price, price, price, price,
+                1000L, price - 100.0, null, null, null, 1634241600456L);
+    }
+}
@@ -0,0 +1,178 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+
+import com.adobe.training.core.services.AlertRule;
+import com.adobe.training.core.services.PriceAlertService;
+import com.adobe.training.core.services.QuoteSnapshot;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(AemContextExtension.class)
+class PriceAlertEngineTest {
+
+    private static final String DAY1 = "Thu October 14, 2021";
+    private static final String DAY2 = "Fri October 15, 2021";
+
+    private final List<Event> events = new ArrayList<>();
+    private PriceAlertEngine engine;
+
+    @BeforeEach
+    public void setup() {
+        engine = new PriceAlertEngine(new EventAdmin() {
+            @Override
+            public void postEvent(Event event) {
+                events.add(event);
+            }
+
+            @Override
+            public void sendEvent(Event event) {
+                events.add(event);
+            }
+        });
+    }
+
+    @Test
+    void testPriceCrossings() {
+        engine.index(Arrays.asList(rule("a1", AlertRule.Condition.ABOVE, 105), rule("a2", AlertRule.Condition.ABOVE, 110),
+                rule("a3", AlertRule.Condition.ABOVE, 120), rule("b1", AlertRule.Condition.BELOW, 95),
+                rule("b2", AlertRule.Condition.BELOW, 90)), Collections.emptySet());
+
+        //The first quote only sets the previous price
+        assertEquals(0, engine.evaluate(quote(100, null, DAY1)));
+        assertEquals(1, engine.evaluate(quote(108, null, DAY1)));
+        assertEquals(0, engine.evaluate(quote(108, null, DAY1)));
+        assertEquals(2, engine.evaluate(quote(121, null, DAY1)));
+        assertEquals(2, engine.evaluate(quote(90, null, DAY1)));
+        assertEquals(2, engine.evaluate(quote(110, null, DAY1)));
+
+        assertEquals(Arrays.asList("a1", "a2", "a3", "b2", "b1", "a1", "a2"), ruleIds());
+        Event event = events.get(0);
+        assertEquals(PriceAlertService.TOPIC_TRIGGERED, event.getTopic());
+        assertEquals("user", event.getProperty(PriceAlertService.PROPERTY_USER_ID));
+        assertEquals("ADBE", event.getProperty(PriceAlertService.PROPERTY_SYMBOL));
+        assertEquals(108.0, event.getProperty(PriceAlertService.PROPERTY_VALUE));
+        assertEquals(100.0, event.getProperty(PriceAlertService.PROPERTY_PREVIOUS_VALUE));
+    }
+
+    @Test
+    void testDayMoveStartsOverEachDay() {
+        engine.index(Arrays.asList(rule("m2", AlertRule.Condition.DAY_MOVE, 2), rule("m5", AlertRule.Condition.DAY_MOVE, 5)),
+                Collections.emptySet());
+
+        assertEquals(0, engine.evaluate(quote(101, 1.0, DAY1)));
+        //3 of a previous close of 100
+        assertEquals(1, engine.evaluate(quote(103, 3.0, DAY1)));
+        //-6 of 106 is a move of 5.7%
+        assertEquals(1, engine.evaluate(quote(100, -6.0, DAY1)));
+        assertEquals(0, engine.evaluate(quote(101, -5.0, DAY1)));
+        assertEquals(1, engine.evaluate(quote(102.5, 2.5, DAY2)));
+
+        assertEquals(Arrays.asList("m2", "m5", "m2"), ruleIds());
+    }
+
+    @Test
+    void testQuoteWithoutUpDownKeepsTheDayMove() {
+        engine.index(Collections.singletonList(rule("m2", AlertRule.Condition.DAY_MOVE, 2)), Collections.emptySet());
+
+        assertEquals(0, engine.evaluate(quote(101, 1.0, DAY1)));
+        assertEquals(1, engine.evaluate(quote(103, 3.0, DAY1)));
+        assertEquals(0, engine.evaluate(quote(103, null, DAY1)));
+        //Still above 2% since the 3% move, nothing is crossed again
+        assertEquals(0, engine.evaluate(quote(104, 4.0, DAY1)));
+
+        assertEquals(Collections.singletonList("m2"), ruleIds());
+    }
+
+    @Test
+    void testOnlyCrossedRulesAreVisited() {
+        List<AlertRule> rules = new ArrayList<>();
+        for (int i = 1; i <= 10000; i++) {
+            rules.add(rule("r" + i, AlertRule.Condition.ABOVE, i));
+        }
+        engine.index(rules, Collections.emptySet());
+        assertEquals(10000, engine.getRuleCount());
+
+        engine.evaluate(quote(5000.2, null, DAY1));
+        assertEquals(3, engine.evaluate(quote(5003.5, null, DAY1)));
+        assertEquals(Arrays.asList("r5001", "r5002", "r5003"), ruleIds());
+        assertEquals(3, engine.getTriggeredCount());
+    }
+
+    @Test
+    void testRulesAreReplacedAndRemoved() {
+        engine.index(Arrays.asList(rule("a1", AlertRule.Condition.ABOVE, 105), rule("a2", AlertRule.Condition.ABOVE, 106)),
+                Collections.emptySet());
+        engine.index(Collections.singletonList(rule("a1", AlertRule.Condition.ABOVE, 200)), Collections.singleton("a2"));
+        assertEquals(1, engine.getRuleCount());
+
+        engine.evaluate(quote(100, null, DAY1));
+        assertEquals(0, engine.evaluate(quote(110, null, DAY1)));
+        assertEquals(1, engine.evaluate(quote(200, null, DAY1)));
+    }
+
+    @Test
+    void testRulesAreStoredPerUser(AemContext context) throws Exception {
+        ResourceResolver resolver = context.resourceResolver();
+        PriceAlertEngine service = context.registerInjectActivateService(new PriceAlertEngine());
+
+        AlertRule rule = service.addRule(resolver, "jane@example.com", "adbe", AlertRule.Condition.ABOVE, 500);
+        assertEquals("ADBE", rule.getSymbol());
+        assertNotNull(resolver.getResource(PriceAlertEngine.ALERTS_ROOT + "/jane@example.com/" + rule.getRuleId()));
+        assertEquals(Collections.singletonList(rule), service.getRules(resolver, "jane@example.com"));
+        assertTrue(service.getRules(resolver, "john").isEmpty());
+        assertEquals(1, service.getRuleCount());
+
+        assertTrue(service.removeRule(resolver, "jane@example.com", rule.getRuleId()));
+        assertFalse(service.removeRule(resolver, "jane@example.com", rule.getRuleId()));
+        assertEquals(0, service.getRuleCount());
+    }
+
+    @Test
+    void testChangedRuleThatCannotBeReadIsRemoved(AemContext context) throws Exception {
+        ResourceResolver resolver = context.resourceResolver();
+        PriceAlertEngine service = context.registerInjectActivateService(new PriceAlertEngine());
+        AlertRule rule = service.addRule(resolver, "jane", "ADBE", AlertRule.Condition.ABOVE, 500);
+
+        String path = PriceAlertEngine.ALERTS_ROOT + "/jane/" + rule.getRuleId();
+        resolver.getResource(path).adaptTo(ModifiableValueMap.class).remove(PriceAlertEngine.THRESHOLD);
+        resolver.commit();
+        service.onChange(Collections.singletonList(new ResourceChange(ResourceChange.ChangeType.CHANGED, path, false)));
+        assertEquals(0, service.getRuleCount());
+    }
+
+    private List<String> ruleIds() {
+        List<String> ruleIds = new ArrayList<>();
+        for (Event event : events) {
+            ruleIds.add((String) event.getProperty(PriceAlertService.PROPERTY_RULE_ID));
+        }
+        return ruleIds;
+    }
+
+    private static AlertRule rule(String ruleId, AlertRule.Condition condition, double threshold) {
+        return new AlertRule(ruleId, "user", "ADBE", condition, threshold);
+    }
+
+    private static QuoteSnapshot quote(double lastTrade, Double upDown, String day) {
+        return new QuoteSnapshot("ADBE", "Adobe Inc.", "Technology", "4:00 PM EDT", day, lastTrade, lastTrade,
+                lastTrade, lastTrade, 1000L, upDown, null, null, null, 1634241600456L);
+    }
+}
@@ -0,0 +1,98 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.testing.mock.sling.MockSling;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.adobe.training.core.quotes.StockQuote;
+import com.adobe.training.core.services.PriceSeries;
+
+/**
+ * Write and range read throughput of the price history on a mocked resource resolver. The history
+ * is prefilled with a year of trading days of 195 two minute ticks each.
+ *
+ * mvn test-compile exec:exec -Pbenchmark -Dbenchmark=PriceHistoryBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PriceHistoryBenchmark {
+
+    private static final int TICKS_PER_DAY = 195;
+    private static final int DAYS = 365;
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long TICK_MILLIS = TimeUnit.MINUTES.toMillis(2);
+    //Fri Jan 01 2021 13:30 UTC, the opening bell in New York
+    private static final long START = 1609507800000L;
+
+    private ResourceResolver resolver;
+    private PriceHistoryServiceImpl priceHistory;
+    private long nextTick;
+
+    @Setup
+    public void fillHistory() throws PersistenceException {
+        resolver = MockSling.newResourceResolver(ResourceResolverType.RESOURCERESOLVER_MOCK);
+        priceHistory = new PriceHistoryServiceImpl();
+        for (int day = 0; day < DAYS; day++) {
+            for (int tick = 0; tick < TICKS_PER_DAY; tick++) {
+                priceHistory.append(resolver, quote("ADBE", START + day * DAY_MILLIS + tick * TICK_MILLIS, tick));
+            }
+            resolver.commit();
+        }
+        nextTick = 0;
+    }
+
+    @TearDown
+    public void close() {
+        resolver.close();
+    }
+
+    @Benchmark
+    public boolean appendTick() throws PersistenceException {
+        //Another symbol that starts a new day every 195 ticks, like the import does
+        long tick = nextTick++;
+        long time = START + (tick / TICKS_PER_DAY) * DAY_MILLIS + (tick % TICKS_PER_DAY) * TICK_MILLIS;
+        boolean appended = priceHistory.append(resolver, quote("MSFT", time, tick));
+        resolver.commit();
+        return appended;
+    }
+
+    @Benchmark
+    public PriceSeries readDay() {
+        long from = START + 180 * DAY_MILLIS;
+        return priceHistory.getTicks(resolver, "ADBE", from, from + DAY_MILLIS);
+    }
+
+    @Benchmark
+    public PriceSeries readMonth() {
+        long from = START + 180 * DAY_MILLIS;
+        return priceHistory.getTicks(resolver, "ADBE", from, from + 30 * DAY_MILLIS);
+    }
+
+    @Benchmark
+    public PriceSeries readYear() {
+        return priceHistory.getTicks(resolver, "ADBE", START, START + DAYS * DAY_MILLIS);
+    }
+
+    private static StockQuote quote(String symbol, long time, long tick) {
+        return new StockQuote(symbol, symbol, "Technology", 400 + (tick % 97) * 0.25, 400, 425, 395, 1000 + tick,
+                0.5, 450, 350, 0.01, time);
+    }
+}
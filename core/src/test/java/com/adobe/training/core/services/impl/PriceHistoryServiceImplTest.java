@@ -0,0 +1,100 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import com.adobe.training.core.quotes.StockQuote;
+import com.adobe.training.core.services.PriceSeries;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(AemContextExtension.class)
+class PriceHistoryServiceImplTest {
+
+    //Thu Oct 14 2021 20:00 UTC
+    private static final long DAY1 = 1634241600000L;
+    private static final long DAY2 = DAY1 + TimeUnit.DAYS.toMillis(1);
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private ResourceResolver resolver;
+    private PriceHistoryServiceImpl priceHistory;
+
+    @BeforeEach
+    public void setup(AemContext context) {
+        resolver = context.resourceResolver();
+        priceHistory = context.registerInjectActivateService(new PriceHistoryServiceImpl());
+    }
+
+    @Test
+    void testTicksArePackedIntoOneNodePerDay() throws Exception {
+        assertTrue(priceHistory.append(resolver, quote(DAY1, 480.0, 100)));
+        assertTrue(priceHistory.append(resolver, quote(DAY1 + 2 * MINUTE, 481.0, 200)));
+        assertTrue(priceHistory.append(resolver, quote(DAY2, 482.0, 50)));
+        resolver.commit();
+
+        assertNotNull(resolver.getResource("/content/stocks/ADBE/history/2021/10-14"));
+        assertNotNull(resolver.getResource("/content/stocks/ADBE/history/2021/10-15"));
+        assertEquals(Long.valueOf(2), resolver.getResource("/content/stocks/ADBE/history/2021/10-14")
+                .getValueMap().get(PriceHistoryServiceImpl.TICK_COUNT, 0L));
+
+        PriceSeries series = priceHistory.getTicks(resolver, "ADBE", DAY1, DAY2 + MINUTE);
+        assertArrayEquals(new long[] {DAY1, DAY1 + 2 * MINUTE, DAY2}, series.getTimes());
+        assertArrayEquals(new double[] {480.0, 481.0, 482.0}, series.getPrices());
+        assertArrayEquals(new long[] {100, 200, 50}, series.getVolumes());
+    }
+
+    @Test
+    void testRepeatedAndOlderQuotesAreNotAppended() throws Exception {
+        assertTrue(priceHistory.append(resolver, quote(DAY1, 480.0, 100)));
+        resolver.commit();
+
+        assertFalse(priceHistory.append(resolver, quote(DAY1, 480.0, 100)));
+        assertFalse(priceHistory.append(resolver, quote(DAY1 - MINUTE, 479.0, 90)));
+        assertFalse(priceHistory.append(resolver, quote(DAY1 + MINUTE, 480.0, 100)));
+        assertTrue(priceHistory.append(resolver, quote(DAY1 + MINUTE, 480.0, 120)));
+        resolver.commit();
+
+        assertEquals(2, priceHistory.getTicks(resolver, "ADBE", DAY1 - MINUTE, DAY2).size());
+    }
+
+    @Test
+    void testRangeIsStartInclusiveEndExclusive() throws Exception {
+        for (int tick = 0; tick < 10; tick++) {
+            priceHistory.append(resolver, quote(DAY1 + tick * MINUTE, 480.0 + tick, 100));
+        }
+        resolver.commit();
+
+        PriceSeries series = priceHistory.getTicks(resolver, "ADBE", DAY1 + 3 * MINUTE, DAY1 + 6 * MINUTE);
+        assertArrayEquals(new double[] {483.0, 484.0, 485.0}, series.getPrices());
+        assertTrue(priceHistory.getTicks(resolver, "ADBE", DAY2, DAY2 + MINUTE).isEmpty());
+        assertTrue(priceHistory.getTicks(resolver, "MSFT", DAY1, DAY2).isEmpty());
+    }
+
+    @Test
+    void testTicksAheadOfTheClockAreRead() throws Exception {
+        //e.g. a data source whose clock is a day ahead
+        long tomorrow = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        priceHistory.append(resolver, quote(DAY1, 480.0, 100));
+        priceHistory.append(resolver, quote(tomorrow, 481.0, 200));
+        resolver.commit();
+
+        PriceSeries series = priceHistory.getTicks(resolver, "ADBE", Long.MIN_VALUE, Long.MAX_VALUE);
+        assertArrayEquals(new long[] {DAY1, tomorrow}, series.getTimes());
+    }
+
+    private static StockQuote quote(long time, double price, long volume) {
+        return new StockQuote("ADBE", "Adobe Inc.", "Technology", price, 478.12, 485.47, 476.3, volume,
+                9.52, 699.54, 420.78, -0.0325, time);
+    }
+}
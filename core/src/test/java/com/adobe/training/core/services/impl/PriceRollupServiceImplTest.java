@@ -0,0 +1,181 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import com.adobe.training.core.quotes.StockQuote;
+import com.adobe.training.core.services.CandleResolution;
+import com.adobe.training.core.services.PriceCandles;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(AemContextExtension.class)
+class PriceRollupServiceImplTest {
+
+    //Thu Oct 14 2021 14:00 UTC
+    private static final long HOUR = 1634220000000L;
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long SECOND = TimeUnit.SECONDS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private ResourceResolver resolver;
+    private PriceRollupServiceImpl priceRollups;
+
+    @BeforeEach
+    public void setup(AemContext context) {
+        resolver = context.resourceResolver();
+        priceRollups = context.registerInjectActivateService(new PriceRollupServiceImpl());
+    }
+
+    @Test
+    void testCandlesAtEveryResolution() throws Exception {
+        priceRollups.update(resolver, quote("ADBE", HOUR, 480.0, 100));
+        priceRollups.update(resolver, quote("ADBE", HOUR + 30 * SECOND, 482.0, 150));
+        priceRollups.update(resolver, quote("ADBE", HOUR + 50 * SECOND, 479.0, 170));
+        priceRollups.update(resolver, quote("ADBE", HOUR + 6 * MINUTE, 481.0, 300));
+        resolver.commit();
+
+        assertNotNull(resolver.getResource("/content/stocks/ADBE/candles/1m/2021/10-14"));
+        assertNotNull(resolver.getResource("/content/stocks/ADBE/candles/1h/2021/10-14"));
+        assertNotNull(resolver.getResource("/content/stocks/ADBE/candles/1d/2021/10"));
+
+        PriceCandles minutes = read("ADBE", CandleResolution.ONE_MINUTE);
+        assertArrayEquals(new long[] {HOUR, HOUR + 6 * MINUTE}, minutes.getStarts());
+        assertArrayEquals(new double[] {480.0, 481.0}, minutes.getOpens());
+        assertArrayEquals(new double[] {482.0, 481.0}, minutes.getHighs());
+        assertArrayEquals(new double[] {479.0, 481.0}, minutes.getLows());
+        assertArrayEquals(new double[] {479.0, 481.0}, minutes.getCloses());
+        assertArrayEquals(new long[] {170, 300}, minutes.getVolumes());
+
+        PriceCandles fiveMinutes = read("ADBE", CandleResolution.FIVE_MINUTES);
+        assertArrayEquals(new long[] {HOUR, HOUR + 5 * MINUTE}, fiveMinutes.getStarts());
+
+        PriceCandles days = read("ADBE", CandleResolution.ONE_DAY);
+        assertEquals(1, days.size());
+        assertEquals(480.0, days.getOpens()[0]);
+        assertEquals(482.0, days.getHighs()[0]);
+        assertEquals(479.0, days.getLows()[0]);
+        assertEquals(481.0, days.getCloses()[0]);
+        assertEquals(300, days.getVolumes()[0]);
+    }
+
+    @Test
+    void testOutOfOrderTicksGiveTheSameCandles() throws Exception {
+        List<StockQuote> ticks = new ArrayList<>();
+        for (int tick = 0; tick < 200; tick++) {
+            ticks.add(quote("ADBE", HOUR + tick * 37 * SECOND, 480.0 + (tick * 7 % 23) * 0.5, 1000 + tick * 10));
+        }
+        for (StockQuote tick : ticks) {
+            priceRollups.update(resolver, tick);
+        }
+        List<StockQuote> shuffled = new ArrayList<>();
+        for (StockQuote tick : ticks) {
+            shuffled.add(quote("MSFT", tick.getLatestUpdate(), tick.getLatestPrice(), tick.getLatestVolume()));
+        }
+        Collections.shuffle(shuffled, new Random(42));
+        for (StockQuote tick : shuffled) {
+            priceRollups.update(resolver, tick);
+        }
+        resolver.commit();
+
+        for (CandleResolution resolution : CandleResolution.values()) {
+            PriceCandles inOrder = read("ADBE", resolution);
+            PriceCandles outOfOrder = read("MSFT", resolution);
+            assertArrayEquals(inOrder.getStarts(), outOfOrder.getStarts(), resolution.getName());
+            assertArrayEquals(inOrder.getOpens(), outOfOrder.getOpens(), resolution.getName());
+            assertArrayEquals(inOrder.getHighs(), outOfOrder.getHighs(), resolution.getName());
+            assertArrayEquals(inOrder.getLows(), outOfOrder.getLows(), resolution.getName());
+            assertArrayEquals(inOrder.getCloses(), outOfOrder.getCloses(), resolution.getName());
+            assertArrayEquals(inOrder.getVolumes(), outOfOrder.getVolumes(), resolution.getName());
+        }
+    }
+
+    @Test
+    void testLateTickForAnEarlierBucket() throws Exception {
+        priceRollups.update(resolver, quote("ADBE", HOUR + 2 * MINUTE, 481.0, 200));
+        priceRollups.update(resolver, quote("ADBE", HOUR + 3 * MINUTE, 482.0, 300));
+        assertTrue(priceRollups.update(resolver, quote("ADBE", HOUR, 480.0, 100)));
+        resolver.commit();
+
+        PriceCandles minutes = read("ADBE", CandleResolution.ONE_MINUTE);
+        assertArrayEquals(new long[] {HOUR, HOUR + 2 * MINUTE, HOUR + 3 * MINUTE}, minutes.getStarts());
+        PriceCandles hours = read("ADBE", CandleResolution.ONE_HOUR);
+        assertEquals(480.0, hours.getOpens()[0]);
+        assertEquals(482.0, hours.getCloses()[0]);
+        assertEquals(300, hours.getVolumes()[0]);
+    }
+
+    @Test
+    void testHourCandlesAreChunkedPerDay() throws Exception {
+        //14:00 on Oct 14 and 02:00 on Oct 15
+        priceRollups.update(resolver, quote("ADBE", HOUR, 480.0, 100));
+        priceRollups.update(resolver, quote("ADBE", HOUR + 12 * 60 * MINUTE, 490.0, 50));
+        resolver.commit();
+
+        assertNotNull(resolver.getResource("/content/stocks/ADBE/candles/1h/2021/10-14"));
+        assertNotNull(resolver.getResource("/content/stocks/ADBE/candles/1h/2021/10-15"));
+        PriceCandles hours = read("ADBE", CandleResolution.ONE_HOUR);
+        assertArrayEquals(new long[] {HOUR, HOUR + 12 * 60 * MINUTE}, hours.getStarts());
+        assertEquals(2, read("ADBE", CandleResolution.ONE_DAY).size());
+    }
+
+    @Test
+    void testDuplicateTicksChangeNothing() throws Exception {
+        StockQuote first = quote("ADBE", HOUR, 480.0, 100);
+        StockQuote second = quote("ADBE", HOUR + 20 * SECOND, 483.0, 180);
+        assertTrue(priceRollups.update(resolver, first));
+        assertTrue(priceRollups.update(resolver, second));
+        resolver.commit();
+
+        assertFalse(priceRollups.update(resolver, second));
+        assertFalse(priceRollups.update(resolver, first));
+        //Same time as the close, the larger cumulative volume and then the price decide the close
+        assertTrue(priceRollups.update(resolver, quote("ADBE", HOUR + 20 * SECOND, 485.0, 180)));
+        assertTrue(priceRollups.update(resolver, quote("ADBE", HOUR + 20 * SECOND, 484.0, 190)));
+        assertFalse(priceRollups.update(resolver, quote("ADBE", HOUR + 20 * SECOND, 483.5, 185)));
+        resolver.commit();
+
+        PriceCandles minutes = read("ADBE", CandleResolution.ONE_MINUTE);
+        assertEquals(1, minutes.size());
+        assertEquals(480.0, minutes.getOpens()[0]);
+        assertEquals(485.0, minutes.getHighs()[0]);
+        assertEquals(484.0, minutes.getCloses()[0]);
+        assertEquals(190, minutes.getVolumes()[0]);
+    }
+
+    @Test
+    void testCandlesAheadOfTheClockAreRead() throws Exception {
+        long tomorrow = CandleResolution.ONE_DAY.bucketStart(System.currentTimeMillis() + DAY);
+        priceRollups.update(resolver, quote("ADBE", HOUR, 480.0, 100));
+        priceRollups.update(resolver, quote("ADBE", tomorrow, 481.0, 200));
+        resolver.commit();
+
+        PriceCandles days = priceRollups.getCandles(resolver, "ADBE", CandleResolution.ONE_DAY, Long.MIN_VALUE,
+                Long.MAX_VALUE);
+        assertArrayEquals(new long[] {CandleResolution.ONE_DAY.bucketStart(HOUR), tomorrow}, days.getStarts());
+    }
+
+    private PriceCandles read(String symbol, CandleResolution resolution) {
+        return priceRollups.getCandles(resolver, symbol, resolution, HOUR - DAY, HOUR + DAY);
+    }
+
+    private static StockQuote quote(String symbol, long time, double price, long volume) {
+        return new StockQuote(symbol, symbol, "Technology", price, 478.12, 485.47, 476.3, volume,
+                9.52, 699.54, 420.78, -0.0325, time);
+    }
+}
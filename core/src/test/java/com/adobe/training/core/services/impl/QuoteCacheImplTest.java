@@ -0,0 +1,110 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.Collections;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import com.adobe.training.core.StockDataWriterJob;
+import com.adobe.training.core.services.QuoteSnapshot;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@ExtendWith(AemContextExtension.class)
+class QuoteCacheImplTest {
+
+    private static final String TRADE_PATH = "/content/stocks/ADBE/trade";
+
+    private ResourceResolver resolver;
+    private QuoteCacheImpl quoteCache;
+
+    @BeforeEach
+    public void setup(AemContext context) {
+        context.create().resource(TRADE_PATH,
+                StockDataWriterJob.COMPANY, "Adobe Inc.",
+                StockDataWriterJob.LASTTRADE, 483.85,
+                StockDataWriterJob.VOLUME, 2153447L);
+        resolver = context.resourceResolver();
+        quoteCache = context.registerInjectActivateService(new QuoteCacheImpl());
+    }
+
+    @Test
+    void testMissReadsTheTradeNodeOnce() throws Exception {
+        QuoteSnapshot quote = quoteCache.get("ADBE");
+        assertEquals("Adobe Inc.", quote.getCompanyName());
+        assertEquals(Double.valueOf(483.85), quote.getLastTrade());
+        assertEquals(Long.valueOf(2153447L), quote.getVolume());
+        assertNull(quote.getSector());
+
+        //A hit does not read the repository again
+        resolver.delete(resolver.getResource(TRADE_PATH));
+        resolver.commit();
+        assertSame(quote, quoteCache.get("ADBE"));
+        assertEquals(1, quoteCache.getMissCount());
+        assertEquals(1, quoteCache.getHitCount());
+
+        assertNull(quoteCache.get("MSFT"));
+    }
+
+    @Test
+    void testChangedTradeNodeIsRead() throws Exception {
+        quoteCache.get("ADBE");
+        resolver.getResource(TRADE_PATH).adaptTo(ModifiableValueMap.class).put(StockDataWriterJob.LASTTRADE, 490.0);
+        resolver.commit();
+
+        quoteCache.onChange(Collections.singletonList(
+                new ResourceChange(ResourceChange.ChangeType.CHANGED, TRADE_PATH, false)));
+        assertEquals(Double.valueOf(490.0), quoteCache.get("ADBE").getLastTrade());
+        assertEquals(1, quoteCache.getMissCount());
+    }
+
+    @Test
+    void testRemovedSymbolIsDropped() throws Exception {
+        quoteCache.get("ADBE");
+        resolver.delete(resolver.getResource("/content/stocks/ADBE"));
+        resolver.commit();
+
+        quoteCache.onChange(Collections.singletonList(
+                new ResourceChange(ResourceChange.ChangeType.REMOVED, "/content/stocks/ADBE", false)));
+        assertNull(quoteCache.get("ADBE"));
+    }
+
+    @Test
+    void testReadBeforeARemovalIsNotCached() throws Exception {
+        //A miss reads the quote, the symbol is removed before the miss caches it
+        Long generation = quoteCache.generation("ADBE");
+        QuoteSnapshot read = QuoteSnapshot.fromTrade("ADBE", resolver.getResource(TRADE_PATH).getValueMap());
+        resolver.delete(resolver.getResource("/content/stocks/ADBE"));
+        resolver.commit();
+        quoteCache.onChange(Collections.singletonList(
+                new ResourceChange(ResourceChange.ChangeType.REMOVED, "/content/stocks/ADBE", false)));
+
+        assertSame(read, quoteCache.cache("ADBE", generation, read));
+        assertNull(quoteCache.get("ADBE"));
+    }
+
+    @Test
+    void testUnknownSymbolIsReadOnceUntilItIsAdded() throws Exception {
+        assertNull(quoteCache.get("MSFT"));
+        assertNull(quoteCache.get("MSFT"));
+        assertEquals(1, quoteCache.getMissCount());
+
+        resolver.create(resolver.getResource("/content/stocks"), "MSFT", Collections.emptyMap());
+        resolver.create(resolver.getResource("/content/stocks/MSFT"), "trade",
+                Collections.singletonMap(StockDataWriterJob.LASTTRADE, 304.21));
+        resolver.commit();
+        quoteCache.onChange(Collections.singletonList(
+                new ResourceChange(ResourceChange.ChangeType.ADDED, "/content/stocks/MSFT/trade", false)));
+        assertEquals(Double.valueOf(304.21), quoteCache.get("MSFT").getLastTrade());
+        assertEquals(1, quoteCache.getMissCount());
+    }
+}
@@ -0,0 +1,136 @@
+package com.adobe.training.core.services.impl;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import com.adobe.training.core.services.FetchResult;
+import com.adobe.training.core.services.SourceUnavailableException;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the StockDataFetcherImpl against a local stub of the stock data source
+ */
+@ExtendWith(AemContextExtension.class)
+class StockDataFetcherImplTest {
+
+    private StubStockDataServer server;
+    private StockDataFetcherImpl fetcher;
+
+    @BeforeEach
+    public void setup(AemContext context) throws Exception {
+        server = new StubStockDataServer();
+        context.registerInjectActivateService(new ImportRateLimiterImpl());
+        fetcher = context.registerInjectActivateService(new StockDataFetcherImpl(),
+                "max.connections.per.host", 2, "retry.backoff", 1, "circuit.failure.threshold", 3);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void testFetchReturnsQuoteJson() throws Exception {
+        FetchResult result = fetcher.fetch(server.getBaseUrl(), "ADBE");
+        assertEquals(FetchResult.Status.MODIFIED, result.getStatus());
+        String json = new String(result.getBody(), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"companyName\": \"Adobe Inc.\""));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    void testConnectionIsReused() throws Exception {
+        fetcher.fetch(server.getBaseUrl(), "ADBE");
+        fetcher.fetch(server.getBaseUrl(), "MSFT");
+        fetcher.fetch(server.getBaseUrl(), "ADBE");
+
+        assertEquals(3, fetcher.getRequestCount());
+        assertEquals(1, fetcher.getConnectionCount());
+        assertEquals(2, fetcher.getConnectionReuseCount());
+        // plain http, no TLS
+        assertEquals(0, fetcher.getHandshakeCount());
+    }
+
+    @Test
+    void testNotModifiedWithETag() throws Exception {
+        fetcher.fetch(server.getBaseUrl(), "ADBE");
+        FetchResult second = fetcher.fetch(server.getBaseUrl(), "ADBE");
+
+        assertEquals(FetchResult.Status.NOT_MODIFIED, second.getStatus());
+        assertNull(second.getBody());
+        // the validators are kept per symbol
+        assertEquals(FetchResult.Status.MODIFIED, fetcher.fetch(server.getBaseUrl(), "MSFT").getStatus());
+    }
+
+    @Test
+    void testUnchangedContentWithoutValidators() throws Exception {
+        server.setSendValidators(false);
+        fetcher.fetch(server.getBaseUrl(), "ADBE");
+
+        assertEquals(FetchResult.Status.UNCHANGED, fetcher.fetch(server.getBaseUrl(), "ADBE").getStatus());
+    }
+
+    @Test
+    void testForgetRequestsFullQuote() throws Exception {
+        fetcher.fetch(server.getBaseUrl(), "ADBE");
+        fetcher.forget("ADBE");
+
+        assertEquals(FetchResult.Status.MODIFIED, fetcher.fetch(server.getBaseUrl(), "ADBE").getStatus());
+    }
+
+    @Test
+    void testUnknownSymbol() throws Exception {
+        assertThrows(FileNotFoundException.class, () -> fetcher.fetch(server.getBaseUrl(), "ZZZZ"));
+        // the 404 response is drained so the connection stays usable
+        fetcher.fetch(server.getBaseUrl(), "ADBE");
+        assertEquals(1, fetcher.getConnectionCount());
+    }
+
+    @Test
+    void testServerErrorsOpenTheCircuit() throws Exception {
+        server.setFailureStatus(503);
+        // first attempt and two retries, all failing
+        IOException failure = assertThrows(IOException.class, () -> fetcher.fetch(server.getBaseUrl(), "ADBE"));
+        assertTrue(failure.getMessage().contains("503"));
+        assertEquals(3, server.getRequestCount());
+        assertEquals(2, fetcher.getRetryCount());
+
+        // the circuit is open, further fetches fail without a request
+        for (int i = 0; i < 100; i++) {
+            assertThrows(SourceUnavailableException.class, () -> fetcher.fetch(server.getBaseUrl(), "MSFT"));
+        }
+        assertEquals(3, server.getRequestCount());
+        assertEquals(100, fetcher.getShortCircuitCount());
+    }
+
+    @Test
+    void testUnknownSymbolIsNotRetried() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertThrows(FileNotFoundException.class, () -> fetcher.fetch(server.getBaseUrl(), "ZZZZ"));
+        }
+        assertEquals(5, server.getRequestCount());
+        assertEquals(0, fetcher.getRetryCount());
+        assertEquals(FetchResult.Status.MODIFIED, fetcher.fetch(server.getBaseUrl(), "ADBE").getStatus());
+    }
+
+    @Test
+    void testClosedClientFailsWithAnIOException() throws Exception {
+        fetcher.deactivate();
+        // the jobs map IOExceptions to their results, the retries count against the host
+        assertThrows(IOException.class, () -> fetcher.fetch(server.getBaseUrl(), "ADBE"));
+        assertEquals(0, server.getRequestCount());
+    }
+}
@@ -0,0 +1,82 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(AemContextExtension.class)
+class StockPageIndexImplTest {
+
+    private StockPageIndexImpl index;
+
+    @BeforeEach
+    public void setup(AemContext context) {
+        addPage(context, "/content/wetrain/us/en", "adbe");
+        addPage(context, "/content/wetrain/us/en/markets", "ADBE", "MSFT");
+        addPage(context, "/content/wetrain/us/en/about");
+        addPage(context, "/content/other/en", "GOOG");
+        context.create().page("/content/wetrain/us/en/cached");
+        context.create().resource("/content/wetrain/us/en/cached/jcr:content/root/stock", "sling:resourceType",
+                StockPageIndexImpl.STOCKPLEX_RESOURCE_TYPE, StockPageIndexImpl.SYMBOL, "ADBE",
+                StockPageIndexImpl.RENDER_IN_BROWSER, true);
+        index = context.registerInjectActivateService(new StockPageIndexImpl(), "resource.paths", "/content/wetrain");
+    }
+
+    @Test
+    void testPagesAreIndexedOnActivation() {
+        assertEquals(new HashSet<>(Arrays.asList("/content/wetrain/us/en", "/content/wetrain/us/en/markets")),
+                index.getPages("ADBE"));
+        assertEquals(Collections.singleton("/content/wetrain/us/en/markets"), index.getPages("msft"));
+        assertTrue(index.getPages("GOOG").isEmpty());
+        assertEquals(2, index.getPageCount());
+        assertEquals(2, index.getPages(Arrays.asList("ADBE", "MSFT", "WDAY")).size());
+    }
+
+    @Test
+    void testChangedPagesAreReadAgain(AemContext context) throws Exception {
+        context.resourceResolver().delete(context.resourceResolver()
+                .getResource("/content/wetrain/us/en/markets/jcr:content/root/stock0"));
+        addPage(context, "/content/wetrain/us/en/news", "WDAY");
+        context.resourceResolver().commit();
+
+        index.update(context.resourceResolver(), changes(
+                "/content/wetrain/us/en/markets/jcr:content/root/stock0", ChangeType.REMOVED,
+                "/content/wetrain/us/en/news", ChangeType.ADDED));
+
+        assertEquals(Collections.singleton("/content/wetrain/us/en"), index.getPages("ADBE"));
+        assertEquals(Collections.singleton("/content/wetrain/us/en/markets"), index.getPages("MSFT"));
+        assertEquals(Collections.singleton("/content/wetrain/us/en/news"), index.getPages("WDAY"));
+
+        index.update(context.resourceResolver(), changes("/content/wetrain/us/en", ChangeType.REMOVED));
+        assertEquals(0, index.getPageCount());
+    }
+
+    private static void addPage(AemContext context, String path, String... symbols) {
+        context.create().page(path);
+        for (int i = 0; i < symbols.length; i++) {
+            context.create().resource(path + "/jcr:content/root/stock" + i, "sling:resourceType",
+                    StockPageIndexImpl.STOCKPLEX_RESOURCE_TYPE, StockPageIndexImpl.SYMBOL, symbols[i]);
+        }
+    }
+
+    private static Map<String, ChangeType> changes(Object... pathsAndTypes) {
+        Map<String, ChangeType> changes = new LinkedHashMap<>();
+        for (int i = 0; i < pathsAndTypes.length; i += 2) {
+            changes.put((String) pathsAndTypes[i], (ChangeType) pathsAndTypes[i + 1]);
+        }
+        return changes;
+    }
+}
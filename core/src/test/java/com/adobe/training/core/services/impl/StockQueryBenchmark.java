@@ -0,0 +1,121 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.testing.mock.sling.MockSling;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.StockQuery;
+import com.adobe.training.core.services.StockQueryResult;
+
+import static com.adobe.training.core.StockDataWriterJob.*;
+
+/**
+ * A screener page of the top movers of one sector on an Oak repository of "symbols" trade nodes,
+ * answered by the StockQueryService and, for comparison, by reading every trade node and sorting
+ * in memory. As in StockQueryServiceImplTest the index is a property index, Lucene is not
+ * available in the mock repository.
+ *
+ * mvn test-compile exec:exec -Pbenchmark -Dbenchmark=StockQueryBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StockQueryBenchmark {
+
+    private static final String[] SECTORS = {"Technology", "Energy", "Health Care", "Financials", "Utilities",
+            "Industrials", "Materials", "Real Estate", "Consumer Staples", "Communication Services"};
+    private static final int PAGE = 25;
+
+    @Param({"10000"})
+    private int symbols;
+
+    private ResourceResolver resolver;
+    private StockQueryServiceImpl queryService;
+    private StockQuery query;
+
+    @Setup
+    public void fillRepository() throws RepositoryException, PersistenceException {
+        resolver = MockSling.newResourceResolver(ResourceResolverType.JCR_OAK);
+        Session session = resolver.adaptTo(Session.class);
+        Node index = session.getNode("/oak:index").addNode(StockQueryServiceImpl.INDEX_NAME, "oak:QueryIndexDefinition");
+        index.setProperty("type", "property");
+        index.setProperty("propertyNames", new String[] {SECTOR, COMPANY, LASTTRADE, YTDCHANGE, VOLUME}, PropertyType.NAME);
+        index.setProperty("reindex", true);
+        session.save();
+
+        Map<String, Object> folder = new HashMap<>();
+        folder.put("jcr:primaryType", "nt:unstructured");
+        Resource stocks = ResourceUtil.getOrCreateResource(resolver, STOCK_IMPORT_FOLDER, folder, "nt:unstructured", false);
+        for (int i = 0; i < symbols; i++) {
+            Resource stock = resolver.create(stocks, String.format("S%05d", i), folder);
+            Map<String, Object> trade = new HashMap<>();
+            trade.put("jcr:primaryType", "nt:unstructured");
+            trade.put(COMPANY, "Company " + i);
+            trade.put(SECTOR, SECTORS[i % SECTORS.length]);
+            trade.put(LASTTRADE, 10.0 + i % 990);
+            trade.put(YTDCHANGE, ((i * 7919) % 2001 - 1000) / 1000.0);
+            trade.put(VOLUME, 1000L * (i % 5000));
+            resolver.create(stock, "trade", trade);
+            if (i % 1000 == 999) {
+                resolver.commit();
+            }
+        }
+        resolver.commit();
+        queryService = new StockQueryServiceImpl();
+        query = StockQuery.all().withSector("Technology").sortBy(StockQuery.SortField.YTD_CHANGE, true).page(0, PAGE);
+    }
+
+    @TearDown
+    public void closeRepository() {
+        resolver.close();
+    }
+
+    @Benchmark
+    public StockQueryResult indexedQuery() {
+        return queryService.search(resolver, query);
+    }
+
+    @Benchmark
+    public List<QuoteSnapshot> traverseAndSort() {
+        List<QuoteSnapshot> matches = new ArrayList<>();
+        for (Resource stock : resolver.getResource(STOCK_IMPORT_FOLDER).getChildren()) {
+            Resource trade = stock.getChild("trade");
+            if (trade != null && "Technology".equals(trade.getValueMap().get(SECTOR, String.class))) {
+                matches.add(QuoteSnapshot.fromTrade(stock.getName(), trade.getValueMap()));
+            }
+        }
+        matches.sort(Comparator.comparing(QuoteSnapshot::getYtdChange).reversed());
+        return new ArrayList<>(matches.subList(0, Math.min(PAGE, matches.size())));
+    }
+}
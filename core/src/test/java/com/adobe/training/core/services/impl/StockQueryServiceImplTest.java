@@ -0,0 +1,121 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jcr.Node;
+import javax.jcr.PropertyType;
+import javax.jcr.Session;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.StockQuery;
+import com.adobe.training.core.services.StockQueryResult;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+import static com.adobe.training.core.StockDataWriterJob.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the queries on an Oak repository. The mock repository has no Lucene index provider, so the
+ * wetrainStockTrade index is defined as a property index on the same properties, which is enough
+ * to show the filters are answered by the index and not by traversal.
+ */
+@ExtendWith(AemContextExtension.class)
+class StockQueryServiceImplTest {
+
+    private final AemContext context = new AemContext(ResourceResolverType.JCR_OAK);
+
+    private ResourceResolver resolver;
+    private Session session;
+    private StockQueryServiceImpl queryService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        resolver = context.resourceResolver();
+        session = resolver.adaptTo(Session.class);
+        Node index = session.getNode("/oak:index").addNode(StockQueryServiceImpl.INDEX_NAME, "oak:QueryIndexDefinition");
+        index.setProperty("type", "property");
+        index.setProperty("propertyNames", new String[] {SECTOR, COMPANY, LASTTRADE, YTDCHANGE, VOLUME}, PropertyType.NAME);
+        index.setProperty("reindex", true);
+        session.save();
+
+        //SYM00 .. SYM29, even numbers Technology, prices rising with the number
+        for (int i = 0; i < 30; i++) {
+            Map<String, Object> trade = new HashMap<>();
+            trade.put("jcr:primaryType", "nt:unstructured");
+            trade.put(COMPANY, String.format("Company %02d", i));
+            trade.put(SECTOR, i % 2 == 0 ? "Technology" : "Energy");
+            trade.put(LASTTRADE, 100.0 + i);
+            trade.put(YTDCHANGE, (i - 15) / 100.0);
+            trade.put(VOLUME, 1000L * i);
+            context.create().resource(String.format("/content/stocks/SYM%02d/trade", i), trade);
+        }
+        resolver.commit();
+        queryService = context.registerInjectActivateService(new StockQueryServiceImpl());
+    }
+
+    @Test
+    void testFilterSortAndPage() {
+        StockQuery technology = StockQuery.all().withSector("Technology")
+                .sortBy(StockQuery.SortField.LAST_TRADE, true);
+
+        StockQueryResult first = queryService.search(resolver, technology.page(0, 4));
+        assertEquals(Arrays.asList("SYM28", "SYM26", "SYM24", "SYM22"), symbols(first));
+        assertTrue(first.hasMore());
+
+        StockQueryResult last = queryService.search(resolver, technology.page(12, 4));
+        assertEquals(Arrays.asList("SYM04", "SYM02", "SYM00"), symbols(last));
+        assertFalse(last.hasMore());
+    }
+
+    @Test
+    void testRangesAreInclusive() {
+        StockQuery query = StockQuery.all().withLastTrade(110.0, 113.0).withMinVolume(11000L)
+                .sortBy(StockQuery.SortField.VOLUME, false);
+        assertEquals(Arrays.asList("SYM11", "SYM12", "SYM13"), symbols(queryService.search(resolver, query)));
+
+        query = StockQuery.all().withYtdChange(null, -0.14).sortBy(StockQuery.SortField.YTD_CHANGE, false);
+        assertEquals(Arrays.asList("SYM00", "SYM01"), symbols(queryService.search(resolver, query)));
+    }
+
+    @Test
+    void testCompanyPrefixIsMatchedLiterally() {
+        assertEquals(10, queryService.search(resolver, StockQuery.all().withCompanyPrefix("Company 1")).getQuotes().size());
+        assertTrue(queryService.search(resolver, StockQuery.all().withCompanyPrefix("Company %")).getQuotes().isEmpty());
+    }
+
+    @Test
+    void testQueriesUseTheIndex() throws Exception {
+        assertUsesIndex(StockQuery.all().withSector("Technology").sortBy(StockQuery.SortField.YTD_CHANGE, true));
+        assertUsesIndex(StockQuery.all().withMinVolume(20000L));
+        assertUsesIndex(StockQuery.all().withLastTrade(100.0, 120.0).withCompanyPrefix("Company"));
+    }
+
+    private void assertUsesIndex(StockQuery query) throws Exception {
+        String plan = queryService.createQuery(session, query, true).execute().getRows().nextRow()
+                .getValue("plan").getString();
+        assertTrue(plan.contains(StockQueryServiceImpl.INDEX_NAME), plan);
+        assertFalse(plan.contains("traverse"), plan);
+    }
+
+    private static List<String> symbols(StockQueryResult result) {
+        List<String> symbols = new ArrayList<>();
+        for (QuoteSnapshot quote : result.getQuotes()) {
+            symbols.add(quote.getSymbol());
+        }
+        return symbols;
+    }
+}
@@ -0,0 +1,93 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.SectorSummary;
+import com.adobe.training.core.services.StockQuery;
+import com.adobe.training.core.services.StockQueryResult;
+
+/**
+ * Market overview queries of the in memory screener over "symbols" quotes: the top gainers of
+ * all symbols, the highest volumes of one sector above a price, the sector aggregates and the
+ * update of one quote by an import job. With -Dbenchmark.args="-prof gc" the allocation per
+ * query stays constant across the symbol counts.
+ *
+ * mvn test-compile exec:exec -Pbenchmark -Dbenchmark=StockScreenerBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StockScreenerBenchmark {
+
+    private static final String[] SECTORS = {"Technology", "Energy", "Health Care", "Financials", "Utilities",
+            "Industrials", "Materials", "Real Estate", "Consumer Staples", "Communication Services"};
+
+    @Param({"10000", "100000"})
+    private int symbols;
+
+    private StockScreenerImpl screener;
+    private StockQuery topGainers;
+    private StockQuery sectorVolume;
+    private List<QuoteSnapshot> update;
+
+    @Setup
+    public void fillScreener() {
+        screener = new StockScreenerImpl();
+        List<QuoteSnapshot> quotes = new ArrayList<>(symbols);
+        for (int i = 0; i < symbols; i++) {
+            quotes.add(quote(i, 10.0 + i % 990));
+        }
+        screener.quotesUpdated(quotes);
+        topGainers = StockQuery.all().sortBy(StockQuery.SortField.YTD_CHANGE, true).page(0, 25);
+        sectorVolume = StockQuery.all().withSector("Technology").withLastTrade(100.0, null)
+                .sortBy(StockQuery.SortField.VOLUME, true).page(0, 25);
+        update = Collections.singletonList(quote(0, 10.0));
+    }
+
+    @Benchmark
+    public StockQueryResult topGainers() {
+        return screener.search(topGainers);
+    }
+
+    @Benchmark
+    public StockQueryResult sectorByVolume() {
+        return screener.search(sectorVolume);
+    }
+
+    @Benchmark
+    public List<SectorSummary> sectorSummaries() {
+        return screener.getSectorSummaries(StockQuery.all());
+    }
+
+    @Benchmark
+    public void updateQuote() {
+        //The same snapshot each time, the benchmark measures the row update and not the snapshot
+        screener.quotesUpdated(update);
+    }
+
+    private static QuoteSnapshot quote(int index, double price) {
+        String symbol = String.format("S%06d", index);
+        return new QuoteSnapshot(symbol, symbol + " Inc.", SECTORS[index % SECTORS.length], "4:00 PM EDT",
+                "Thu October 14, 2021", price, price, price, price, 1000L * (index % 5000),
+                (index % 21 - 10) / 10.0, null, null, ((index * 7919) % 2001 - 1000) / 1000.0, 1634241600456L);
+    }
+}
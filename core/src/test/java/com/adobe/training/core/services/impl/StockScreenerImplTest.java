@@ -0,0 +1,142 @@
+package com.adobe.training.core.services.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.SectorSummary;
+import com.adobe.training.core.services.StockQuery;
+import com.adobe.training.core.services.StockQueryResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class StockScreenerImplTest {
+
+    private StockScreenerImpl screener;
+
+    @BeforeEach
+    public void setup() {
+        screener = new StockScreenerImpl();
+        //SYM00 .. SYM29, even numbers Technology, prices rising with the number
+        List<QuoteSnapshot> quotes = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            quotes.add(quote(String.format("SYM%02d", i), i % 2 == 0 ? "Technology" : "Energy", 100.0 + i,
+                    (i - 15) / 100.0, 1000L * i));
+        }
+        screener.quotesUpdated(quotes);
+    }
+
+    @Test
+    void testTopKAndPages() {
+        StockQuery technology = StockQuery.all().withSector("Technology").sortBy(StockQuery.SortField.LAST_TRADE, true);
+
+        StockQueryResult first = screener.search(technology.page(0, 4));
+        assertEquals(Arrays.asList("SYM28", "SYM26", "SYM24", "SYM22"), symbols(first));
+        assertTrue(first.hasMore());
+
+        StockQueryResult last = screener.search(technology.page(12, 4));
+        assertEquals(Arrays.asList("SYM04", "SYM02", "SYM00"), symbols(last));
+        assertFalse(last.hasMore());
+
+        assertTrue(screener.search(StockQuery.all().withSector("Utilities")).getQuotes().isEmpty());
+        //Pages beyond the window are rejected, not moved to its end
+        assertThrows(IllegalArgumentException.class,
+                () -> screener.search(technology.page(StockScreenerImpl.MAX_WINDOW, 4)));
+    }
+
+    @Test
+    void testRangeFiltersAndMissingValues() {
+        screener.quotesUpdated(Collections.singletonList(quote("NOVOL", "Energy", 111.0, null, null)));
+
+        StockQuery query = StockQuery.all().withLastTrade(110.0, 113.0).withMinVolume(11000L)
+                .sortBy(StockQuery.SortField.VOLUME, false);
+        assertEquals(Arrays.asList("SYM11", "SYM12", "SYM13"), symbols(screener.search(query)));
+
+        query = StockQuery.all().withLastTrade(111.0, 111.0).sortBy(StockQuery.SortField.YTD_CHANGE, true);
+        assertEquals(Arrays.asList("SYM11", "NOVOL"), symbols(screener.search(query)));
+
+        query = StockQuery.all().withYtdChange(null, -0.14).withCompanyPrefix("SYM0");
+        assertEquals(Arrays.asList("SYM00", "SYM01"), symbols(screener.search(query)));
+    }
+
+    @Test
+    void testUpdatesAndRemovals() {
+        screener.quotesUpdated(Collections.singletonList(quote("SYM03", "Technology", 500.0, 0.5, 1L)));
+        screener.remove("SYM28");
+        screener.remove("SYM00");
+
+        assertEquals(28, screener.size());
+        StockQuery technology = StockQuery.all().withSector("Technology").sortBy(StockQuery.SortField.LAST_TRADE, true);
+        assertEquals(Arrays.asList("SYM03", "SYM26", "SYM24"), symbols(screener.search(technology.page(0, 3))));
+        assertEquals(14, screener.search(technology.page(0, 50)).getQuotes().size());
+    }
+
+    @Test
+    void testSectorSummaries() {
+        List<SectorSummary> summaries = screener.getSectorSummaries(StockQuery.all().withMinVolume(20000L));
+        assertEquals(2, summaries.size());
+        SectorSummary energy = summaries.get(0);
+        assertEquals("Energy", energy.getSector());
+        assertEquals(5, energy.getSymbolCount());
+        assertEquals(21000L + 23000L + 25000L + 27000L + 29000L, energy.getTotalVolume());
+        assertEquals(0.1, energy.getAverageYtdChange(), 1e-9);
+        assertEquals("SYM29", energy.getLeader());
+        assertEquals(5, energy.getAdvancing());
+        assertEquals("Technology", summaries.get(1).getSector());
+        assertEquals(5, summaries.get(1).getSymbolCount());
+
+        screener.quotesUpdated(Collections.singletonList(quote("NEW", "Utilities", 1.0, null, null)));
+        SectorSummary utilities = screener.getSectorSummaries(StockQuery.all().withSector("Utilities")).get(0);
+        assertNull(utilities.getAverageYtdChange());
+        assertNull(utilities.getLeader());
+    }
+
+    @Test
+    void testSearchDoesNotAllocatePerSymbol() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        List<QuoteSnapshot> quotes = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            quotes.add(quote("S" + i, i % 3 == 0 ? "Technology" : "Energy", 10.0 + i % 990, (i % 201 - 100) / 100.0, (long) i));
+        }
+        screener.quotesUpdated(quotes);
+        StockQuery query = StockQuery.all().withMinVolume(100L).sortBy(StockQuery.SortField.YTD_CHANGE, true).page(0, 10);
+        for (int round = 0; round < 100; round++) {
+            screener.search(query);
+            screener.getSectorSummaries(query);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        screener.search(query);
+        screener.getSectorSummaries(query);
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+        assertTrue(allocated < 10000, allocated + " bytes for 10000 symbols");
+    }
+
+    private static QuoteSnapshot quote(String symbol, String sector, double lastTrade, Double ytdChange, Long volume) {
+        return new QuoteSnapshot(symbol, symbol + " Inc.", sector, "4:00 PM EDT", "Thu October 14, 2021", lastTrade,
+                lastTrade, lastTrade, lastTrade, volume, ytdChange, null, null, ytdChange, 1634241600456L);
+    }
+
+    private static List<String> symbols(StockQueryResult result) {
+        List<String> symbols = new ArrayList<>();
+        for (QuoteSnapshot quote : result.getQuotes()) {
+            symbols.add(quote.getSymbol());
+        }
+        return symbols;
+    }
+}
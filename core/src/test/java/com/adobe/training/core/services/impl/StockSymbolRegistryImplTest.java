@@ -0,0 +1,48 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(AemContextExtension.class)
+class StockSymbolRegistryImplTest {
+
+    private StockSymbolRegistryImpl registry;
+
+    @BeforeEach
+    public void setup(AemContext context) {
+        context.create().resource("/content/stocks/ADBE/trade");
+        context.create().resource("/content/stocks/MSFT");
+        registry = context.registerInjectActivateService(new StockSymbolRegistryImpl());
+    }
+
+    @Test
+    void testSymbolFoldersAreRegisteredOnActivation() {
+        assertEquals(new HashSet<>(Arrays.asList("ADBE", "MSFT")), registry.getSymbols());
+        assertTrue(registry.contains("ADBE"));
+        assertFalse(registry.contains("GOOG"));
+    }
+
+    @Test
+    void testAddAndRemove() {
+        assertTrue(registry.add("GOOG"));
+        assertFalse(registry.add("GOOG"));
+        assertFalse(registry.add("not a symbol"));
+        assertFalse(registry.add(".."));
+        assertEquals(3, registry.size());
+
+        assertTrue(registry.remove("ADBE"));
+        assertFalse(registry.remove("ADBE"));
+        assertEquals(new HashSet<>(Arrays.asList("GOOG", "MSFT")), registry.getSymbols());
+    }
+}
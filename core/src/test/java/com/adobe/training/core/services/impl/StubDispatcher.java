@@ -0,0 +1,55 @@
+package com.adobe.training.core.services.impl;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local flush endpoint recording the invalidation requests a dispatcher would receive
+ */
+class StubDispatcher implements AutoCloseable {
+
+    private final HttpServer server;
+    private final List<String> flushes = new CopyOnWriteArrayList<>();
+    private volatile int status = 200;
+
+    StubDispatcher() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/dispatcher/invalidate.cache", this::handle);
+        server.start();
+    }
+
+    String getFlushUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+                + "/dispatcher/invalidate.cache";
+    }
+
+    // "<action> <handle>" per request, followed by " <scope>" when a scope was sent
+    List<String> getFlushes() {
+        return flushes;
+    }
+
+    // answers every request with this status
+    void setStatus(int status) {
+        this.status = status;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String scope = exchange.getRequestHeaders().getFirst(DispatcherInvalidator.SCOPE);
+        flushes.add(exchange.getRequestHeaders().getFirst(DispatcherInvalidator.ACTION) + " "
+                + exchange.getRequestHeaders().getFirst(DispatcherInvalidator.HANDLE)
+                + (scope != null ? " " + scope : ""));
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
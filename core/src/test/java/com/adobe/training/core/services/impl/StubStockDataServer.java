@@ -0,0 +1,100 @@
+package com.adobe.training.core.services.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local http server serving the &lt;SYMBOL&gt;.json files from src/test/resources/stock-data
+ */
+class StubStockDataServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile boolean sendValidators = true;
+    private volatile int failureStatus;
+
+    StubStockDataServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/stock-data/", this::handle);
+        server.start();
+    }
+
+    String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/stock-data/";
+    }
+
+    int getRequestCount() {
+        return requests.get();
+    }
+
+    // when disabled no ETag is sent and conditional requests are ignored, like a plain file server
+    void setSendValidators(boolean sendValidators) {
+        this.sendValidators = sendValidators;
+    }
+
+    // answers every request with this status, 0 serves the files again
+    void setFailureStatus(int failureStatus) {
+        this.failureStatus = failureStatus;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        if (failureStatus != 0) {
+            exchange.sendResponseHeaders(failureStatus, -1);
+            exchange.close();
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        byte[] body = readResource(path);
+        int status = 200;
+        if (body == null) {
+            // same response as raw.githubusercontent.com for a missing file
+            status = 404;
+            body = "404: Not Found".getBytes(StandardCharsets.UTF_8);
+        } else {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            if (sendValidators) {
+                String etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+                exchange.getResponseHeaders().add("ETag", etag);
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+            }
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private byte[] readResource(String path) throws IOException {
+        try (InputStream in = getClass().getResourceAsStream(path)) {
+            if (in == null) {
+                return null;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
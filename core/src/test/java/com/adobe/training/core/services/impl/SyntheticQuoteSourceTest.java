@@ -0,0 +1,66 @@
+package com.adobe.training.core.services.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import com.adobe.training.core.quotes.StockQuote;
+import com.adobe.training.core.quotes.StockQuoteDecoder;
+import com.adobe.training.core.services.FetchResult;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(AemContextExtension.class)
+class SyntheticQuoteSourceTest {
+
+    private long now;
+    private SyntheticQuoteSource source;
+
+    @BeforeEach
+    public void setup(AemContext context) {
+        source = context.registerInjectActivateService(new SyntheticQuoteSource(() -> now),
+                "ticks.per.second", 10.0, "volatility", 1.0, "seed", 42L);
+    }
+
+    @Test
+    void testQuotesFollowTheTicks() throws Exception {
+        assertTrue(source.accepts("synthetic:"));
+        StockQuote first = decode(source.fetch("synthetic:", "ADBE"));
+        assertEquals("ADBE Inc.", first.getCompanyName());
+        assertTrue(first.getLatestPrice() >= 10 && first.getLatestPrice() <= 1000);
+
+        // no tick in the first tenth of a second
+        now += TimeUnit.MILLISECONDS.toNanos(50);
+        assertEquals(FetchResult.Status.NOT_MODIFIED, source.fetch("synthetic:", "ADBE").getStatus());
+
+        now += TimeUnit.SECONDS.toNanos(10);
+        StockQuote moved = decode(source.fetch("synthetic:", "ADBE"));
+        assertNotEquals(first.getLatestPrice(), moved.getLatestPrice());
+        assertTrue(moved.getHigh() >= moved.getLatestPrice() && moved.getLow() <= moved.getLatestPrice());
+        assertTrue(moved.getLatestVolume() > 0);
+
+        source.forget("ADBE");
+        assertEquals(moved.getLatestPrice(), decode(source.fetch("synthetic:", "ADBE")).getLatestPrice(), 0.001);
+    }
+
+    @Test
+    void testSameSeedSamePrices(AemContext context) throws Exception {
+        SyntheticQuoteSource other = context.registerInjectActivateService(new SyntheticQuoteSource(() -> now),
+                "ticks.per.second", 10.0, "volatility", 1.0, "seed", 42L);
+        now += TimeUnit.SECONDS.toNanos(1);
+        assertEquals(decode(source.fetch("synthetic:", "MSFT")).getLatestPrice(),
+                decode(other.fetch("synthetic:", "MSFT")).getLatestPrice(), 0.001);
+    }
+
+    private static StockQuote decode(FetchResult result) throws Exception {
+        assertEquals(FetchResult.Status.MODIFIED, result.getStatus());
+        return StockQuoteDecoder.decode("ADBE", result.getBody());
+    }
+}
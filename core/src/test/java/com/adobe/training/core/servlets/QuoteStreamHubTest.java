@@ -0,0 +1,94 @@
+package com.adobe.training.core.servlets;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.adobe.training.core.services.QuoteSnapshot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuoteStreamHubTest {
+
+    @Test
+    void testUpdatesBetweenFlushesAreCoalesced() {
+        QuoteStreamHub hub = new QuoteStreamHub(10);
+        TestClient adbe = new TestClient(true);
+        TestClient both = new TestClient(true);
+        hub.subscribe(adbe, Collections.singletonList("ADBE"));
+        hub.subscribe(both, Arrays.asList("ADBE", "MSFT"));
+
+        hub.publish(snapshot("ADBE", 480.0, 1L));
+        hub.publish(snapshot("ADBE", 481.0, 2L));
+        hub.publish(snapshot("MSFT", 304.0, 3L));
+        hub.publish(snapshot("GOOG", 2800.0, 4L));
+
+        assertEquals(2, hub.flush());
+        assertEquals(1, adbe.events.size());
+        assertTrue(adbe.events.get(0).startsWith("event: quote\nid: 2\ndata: {\"symbol\":\"ADBE\",\"companyName\":\"ADBE Inc.\",\"sector\":\"Technology\",\"lastTrade\":481.0,"));
+        assertTrue(adbe.events.get(0).endsWith("}\n\n"));
+        assertEquals(2, both.events.size());
+        assertEquals(1, hub.getCoalescedCount());
+        assertEquals(0, hub.flush());
+    }
+
+    @Test
+    void testClientsThatCannotTakeEventsAreDropped() {
+        QuoteStreamHub hub = new QuoteStreamHub(10);
+        TestClient gone = new TestClient(false);
+        TestClient alive = new TestClient(true);
+        hub.subscribe(gone, Collections.singletonList("ADBE"));
+        hub.subscribe(alive, Collections.singletonList("ADBE"));
+
+        hub.heartbeat();
+        assertTrue(gone.closed);
+        assertFalse(alive.closed);
+        assertEquals(1, hub.getClientCount());
+        assertEquals(":\n\n", alive.events.get(0));
+    }
+
+    @Test
+    void testMaxClients() {
+        QuoteStreamHub hub = new QuoteStreamHub(1);
+        assertTrue(hub.subscribe(new TestClient(true), Collections.singletonList("ADBE")));
+        assertTrue(hub.isFull());
+        assertFalse(hub.subscribe(new TestClient(true), Collections.singletonList("MSFT")));
+
+        hub.closeAll();
+        assertEquals(0, hub.getClientCount());
+    }
+
+    private static QuoteSnapshot snapshot(String symbol, double lastTrade, long latestUpdate) {
+        return new QuoteSnapshot(symbol, symbol + " Inc.", "Technology", "04:00 PM EDT", "Thu October 14, 2021",
+                lastTrade, 478.12, 485.47, 476.3, 2153447L, 9.52, 699.54, 420.78, -0.0325, latestUpdate);
+    }
+
+    private static final class TestClient implements QuoteStreamHub.Client {
+        private final boolean accepting;
+        private final List<String> events = new ArrayList<>();
+        private boolean closed;
+
+        TestClient(boolean accepting) {
+            this.accepting = accepting;
+        }
+
+        @Override
+        public boolean send(byte[] event) {
+            if (accepting) {
+                events.add(new String(event, StandardCharsets.UTF_8));
+            }
+            return accepting;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
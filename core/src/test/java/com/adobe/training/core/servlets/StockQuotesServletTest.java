@@ -0,0 +1,111 @@
+package com.adobe.training.core.servlets;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.sling.testing.mock.sling.servlet.MockRequestPathInfo;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import com.adobe.training.core.services.QuoteSnapshot;
+import com.adobe.training.core.services.impl.QuoteCacheImpl;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(AemContextExtension.class)
+class StockQuotesServletTest {
+
+    private static final long LATEST_UPDATE = 1634241600456L;
+
+    private AemContext context;
+    private QuoteCacheImpl quoteCache;
+    private QuoteDocuments quoteDocuments;
+    private StockQuotesServlet servlet;
+
+    @BeforeEach
+    public void setup(AemContext context) {
+        this.context = context;
+        quoteCache = context.registerInjectActivateService(new QuoteCacheImpl());
+        quoteCache.put(snapshot("ADBE", 483.85));
+        quoteCache.put(snapshot("MSFT", 304.21));
+        quoteDocuments = context.registerInjectActivateService(new QuoteDocuments());
+        servlet = context.registerInjectActivateService(new StockQuotesServlet(), "max.symbols", 3);
+    }
+
+    @Test
+    void testQuotesOfTheSuffixSymbols() throws Exception {
+        MockSlingHttpServletResponse response = get("/adbe,MSFT,ABCD", null);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        String json = response.getOutputAsString();
+        assertTrue(json.startsWith("{\"ADBE\":{\"symbol\":\"ADBE\",\"companyName\":\"ADBE Inc.\",\"sector\":\"Technology\",\"lastTrade\":483.85,"));
+        assertTrue(json.contains("\"MSFT\":{\"symbol\":\"MSFT\""));
+        assertTrue(json.endsWith("\"ABCD\":null}"));
+        assertNotNull(response.getHeader("ETag"));
+        assertTrue(response.getHeader("Cache-Control").startsWith("public, max-age="));
+    }
+
+    @Test
+    void testMatchingETagIsNotModified() throws Exception {
+        String etag = get("/ADBE,MSFT", null).getHeader("ETag");
+
+        MockSlingHttpServletResponse response = get("/ADBE,MSFT", etag);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        assertEquals("", response.getOutputAsString());
+    }
+
+    @Test
+    void testDocumentsFollowTheCachedQuote() throws Exception {
+        QuoteSnapshot imported = snapshot("ADBE", 490.0);
+        quoteCache.put(imported);
+        quoteDocuments.quotesUpdated(Collections.singletonList(imported));
+        assertTrue(get("/ADBE", null).getOutputAsString().contains("\"lastTrade\":490.0,"));
+
+        //A quote replicated to this instance only reaches the cache
+        quoteCache.put(snapshot("ADBE", 495.5));
+        MockSlingHttpServletResponse response = get("/ADBE", null);
+        assertTrue(response.getOutputAsString().contains("\"lastTrade\":495.5,"));
+        assertEquals(response.getOutputAsString().length(), response.getContentLength());
+    }
+
+    @Test
+    void testTooManyOrInvalidSymbols() throws Exception {
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, get("/ADBE,MSFT,GOOG,AMZN", null).getStatus());
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, get("/ADBE,<script>", null).getStatus());
+    }
+
+    @Test
+    void testMaxAgeLastsUntilTheNextImport() {
+        long interval = TimeUnit.SECONDS.toMillis(120);
+        assertEquals(120, servlet.maxAgeSeconds(LATEST_UPDATE, LATEST_UPDATE));
+        assertEquals(90, servlet.maxAgeSeconds(LATEST_UPDATE, LATEST_UPDATE + 30_000));
+        assertEquals(90, servlet.maxAgeSeconds(LATEST_UPDATE, LATEST_UPDATE + 3 * interval + 30_000));
+        assertEquals(120, servlet.maxAgeSeconds(0, LATEST_UPDATE));
+    }
+
+    private MockSlingHttpServletResponse get(String suffix, String ifNoneMatch) throws Exception {
+        MockSlingHttpServletRequest request = new MockSlingHttpServletRequest(context.resourceResolver(), context.bundleContext());
+        ((MockRequestPathInfo) request.getRequestPathInfo()).setSuffix(suffix);
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        servlet.doGet(request, response);
+        return response;
+    }
+
+    private static QuoteSnapshot snapshot(String symbol, double lastTrade) {
+        return new QuoteSnapshot(symbol, symbol + " Inc.", "Technology", "04:00 PM EDT", "Thu October 14, 2021",
+                lastTrade, 478.12, 485.47, 476.3, 2153447L, 9.52, 699.54, 420.78, -0.0325, LATEST_UPDATE);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Fills the Stockplex components rendered in the browser from the quote document of their symbol.
+ * Components of the same symbol share one request. The dispatcher and the browser keep the document
+ * until the next import is due (its max-age), so the cached page never shows the quote of its render time.
+ */
+(function (document) {
+    "use strict";
+
+    var SELECTOR = "[data-cmp-stockplex-quote]";
+
+    function format(field, value) {
+        if (value === null || value === undefined) {
+            return "-";
+        }
+        if (field === "volume") {
+            return Number(value).toLocaleString();
+        }
+        return typeof value === "number" ? value.toFixed(2) : value;
+    }
+
+    function hydrate(component, quote) {
+        var fields = component.querySelectorAll("[data-cmp-stockplex-field]");
+        for (var i = 0; i < fields.length; i++) {
+            var field = fields[i].getAttribute("data-cmp-stockplex-field");
+            fields[i].textContent = quote ? format(field, quote[field]) : "-";
+        }
+    }
+
+    function load(url, components) {
+        var request = new XMLHttpRequest();
+        request.open("GET", url);
+        request.onload = function () {
+            var quote = null;
+            if (request.status === 200) {
+                var quotes = JSON.parse(request.responseText);
+                for (var symbol in quotes) {
+                    if (Object.prototype.hasOwnProperty.call(quotes, symbol)) {
+                        quote = quotes[symbol];
+                    }
+                }
+            }
+            for (var i = 0; i < components.length; i++) {
+                hydrate(components[i], quote);
+            }
+        };
+        request.send();
+    }
+
+    function init() {
+        var components = document.querySelectorAll(SELECTOR);
+        var byUrl = {};
+        for (var i = 0; i < components.length; i++) {
+            var url = components[i].getAttribute("data-cmp-stockplex-quote");
+            (byUrl[url] = byUrl[url] || []).push(components[i]);
+        }
+        for (var quoteUrl in byUrl) {
+            if (Object.prototype.hasOwnProperty.call(byUrl, quoteUrl)) {
+                load(quoteUrl, byUrl[quoteUrl]);
+            }
+        }
+    }
+
+    if (document.readyState !== "loading") {
+        init();
+    } else {
+        document.addEventListener("DOMContentLoaded", init);
+    }
+})(document);